@@ -0,0 +1,55 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * benchmarks.jar的入口：在命令行参数的基础上总是启用GC profiler，以便报告每次操作分配的字节数
+ * (gc.alloc.rate.norm)；没有指定要运行的基准时运行本包下的所有基准。
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        if (cmdOptions.getIncludes().isEmpty()) {
+            builder.include(BenchmarkMain.class.getPackage().getName() + ".*Benchmark");
+        }
+        if (!hasGCProfiler(cmdOptions)) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        Options options = builder.parent(cmdOptions).build();
+        new Runner(options).run();
+    }
+
+    private static boolean hasGCProfiler(Options options) {
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            if (GCProfiler.class.getName().equals(profiler.getKlass())
+                    || "gc".equals(profiler.getKlass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 结果渲染：文本(@开头的字符串)以及视图(jsp，由MockRequestDispatcher接收转发)
+ * 
+ * @see net.paoding.rose.benchmarks.controllers.RenderController
+ */
+public class InstructionBenchmark extends RoseBenchmark {
+
+    @Override
+    protected void verify() throws Exception {
+        assertStatus(request("GET", "/render/text"), 200);
+        assertStatus(request("GET", "/render/view"), 200);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse text() throws Exception {
+        return execute(request("GET", "/render/text"));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse view() throws Exception {
+        return execute(request("GET", "/render/view"));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import net.paoding.rose.RoseFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 拦截器链：intercepted模块下的action被8个拦截器拦截，分别以原来的链式方式和展开方式执行
+ * 
+ * @see net.paoding.rose.benchmarks.controllers.intercepted.InterceptedController
+ * @see RoseFilter#setInterceptorPipeline(boolean)
+ */
+public class InterceptorBenchmark extends RoseBenchmark {
+
+    @Param( { "false", "true" })
+    public boolean interceptorPipeline;
+
+    @Override
+    protected void configure(RoseFilter filter) {
+        filter.setInterceptorPipeline(interceptorPipeline);
+    }
+
+    @Override
+    protected void verify() throws Exception {
+        assertStatus(request("GET", "/intercepted/intercepted"), 200);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse interceptorChain() throws Exception {
+        return execute(request("GET", "/intercepted/intercepted"));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 参数解析：简单类型参数以及bean参数的绑定
+ * 
+ * @see net.paoding.rose.benchmarks.controllers.FormController
+ */
+public class ParameterBindingBenchmark extends RoseBenchmark {
+
+    @Override
+    protected void verify() throws Exception {
+        assertStatus(simpleRequest(), 200);
+        assertStatus(beanRequest(), 200);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse simpleParameters() throws Exception {
+        return execute(simpleRequest());
+    }
+
+    @Benchmark
+    public MockHttpServletResponse beanParameter() throws Exception {
+        return execute(beanRequest());
+    }
+
+    private MockHttpServletRequest simpleRequest() {
+        MockHttpServletRequest request = request("GET", "/form/simple");
+        request.addParameter("id", "12345");
+        request.addParameter("name", "rose");
+        request.addParameter("age", "18");
+        request.addParameter("vip", "true");
+        return request;
+    }
+
+    private MockHttpServletRequest beanRequest() {
+        MockHttpServletRequest request = request("POST", "/form/save");
+        request.addParameter("id", "12345");
+        request.addParameter("name", "rose");
+        request.addParameter("age", "18");
+        request.addParameter("email", "rose@paoding.net");
+        request.addParameter("vip", "true");
+        return request;
+    }
+}
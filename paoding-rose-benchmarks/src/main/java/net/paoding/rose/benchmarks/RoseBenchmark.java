@@ -0,0 +1,156 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+
+import net.paoding.rose.RoseFilter;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResourceLoader;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+/**
+ * 所有基准的父类：在一个临时webapp目录上初始化一个真实的 {@link RoseFilter}
+ * ，只扫描本模块的controllers，每次操作通过spring-mock的请求、响应对象调用
+ * {@link RoseFilter#doFilter(javax.servlet.ServletRequest, javax.servlet.ServletResponse, javax.servlet.FilterChain)}
+ * 。
+ * <p>
+ * 每次操作都会新建请求、响应对象，这部分分配在各个基准之间是相同的，比较时关注差值即可。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class RoseBenchmark {
+
+    /** 视图基准使用的jsp，需要在webapp的views目录下真实存在 */
+    public static final String[] VIEW_FILES = { "hello.jsp" };
+
+    protected RoseFilter filter;
+
+    private MockServletContext servletContext;
+
+    private File webRoot;
+
+    @Setup(Level.Trial)
+    public void setUpRose() throws Exception {
+        webRoot = createWebRoot();
+        // 使用file:前缀，FileSystemResourceLoader会把/开头的路径当作相对路径
+        servletContext = new MockServletContext("file:" + webRoot.getAbsolutePath(),
+                new FileSystemResourceLoader());
+        filter = new RoseFilter();
+        filter.setLoad("net.paoding.rose.benchmarks");
+        configure(filter);
+        filter.init(new MockFilterConfig(servletContext, "roseFilter"));
+        // 确认环境可用，避免测量的是404
+        verify();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownRose() {
+        if (filter != null) {
+            filter.destroy();
+        }
+        if (webRoot != null) {
+            delete(webRoot);
+        }
+    }
+
+    /**
+     * 子类可以在init之前改变filter的配置
+     * 
+     * @param filter
+     */
+    protected void configure(RoseFilter filter) {
+    }
+
+    /**
+     * 子类在这里调用一次各个基准的请求，检查返回的状态
+     */
+    protected void verify() throws Exception {
+    }
+
+    protected MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(servletContext, method, uri);
+    }
+
+    protected MockHttpServletResponse execute(MockHttpServletRequest request)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    protected void assertStatus(MockHttpServletRequest request, int expected)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = execute(request);
+        if (response.getStatus() != expected) {
+            throw new IllegalStateException(request.getMethod() + " " + request.getRequestURI()
+                    + ": expected status " + expected + " but " + response.getStatus() + " "
+                    + response.getErrorMessage());
+        }
+    }
+
+    private static File createWebRoot() throws IOException {
+        File webRoot = File.createTempFile("rose-benchmarks", "");
+        if (!webRoot.delete() || !webRoot.mkdirs()) {
+            throw new IOException("failed to create " + webRoot);
+        }
+        // RoseFilter默认读取/WEB-INF/applicationContext*.xml，目录需要存在
+        File webInf = new File(webRoot, "WEB-INF");
+        File views = new File(webRoot, "views");
+        if (!webInf.mkdirs() || !views.mkdirs()) {
+            throw new IOException("failed to create " + webInf + " or " + views);
+        }
+        for (String view : VIEW_FILES) {
+            if (!new File(views, view).createNewFile()) {
+                throw new IOException("failed to create " + view);
+            }
+        }
+        return webRoot;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
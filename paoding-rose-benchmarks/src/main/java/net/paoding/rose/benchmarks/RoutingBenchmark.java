@@ -0,0 +1,56 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 地址匹配：常量地址、带正则参数的地址、多层模块下的地址
+ * 
+ * @see net.paoding.rose.benchmarks.controllers.RouteController
+ * @see net.paoding.rose.benchmarks.controllers.deep.a.b.c.d.DeepController
+ */
+public class RoutingBenchmark extends RoseBenchmark {
+
+    @Override
+    protected void verify() throws Exception {
+        assertStatus(request("GET", "/route/hello"), 200);
+        assertStatus(request("GET", "/route/user/12345/rose"), 200);
+        assertStatus(request("GET", "/deep/a/b/c/d/deep/leaf"), 200);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse constantRoute() throws Exception {
+        return execute(request("GET", "/route/hello"));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse regexRoute() throws Exception {
+        return execute(request("GET", "/route/user/12345/rose"));
+    }
+
+    @Benchmark
+    public MockHttpServletResponse deepModuleRoute() throws Exception {
+        return execute(request("GET", "/deep/a/b/c/d/deep/leaf"));
+    }
+
+    /** 没有匹配的地址，由RoseFilter交给后续的filter chain */
+    @Benchmark
+    public MockHttpServletResponse notFound() throws Exception {
+        return execute(request("GET", "/route/not/exists"));
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks.controllers;
+
+import net.paoding.rose.benchmarks.UserForm;
+import net.paoding.rose.web.annotation.Param;
+import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.annotation.rest.Get;
+import net.paoding.rose.web.annotation.rest.Post;
+
+@Path("form")
+public class FormController {
+
+    @Get("simple")
+    public String simple(@Param("id") long id, @Param("name") String name,
+            @Param("age") int age, @Param("vip") boolean vip) {
+        return "@" + name;
+    }
+
+    @Post("save")
+    public String save(UserForm form) {
+        return "@" + form.getName();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks.controllers.intercepted;
+
+import net.paoding.rose.web.ControllerInterceptorAdapter;
+import net.paoding.rose.web.Invocation;
+
+public class AuditInterceptor extends ControllerInterceptorAdapter {
+
+    public AuditInterceptor() {
+        setPriority(40);
+    }
+
+    @Override
+    protected Object after(Invocation inv, Object instruction) throws Exception {
+        inv.setAttribute("audited", Boolean.TRUE);
+        return null;
+    }
+}
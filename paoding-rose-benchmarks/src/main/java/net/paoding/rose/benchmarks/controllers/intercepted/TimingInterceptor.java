@@ -0,0 +1,38 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.benchmarks.controllers.intercepted;
+
+import net.paoding.rose.web.ControllerInterceptorAdapter;
+import net.paoding.rose.web.Invocation;
+
+public class TimingInterceptor extends ControllerInterceptorAdapter {
+
+    public TimingInterceptor() {
+        setPriority(60);
+    }
+
+    @Override
+    protected Object before(Invocation inv) throws Exception {
+        inv.setAttribute("begin", System.nanoTime());
+        return true;
+    }
+
+    @Override
+    protected Object after(Invocation inv, Object instruction) throws Exception {
+        inv.setAttribute("cost", System.nanoTime() - (Long) inv.getAttribute("begin"));
+        return instruction;
+    }
+}
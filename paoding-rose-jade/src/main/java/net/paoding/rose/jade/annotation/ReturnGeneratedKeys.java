@@ -35,6 +35,15 @@ import java.lang.annotation.Target;
  * public long save(String name);
  * </pre>
  * 
+ * 第一个参数为List的批量插入方法可以返回int[]、long[]等数组，数组元素依次为每个参数生成的id，
+ * 驱动不支持在批量执行后返回id时为0或null：
+ * 
+ * <pre>
+ * &#064;ReturnGeneratedKeys
+ * &#064;SQL(&quot;insert into role(name) values(:1)&quot;)
+ * public long[] save(List&lt;String&gt; names);
+ * </pre>
+ * 
  * 
  * @author 王志亮 [qieqie.wang@gmail.com]
  * @author 廖涵 [in355hz@gmail.com]
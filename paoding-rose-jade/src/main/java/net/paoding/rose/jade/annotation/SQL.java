@@ -78,4 +78,29 @@ public @interface SQL {
      * @return 查询类型
      */
     SQLType type() default SQLType.AUTO_DETECT;
+
+    /**
+     * IN (:list) 展开时的分桶上限。
+     * <p>
+     * 大于0时，IN (...) 中列表展开的 ? 个数被补齐到 1、2、4、8、16…… 中不小于列表长度的值(补齐时重复最后一个值)，
+     * 但不超过这个上限，使不同长度的列表得到相同的SQL，有利于驱动、连接池缓存PreparedStatement；
+     * 超过上限的列表补齐到上限的整数倍。不在 IN (...) 中的集合(如VALUES、函数参数)不补齐。
+     * <p>
+     * 0表示不分桶；-1(默认)表示使用系统属性 jade.inListBucket 的设置，没有设置时不分桶。
+     * 
+     * @return 分桶上限
+     * @see #inListSplit()
+     */
+    int inListBucket() default -1;
+
+    /**
+     * 查询语句中超过 {@link #inListBucket()} 上限的列表是否拆分为多条语句执行、按顺序合并结果，默认不拆分(只补齐)。
+     * <p>
+     * 只有同时满足以下条件时才会拆分，否则仍然只补齐：DAO方法返回List、Set或数组；
+     * 该列表在SQL中只出现一次，并且位于 IN (...) 中(不能是 NOT IN)；SQL中没有聚合函数、DISTINCT、
+     * GROUP BY、HAVING、ORDER BY、LIMIT、UNION。
+     * 
+     * @return 是否拆分
+     */
+    boolean inListSplit() default false;
 }
@@ -67,4 +67,17 @@ public interface DataAccess {
      * @return
      */
     int[] batchUpdate(String sql, List<Object[]> argsList);
+
+    /**
+     * 批量写访问（更新或插入），所有参数共用同一个PreparedStatement，分批次addBatch/executeBatch
+     * <p>
+     * 返回的数组和argsList一一对应，驱动无法给出具体更新条数时，对应的值为
+     * {@link java.sql.Statement#SUCCESS_NO_INFO}
+     * 
+     * @param sql 所要执行的实际SQL语句
+     * @param argsList 伴随该SQL语句的参数
+     * @param generatedKeyHolder 是否要读取该SQL生成的key，驱动不支持时不读取
+     * @return
+     */
+    int[] batchUpdate(String sql, List<Object[]> argsList, KeyHolder generatedKeyHolder);
 }
@@ -15,8 +15,15 @@
  */
 package net.paoding.rose.jade.dataaccess;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.sql.DataSource;
+
+import net.paoding.rose.jade.dataaccess.datasource.HierarchicalDataSourceFactory;
+import net.paoding.rose.jade.dataaccess.datasource.SimpleDataSourceFactory;
 import net.paoding.rose.jade.statement.StatementMetaData;
 
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -24,6 +31,11 @@ import org.springframework.jdbc.core.JdbcTemplate;
 /**
  * 框架内部使用的 {@link DataAccessFactory}实现，适配到 {@link DataSourceFactory}
  * ，由后者提供最终的数据源
+ * <p>
+ * 同一个数据源只创建一个 {@link JdbcTemplate}和 {@link DataAccess}实例；
+ * 如果经过的 {@link DataSourceFactory}都是 {@link SimpleDataSourceFactory}或
+ * {@link HierarchicalDataSourceFactory}，数据源只和DAO方法有关，每个DAO方法只解析一次，
+ * 这些工厂修改配置(版本号改变)后重新解析。
  * 
  * @see DataSourceFactory
  * 
@@ -34,24 +46,266 @@ public class DataAccessFactoryAdapter implements DataAccessFactory {
 
     protected final DataSourceFactory dataSourceFactory;
 
+    private int batchSize = DataAccessImpl.DEFAULT_BATCH_SIZE;
+
+    private int fetchSize = 0;
+
+    private int maxRows = 0;
+
+    private int queryTimeout = 0;
+
+    /**
+     * 缓存的数据源个数上限，超过时清空缓存，避免不断重建数据源(如连接池)的工厂使旧的数据源无法回收
+     */
+    public static final int MAX_CACHED_DATA_SOURCES = Integer.getInteger(
+            "jade.maxCachedDataSources", 256);
+
+    /** 以数据源对象本身(而非equals)区分的 {@link DataAccess}缓存 */
+    private final ConcurrentHashMap<IdentityKey, DataAccess> dataAccesses = new ConcurrentHashMap<IdentityKey, DataAccess>();
+
+    /** 通过 {@link #registerJdbcTemplate(JdbcTemplate)}单独配置的 {@link JdbcTemplate} */
+    private final ConcurrentHashMap<IdentityKey, JdbcTemplate> jdbcTemplates = new ConcurrentHashMap<IdentityKey, JdbcTemplate>();
+
+    /** 数据源固定的DAO方法所对应的 {@link DataAccess} */
+    private final ConcurrentHashMap<StatementMetaData, StaticRoute> staticRoutes = new ConcurrentHashMap<StatementMetaData, StaticRoute>();
+
     public DataAccessFactoryAdapter(DataSourceFactory dataSourceFactory) {
         this.dataSourceFactory = dataSourceFactory;
     }
 
+    /**
+     * 设置批量更新时每次executeBatch最多提交的参数组数
+     * 
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("illegal batchSize: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        clearCache();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置默认的fetchSize，0表示使用JDBC驱动的默认值；单个数据源可以通过
+     * {@link #registerJdbcTemplate(JdbcTemplate)}另行配置
+     * 
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        clearCache();
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置默认的maxRows，0表示使用JDBC驱动的默认值；单个数据源可以通过
+     * {@link #registerJdbcTemplate(JdbcTemplate)}另行配置
+     * 
+     * @param maxRows
+     */
+    public void setMaxRows(int maxRows) {
+        this.maxRows = maxRows;
+        clearCache();
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * 设置默认的查询超时秒数，0表示使用JDBC驱动的默认值；单个数据源可以通过
+     * {@link #registerJdbcTemplate(JdbcTemplate)}另行配置
+     * 
+     * @param queryTimeout
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+        clearCache();
+    }
+
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * 为 {@link JdbcTemplate#getDataSource()}所指的数据源注册一个单独配置的 {@link JdbcTemplate}
+     * ，如fetchSize、maxRows、queryTimeout等
+     * 
+     * @param jdbcTemplate
+     */
+    public void registerJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        if (jdbcTemplate.getDataSource() == null) {
+            throw new NullPointerException("jdbcTemplate.dataSource");
+        }
+        jdbcTemplates.put(new IdentityKey(jdbcTemplate.getDataSource()), jdbcTemplate);
+        clearCache();
+    }
+
     public DataSourceFactory getDataSourceFactory() {
         return dataSourceFactory;
     }
 
     @Override
     public DataAccess getDataAccess(StatementMetaData metaData, Map<String, Object> runtime) {
-        DataSourceHolder holder = dataSourceFactory.getHolder(metaData, runtime);
-        while (holder != null && holder.isFactory()) {
-            holder = holder.getFactory().getHolder(metaData, runtime);
+        StaticRoute route = staticRoutes.get(metaData);
+        if (route != null && route.isValid(this)) {
+            return route.dataAccess;
+        }
+        List<DataSourceFactory> factories = new ArrayList<DataSourceFactory>(2);
+        List<Integer> versions = new ArrayList<Integer>(2);
+        boolean isStatic = true;
+        DataSourceFactory factory = dataSourceFactory;
+        DataSourceHolder holder;
+        while (true) {
+            // 先取版本号再解析，解析期间配置被修改时下次调用会重新解析
+            isStatic = isStatic && isStatic(factory);
+            if (isStatic) {
+                factories.add(factory);
+                versions.add(getVersion(factory));
+            }
+            holder = factory.getHolder(metaData, runtime);
+            if (holder == null || !holder.isFactory()) {
+                break;
+            }
+            factory = holder.getFactory();
         }
         if (holder == null || holder.getDataSource() == null) {
             throw new NullPointerException("cannot found a dataSource for: " + metaData);
         }
-        JdbcTemplate jdbcTemplate = new JdbcTemplate(holder.getDataSource());
-        return new DataAccessImpl(jdbcTemplate);
+        DataAccess dataAccess = getDataAccess(holder.getDataSource());
+        if (isStatic) {
+            staticRoutes.put(metaData, new StaticRoute(dataAccess, factories, versions));
+        } else if (route != null) {
+            staticRoutes.remove(metaData, route);
+        }
+        return dataAccess;
+    }
+
+    /**
+     * 返回给定数据源的 {@link DataAccess}，同一个数据源总是返回同一个实例
+     * 
+     * @param dataSource
+     * @return
+     */
+    protected DataAccess getDataAccess(DataSource dataSource) {
+        IdentityKey key = new IdentityKey(dataSource);
+        DataAccess dataAccess = dataAccesses.get(key);
+        if (dataAccess == null) {
+            if (dataAccesses.size() >= MAX_CACHED_DATA_SOURCES) {
+                dataAccesses.clear();
+            }
+            dataAccess = new DataAccessImpl(getJdbcTemplate(dataSource), batchSize);
+            DataAccess exists = dataAccesses.putIfAbsent(key, dataAccess);
+            if (exists != null) {
+                dataAccess = exists;
+            }
+        }
+        return dataAccess;
+    }
+
+    protected JdbcTemplate getJdbcTemplate(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = jdbcTemplates.get(new IdentityKey(dataSource));
+        if (jdbcTemplate == null) {
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.setFetchSize(fetchSize);
+            jdbcTemplate.setMaxRows(maxRows);
+            jdbcTemplate.setQueryTimeout(queryTimeout);
+        }
+        return jdbcTemplate;
+    }
+
+    /**
+     * 给定的工厂返回的数据源是否只和DAO方法有关、而和运行时参数无关
+     * 
+     * @param factory
+     * @return
+     */
+    protected boolean isStatic(DataSourceFactory factory) {
+        Class<?> factoryClass = factory.getClass();
+        return factoryClass == SimpleDataSourceFactory.class
+                || factoryClass == HierarchicalDataSourceFactory.class;
+    }
+
+    /**
+     * 返回固定工厂配置的版本号，版本号改变后重新解析该工厂返回的数据源；覆盖 {@link #isStatic(DataSourceFactory)}
+     * 的子类如果允许修改工厂的配置，也应覆盖此方法
+     * 
+     * @param factory
+     * @return
+     */
+    protected int getVersion(DataSourceFactory factory) {
+        if (factory instanceof SimpleDataSourceFactory) {
+            return ((SimpleDataSourceFactory) factory).getVersion();
+        }
+        if (factory instanceof HierarchicalDataSourceFactory) {
+            return ((HierarchicalDataSourceFactory) factory).getVersion();
+        }
+        return 0;
+    }
+
+    private void clearCache() {
+        staticRoutes.clear();
+        dataAccesses.clear();
+    }
+
+    /**
+     * 一个DAO方法经过的固定工厂及其版本号，以及最终的 {@link DataAccess}
+     */
+    private static final class StaticRoute {
+
+        final DataAccess dataAccess;
+
+        private final DataSourceFactory[] factories;
+
+        private final int[] versions;
+
+        StaticRoute(DataAccess dataAccess, List<DataSourceFactory> factories,
+                List<Integer> versions) {
+            this.dataAccess = dataAccess;
+            this.factories = factories.toArray(new DataSourceFactory[factories.size()]);
+            this.versions = new int[versions.size()];
+            for (int i = 0; i < this.versions.length; i++) {
+                this.versions[i] = versions.get(i);
+            }
+        }
+
+        boolean isValid(DataAccessFactoryAdapter adapter) {
+            for (int i = 0; i < factories.length; i++) {
+                if (adapter.getVersion(factories[i]) != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 以对象本身作为key，不使用数据源的equals、hashCode方法
+     */
+    private static final class IdentityKey {
+
+        private final Object target;
+
+        IdentityKey(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ((IdentityKey) obj).target == target;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(target);
+        }
     }
 }
@@ -17,17 +17,23 @@ package net.paoding.rose.jade.dataaccess;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.SqlParameterValue;
 import org.springframework.jdbc.core.SqlTypeValue;
 import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
 
 /**
@@ -37,10 +43,32 @@ import org.springframework.jdbc.support.KeyHolder;
  */
 public class DataAccessImpl implements DataAccess {
 
+    private static final Log logger = LogFactory.getLog(DataAccessImpl.class);
+
+    /**
+     * 批量更新时每次executeBatch最多提交的参数组数，可以通过系统属性
+     * <code>-Djade.batchSize=500</code> 修改
+     */
+    public static final int DEFAULT_BATCH_SIZE = Integer.getInteger("jade.batchSize", 1000);
+
     private final JdbcTemplate jdbcTemplate;
 
+    private final int batchSize;
+
     public DataAccessImpl(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, DEFAULT_BATCH_SIZE);
+    }
+
+    public DataAccessImpl(JdbcTemplate jdbcTemplate, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("illegal batchSize: " + batchSize);
+        }
         this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
     }
 
     // ------------------------------------------------
@@ -66,43 +94,131 @@ public class DataAccessImpl implements DataAccess {
         }
     }
 
-    // TODO: 批量处理
     @Override
     public int[] batchUpdate(String sql, List<Object[]> argsList) {
+        return batchUpdate(sql, argsList, null);
+    }
+
+    @Override
+    public int[] batchUpdate(final String sql, final List<Object[]> argsList,
+            final KeyHolder generatedKeyHolder) {
+        if (argsList.isEmpty()) {
+            return new int[0];
+        }
+        if (argsList.size() == 1) {
+            return new int[] { update(sql, argsList.get(0), generatedKeyHolder) };
+        }
+        final boolean returnKeys = generatedKeyHolder != null;
+        PreparedStatementCreator psc = new PreparedStatementCreator() {
+
+            @Override
+            public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                return prepareStatement(con, sql, returnKeys);
+            }
+        };
+        PreparedStatementCallback action = new PreparedStatementCallback() {
+
+            @Override
+            public Object doInPreparedStatement(PreparedStatement ps) throws SQLException {
+                return executeBatch(ps, argsList, generatedKeyHolder);
+            }
+        };
+        return (int[]) jdbcTemplate.execute(psc, action);
+    }
+
+    /**
+     * 在同一个PreparedStatement上按batchSize分批执行；驱动不支持批量更新时逐条executeUpdate
+     */
+    private int[] executeBatch(PreparedStatement ps, List<Object[]> argsList,
+            KeyHolder generatedKeyHolder) throws SQLException {
         int[] updated = new int[argsList.size()];
-        int i = 0;
-        for (Object[] args : argsList) {
-            updated[i++] = update(sql, args, null);
+        boolean batchSupported = JdbcUtils.supportsBatchUpdates(ps.getConnection());
+        boolean returnKeys = generatedKeyHolder != null;
+        int from = 0;
+        while (from < updated.length) {
+            int to;
+            if (batchSupported) {
+                to = Math.min(from + batchSize, updated.length);
+                for (int i = from; i < to; i++) {
+                    setParameters(ps, argsList.get(i));
+                    ps.addBatch();
+                }
+                int[] chunk = ps.executeBatch();
+                System.arraycopy(chunk, 0, updated, from, Math.min(chunk.length, to - from));
+            } else {
+                to = from + 1;
+                setParameters(ps, argsList.get(from));
+                updated[from] = ps.executeUpdate();
+            }
+            if (returnKeys) {
+                returnKeys = extractGeneratedKeys(ps, generatedKeyHolder);
+            }
+            from = to;
         }
         return updated;
     }
 
+    /**
+     * 读取最近一次执行生成的key，驱动不支持时返回false
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean extractGeneratedKeys(PreparedStatement ps, KeyHolder generatedKeyHolder) {
+        ResultSet rs = null;
+        try {
+            rs = ps.getGeneratedKeys();
+            if (rs == null) {
+                return false;
+            }
+            ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+            List<Object> keyList = generatedKeyHolder.getKeyList();
+            int rowNum = 0;
+            while (rs.next()) {
+                keyList.add(rowMapper.mapRow(rs, rowNum++));
+            }
+            return true;
+        } catch (SQLException e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("generated keys of batch are not supported by the driver", e);
+            }
+            return false;
+        } finally {
+            JdbcUtils.closeResultSet(rs);
+        }
+    }
+
+    private static PreparedStatement prepareStatement(Connection con, String sql,
+            boolean returnKeys) throws SQLException {
+        if (returnKeys) {
+            return con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        } else {
+            return con.prepareStatement(sql);
+        }
+    }
+
+    private static void setParameters(PreparedStatement ps, Object[] args) throws SQLException {
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if (arg instanceof SqlParameterValue) {
+                    SqlParameterValue paramValue = (SqlParameterValue) arg;
+                    StatementCreatorUtils.setParameterValue(ps, i + 1, paramValue,
+                            paramValue.getValue());
+                } else {
+                    StatementCreatorUtils.setParameterValue(ps, i + 1,
+                            SqlTypeValue.TYPE_UNKNOWN, arg);
+                }
+            }
+        }
+    }
+
     private PreparedStatementCreator getPreparedStatementCreator(//
             final String sql, final Object[] args, final boolean returnKeys) {
         PreparedStatementCreator creator = new PreparedStatementCreator() {
 
             @Override
             public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-                PreparedStatement ps = con.prepareStatement(sql);
-                if (returnKeys) {
-                    ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                } else {
-                    ps = con.prepareStatement(sql);
-                }
-
-                if (args != null) {
-                    for (int i = 0; i < args.length; i++) {
-                        Object arg = args[i];
-                        if (arg instanceof SqlParameterValue) {
-                            SqlParameterValue paramValue = (SqlParameterValue) arg;
-                            StatementCreatorUtils.setParameterValue(ps, i + 1, paramValue,
-                                    paramValue.getValue());
-                        } else {
-                            StatementCreatorUtils.setParameterValue(ps, i + 1,
-                                    SqlTypeValue.TYPE_UNKNOWN, arg);
-                        }
-                    }
-                }
+                PreparedStatement ps = prepareStatement(con, sql, returnKeys);
+                setParameters(ps, args);
                 return ps;
             }
         };
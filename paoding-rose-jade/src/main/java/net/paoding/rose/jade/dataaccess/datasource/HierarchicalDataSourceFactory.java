@@ -43,10 +43,20 @@ public class HierarchicalDataSourceFactory implements DataSourceFactory {
      */
     private ConcurrentHashMap<String, DataSourceHolder> dataSources = new ConcurrentHashMap<String, DataSourceHolder>();
 
+    /**
+     * 已经逐级找到的数据源，key为DAO的类全名；注册新的数据源时清空
+     */
+    private ConcurrentHashMap<String, DataSourceHolder> resolved = new ConcurrentHashMap<String, DataSourceHolder>();
+
+    /**
+     * 每次注册数据源时加1
+     */
+    private volatile int version;
+
     /**
      * 默认数据源，逐级没有找到相应的数据源时候返回默认数据源
      */
-    private DataSourceHolder defaultDataSource;
+    private volatile DataSourceHolder defaultDataSource;
 
     public HierarchicalDataSourceFactory() {
     }
@@ -73,6 +83,8 @@ public class HierarchicalDataSourceFactory implements DataSourceFactory {
         } else {
             dataSources.putIfAbsent(name, new DataSourceHolder(dataSource));
         }
+        resolved.clear();
+        version++;
     }
 
     /**
@@ -94,6 +106,17 @@ public class HierarchicalDataSourceFactory implements DataSourceFactory {
         } else {
             dataSources.putIfAbsent(name, new DataSourceHolder(dataSource));
         }
+        resolved.clear();
+        version++;
+    }
+
+    /**
+     * 配置的版本号，每次注册数据源时改变，以便使用者判断之前取得的数据源是否失效
+     * 
+     * @return
+     */
+    public int getVersion() {
+        return version;
     }
 
     /**
@@ -103,20 +126,27 @@ public class HierarchicalDataSourceFactory implements DataSourceFactory {
     public DataSourceHolder getHolder(StatementMetaData metaData, Map<String, Object> runtime) {
         String daoName = metaData.getDAOMetaData().getDAOClass().getName();
         String name = daoName;
-        DataSourceHolder dataSource = dataSources.get(name);
+        DataSourceHolder dataSource = resolved.get(name);
+        if (dataSource != null) {
+            return dataSource;
+        }
+        dataSource = dataSources.get(name);
         if (dataSource != null) {
             return dataSource;
         }
         while (true) {
             int index = name.lastIndexOf('.');
             if (index == -1) {
-                dataSources.putIfAbsent(daoName, defaultDataSource);
+                DataSourceHolder defaultDataSource = this.defaultDataSource;
+                if (defaultDataSource != null) {
+                    resolved.putIfAbsent(daoName, defaultDataSource);
+                }
                 return defaultDataSource;
             }
             name = name.substring(0, index);
             dataSource = dataSources.get(name);
             if (dataSource != null) {
-                dataSources.putIfAbsent(daoName, dataSource);
+                resolved.putIfAbsent(daoName, dataSource);
                 return dataSource;
             }
         }
@@ -31,7 +31,10 @@ import net.paoding.rose.jade.statement.StatementMetaData;
  */
 public class SimpleDataSourceFactory implements DataSourceFactory {
 
-    private DataSourceHolder dataSource;
+    private volatile DataSourceHolder dataSource;
+
+    /** 每次设置数据源时加1 */
+    private volatile int version;
 
     /**
      * 构造候还得继续调用 {@link #setDataSource(DataSource)} 设置数据源，谢谢
@@ -60,6 +63,16 @@ public class SimpleDataSourceFactory implements DataSourceFactory {
             throw new NullPointerException("dataSource");
         }
         this.dataSource = new DataSourceHolder(dataSource);
+        this.version++;
+    }
+
+    /**
+     * 配置的版本号，每次设置数据源时改变，以便使用者判断之前取得的数据源是否失效
+     * 
+     * @return
+     */
+    public int getVersion() {
+        return version;
     }
 
     @Override
@@ -15,12 +15,21 @@
  */
 package net.paoding.rose.jade.statement;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import net.paoding.rose.jade.annotation.ReturnGeneratedKeys;
 import net.paoding.rose.jade.annotation.SQLType;
+import net.paoding.rose.jade.statement.expression.util.ExqlUtils;
 
 import org.apache.commons.lang.ClassUtils;
 
@@ -31,6 +40,19 @@ import org.apache.commons.lang.ClassUtils;
  */
 public class JdbcStatement implements Statement {
 
+    // SQL中引用的参数
+    private static final Pattern PARAM_REF_PATTERN = Pattern.compile(":([a-zA-Z0-9_]+)");
+
+    // IN (:list) 形式的引用，group(1)不为null时是 NOT IN
+    private static final Pattern IN_LIST_PATTERN = Pattern.compile(
+            "(\\bNOT\\s+)?\\bIN\\s*\\(\\s*:([a-zA-Z0-9_]+)\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    // 拆分执行后合并的结果与原语句不同的SQL
+    private static final Pattern UNSPLITTABLE_PATTERN = Pattern.compile(
+            "\\b(COUNT|SUM|AVG|MIN|MAX|GROUP_CONCAT)\\s*\\("
+                    + "|\\b(DISTINCT|GROUP\\s+BY|HAVING|ORDER\\s+BY|LIMIT|UNION)\\b",
+            Pattern.CASE_INSENSITIVE);
+
     private final StatementMetaData metaData;
 
     private final Interpreter[] interpreters;
@@ -41,10 +63,16 @@ public class JdbcStatement implements Statement {
 
     private final SQLType sqlType;
 
+    /** 允许拆分IN列表时，SQL中引用的参数名及其出现次数；不允许拆分时为null */
+    private final Map<String, Integer> paramRefs;
+
+    /** 位于 IN (...) 中的参数名 */
+    private final Set<String> inListParams;
+
     public JdbcStatement(StatementMetaData statementMetaData, SQLType sqlType,
             Interpreter[] interpreters, Querier querier) {
         this.metaData = statementMetaData;
-        this.interpreters = (interpreters == null) ? new Interpreter[0] : interpreters;
+        this.interpreters = compile(statementMetaData, interpreters);
         this.querier = querier;
         this.sqlType = sqlType;
         if (sqlType == SQLType.WRITE) {
@@ -56,9 +84,11 @@ public class JdbcStatement implements Statement {
             }
             if (types.length > 0 && List.class.isAssignableFrom(types[0])) {
                 this.batchUpdate = true;
+				boolean keysArray = method.isAnnotationPresent(ReturnGeneratedKeys.class)
+						&& (returnType == long[].class || returnType == Long[].class);
 				if (returnType != void.class && returnType != int[].class
 						&& returnType != Integer[].class
-						&& returnType != Integer.class) {
+						&& returnType != Integer.class && !keysArray) {
 					throw new IllegalArgumentException("error return type:"
 							+ method.getDeclaringClass().getName() + "#"
 							+ method.getName() + "-->" + returnType);
@@ -75,6 +105,122 @@ public class JdbcStatement implements Statement {
         } else {
             this.batchUpdate = false;
         }
+        if (isInListSplittable(statementMetaData, sqlType)) {
+            String sql = statementMetaData.getSQL();
+            this.paramRefs = new HashMap<String, Integer>();
+            Matcher matcher = PARAM_REF_PATTERN.matcher(sql);
+            while (matcher.find()) {
+                Integer count = paramRefs.get(matcher.group(1));
+                paramRefs.put(matcher.group(1), count == null ? 1 : count + 1);
+            }
+            this.inListParams = new HashSet<String>();
+            matcher = IN_LIST_PATTERN.matcher(sql);
+            while (matcher.find()) {
+                if (matcher.group(1) == null) {
+                    inListParams.add(matcher.group(2));
+                }
+            }
+        } else {
+            this.paramRefs = null;
+            this.inListParams = null;
+        }
+    }
+
+    /**
+     * 拆分执行、合并结果后与原语句等价的查询才允许拆分IN列表
+     * 
+     * @see net.paoding.rose.jade.annotation.SQL#inListSplit()
+     */
+    private static boolean isInListSplittable(StatementMetaData metaData, SQLType sqlType) {
+        if (sqlType != SQLType.READ || !metaData.isInListSplit()
+                || metaData.getInListBucket() <= 0) {
+            return false;
+        }
+        Class<?> returnType = metaData.getMethod().getReturnType();
+        if (!List.class.isAssignableFrom(returnType) && !Set.class.isAssignableFrom(returnType)
+                && !(returnType.isArray() && returnType != byte[].class)) {
+            return false;
+        }
+        return !UNSPLITTABLE_PATTERN.matcher(metaData.getSQL()).find();
+    }
+
+    /**
+     * 第一个解释器是 {@link SystemInterpreter} 时，它面对的总是原始SQL，因此可以在这里编译一次，
+     * 替换为该方法专用的执行计划
+     */
+    private static Interpreter[] compile(StatementMetaData metaData, Interpreter[] interpreters) {
+        if (interpreters == null) {
+            return new Interpreter[0];
+        }
+        if (interpreters.length > 0 && interpreters[0].getClass() == SystemInterpreter.class) {
+            interpreters = interpreters.clone();
+            interpreters[0] = ((SystemInterpreter) interpreters[0]).compile(metaData);
+        }
+        return interpreters;
+    }
+
+    /**
+     * 允许拆分IN列表的查询语句中，如果有且只有一个参数是长度超过分桶上限的集合或数组，并且它在SQL中只出现一次、位于
+     * IN (...) 中，把它拆分为不超过上限的若干段，返回每段对应的参数表；否则返回null
+     * 
+     * @see net.paoding.rose.jade.annotation.SQL#inListSplit()
+     */
+    private List<Map<String, Object>> splitInList(Map<String, Object> parameters) {
+        if (paramRefs == null) {
+            return null;
+        }
+        final int inListBucket = metaData.getInListBucket();
+        Object oversized = null;
+        for (Object value : parameters.values()) {
+            int size;
+            if (value instanceof Collection<?>) {
+                size = ((Collection<?>) value).size();
+            } else if (value != null && value.getClass().isArray()
+                    && value.getClass() != byte[].class) {
+                size = Array.getLength(value);
+            } else {
+                continue;
+            }
+            if (size > inListBucket) {
+                if (oversized != null && oversized != value) {
+                    return null; // 多个超长的列表不拆分，只补齐
+                }
+                oversized = value;
+            }
+        }
+        if (oversized == null) {
+            return null;
+        }
+        // 同一个列表可能以 :1 和 @SQLParam 的名字引用，合计只能出现一次
+        int refs = 0;
+        boolean inList = false;
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            if (entry.getValue() == oversized) {
+                String name = entry.getKey().startsWith(":") ? entry.getKey().substring(1)
+                        : entry.getKey();
+                Integer count = paramRefs.get(name);
+                if (count != null) {
+                    refs += count;
+                    inList = inList || inListParams.contains(name);
+                }
+            }
+        }
+        if (refs != 1 || !inList) {
+            return null;
+        }
+        List<Object> list = new ArrayList<Object>(ExqlUtils.asCollection(oversized));
+        List<Map<String, Object>> parametersList = new ArrayList<Map<String, Object>>();
+        for (int from = 0; from < list.size(); from += inListBucket) {
+            List<Object> part = list.subList(from, Math.min(from + inListBucket, list.size()));
+            HashMap<String, Object> clone = new HashMap<String, Object>(parameters);
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                if (entry.getValue() == oversized) {
+                    clone.put(entry.getKey(), part);
+                }
+            }
+            parametersList.add(clone);
+        }
+        return parametersList;
     }
 
     @Override
@@ -82,7 +228,10 @@ public class JdbcStatement implements Statement {
         return metaData;
     }
 
-    // TODO: 批量的处理！
+    /**
+     * 第一个参数为List时，为每个元素生成一个 {@link StatementRuntime}，由 {@link Querier}
+     * 按照实际SQL分组批量执行
+     */
     @Override
     public Object execute(Map<String, Object> parameters) {
         if (batchUpdate) {
@@ -105,6 +254,18 @@ public class JdbcStatement implements Statement {
             }
             return querier.execute(sqlType, runtimes);
         } else {
+            List<Map<String, Object>> parametersList = splitInList(parameters);
+            if (parametersList != null) {
+                // 超长的IN列表拆分为多条语句，由querier合并结果
+                StatementRuntime[] runtimes = new StatementRuntime[parametersList.size()];
+                for (int i = 0; i < runtimes.length; i++) {
+                    runtimes[i] = new StatementRuntimeImpl(metaData, parametersList.get(i));
+                    for (Interpreter interpreter : interpreters) {
+                        interpreter.interpret(runtimes[i]);
+                    }
+                }
+                return querier.execute(sqlType, runtimes);
+            }
             StatementRuntime runtime = new StatementRuntimeImpl(metaData, parameters);
             for (Interpreter interpreter : interpreters) {
                 interpreter.interpret(runtime);
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2009-2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License i distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.jade.statement;
+
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.paoding.rose.jade.statement.expression.ExprResolver;
+import net.paoding.rose.jade.statement.expression.ExqlUnit;
+import net.paoding.rose.jade.statement.expression.impl.BunchUnit;
+import net.paoding.rose.jade.statement.expression.impl.EmptyUnit;
+import net.paoding.rose.jade.statement.expression.impl.ExprAccessor;
+import net.paoding.rose.jade.statement.expression.impl.ExprResolverImpl;
+import net.paoding.rose.jade.statement.expression.impl.ExprUnit;
+import net.paoding.rose.jade.statement.expression.impl.ExqlCompiler;
+import net.paoding.rose.jade.statement.expression.impl.ExqlContextImpl;
+import net.paoding.rose.jade.statement.expression.impl.JoinExprUnit;
+import net.paoding.rose.jade.statement.expression.impl.TextUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.BadSqlGrammarException;
+
+/**
+ * 一个DAO方法的SQL在创建 {@link Statement} 时编译一次得到的执行计划，代替
+ * {@link SystemInterpreter} 在每次调用时的查找、编译。
+ * <p>
+ * 没有 #if、#for、## 等语句的SQL被编译为固定的SQL文本以及每个 ? 对应的参数读取器，执行时只读取参数；
+ * 参数为集合或数组时需要展开为 ?,?,...，此时才拼装SQL文本。其他SQL保留编译好的单元树，
+ * 单元中的表达式已经预先编译。
+ * 
+ */
+final class SQLPlan implements Interpreter {
+
+    private static final Log logger = LogFactory.getLog(SQLPlan.class);
+
+    private final StatementMetaData metaData;
+
+    /** 编译的原始SQL */
+    private final String pattern;
+
+    private final Map<String, ?> constants;
+
+    /** 静态SQL的文本片段，比参数读取器多一个；动态SQL时为null */
+    private final String[] texts;
+
+    /** 静态SQL中每个 ? 对应的参数读取器 */
+    private final ExprAccessor[] accessors;
+
+    /** 静态SQL的最终文本 */
+    private final String fixedSQL;
+
+    /** 动态SQL的单元树；静态SQL时为null */
+    private final ExqlUnit unit;
+
+    private SQLPlan(StatementMetaData metaData, String[] texts, ExprAccessor[] accessors,
+            ExqlUnit unit) {
+        this.metaData = metaData;
+        this.pattern = metaData.getSQL();
+        this.constants = metaData.getDAOMetaData().getConstants();
+        this.texts = texts;
+        this.accessors = accessors;
+        this.unit = unit;
+        if (texts != null) {
+            StringBuilder sb = new StringBuilder(pattern.length());
+            sb.append(texts[0]);
+            for (int i = 1; i < texts.length; i++) {
+                sb.append('?').append(texts[i]);
+            }
+            this.fixedSQL = sb.toString();
+        } else {
+            this.fixedSQL = null;
+        }
+    }
+
+    /**
+     * 编译给定DAO方法的SQL
+     * 
+     * @param metaData
+     * @return
+     */
+    public static SQLPlan compile(StatementMetaData metaData) {
+        ExqlUnit unit = new ExqlCompiler(metaData.getSQL()).compile().getUnit();
+        List<ExqlUnit> units;
+        if (unit instanceof BunchUnit) {
+            units = ((BunchUnit) unit).getUnits();
+        } else {
+            units = Arrays.asList(unit);
+        }
+        Map<String, ?> constants = metaData.getDAOMetaData().getConstants();
+        List<String> texts = new ArrayList<String>(units.size());
+        List<ExprAccessor> accessors = new ArrayList<ExprAccessor>(units.size());
+        StringBuilder text = new StringBuilder();
+        for (ExqlUnit u : units) {
+            if (u instanceof TextUnit) {
+                text.append(((TextUnit) u).getText());
+            } else if (u instanceof ExprUnit) {
+                texts.add(text.toString());
+                text.setLength(0);
+                accessors.add(((ExprUnit) u).getAccessor());
+            } else if (u instanceof JoinExprUnit) {
+                // 只有$常量可以在编译时拼入SQL
+                String constant = getConstantText(((JoinExprUnit) u).getAccessor(), constants);
+                if (constant == null) {
+                    return new SQLPlan(metaData, null, null, unit);
+                }
+                text.append(constant);
+            } else if (!(u instanceof EmptyUnit)) {
+                return new SQLPlan(metaData, null, null, unit);
+            }
+        }
+        texts.add(text.toString());
+        return new SQLPlan(metaData, texts.toArray(new String[texts.size()]), accessors
+                .toArray(new ExprAccessor[accessors.size()]), null);
+    }
+
+    private static String getConstantText(ExprAccessor accessor, Map<String, ?> constants) {
+        if (!accessor.isDirect() || !accessor.getExpression().trim().startsWith("$")) {
+            return null;
+        }
+        try {
+            Object value = accessor.getValue(Collections.<String, Object> emptyMap(), constants);
+            return value == ExprAccessor.UNRESOLVED ? null : String.valueOf(value);
+        } catch (RuntimeException e) {
+            // 常量未定义，留到执行时报错
+            return null;
+        }
+    }
+
+    /**
+     * 是否为编译成固定SQL文本的静态SQL
+     * 
+     * @return
+     */
+    public boolean isStatic() {
+        return texts != null;
+    }
+
+    @Override
+    public void interpret(StatementRuntime runtime) {
+        String sql = runtime.getSQL();
+        if (sql != pattern && !pattern.equals(sql)) {
+            // SQL已经被其他解释器修改过，按原来的方式解释
+            SystemInterpreter.interpret(runtime, sql);
+            return;
+        }
+        try {
+            if (texts != null) {
+                executeStatic(runtime);
+            } else {
+                executeDynamic(runtime);
+            }
+        } catch (Exception e) {
+            String daoInfo = metaData.toString();
+            throw new BadSqlGrammarException(daoInfo, pattern, new SQLSyntaxErrorException(
+                    daoInfo + " @SQL('" + pattern + "')", e));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("EXQL plan executing:\n    origin: " + pattern + "\n    result: "
+                    + runtime.getSQL() + "\n    params: " + Arrays.toString(runtime.getArgs()));
+        }
+    }
+
+    private void executeStatic(StatementRuntime runtime) throws Exception {
+        Map<String, Object> parameters = runtime.getParameters();
+        ExprResolver exprResolver = null;
+        Object[] args = new Object[accessors.length];
+        boolean expand = false;
+        for (int i = 0; i < args.length; i++) {
+            Object value = accessors[i].getValue(parameters, constants);
+            if (value == ExprAccessor.UNRESOLVED) {
+                if (exprResolver == null) {
+                    exprResolver = new ExprResolverImpl(parameters, constants);
+                }
+                value = exprResolver.executeExpr(accessors[i].getExpression());
+            }
+            if (value instanceof Collection<?>
+                    || (value != null && value.getClass().isArray() && value.getClass() != byte[].class)) {
+                expand = true;
+            }
+            args[i] = value;
+        }
+        if (!expand) {
+            runtime.setSQL(fixedSQL);
+            runtime.setArgs(args);
+            return;
+        }
+        // 集合参数需要展开为 IN (?,?,...)
+        ExqlContextImpl context = new ExqlContextImpl(fixedSQL.length() + 32);
+        context.setInListBucket(metaData.getInListBucket());
+        for (int i = 0; i < args.length; i++) {
+            context.fillText(texts[i]);
+            context.fillValue(args[i]);
+        }
+        context.fillText(texts[args.length]);
+        runtime.setSQL(context.flushOut());
+        runtime.setArgs(context.getParams());
+    }
+
+    private void executeDynamic(StatementRuntime runtime) throws Exception {
+        ExqlContextImpl context = new ExqlContextImpl(pattern.length() + 32);
+        context.setInListBucket(metaData.getInListBucket());
+        unit.fill(context, new ExprResolverImpl(runtime.getParameters(), constants));
+        runtime.setArgs(context.getParams());
+        runtime.setSQL(context.flushOut());
+    }
+
+    @Override
+    public String toString() {
+        return (isStatic() ? "static plan: " + fixedSQL : "dynamic plan: " + pattern);
+    }
+}
@@ -16,6 +16,7 @@
 package net.paoding.rose.jade.statement;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -53,14 +54,29 @@ public class SelectQuerier implements Querier {
 
     @Override
     public Object execute(SQLType sqlType, StatementRuntime... runtimes) {
-        return execute(sqlType, (StatementRuntime) runtimes[0]);
+        if (runtimes.length == 1) {
+            return execute(sqlType, (StatementRuntime) runtimes[0]);
+        }
+        // 超长的IN列表被拆分为多条语句，按顺序合并结果
+        List<Object> listResult = new ArrayList<Object>();
+        for (StatementRuntime runtime : runtimes) {
+            listResult.addAll(select(runtime));
+        }
+        return toReturnType(listResult, runtimes[0]);
     }
 
     public Object execute(SQLType sqlType, StatementRuntime runtime) {
+        return toReturnType(select(runtime), runtime);
+    }
+
+    private List<?> select(StatementRuntime runtime) {
         DataAccess dataAccess = dataAccessProvider.getDataAccess(//
                 runtime.getMetaData(), runtime.getProperties());
         // 执行查询
-        List<?> listResult = dataAccess.select(runtime.getSQL(), runtime.getArgs(), rowMapper);
+        return dataAccess.select(runtime.getSQL(), runtime.getArgs(), rowMapper);
+    }
+
+    private Object toReturnType(List<?> listResult, StatementRuntime runtime) {
         final int sizeResult = listResult.size();
 
         // 将 Result 转成方法的返回类型
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import net.paoding.rose.jade.statement.expression.impl.ExqlContextImpl;
 
 import org.apache.commons.lang.math.NumberUtils;
 import org.springframework.beans.BeanWrapper;
@@ -95,10 +96,28 @@ public class SimpleInterpreter implements Interpreter {
                     builder.append(", ?");
                 }
 
+                // 重复最后一个值，补齐到分桶的大小
+                int size = collection.size();
+                if (ExqlContextImpl.isInListPosition(runtime.getSQL().substring(0,
+                        matcher.start()))) {
+                    size = ExqlContextImpl.getBucketSize(size, runtime.getMetaData()
+                            .getInListBucket());
+                }
+                Object last = null;
+                for (Object element : collection) {
+                    last = element;
+                }
+                for (int i = collection.size(); i < size; i++) {
+                    builder.append(", ?");
+                }
+
                 builder.append(')');
 
                 // 保存参数值
                 parametersAsList.addAll(collection);
+                for (int i = collection.size(); i < size; i++) {
+                    parametersAsList.add(last);
+                }
 
             } else {
                 // 拼装普通的查询条件
@@ -33,6 +33,12 @@ import net.paoding.rose.jade.annotation.ShardBy;
  */
 public class StatementMetaData {
 
+    /**
+     * {@link SQL#inListBucket()} 为-1时使用的分桶上限，可以通过系统属性
+     * <code>-Djade.inListBucket=64</code> 设置，默认为0(不分桶)
+     */
+    public static final int DEFAULT_IN_LIST_BUCKET = Integer.getInteger("jade.inListBucket", 0);
+
     /**
      * 所属的DAO类的classMetaData
      */
@@ -67,12 +73,29 @@ public class StatementMetaData {
 
     private final int parameterCount;
 
+    /**
+     * IN列表的分桶上限，0表示不分桶
+     */
+    private final int inListBucket;
+
+    /**
+     * 是否拆分超过分桶上限的IN列表
+     */
+    private final boolean inListSplit;
+
     // --------------------------------------------
 
     public StatementMetaData(DAOMetaData daoMetaData, Method method) {
         this.daoMetaData = daoMetaData;
         this.method = method;
-        this.sql = method.getAnnotation(SQL.class).value();
+        SQL sqlAnnotation = method.getAnnotation(SQL.class);
+        this.sql = sqlAnnotation.value();
+        int inListBucket = sqlAnnotation.inListBucket();
+        if (inListBucket < 0) {
+            inListBucket = DEFAULT_IN_LIST_BUCKET;
+        }
+        this.inListBucket = Math.max(inListBucket, 0);
+        this.inListSplit = sqlAnnotation.inListSplit();
 
         this.genericReturnTypes = GenericUtils.getActualClass(method.getGenericReturnType());
 
@@ -115,6 +138,26 @@ public class StatementMetaData {
         return sqlParams[argIndex];
     }
 
+    /**
+     * IN列表的分桶上限，0表示不分桶
+     * 
+     * @return
+     * @see SQL#inListBucket()
+     */
+    public int getInListBucket() {
+        return inListBucket;
+    }
+
+    /**
+     * 是否拆分超过分桶上限的IN列表
+     * 
+     * @return
+     * @see SQL#inListSplit()
+     */
+    public boolean isInListSplit() {
+        return inListSplit;
+    }
+
     public int getShardByIndex() {
         return shardByIndex;
     }
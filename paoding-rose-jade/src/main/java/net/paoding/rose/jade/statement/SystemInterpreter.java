@@ -31,11 +31,27 @@ import org.springframework.jdbc.BadSqlGrammarException;
  */
 public class SystemInterpreter implements Interpreter {
 
+    /**
+     * 为给定的DAO方法编译一个执行计划，在 {@link JdbcStatement} 中代替本解释器，
+     * 每次调用不再查找、编译SQL
+     * 
+     * @param metaData
+     * @return
+     */
+    public Interpreter compile(StatementMetaData metaData) {
+        return SQLPlan.compile(metaData);
+    }
+
     @Override
     public void interpret(StatementRuntime runtime) {
+        interpret(runtime, runtime.getSQL());
+    }
+
+    static void interpret(StatementRuntime runtime, String sql) {
         // 转换语句中的表达式
-        ExqlPattern pattern = ExqlPatternImpl.compile(runtime.getSQL());
-        ExqlContextImpl context = new ExqlContextImpl(runtime.getSQL().length() + 32);
+        ExqlPattern pattern = ExqlPatternImpl.compile(sql);
+        ExqlContextImpl context = new ExqlContextImpl(sql.length() + 32);
+        context.setInListBucket(runtime.getMetaData().getInListBucket());
 
         try {
             pattern.execute(context, runtime.getParameters(), runtime.getMetaData()
@@ -44,8 +60,8 @@ public class SystemInterpreter implements Interpreter {
             runtime.setSQL(context.flushOut());
         } catch (Exception e) {
             String daoInfo = runtime.getMetaData().toString();
-            throw new BadSqlGrammarException(daoInfo, runtime.getSQL(),
-                    new SQLSyntaxErrorException(daoInfo + " @SQL('" + runtime.getSQL() + "')", e));
+            throw new BadSqlGrammarException(daoInfo, sql, new SQLSyntaxErrorException(daoInfo
+                    + " @SQL('" + sql + "')", e));
         }
 
     }
@@ -17,6 +17,8 @@ package net.paoding.rose.jade.statement;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import net.paoding.rose.jade.annotation.ReturnGeneratedKeys;
@@ -44,6 +46,9 @@ public class UpdateQuerier implements Querier {
 
     private final boolean returnGeneratedKeys;
 
+    /** 第一个参数是List的批量更新 */
+    private final boolean batchUpdate;
+
     public UpdateQuerier(DataAccessFactory dataAccessProvider, StatementMetaData metaData) {
         this.dataAccessProvider = dataAccessProvider;
         Method method = metaData.getMethod();
@@ -60,12 +65,14 @@ public class UpdateQuerier implements Querier {
         } else {
             returnGeneratedKeys = false;
         }
+        Class<?>[] types = method.getParameterTypes();
+        this.batchUpdate = types.length > 0 && List.class.isAssignableFrom(types[0]);
     }
 
     @Override
     public Object execute(SQLType sqlType, StatementRuntime... runtimes) {
-        return runtimes.length > 1 ? executeBatch(runtimes)
-                : executeSingle(runtimes[0], returnType);
+        return (batchUpdate || runtimes.length > 1) ? executeBatch(runtimes) : executeSingle(
+                runtimes[0], returnType);
     }
 
     private Object executeSingle(StatementRuntime runtime, Class<?> returnType) {
@@ -122,75 +129,150 @@ public class UpdateQuerier implements Querier {
         }
     }
 
+    /**
+     * 把实际SQL和路由属性相同的<strong>相邻</strong>runtimes分为一组，每组使用同一个
+     * {@link DataAccess} 批量执行，再把每组的结果按原来的顺序放回；不相邻的不合并，保证按列表顺序写入
+     */
+    @SuppressWarnings("unchecked")
     private Object executeBatch(StatementRuntime... runtimes) {
+        List<List<Integer>> batches = new ArrayList<List<Integer>>();
+        BatchKey lastKey = null;
+        List<Integer> current = null;
+        for (int i = 0; i < runtimes.length; i++) {
+            BatchKey key = new BatchKey(runtimes[i].getSQL(), runtimes[i].getProperties());
+            if (current == null || !key.equals(lastKey)) {
+                current = new ArrayList<Integer>();
+                batches.add(current);
+                lastKey = key;
+            }
+            current.add(i);
+        }
+        // 批量方法只有返回数组时才把生成的key作为返回值
+        boolean returnKeys = returnGeneratedKeys && returnType.isArray();
         int[] updatedArray = new int[runtimes.length];
-        for (int i = 0; i < updatedArray.length; i++) {
-            StatementRuntime runtime = runtimes[i];
-            updatedArray[i] = (Integer) executeSingle(runtime, Integer.class);
+        Number[] keys = returnKeys ? new Number[runtimes.length] : null;
+        for (List<Integer> positions : batches) {
+            StatementRuntime first = runtimes[positions.get(0)];
+            List<Object[]> argsList = new ArrayList<Object[]>(positions.size());
+            for (Integer position : positions) {
+                argsList.add(runtimes[position].getArgs());
+            }
+            DataAccess dataAccess = dataAccessProvider.getDataAccess(//
+                    first.getMetaData(), first.getProperties());
+            KeyHolder generatedKeyHolder = returnKeys ? new GeneratedKeyHolder() : null;
+            int[] updated = dataAccess.batchUpdate(first.getSQL(), argsList, generatedKeyHolder);
+            for (int i = 0; i < updated.length && i < positions.size(); i++) {
+                updatedArray[positions.get(i)] = updated[i];
+            }
+            if (returnKeys) {
+                // 只有每个参数恰好生成一个key时才能对应回去
+                List<Map<String, Object>> keyList = generatedKeyHolder.getKeyList();
+                if (keyList.size() == positions.size()) {
+                    for (int i = 0; i < keyList.size(); i++) {
+                        keys[positions.get(i)] = getKey(keyList.get(i));
+                    }
+                }
+            }
+        }
+        return toBatchReturnType(updatedArray, keys);
+    }
+
+    private Object toBatchReturnType(int[] updatedArray, Number[] keys) {
+        if (returnType == void.class || returnType == Void.class) {
+            return null;
+        }
+        if (returnType == Integer.class) {
+            int updated = 0;
+            for (int i = 0; i < updatedArray.length; i++) {
+                // Statement.SUCCESS_NO_INFO等负值不计入
+                if (updatedArray[i] > 0) {
+                    updated += updatedArray[i];
+                }
+            }
+            return updated;
+        }
+        if (returnType == int[].class) {
+            if (keys == null) {
+                return updatedArray;
+            }
+            int[] ret = new int[keys.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = keys[i] == null ? 0 : keys[i].intValue();
+            }
+            return ret;
+        }
+        if (returnType == long[].class) {
+            long[] ret = new long[updatedArray.length];
+            for (int i = 0; i < ret.length; i++) {
+                if (keys == null) {
+                    ret[i] = updatedArray[i];
+                } else {
+                    ret[i] = keys[i] == null ? 0 : keys[i].longValue();
+                }
+            }
+            return ret;
+        }
+        if (returnType == Integer[].class) {
+            Integer[] ret = new Integer[updatedArray.length];
+            for (int i = 0; i < ret.length; i++) {
+                if (keys == null) {
+                    ret[i] = updatedArray[i];
+                } else {
+                    ret[i] = keys[i] == null ? null : keys[i].intValue();
+                }
+            }
+            return ret;
+        }
+        if (returnType == Long[].class) {
+            Long[] ret = new Long[updatedArray.length];
+            for (int i = 0; i < ret.length; i++) {
+                if (keys == null) {
+                    ret[i] = (long) updatedArray[i];
+                } else {
+                    ret[i] = keys[i] == null ? null : keys[i].longValue();
+                }
+            }
+            return ret;
         }
         return updatedArray;
+    }
 
-        //        Map<String, Object> parameters = runtime.getParameters();
-        //        List<?> list = (List<?>) parameters.get(":1");
-        //
-        //        int[] updatedArray;
-        //
-        //        if (true) {
-        //            List<Map<String, Object>> parametersList = new ArrayList<Map<String, Object>>(
-        //                    list.size());
-        //            for (Object arg : list) {
-        //
-        //                HashMap<String, Object> clone = new HashMap<String, Object>(parameters);
-        //
-        //                // 更新执行参数
-        //                clone.put(":1", arg);
-        //                if (runtime.getMetaData().getSQLParamAt(0) != null) {
-        //                    clone.put(runtime.getMetaData().getSQLParamAt(0).value(), arg);
-        //                }
-        //                parametersList.add(clone);
-        //            }
-        //            updatedArray = dataAccess.batchUpdate(runtime.getSQL(), parametersList);
-        //        } else {
-        //            // 批量执行查询
-        //            int index = 0;
-        //            updatedArray = new int[list.size()];
-        //            for (Object arg : list) {
-        //
-        //                HashMap<String, Object> clone = new HashMap<String, Object>(parameters);
-        //
-        //                // 更新执行参数
-        //                clone.put(":1", arg);
-        //                if (this.metaData.getSQLParamAt(0) != null) {
-        //                    clone.put(this.metaData.getSQLParamAt(0).value(), arg);
-        //                }
-        //                updatedArray[index] = (Integer) executeSignle(dataAccess, clone, int.class);
-        //
-        //                index++;
-        //            }
-        //        }
-        //        Class<?> batchReturnClazz = metaData.getMethod().getReturnType();
-        //        if (batchReturnClazz == int[].class) {
-        //            return updatedArray;
-        //        }
-        //        if (batchReturnClazz == Integer[].class) {
-        //            Integer[] ret = new Integer[updatedArray.length];
-        //            for (int i = 0; i < ret.length; i++) {
-        //                ret[i] = updatedArray[i];
-        //            }
-        //            return updatedArray;
-        //        }
-        //        if (batchReturnClazz == void.class) {
-        //            return null;
-        //        }
-        //        if (batchReturnClazz == int.class || batchReturnClazz == Integer.class) {
-        //            int updated = 0;
-        //            for (int i = 0; i < updatedArray.length; i++) {
-        //                updated += updatedArray[i];
-        //            }
-        //            return updated;
-        //        }
-        //
-        //        return null;
+    private static Number getKey(Map<String, Object> keyColumns) {
+        for (Object value : keyColumns.values()) {
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 批量更新的分组依据：实际执行的SQL以及决定数据源的属性
+     */
+    private static final class BatchKey {
+
+        private final String sql;
+
+        private final Map<String, Object> properties;
+
+        BatchKey(String sql, Map<String, Object> properties) {
+            this.sql = sql;
+            this.properties = properties;
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode() * 31 + properties.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return sql.equals(other.sql) && properties.equals(other.properties);
+        }
     }
 
 }
@@ -24,6 +24,15 @@ public class BunchUnit implements ExqlUnit {
         this.units = units;
     }
 
+    /**
+     * 返回子单元列表。
+     * 
+     * @return 子单元列表
+     */
+    public List<ExqlUnit> getUnits() {
+        return units;
+    }
+
     @Override
     public boolean isValid(ExprResolver exprResolver) {
 
@@ -12,7 +12,7 @@ import net.paoding.rose.jade.statement.expression.util.ExqlUtils;
  */
 public class ChoiceUnit implements ExqlUnit {
 
-    private final String expr;
+    private final ExprAccessor accessor;
 
     private final ExqlUnit unitIfTrue, unitIfFalse;
 
@@ -23,7 +23,7 @@ public class ChoiceUnit implements ExqlUnit {
      * @param unit - <code>true</code> 的输出
      */
     public ChoiceUnit(String expr, ExqlUnit unit) {
-        this.expr = expr;
+        this.accessor = ExprAccessor.compile(expr);
         this.unitIfTrue = unit;
         this.unitIfFalse = null;
     }
@@ -36,7 +36,7 @@ public class ChoiceUnit implements ExqlUnit {
      * @param unitIfFalse - <code>false</code> 的输出
      */
     public ChoiceUnit(String expr, ExqlUnit unitIfTrue, ExqlUnit unitIfFalse) {
-        this.expr = expr;
+        this.accessor = ExprAccessor.compile(expr);
         this.unitIfTrue = unitIfTrue;
         this.unitIfFalse = unitIfFalse;
     }
@@ -45,7 +45,7 @@ public class ChoiceUnit implements ExqlUnit {
     public boolean isValid(ExprResolver exprResolver) {
 
         // 解释表达式内容
-        Object obj = ExqlUtils.execExpr(exprResolver, expr);
+        Object obj = ExqlUtils.execExpr(exprResolver, accessor);
 
         if (ExqlUtils.asBoolean(obj)) {
 
@@ -66,7 +66,7 @@ public class ChoiceUnit implements ExqlUnit {
     public void fill(ExqlContext exqlContext, ExprResolver exprResolver) throws Exception {
 
         // 解释表达式内容
-        Object obj = exprResolver.executeExpr(expr);
+        Object obj = accessor.execute(exprResolver);
 
         if (ExqlUtils.asBoolean(obj)) {
 
@@ -0,0 +1,380 @@
+package net.paoding.rose.jade.statement.expression.impl;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.paoding.rose.jade.statement.expression.ExprResolver;
+
+/**
+ * 预先编译好的表达式读取器, 不经过 Jexl 引擎直接读取 ':name', ':1', ':name.a.b', ':map[key]',
+ * ':list[0]', '$name' 形式的表达式; 带有运算、方法调用的表达式以及无法直接读取的属性仍然交给
+ * {@link ExprResolver} 处理。
+ *
+ * 读取的顺序和 Jexl 相同: '.a' 先调用 getter, 再对 Map 调用 get 方法; '[key]' 先对 Map 调用 get
+ * 方法, 再调用 getter; '[0]' 读取 List、数组的元素或者 Map 中以整数为键的值。
+ */
+public abstract class ExprAccessor {
+
+    /**
+     * 无法直接读取时返回的标记, 调用者应改用 {@link ExprResolver#executeExpr(String)}
+     */
+    public static final Object UNRESOLVED = new Object();
+
+    // 正则表达式
+    private static final Pattern HEAD_PATTERN = Pattern.compile( // NL
+            "(\\:|\\$)([a-zA-Z0-9_]+)");
+
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile( // NL
+            "\\.([a-zA-Z_][a-zA-Z0-9_]*)|\\[([\\.a-zA-Z0-9_]+)\\]");
+
+    // 类的属性读方法: 弱引用类作为键, 不阻止应用的类被卸载; 值是 Map<String, Method> 或者它的弱引用
+    private static final Map<Class<?>, Object> getters = Collections
+            .synchronizedMap(new WeakHashMap<Class<?>, Object>());
+
+    // 表达式
+    protected final String expression;
+
+    protected ExprAccessor(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * 编译表达式, 不是简单的变量或常量引用时返回只能交给 {@link ExprResolver} 处理的读取器。
+     *
+     * @param expression - 表达式
+     *
+     * @return ExprAccessor 对象
+     */
+    public static ExprAccessor compile(String expression) {
+
+        String expr = expression.trim();
+        Matcher matcher = HEAD_PATTERN.matcher(expr);
+        if (!matcher.lookingAt()) {
+            return new ResolverAccessor(expression);
+        }
+
+        String prefix = matcher.group(1);
+        String name = matcher.group(2);
+
+        // 解析  .name、[key]、[0] 组成的访问路径
+        List<Segment> segments = new ArrayList<Segment>();
+        int index = matcher.end();
+        matcher = SEGMENT_PATTERN.matcher(expr);
+        while (index < expr.length()) {
+            if (!matcher.find(index) || matcher.start() != index) {
+                return new ResolverAccessor(expression); // 带有运算、方法调用等
+            }
+            if (matcher.group(1) != null) {
+                segments.add(new PropertySegment(matcher.group(1)));
+            } else if (isDigits(matcher.group(2))) {
+                segments.add(new IndexSegment(Integer.parseInt(matcher.group(2))));
+            } else {
+                segments.add(new KeySegment(matcher.group(2)));
+            }
+            index = matcher.end();
+        }
+        Segment[] path = segments.toArray(new Segment[segments.size()]);
+
+        if ("$".equals(prefix)) {
+            return new ConstAccessor(expression, name, path);
+        }
+
+        // 按顺序访问的变量带有冒号
+        return new VarAccessor(expression, isDigits(name) ? ':' + name : name, path);
+    }
+
+    private static boolean isDigits(String name) {
+        if (name.length() == 0 || name.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 返回表达式的原文。
+     *
+     * @return 表达式
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 表达式是否可以直接读取, 不需要 Jexl 引擎。
+     *
+     * @return true / false
+     */
+    public boolean isDirect() {
+        return true;
+    }
+
+    /**
+     * 直接从参数表、常量表读取表达式的值。
+     *
+     * @param mapVars - 参数表
+     * @param mapConsts - 常量表
+     *
+     * @return 表达式的值, 无法直接读取时返回 {@link #UNRESOLVED}
+     */
+    public abstract Object getValue(Map<String, ?> mapVars, Map<String, ?> mapConsts);
+
+    /**
+     * 返回表达式的值, 无法直接读取时交给 {@link ExprResolver} 处理; 其他实现的 {@link ExprResolver}
+     * 不能读出参数表、常量表, 总是交给它处理。
+     *
+     * @param exprResolver - 使用的引擎
+     *
+     * @return 表达式的值
+     *
+     * @throws Exception
+     */
+    public Object execute(ExprResolver exprResolver) throws Exception {
+
+        if (exprResolver instanceof ExprResolverImpl) {
+            ExprResolverImpl impl = (ExprResolverImpl) exprResolver;
+            Object value = getValue(impl.getVars(), impl.getConstants());
+            if (value != UNRESOLVED) {
+                return value;
+            }
+        }
+        return exprResolver.executeExpr(expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * 依次读取访问路径, 遇到 <code>null</code> 时返回 <code>null</code>
+     */
+    protected static Object getPath(Object value, Segment[] path) {
+
+        for (Segment segment : path) {
+
+            if (value == null) {
+                return null;
+            }
+
+            value = segment.get(value);
+            if (value == UNRESOLVED) {
+                return UNRESOLVED; // 由 Jexl 处理
+            }
+        }
+
+        return value;
+    }
+
+    private static Object invokeGetter(Object bean, String property) {
+        Method getter = getGetters(bean.getClass()).get(property);
+        if (getter == null) {
+            return UNRESOLVED;
+        }
+        try {
+            return getter.invoke(bean);
+        } catch (Exception e) {
+            return UNRESOLVED;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Method> getGetters(Class<?> clazz) {
+
+        Object cached = getters.get(clazz);
+        if (cached instanceof Reference<?>) {
+            cached = ((Reference<?>) cached).get();
+        }
+        Map<String, Method> map = (Map<String, Method>) cached;
+        if (map == null) {
+            map = new HashMap<String, Method>();
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+                for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                    Method getter = descriptor.getReadMethod();
+                    if (getter != null) {
+                        try {
+                            getter.setAccessible(true);
+                        } catch (RuntimeException e) {
+                            // 公开类的 getter 不需要设置
+                        }
+                        map.put(descriptor.getName(), getter);
+                    }
+                }
+            } catch (Exception e) {
+                map = Collections.emptyMap();
+            }
+            // Method 强引用着它的类, 不是由 jade 的 ClassLoader (或其祖先) 加载的类只能弱引用
+            getters.put(clazz, isCacheSafe(clazz) ? map
+                    : new WeakReference<Map<String, Method>>(map));
+        }
+        return map;
+    }
+
+    private static boolean isCacheSafe(Class<?> clazz) {
+        ClassLoader target = clazz.getClassLoader();
+        if (target == null) {
+            return true;
+        }
+        for (ClassLoader cl = ExprAccessor.class.getClassLoader(); cl != null; cl = cl
+                .getParent()) {
+            if (cl == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 访问路径中的一段
+    private static abstract class Segment {
+
+        abstract Object get(Object value);
+    }
+
+    // .name 形式: 先调用 getter, 再对 Map 调用 get 方法
+    private static final class PropertySegment extends Segment {
+
+        private final String name;
+
+        PropertySegment(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Object get(Object value) {
+            Object result = invokeGetter(value, name);
+            if (result == UNRESOLVED && value instanceof Map<?, ?>) {
+                result = ((Map<?, ?>) value).get(name);
+            }
+            return result;
+        }
+    }
+
+    // [key] 形式: 先对 Map 调用 get 方法, 再调用 getter
+    private static final class KeySegment extends Segment {
+
+        private final String key;
+
+        KeySegment(String key) {
+            this.key = key;
+        }
+
+        @Override
+        Object get(Object value) {
+            if (value instanceof Map<?, ?>) {
+                return ((Map<?, ?>) value).get(key);
+            }
+            return invokeGetter(value, key);
+        }
+    }
+
+    // [0] 形式: 读取 List、数组的元素或者 Map 中以整数为键的值
+    private static final class IndexSegment extends Segment {
+
+        private final int index;
+
+        IndexSegment(int index) {
+            this.index = index;
+        }
+
+        @Override
+        Object get(Object value) {
+            if (value instanceof Map<?, ?>) {
+                return ((Map<?, ?>) value).get(index);
+            }
+            if (value instanceof List<?>) {
+                List<?> list = (List<?>) value;
+                return index < list.size() ? list.get(index) : UNRESOLVED;
+            }
+            if (value.getClass().isArray()) {
+                return index < Array.getLength(value) ? Array.get(value, index) : UNRESOLVED;
+            }
+            return UNRESOLVED;
+        }
+    }
+
+    // 读取  :name.a.b 形式的变量
+    private static final class VarAccessor extends ExprAccessor {
+
+        private final String name;
+
+        private final Segment[] path;
+
+        VarAccessor(String expression, String name, Segment[] path) {
+            super(expression);
+            this.name = name;
+            this.path = path;
+        }
+
+        @Override
+        public Object getValue(Map<String, ?> mapVars, Map<String, ?> mapConsts) {
+
+            Object value = mapVars.get(name);
+            if (value == null && !mapVars.containsKey(name)) {
+                throw new IllegalArgumentException("Variable \'" + name
+                        + "\' not defined in DAO method");
+            }
+            return getPath(value, path);
+        }
+    }
+
+    // 读取  $name.a.b 形式的常量
+    private static final class ConstAccessor extends ExprAccessor {
+
+        private final String name;
+
+        private final Segment[] path;
+
+        ConstAccessor(String expression, String name, Segment[] path) {
+            super(expression);
+            this.name = name;
+            this.path = path;
+        }
+
+        @Override
+        public Object getValue(Map<String, ?> mapVars, Map<String, ?> mapConsts) {
+
+            Object value = mapConsts.get(name);
+            if (value == null && !mapConsts.containsKey(name)) {
+                throw new IllegalArgumentException("Constant \'" + name
+                        + "\' not defined in DAO class");
+            }
+            return getPath(value, path);
+        }
+    }
+
+    // 只能交给  Jexl 引擎处理的表达式
+    private static final class ResolverAccessor extends ExprAccessor {
+
+        ResolverAccessor(String expression) {
+            super(expression);
+        }
+
+        @Override
+        public boolean isDirect() {
+            return false;
+        }
+
+        @Override
+        public Object getValue(Map<String, ?> mapVars, Map<String, ?> mapConsts) {
+            return UNRESOLVED;
+        }
+    }
+}
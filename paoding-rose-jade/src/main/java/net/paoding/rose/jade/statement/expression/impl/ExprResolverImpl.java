@@ -18,6 +18,9 @@ import org.apache.commons.lang.math.NumberUtils;
 /**
  * 默认使用: Apache Common Jexl 引擎实现表达式处理。
  * 
+ * 变量、常量、属性路径、[key] 等简单表达式由编译好的 {@link ExprAccessor} 直接读取, 只有带运算、
+ * 方法调用的表达式才交给 Jexl 求值。
+ * 
  * @author han.liao
  */
 public class ExprResolverImpl implements ExprResolver {
@@ -25,6 +28,9 @@ public class ExprResolverImpl implements ExprResolver {
     // 表达式的缓存
     protected static final ConcurrentHashMap<String, Expression> cache = new ConcurrentHashMap<String, Expression>();
 
+    // 直接读取的表达式的缓存
+    protected static final ConcurrentHashMap<String, ExprAccessor> accessors = new ConcurrentHashMap<String, ExprAccessor>();
+
     // 正则表达式
     private static final Pattern PREFIX_PATTERN = Pattern.compile( // NL
             "(\\:|\\$)([a-zA-Z0-9_]+)(\\.[a-zA-Z0-9_]+)*");
@@ -44,17 +50,13 @@ public class ExprResolverImpl implements ExprResolver {
     // 常量表
     protected final Map<String, Object> mapConsts = new HashMap<String, Object>();
 
-    // Common Jexl 上下文
-    protected final JexlContext context = JexlHelper.createContext();
+    // Common Jexl 上下文, 需要时才创建; 子类通过 getJexlContext() 访问
+    private JexlContext context;
 
     /**
      * 构造表达式处理器。
      */
-    @SuppressWarnings("unchecked")
     public ExprResolverImpl() {
-        Map map = context.getVars();
-        map.put(VAR_PREFIX, mapVars);
-        map.put(CONST_PREFIX, mapConsts);
     }
 
     /**
@@ -118,6 +120,33 @@ public class ExprResolverImpl implements ExprResolver {
     @Override
     public Object executeExpr(final String expression) throws Exception {
 
+        // 从缓存中获取编译的读取器
+        ExprAccessor accessor = accessors.get(expression);
+        if (accessor == null) {
+            accessor = ExprAccessor.compile(expression);
+            accessors.putIfAbsent(expression, accessor);
+        }
+
+        // 直接读取变量、常量
+        Object value = accessor.getValue(mapVars, mapConsts);
+        if (value != ExprAccessor.UNRESOLVED) {
+            return value;
+        }
+
+        return evaluate(expression);
+    }
+
+    /**
+     * 使用 Jexl 引擎求值。
+     * 
+     * @param expression - 解释的表达式
+     * 
+     * @return 输出的内容
+     * 
+     * @throws Exception
+     */
+    protected Object evaluate(final String expression) throws Exception {
+
         // 从缓存中获取解析的表达式
         Expression expr = cache.get(expression);
 
@@ -199,11 +228,27 @@ public class ExprResolverImpl implements ExprResolver {
 
             // 编译表达式
             expr = ExpressionFactory.createExpression(builder.toString());
-            cache.putIfAbsent(expression2, expr);
+            cache.putIfAbsent(expression, expr);
         }
 
         // 进行表达式求值
-        return expr.evaluate(context);
+        return expr.evaluate(getJexlContext());
+    }
+
+    /**
+     * 返回 Jexl 上下文, 第一次使用时创建; 上下文中已经放入了参数表、常量表。
+     * 
+     * @return Jexl 上下文
+     */
+    @SuppressWarnings("unchecked")
+    protected JexlContext getJexlContext() {
+        if (context == null) {
+            context = JexlHelper.createContext();
+            Map map = context.getVars();
+            map.put(VAR_PREFIX, mapVars);
+            map.put(CONST_PREFIX, mapConsts);
+        }
+        return context;
     }
 
     @Override
@@ -12,7 +12,7 @@ import net.paoding.rose.jade.statement.expression.util.ExqlUtils;
  */
 public class ExprUnit implements ExqlUnit {
 
-    private final String expr;
+    private final ExprAccessor accessor;
 
     /**
      * 构造输出表达式内容的语句单元。
@@ -20,14 +20,23 @@ public class ExprUnit implements ExqlUnit {
      * @param text - 输出的表达式
      */
     public ExprUnit(String expr) {
-        this.expr = expr;
+        this.accessor = ExprAccessor.compile(expr);
+    }
+
+    /**
+     * 返回预先编译的表达式。
+     * 
+     * @return 表达式读取器
+     */
+    public ExprAccessor getAccessor() {
+        return accessor;
     }
 
     @Override
     public boolean isValid(ExprResolver exprResolver) {
 
         // 解释表达式内容
-        Object obj = ExqlUtils.execExpr(exprResolver, expr);
+        Object obj = ExqlUtils.execExpr(exprResolver, accessor);
 
         // 表达式内容有效
         return ExqlUtils.isValid(obj);
@@ -37,7 +46,7 @@ public class ExprUnit implements ExqlUnit {
     public void fill(ExqlContext exqlContext, ExprResolver exprResolver) throws Exception {
 
         // 解释表达式内容
-        Object obj = exprResolver.executeExpr(expr);
+        Object obj = accessor.execute(exprResolver);
 
         // 输出转义的对象内容
         exqlContext.fillValue(obj);
@@ -66,7 +66,7 @@ public class ExqlCompiler {
      * 
      * @return ExqlPattern 对象
      */
-    public ExqlPattern compile() {
+    public ExqlPatternImpl compile() {
 
         // 从语句编译出: ExqlPattern 对象
         return new ExqlPatternImpl(pattern, compileUnit());
@@ -28,6 +28,9 @@ public class ExqlContextImpl implements ExqlContext  {
     // 输出缓冲区
     protected final StringBuilder builder;
 
+    // IN列表的分桶上限, 0 表示不分桶
+    protected int inListBucket;
+
     /**
      * 构造上下文对象。
      * 
@@ -37,6 +40,69 @@ public class ExqlContextImpl implements ExqlContext  {
         builder = new StringBuilder(capacity);
     }
 
+    /**
+     * 设置 IN列表的分桶上限, 展开集合时参数个数补齐到分桶的大小。
+     * 
+     * @param inListBucket - 分桶上限, 0 表示不分桶
+     */
+    public void setInListBucket(int inListBucket) {
+        this.inListBucket = inListBucket;
+    }
+
+    /**
+     * 返回长度为 count 的列表所在的分桶大小: 不超过上限时为不小于 count 的 1、2、4、8……,
+     * 超过上限时为上限的整数倍。
+     * 
+     * @param count - 列表长度
+     * @param inListBucket - 分桶上限
+     * 
+     * @return 分桶大小
+     */
+    public static int getBucketSize(int count, int inListBucket) {
+        if (inListBucket <= 0 || count <= 0) {
+            return count;
+        }
+        if (count >= inListBucket) {
+            return (count + inListBucket - 1) / inListBucket * inListBucket;
+        }
+        int size = 1;
+        while (size < count) {
+            size <<= 1;
+        }
+        return Math.min(size, inListBucket);
+    }
+
+    /**
+     * 判断紧接在给定语句片段之后展开的集合是否位于 IN (...) 中: 片段以 'IN (' 或 'IN' 结尾(忽略大小写和空白)。
+     * 只有 IN 列表中重复的值不改变语义, 可以补齐到分桶的大小。
+     * 
+     * @param sql - 集合之前的语句片段
+     * 
+     * @return true / false
+     */
+    public static boolean isInListPosition(CharSequence sql) {
+        int index = sql.length() - 1;
+        while (index >= 0 && Character.isWhitespace(sql.charAt(index))) {
+            index--;
+        }
+        if (index >= 0 && sql.charAt(index) == '(') {
+            index--;
+            while (index >= 0 && Character.isWhitespace(sql.charAt(index))) {
+                index--;
+            }
+        }
+        if (index < 1 || Character.toUpperCase(sql.charAt(index)) != 'N'
+                || Character.toUpperCase(sql.charAt(index - 1)) != 'I') {
+            return false;
+        }
+        // IN 之前不能是标识符的一部分, 如 'JOIN'、'MIN'
+        return index == 1 || !isIdentifierPart(sql.charAt(index - 2));
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '`' || ch == '.';
+    }
+
     @Override
     public Object[] getParams() {
         return params.toArray();
@@ -105,8 +171,13 @@ public class ExqlContextImpl implements ExqlContext  {
      */
     private void fillCollection(Collection<?> collection) {
 
+        // 只补齐 IN (...) 中的列表, VALUES、函数参数等位置原样展开
+        boolean padding = inListBucket > 0 && isInListPosition(builder);
+
         int count = 0;
 
+        Object last = null;
+
         // 展开  Collection 容器, 输出逗号分隔以支持 IN (...) 语法
         // "IN :varlist" --> "IN (?, ?, ...)"
         if (collection.isEmpty()) {
@@ -130,9 +201,19 @@ public class ExqlContextImpl implements ExqlContext  {
 
                     builder.append(QUESTION);
 
+                    last = value;
+
                     count++;
                 }
             }
+
+            // 重复最后一个值, 补齐到分桶的大小
+            int size = padding ? getBucketSize(count, inListBucket) : count;
+            for (; count < size; count++) {
+                builder.append(COMMA);
+                setParam(last);
+                builder.append(QUESTION);
+            }
         }
     }
 
@@ -72,6 +72,24 @@ public class ExqlPatternImpl implements ExqlPattern {
         return compiledPattern;
     }
 
+    /**
+     * 返回编译的语句。
+     * 
+     * @return 语句
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * 返回编译得到的输出单元。
+     * 
+     * @return 输出单元
+     */
+    public ExqlUnit getUnit() {
+        return unit;
+    }
+
     @Override
     public String execute(ExqlContext context, Map<String, ?> map) throws Exception {
 
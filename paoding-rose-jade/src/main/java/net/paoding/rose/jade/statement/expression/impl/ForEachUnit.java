@@ -12,7 +12,7 @@ import net.paoding.rose.jade.statement.expression.util.ExqlUtils;
  */
 public class ForEachUnit implements ExqlUnit {
 
-    private final String expr;
+    private final ExprAccessor accessor;
 
     private final String variant;
 
@@ -26,7 +26,7 @@ public class ForEachUnit implements ExqlUnit {
      * @param unit - 需要循环输出的单元
      */
     public ForEachUnit(String expr, String variant, ExqlUnit unit) {
-        this.expr = expr;
+        this.accessor = ExprAccessor.compile(expr);
         this.variant = variant;
         this.unit = unit;
     }
@@ -35,7 +35,7 @@ public class ForEachUnit implements ExqlUnit {
     public boolean isValid(ExprResolver exprResolver) {
 
         // 解释表达式内容
-        Object obj = ExqlUtils.execExpr(exprResolver, expr);
+        Object obj = ExqlUtils.execExpr(exprResolver, accessor);
 
         if (ExqlUtils.isValid(obj)) {
             return unit.isValid(exprResolver);
@@ -49,7 +49,7 @@ public class ForEachUnit implements ExqlUnit {
     public void fill(ExqlContext exqlContext, ExprResolver exprResolver) throws Exception {
 
         // 解释表达式内容
-        Object obj = exprResolver.executeExpr(expr);
+        Object obj = accessor.execute(exprResolver);
 
         if (variant == null) {
 
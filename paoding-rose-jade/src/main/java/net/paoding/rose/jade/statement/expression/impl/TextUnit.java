@@ -22,6 +22,15 @@ public class TextUnit implements ExqlUnit {
         this.text = text;
     }
 
+    /**
+     * 返回输出的文本。
+     * 
+     * @return 文本
+     */
+    public String getText() {
+        return text;
+    }
+
     @Override
     public boolean isValid(ExprResolver exprResolver) {
 
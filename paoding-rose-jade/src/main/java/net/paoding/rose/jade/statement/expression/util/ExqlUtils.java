@@ -8,6 +8,7 @@ import java.util.Map;
 
 import net.paoding.rose.jade.statement.expression.ExprResolver;
 import net.paoding.rose.jade.statement.expression.ExqlPattern;
+import net.paoding.rose.jade.statement.expression.impl.ExprAccessor;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,6 +48,31 @@ public class ExqlUtils {
         return null;
     }
 
+    /**
+     * 返回在语句输出的内容, 能够直接读取的表达式不经过引擎。
+     * 
+     * @param exprResolver - 使用的引擎
+     * @param accessor - 预先编译的表达式
+     * 
+     * @return 输出的内容
+     */
+    public static Object execExpr(ExprResolver exprResolver, ExprAccessor accessor) {
+
+        try {
+            // 返回输出的内容
+            return accessor.execute(exprResolver);
+
+        } catch (Exception e) {
+
+            // 输出日志
+            if (logger.isDebugEnabled()) {
+                logger.debug("Can't resolving expression: " + accessor, e);
+            }
+        }
+
+        return null;
+    }
+
     /**
      * 检查对象是否有效。
      * 
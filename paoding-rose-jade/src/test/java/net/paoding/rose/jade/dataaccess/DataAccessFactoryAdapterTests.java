@@ -0,0 +1,161 @@
+package net.paoding.rose.jade.dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.paoding.rose.jade.annotation.SQL;
+import net.paoding.rose.jade.dataaccess.datasource.HierarchicalDataSourceFactory;
+import net.paoding.rose.jade.dataaccess.datasource.SimpleDataSourceFactory;
+import net.paoding.rose.jade.statement.DAOMetaData;
+import net.paoding.rose.jade.statement.StatementMetaData;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class DataAccessFactoryAdapterTests extends TestCase {
+
+    public interface UserDAO {
+
+        @SQL("SELECT id FROM user")
+        List<Integer> findAll();
+    }
+
+    private final StatementMetaData metaData = metaData();
+
+    private final Map<String, Object> runtime = new HashMap<String, Object>();
+
+    public void testReuseForSimpleFactory() {
+        CountingFactory factory = new CountingFactory(new SimpleDataSourceFactory(dataSource()));
+        DataAccessFactoryAdapter adapter = new DataAccessFactoryAdapter(factory);
+
+        DataAccess dataAccess = adapter.getDataAccess(metaData, runtime);
+        Assert.assertSame(dataAccess, adapter.getDataAccess(metaData, runtime));
+        Assert.assertSame(dataAccess, adapter.getDataAccess(metaData, runtime));
+        // CountingFactory不是固定的工厂，每次都要解析，但数据源相同时复用DataAccess
+        Assert.assertEquals(3, factory.count);
+
+        adapter = new DataAccessFactoryAdapter(factory.target);
+        Assert.assertSame(adapter.getDataAccess(metaData, runtime), adapter.getDataAccess(
+                metaData, runtime));
+    }
+
+    public void testResolveOnceForStaticChain() {
+        CountingFactory leaf = new CountingFactory(new SimpleDataSourceFactory(dataSource()));
+        HierarchicalDataSourceFactory hierarchical = new HierarchicalDataSourceFactory();
+        hierarchical.registerDataSource("*", leaf);
+        DataAccessFactoryAdapter adapter = new DataAccessFactoryAdapter(hierarchical);
+
+        adapter.getDataAccess(metaData, runtime);
+        adapter.getDataAccess(metaData, runtime);
+        Assert.assertEquals(2, leaf.count);
+
+        adapter = new DataAccessFactoryAdapter(new HierarchicalDataSourceFactory(dataSource()));
+        DataAccess dataAccess = adapter.getDataAccess(metaData, runtime);
+        Assert.assertSame(dataAccess, adapter.getDataAccess(metaData, runtime));
+    }
+
+    public void testReconfigureAfterFirstUse() {
+        DataSource dataSource = dataSource();
+        DataSource other = dataSource();
+        HierarchicalDataSourceFactory factory = new HierarchicalDataSourceFactory(dataSource);
+        DataAccessFactoryAdapter adapter = new DataAccessFactoryAdapter(factory);
+        Assert.assertSame(dataSource, adapter.getDataAccess(metaData, runtime).getDataSource());
+
+        factory.registerDataSource(UserDAO.class.getPackage().getName(), other);
+        Assert.assertSame(other, adapter.getDataAccess(metaData, runtime).getDataSource());
+
+        SimpleDataSourceFactory simple = new SimpleDataSourceFactory(dataSource);
+        adapter = new DataAccessFactoryAdapter(simple);
+        Assert.assertSame(dataSource, adapter.getDataAccess(metaData, runtime).getDataSource());
+        simple.setDataSource(other);
+        Assert.assertSame(other, adapter.getDataAccess(metaData, runtime).getDataSource());
+    }
+
+    public void testDistinctDataSources() {
+        final DataSource first = dataSource();
+        final DataSource second = dataSource();
+        DataAccessFactoryAdapter adapter = new DataAccessFactoryAdapter(new DataSourceFactory() {
+
+            @Override
+            public DataSourceHolder getHolder(StatementMetaData metaData,
+                    Map<String, Object> runtime) {
+                return new DataSourceHolder(runtime.containsKey("second") ? second : first);
+            }
+        });
+
+        DataAccess dataAccess = adapter.getDataAccess(metaData, runtime);
+        Assert.assertSame(first, dataAccess.getDataSource());
+        runtime.put("second", true);
+        Assert.assertSame(second, adapter.getDataAccess(metaData, runtime).getDataSource());
+        runtime.clear();
+        Assert.assertSame(dataAccess, adapter.getDataAccess(metaData, runtime));
+    }
+
+    public void testTemplateSettings() {
+        DataSource dataSource = dataSource();
+        DataSource other = dataSource();
+        HierarchicalDataSourceFactory factory = new HierarchicalDataSourceFactory(dataSource);
+        factory.registerDataSource(UserDAO.class.getName(), other);
+        DataAccessFactoryAdapter adapter = new DataAccessFactoryAdapter(factory);
+        adapter.setFetchSize(100);
+        adapter.setQueryTimeout(3);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(other);
+        jdbcTemplate.setMaxRows(10);
+        adapter.registerJdbcTemplate(jdbcTemplate);
+        Assert.assertSame(jdbcTemplate, adapter.getJdbcTemplate(other));
+
+        JdbcTemplate defaults = adapter.getJdbcTemplate(dataSource);
+        Assert.assertEquals(100, defaults.getFetchSize());
+        Assert.assertEquals(0, defaults.getMaxRows());
+        Assert.assertEquals(3, defaults.getQueryTimeout());
+        Assert.assertSame(other, adapter.getDataAccess(metaData, runtime).getDataSource());
+    }
+
+    private static StatementMetaData metaData() {
+        for (Method method : UserDAO.class.getMethods()) {
+            return new StatementMetaData(new DAOMetaData(UserDAO.class), method);
+        }
+        throw new IllegalStateException();
+    }
+
+    private static DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(DataAccessFactoryAdapterTests.class
+                .getClassLoader(), new Class<?>[] { DataSource.class }, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("equals")) {
+                    return true; // 验证缓存不依赖equals
+                }
+                if (method.getName().equals("hashCode")) {
+                    return 0;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static class CountingFactory implements DataSourceFactory {
+
+        final DataSourceFactory target;
+
+        int count;
+
+        CountingFactory(DataSourceFactory target) {
+            this.target = target;
+        }
+
+        @Override
+        public DataSourceHolder getHolder(StatementMetaData metaData, Map<String, Object> runtime) {
+            count++;
+            return target.getHolder(metaData, runtime);
+        }
+    }
+}
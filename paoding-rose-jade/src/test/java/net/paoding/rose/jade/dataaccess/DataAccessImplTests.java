@@ -0,0 +1,220 @@
+package net.paoding.rose.jade.dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+public class DataAccessImplTests extends TestCase {
+
+    /** 记录对JDBC对象的调用 */
+    private final List<String> calls = new ArrayList<String>();
+
+    private boolean batchSupported = true;
+
+    private long nextKey = 100;
+
+    /** 上一次execute生成的key的个数 */
+    private int generated;
+
+    private int pending;
+
+    public void testBatchUpdateInChunks() {
+        DataAccessImpl dataAccess = new DataAccessImpl(new JdbcTemplate(dataSource()), 2);
+        int[] updated = dataAccess.batchUpdate("insert into t(name) values(?)", args("a", "b",
+                "c", "d", "e"));
+
+        Assert.assertTrue(Arrays.equals(new int[] { 1, 1, 1, 1, 1 }, updated));
+        Assert.assertEquals(1, count("prepareStatement"));
+        Assert.assertEquals(5, count("addBatch"));
+        Assert.assertEquals(3, count("executeBatch"));
+        Assert.assertEquals(0, count("executeUpdate"));
+        Assert.assertEquals(1, count("Connection.close"));
+    }
+
+    public void testBatchUpdateWithoutDriverSupport() {
+        batchSupported = false;
+        DataAccessImpl dataAccess = new DataAccessImpl(new JdbcTemplate(dataSource()), 2);
+        int[] updated = dataAccess.batchUpdate("insert into t(name) values(?)", args("a", "b",
+                "c"));
+
+        Assert.assertTrue(Arrays.equals(new int[] { 1, 1, 1 }, updated));
+        Assert.assertEquals(1, count("prepareStatement"));
+        Assert.assertEquals(0, count("addBatch"));
+        Assert.assertEquals(3, count("executeUpdate"));
+    }
+
+    public void testBatchUpdateReturnGeneratedKeys() {
+        DataAccessImpl dataAccess = new DataAccessImpl(new JdbcTemplate(dataSource()), 2);
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        dataAccess.batchUpdate("insert into t(name) values(?)", args("a", "b", "c"), keyHolder);
+
+        List<?> keyList = keyHolder.getKeyList();
+        Assert.assertEquals(3, keyList.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(100L + i, ((Map<?, ?>) keyList.get(i)).get("ID"));
+        }
+        Assert.assertEquals(2, count("getGeneratedKeys"));
+    }
+
+    public void testEmptyBatch() {
+        DataAccessImpl dataAccess = new DataAccessImpl(new JdbcTemplate(dataSource()));
+        Assert.assertEquals(0, dataAccess.batchUpdate("delete from t", args()).length);
+        Assert.assertTrue(calls.isEmpty());
+    }
+
+    private static List<Object[]> args(String... values) {
+        List<Object[]> argsList = new ArrayList<Object[]>();
+        for (String value : values) {
+            argsList.add(new Object[] { value });
+        }
+        return argsList;
+    }
+
+    private int count(String call) {
+        int count = 0;
+        for (String c : calls) {
+            if (c.equals(call)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private DataSource dataSource() {
+        return proxy(DataSource.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getConnection")) {
+                    return connection();
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getMetaData")) {
+                    return proxy(DatabaseMetaData.class, new InvocationHandler() {
+
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if (method.getName().equals("supportsBatchUpdates")) {
+                                return batchSupported;
+                            }
+                            return defaultValue(method);
+                        }
+                    });
+                }
+                if (name.equals("prepareStatement")) {
+                    calls.add(name);
+                    return preparedStatement((Connection) proxy);
+                }
+                if (name.equals("close")) {
+                    calls.add("Connection.close");
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private PreparedStatement preparedStatement(final Connection connection) {
+        return proxy(PreparedStatement.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                calls.add(name);
+                if (name.equals("addBatch")) {
+                    pending++;
+                } else if (name.equals("executeBatch")) {
+                    int[] updated = new int[pending];
+                    Arrays.fill(updated, 1);
+                    generated = pending;
+                    pending = 0;
+                    return updated;
+                } else if (name.equals("executeUpdate")) {
+                    generated = 1;
+                    return 1;
+                } else if (name.equals("getGeneratedKeys")) {
+                    return generatedKeys(generated);
+                } else if (name.equals("getConnection")) {
+                    return connection;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private ResultSet generatedKeys(final int rows) {
+        final ResultSetMetaData metaData = proxy(ResultSetMetaData.class,
+                new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getColumnCount")) {
+                            return 1;
+                        }
+                        if (method.getName().startsWith("getColumn")) {
+                            return "ID";
+                        }
+                        return defaultValue(method);
+                    }
+                });
+        return proxy(ResultSet.class, new InvocationHandler() {
+
+            int row = 0;
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("next")) {
+                    return row++ < rows;
+                }
+                if (name.equals("getMetaData")) {
+                    return metaData;
+                }
+                if (name.equals("getObject")) {
+                    return nextKey++;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(DataAccessImplTests.class.getClassLoader(),
+                new Class<?>[] { type }, handler);
+    }
+}
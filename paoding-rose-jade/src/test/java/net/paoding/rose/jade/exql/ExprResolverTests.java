@@ -1,5 +1,6 @@
 package net.paoding.rose.jade.exql;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
@@ -8,6 +9,7 @@ import java.util.Map;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 import net.paoding.rose.jade.statement.expression.ExprResolver;
+import net.paoding.rose.jade.statement.expression.impl.ExprAccessor;
 import net.paoding.rose.jade.statement.expression.impl.ExprResolverImpl;
 
 public class ExprResolverTests extends TestCase {
@@ -64,4 +66,83 @@ public class ExprResolverTests extends TestCase {
                 + (bean2.getYear() + 1900) + '-' + (bean2.getMonth() + 1) // NL
                 + '-' + bean2.getDate(), value);
     }
+
+    // 不需要 Jexl 的表达式
+    public void testAccessors() throws Exception {
+
+        Locale bean = Locale.CHINA;
+
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("id.key", 5);
+        map.put("locale", bean);
+
+        Map<String, Object> mapVars = new HashMap<String, Object>();
+        mapVars.put(":1", 102);
+        mapVars.put(":2", bean);
+        mapVars.put("map", map);
+        mapVars.put("list", Arrays.asList("a", "b"));
+        mapVars.put("array", new int[] { 7, 8 });
+        mapVars.put("nothing", null);
+
+        Map<String, Object> mapConsts = new HashMap<String, Object>();
+        mapConsts.put("TABLE", "user");
+
+        ExprResolver exprResolver = new ExprResolverImpl(mapVars, mapConsts);
+
+        Assert.assertEquals(102, exprResolver.executeExpr(":1"));
+        Assert.assertEquals(bean.getCountry(), exprResolver.executeExpr(":2.country"));
+        Assert.assertEquals(5, exprResolver.executeExpr(":map[id.key]"));
+        Assert.assertEquals(bean.getLanguage(), exprResolver.executeExpr(" :map.locale.language "));
+        Assert.assertEquals("b", exprResolver.executeExpr(":list[1]"));
+        Assert.assertEquals(8, exprResolver.executeExpr(":array[1]"));
+        Assert.assertNull(exprResolver.executeExpr(":nothing.name"));
+        Assert.assertEquals("user", exprResolver.executeExpr("$TABLE"));
+
+        // 带运算、方法调用的表达式仍然交给  Jexl
+        Assert.assertFalse(ExprAccessor.compile(":1 + 1").isDirect());
+        Assert.assertFalse(ExprAccessor.compile(":2.getCountry()").isDirect());
+        Assert.assertTrue(ExprAccessor.compile(":map[id.key]").isDirect());
+    }
+
+    public void testOtherResolver() throws Exception {
+
+        // 其他实现的 ExprResolver 总是通过 executeExpr 求值
+        ExprResolver exprResolver = new ExprResolver() {
+
+            @Override
+            public Object getVar(String variant) {
+                return null;
+            }
+
+            @Override
+            public void setVar(String variant, Object value) {
+            }
+
+            @Override
+            public Object executeExpr(String expression) {
+                return "resolved " + expression;
+            }
+        };
+        Assert.assertEquals("resolved :1", ExprAccessor.compile(":1").execute(exprResolver));
+        Assert.assertEquals("resolved $TABLE", ExprAccessor.compile("$TABLE").execute(
+                exprResolver));
+    }
+
+    public void testUndefined() throws Exception {
+
+        ExprResolver exprResolver = new ExprResolverImpl(new HashMap<String, Object>(),
+                new HashMap<String, Object>());
+        try {
+            exprResolver.executeExpr(":name");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // 变量未定义
+        }
+        try {
+            exprResolver.executeExpr("$TABLE");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // 常量未定义
+        }
+    }
 }
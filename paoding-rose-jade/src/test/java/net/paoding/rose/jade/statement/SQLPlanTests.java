@@ -0,0 +1,209 @@
+package net.paoding.rose.jade.statement;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.paoding.rose.jade.annotation.SQL;
+import net.paoding.rose.jade.annotation.SQLParam;
+import net.paoding.rose.jade.annotation.SQLType;
+
+import org.springframework.jdbc.BadSqlGrammarException;
+
+public class SQLPlanTests extends TestCase {
+
+    public interface PlanDAO {
+
+        String TABLE = "user";
+
+        @SQL("SELECT id FROM $TABLE WHERE id = :1 AND name = :user.name")
+        List<Integer> find(int id, @SQLParam("user") User user);
+
+        @SQL("SELECT id FROM user WHERE id IN (:1) AND status = :2")
+        List<Integer> findIn(List<Integer> ids, int status);
+
+        @SQL("SELECT id FROM user #if(:2) {WHERE id = :1}")
+        List<Integer> dynamic(int id, boolean byId);
+
+        @SQL("SELECT id FROM user WHERE id = :name")
+        List<Integer> undefined(int id);
+
+        @SQL(value = "SELECT id FROM user WHERE id IN (:1)", inListBucket = 4, inListSplit = true)
+        List<Integer> bucket(@SQLParam("ids") List<Integer> ids);
+
+        @SQL(value = "SELECT id FROM user WHERE id IN (:1)", inListBucket = 4)
+        List<Integer> bucketOnly(List<Integer> ids);
+
+        @SQL(value = "SELECT COUNT(*) FROM user WHERE id IN (:1)", inListBucket = 4, inListSplit = true)
+        int countIn(List<Integer> ids);
+
+        @SQL(value = "SELECT id FROM user WHERE id NOT IN (:1)", inListBucket = 4, inListSplit = true)
+        List<Integer> notIn(List<Integer> ids);
+
+        @SQL(value = "SELECT id FROM user WHERE id IN (:1) AND parent_id IN (:ids)", inListBucket = 4, inListSplit = true)
+        List<Integer> twice(@SQLParam("ids") List<Integer> ids);
+
+        @SQL(value = "SELECT id FROM user ORDER BY FIELD(id, :1)", inListBucket = 4)
+        List<Integer> field(List<Integer> ids);
+    }
+
+    public static class User {
+
+        private final String name;
+
+        public User(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public void testStatic() throws Exception {
+        SQLPlan plan = SQLPlan.compile(metaData("find"));
+        Assert.assertTrue(plan.isStatic());
+
+        Map<String, Object> parameters = parameters(1, new User("qieqie"));
+        parameters.put("user", parameters.get(":2"));
+        StatementRuntime runtime = interpret(plan, "find", parameters);
+
+        Assert.assertEquals("SELECT id FROM user WHERE id = ? AND name = ?", runtime.getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 1, "qieqie" }, runtime.getArgs()));
+    }
+
+    public void testStaticWithCollection() throws Exception {
+        SQLPlan plan = SQLPlan.compile(metaData("findIn"));
+        Assert.assertTrue(plan.isStatic());
+
+        StatementRuntime runtime = interpret(plan, "findIn", parameters(Arrays.asList(3, 5, 8),
+                1));
+
+        Assert.assertEquals("SELECT id FROM user WHERE id IN (?,?,?) AND status = ?", runtime
+                .getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 3, 5, 8, 1 }, runtime.getArgs()));
+    }
+
+    public void testDynamic() throws Exception {
+        SQLPlan plan = SQLPlan.compile(metaData("dynamic"));
+        Assert.assertFalse(plan.isStatic());
+
+        StatementRuntime runtime = interpret(plan, "dynamic", parameters(7, true));
+        Assert.assertEquals("SELECT id FROM user WHERE id = ?", runtime.getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 7 }, runtime.getArgs()));
+
+        runtime = interpret(plan, "dynamic", parameters(7, false));
+        Assert.assertEquals("SELECT id FROM user ", runtime.getSQL());
+        Assert.assertEquals(0, runtime.getArgs().length);
+    }
+
+    public void testUndefinedVariable() throws Exception {
+        SQLPlan plan = SQLPlan.compile(metaData("undefined"));
+        try {
+            interpret(plan, "undefined", parameters(1));
+            Assert.fail();
+        } catch (BadSqlGrammarException e) {
+            // 和SystemInterpreter一样报告SQL错误
+        }
+    }
+
+    public void testSameAsSystemInterpreter() throws Exception {
+        Map<String, Object> parameters = parameters(Arrays.asList(3, 5), 2);
+        StatementRuntime expected = new StatementRuntimeImpl(metaData("findIn"), parameters);
+        new SystemInterpreter().interpret(expected);
+
+        StatementRuntime runtime = interpret(SQLPlan.compile(metaData("findIn")), "findIn",
+                parameters);
+        Assert.assertEquals(expected.getSQL(), runtime.getSQL());
+        Assert.assertTrue(Arrays.equals(expected.getArgs(), runtime.getArgs()));
+    }
+
+    public void testInListBucket() throws Exception {
+        SQLPlan plan = SQLPlan.compile(metaData("bucket"));
+
+        StatementRuntime runtime = interpret(plan, "bucket", parameters(Arrays.asList(3, 5, 8)));
+        Assert.assertEquals("SELECT id FROM user WHERE id IN (?,?,?,?)", runtime.getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 3, 5, 8, 8 }, runtime.getArgs()));
+
+        runtime = interpret(plan, "bucket", parameters(Arrays.asList(3)));
+        Assert.assertEquals("SELECT id FROM user WHERE id IN (?)", runtime.getSQL());
+
+        // 不在 IN (...) 中的列表不补齐
+        runtime = interpret(SQLPlan.compile(metaData("field")), "field", parameters(Arrays
+                .asList(3, 5, 8)));
+        Assert.assertEquals("SELECT id FROM user ORDER BY FIELD(id, ?,?,?)", runtime.getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 3, 5, 8 }, runtime.getArgs()));
+    }
+
+    public void testInListSplit() throws Exception {
+        List<StatementRuntime> executed = execute("bucket");
+
+        Assert.assertEquals(3, executed.size());
+        Assert.assertEquals("SELECT id FROM user WHERE id IN (?,?,?,?)", executed.get(0).getSQL());
+        Assert.assertTrue(Arrays.equals(new Object[] { 5, 6, 7, 8 }, executed.get(1).getArgs()));
+        Assert.assertEquals("SELECT id FROM user WHERE id IN (?,?)", executed.get(2).getSQL());
+        Assert.assertEquals(Arrays.asList(9, 10), executed.get(2).getParameters().get("ids"));
+    }
+
+    public void testInListNotSplit() throws Exception {
+        // 没有开启拆分时只补齐
+        List<StatementRuntime> executed = execute("bucketOnly");
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(12, executed.get(0).getArgs().length);
+
+        // 聚合、NOT IN、多次引用的列表拆分后结果不同
+        Assert.assertEquals(1, execute("countIn").size());
+        Assert.assertEquals(1, execute("notIn").size());
+        Assert.assertEquals(1, execute("twice").size());
+    }
+
+    private static List<StatementRuntime> execute(String methodName) {
+        final List<StatementRuntime> executed = new ArrayList<StatementRuntime>();
+        Querier querier = new Querier() {
+
+            @Override
+            public Object execute(SQLType sqlType, StatementRuntime... runtimes) {
+                executed.addAll(Arrays.asList(runtimes));
+                return null;
+            }
+        };
+        StatementMetaData metaData = metaData(methodName);
+        JdbcStatement statement = new JdbcStatement(metaData, SQLType.READ,
+                new Interpreter[] { new SystemInterpreter() }, querier);
+
+        List<Integer> ids = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        Map<String, Object> parameters = parameters(ids);
+        parameters.put("ids", ids);
+        statement.execute(parameters);
+        return executed;
+    }
+
+    private static StatementRuntime interpret(SQLPlan plan, String methodName,
+            Map<String, Object> parameters) throws Exception {
+        StatementRuntime runtime = new StatementRuntimeImpl(metaData(methodName), parameters);
+        plan.interpret(runtime);
+        return runtime;
+    }
+
+    private static StatementMetaData metaData(String methodName) {
+        for (Method method : PlanDAO.class.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                return new StatementMetaData(new DAOMetaData(PlanDAO.class), method);
+            }
+        }
+        throw new IllegalArgumentException(methodName);
+    }
+
+    private static Map<String, Object> parameters(Object... args) {
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        for (int i = 0; i < args.length; i++) {
+            parameters.put(":" + (i + 1), args[i]);
+        }
+        return parameters;
+    }
+}
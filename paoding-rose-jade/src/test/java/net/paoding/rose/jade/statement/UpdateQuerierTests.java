@@ -0,0 +1,85 @@
+package net.paoding.rose.jade.statement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import net.paoding.rose.jade.annotation.SQL;
+import net.paoding.rose.jade.annotation.SQLType;
+import net.paoding.rose.jade.dataaccess.DataAccess;
+import net.paoding.rose.jade.dataaccess.DataAccessFactory;
+
+public class UpdateQuerierTests extends TestCase {
+
+    public interface BatchDAO {
+
+        @SQL("#if(:1.id > 0){UPDATE user SET name = :1.name WHERE id = :1.id}"
+                + "#else{INSERT INTO user (name) VALUES (:1.name)}")
+        int[] save(List<Object> users);
+    }
+
+    public void testBatchKeepsListOrder() {
+        final List<String> executed = new ArrayList<String>();
+        final DataAccess dataAccess = (DataAccess) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { DataAccess.class }, new InvocationHandler() {
+
+                    @SuppressWarnings("unchecked")
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("batchUpdate")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        List<Object[]> argsList = (List<Object[]>) args[1];
+                        for (Object[] rowArgs : argsList) {
+                            executed.add(args[0] + " " + Arrays.toString(rowArgs));
+                        }
+                        int[] updated = new int[argsList.size()];
+                        Arrays.fill(updated, 1);
+                        return updated;
+                    }
+                });
+        UpdateQuerier querier = new UpdateQuerier(new DataAccessFactory() {
+
+            @Override
+            public DataAccess getDataAccess(StatementMetaData metaData,
+                    Map<String, Object> runtime) {
+                return dataAccess;
+            }
+        }, metaData());
+
+        String insert = "INSERT INTO user (name) VALUES (?)";
+        String update = "UPDATE user SET name = ? WHERE id = ?";
+        StatementRuntime[] runtimes = new StatementRuntime[] {
+                runtime(insert, "a"), // X
+                runtime(insert, "b"), // X
+                runtime(update, "a", 1), // Y
+                runtime(insert, "c"), // X
+        };
+        int[] updated = (int[]) querier.execute(SQLType.WRITE, runtimes);
+
+        Assert.assertEquals(Arrays.asList(insert + " [a]", insert + " [b]", update + " [a, 1]",
+                insert + " [c]"), executed);
+        Assert.assertTrue(Arrays.equals(new int[] { 1, 1, 1, 1 }, updated));
+    }
+
+    private static StatementRuntime runtime(String sql, Object... args) {
+        StatementRuntime runtime = new StatementRuntimeImpl(metaData(),
+                new HashMap<String, Object>());
+        runtime.setSQL(sql);
+        runtime.setArgs(args);
+        return runtime;
+    }
+
+    private static StatementMetaData metaData() {
+        for (Method method : BatchDAO.class.getMethods()) {
+            return new StatementMetaData(new DAOMetaData(BatchDAO.class), method);
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -44,6 +44,8 @@ public class PortalBeanPostProcessor implements BeanPostProcessor, ApplicationCo
 
     public static final String PORTAL_EXECUTOR_KEEP_ALIVE_SECONDS = "portalExecutorKeepAliveSeconds";
 
+    public static final String PORTAL_EXECUTOR_VIRTUAL_THREADS = "portalExecutorVirtualThreads";
+
     public static final String PORTAL_LISTENERS = "portalListeners";
 
     private static Log logger = LogFactory.getLog(PortalBeanPostProcessor.class);
@@ -71,7 +73,7 @@ public class PortalBeanPostProcessor implements BeanPostProcessor, ApplicationCo
                                 + paramCorePoolSize);
                     }
                     executor.setCorePoolSize(Integer.parseInt(paramCorePoolSize));
-                } else {
+                } else if (!isVirtualThreads(webApplicationContext)) {
                     throw new IllegalArgumentException(
                             "please add '<context-param><param-name>portalExecutorCorePoolSize</param-name><param-value>a number here</param-value></context-param>' in your web.xml");
                 }
@@ -93,6 +95,13 @@ public class PortalBeanPostProcessor implements BeanPostProcessor, ApplicationCo
                     }
                     executor.setKeepAliveSeconds(Integer.parseInt(paramKeepAliveSeconds));
                 }
+            } else if (bean instanceof PortalFactoryImpl) {
+                if (isVirtualThreads(webApplicationContext)) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info("found param " + PORTAL_EXECUTOR_VIRTUAL_THREADS + "=true");
+                    }
+                    ((PortalFactoryImpl) bean).setVirtualThreads(true);
+                }
             } else if (List.class.isInstance(bean) && "portalListenerList".equals(beanName)) {
                 String paramListeners = webApplicationContext.getServletContext().getInitParameter(
                         PORTAL_LISTENERS);
@@ -125,6 +134,11 @@ public class PortalBeanPostProcessor implements BeanPostProcessor, ApplicationCo
         return bean;
     }
 
+    private boolean isVirtualThreads(WebApplicationContext webApplicationContext) {
+        return "true".equalsIgnoreCase(StringUtils.trim(webApplicationContext.getServletContext()
+                .getInitParameter(PORTAL_EXECUTOR_VIRTUAL_THREADS)));
+    }
+
     @Override
     public Object postProcessAfterInitialization(Object bean, String beanName)
             throws BeansException {
@@ -22,6 +22,7 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
+import net.paoding.rose.util.VirtualThreads;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.impl.thread.InvocationBean;
 import net.paoding.rose.web.portal.Pipe;
@@ -32,6 +33,7 @@ import net.paoding.rose.web.portal.PortalSetting;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.Assert;
@@ -47,13 +49,17 @@ import org.springframework.util.Assert;
  * <p>
  * 
  * 可选设置 {@link WindowListener} 来获知portal的创建以及窗口的创建、执行等状态信息。
+ * <p>
+ * 
+ * 窗口请求大多阻塞在IO上时，可以通过 {@link #setVirtualThreads(boolean)}
+ * 在支持虚拟线程的JDK上为每个窗口启动一个虚拟线程，替代固定大小的线程池。
  * 
  * @see PortalImpl
  * 
  * @author 王志亮 [qieqie.wang@gmail.com]
  * 
  */
-public class PortalFactoryImpl implements PortalFactory, InitializingBean {
+public class PortalFactoryImpl implements PortalFactory, InitializingBean, DisposableBean {
 
     protected Log logger = LogFactory.getLog(getClass());
 
@@ -61,6 +67,11 @@ public class PortalFactoryImpl implements PortalFactory, InitializingBean {
 
     private WindowListener windowListener;
 
+    private boolean virtualThreads;
+
+    /** 使用虚拟线程时由本对象创建的执行器，destroy时关闭 */
+    private ExecutorService virtualThreadExecutor;
+
     public void setExecutorService(ExecutorService executor) {
         if (logger.isInfoEnabled()) {
             logger.info("using executorService: " + executor);
@@ -80,12 +91,40 @@ public class PortalFactoryImpl implements PortalFactory, InitializingBean {
         return windowListener;
     }
 
+    /**
+     * 设置为true时，在支持虚拟线程的JDK上使用“每个窗口一个虚拟线程”的执行器替代
+     * {@link #setExecutorService(ExecutorService)} 设置的执行器；JDK不支持时仍使用原来的执行器。
+     * <p>
+     * 默认为false
+     * 
+     * @param virtualThreads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         Assert.notNull(windowListener);
+        if (virtualThreads) {
+            virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (virtualThreadExecutor != null) {
+                setExecutorService(virtualThreadExecutor);
+            } else {
+                logger.warn("virtual threads are not supported by this jvm, using executorService: "
+                        + executorService);
+            }
+        }
         Assert.notNull(executorService);
     }
 
+    @Override
+    public void destroy() throws Exception {
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+    }
+
     @Override
     public Portal createPortal(Invocation inv) {
         PortalImpl portal = (PortalImpl) inv
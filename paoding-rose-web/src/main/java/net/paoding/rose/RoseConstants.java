@@ -84,6 +84,16 @@ public interface RoseConstants {
      */
     public static final String CONF_PARENT_MODULE_PATH = "parent." + CONF_MODULE_PATH;
 
+    /**
+     * 可配置在模块的rose.properties中，为true时本模块(包括没有另外配置的子模块)的文本、视图响应按Accept-Encoding压缩
+     */
+    public static final String CONF_RESPONSE_COMPRESS = "response.compress";
+
+    /**
+     * 可配置在模块的rose.properties中，表示小于多少字节的响应不压缩
+     */
+    public static final String CONF_RESPONSE_COMPRESS_THRESHOLD = "response.compress.threshold";
+
     public static final String WEB_APPLICATION_CONTEXT_ATTRIBUTE = RequestContext.WEB_APPLICATION_CONTEXT_ATTRIBUTE;
 
     public static final String PIPE_WINDOW_IN = "$$paoding-rose-portal.window.in";
@@ -20,6 +20,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -34,6 +43,7 @@ import net.paoding.rose.scanner.ModuleResourceProviderImpl;
 import net.paoding.rose.scanning.LoadScope;
 import net.paoding.rose.scanning.context.RoseWebAppContext;
 import net.paoding.rose.util.PrinteHelper;
+import net.paoding.rose.util.VirtualThreads;
 import net.paoding.rose.web.RequestPath;
 import net.paoding.rose.web.annotation.ReqMethod;
 import net.paoding.rose.web.impl.mapping.ConstantMapping;
@@ -44,13 +54,16 @@ import net.paoding.rose.web.impl.mapping.ignored.IgnoredPath;
 import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathEnds;
 import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathEquals;
 import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathRegexMatch;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathSet;
 import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathStarts;
+import net.paoding.rose.web.impl.metrics.RoseMetrics;
 import net.paoding.rose.web.impl.module.Module;
 import net.paoding.rose.web.impl.module.ModulesBuilder;
 import net.paoding.rose.web.impl.module.ModulesBuilderImpl;
 import net.paoding.rose.web.impl.thread.LinkedEngine;
 import net.paoding.rose.web.impl.thread.RootEngine;
 import net.paoding.rose.web.impl.thread.Rose;
+import net.paoding.rose.web.impl.thread.RouteCache;
 import net.paoding.rose.web.instruction.InstructionExecutor;
 import net.paoding.rose.web.instruction.InstructionExecutorImpl;
 
@@ -154,6 +167,36 @@ public class RoseFilter extends GenericFilterBean {
 
     private MappingNode mappingTree;
 
+    /** 常量地址的匹配结果缓存的容量，小于等于0表示不使用缓存 */
+    private int routeCacheSize = RouteCache.DEFAULT_CAPACITY;
+
+    private RouteCache routeCache;
+
+    /** 是否以展开的方式执行拦截器，参见 {@link #setInterceptorPipeline(boolean)} */
+    private boolean interceptorPipeline;
+
+    /** 是否开启运行时统计，参见 {@link #setMetricsEnabled(boolean)} */
+    private boolean metricsEnabled;
+
+    private RoseMetrics metrics;
+
+    /** 执行异步action的线程数，小于等于0表示不异步执行，参见 {@link #setAsyncThreads(int)} */
+    private int asyncThreads = 64;
+
+    /** 异步线程都在忙时最多排队的action数，参见 {@link #setAsyncQueueSize(int)} */
+    private int asyncQueueSize = 64;
+
+    /** 是否使用虚拟线程执行异步action，参见 {@link #setVirtualThreads(boolean)} */
+    private boolean virtualThreads;
+
+    /** 是否所有action都异步执行，参见 {@link #setAsyncAll(boolean)} */
+    private boolean asyncAll;
+
+    private Executor asyncExecutor;
+
+    /** 由RoseFilter自己创建的异步线程池，destroy时关闭 */
+    private ExecutorService ownedAsyncExecutor;
+
     private Class<? extends ModuleResourceProvider> moduleResourceProviderClass = ModuleResourceProviderImpl.class;
 
     private Class<? extends ModulesBuilder> modulesBuilderClass = ModulesBuilderImpl.class;
@@ -164,6 +207,9 @@ public class RoseFilter extends GenericFilterBean {
             new IgnoredPathStarts(RoseConstants.VIEWS_PATH_WITH_END_SEP),
             new IgnoredPathEquals("/favicon.ico") };
 
+    /** 由ignoredPaths合并而成，quicklyPass时使用 */
+    private IgnoredPath ignoredPathSet = new IgnoredPathSet(ignoredPaths);
+
     /**
      * 改变默认行为，告知Rose要读取的applicationContext地址
      */
@@ -198,6 +244,96 @@ public class RoseFilter extends GenericFilterBean {
         this.load = new LoadScope(load, "controllers");
     }
 
+    /**
+     * 设置常量地址(不含{param}的地址)的匹配结果缓存的容量，设置为0表示不使用缓存
+     * 
+     * @param routeCacheSize
+     */
+    public void setRouteCacheSize(int routeCacheSize) {
+        this.routeCacheSize = routeCacheSize;
+    }
+
+    /**
+     * 设置为true时，每个action的拦截器在启动时被拆分为before、after、round几种形态，执行时不再为每个请求创建拦截器链条，
+     * 也不调用拦截器没有覆盖的空方法；oncePerRequest拦截器的状态记录在invocation中而不是请求属性中。
+     * <p>
+     * 默认为false，和原来的执行方式相同
+     * 
+     * @param interceptorPipeline
+     */
+    public void setInterceptorPipeline(boolean interceptorPipeline) {
+        this.interceptorPipeline = interceptorPipeline;
+    }
+
+    /**
+     * 设置为true时，记录每个action的请求数以及地址匹配、参数解析、各拦截器的before/after、action方法、渲染等阶段的耗时，
+     * 通过 /rose-info/metrics 以及JMX查看。
+     * <p>
+     * 默认为false，此时不做任何记录
+     * 
+     * @param metricsEnabled
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * 设置执行异步action(参见 {@link net.paoding.rose.web.annotation.Async})的线程数，默认为64；
+     * 设置为0表示所有action都在容器线程中同步执行。
+     * <p>
+     * 只有在支持Servlet 3异步请求的容器中、且RoseFilter配置了&lt;async-supported&gt;true&lt;/async-supported&gt;时才异步执行，
+     * 否则仍然同步执行
+     * 
+     * @param asyncThreads
+     */
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * 设置异步线程都在忙时最多排队等待的action数，默认为64；设置为0表示不排队。
+     * <p>
+     * 排队已满时action改为在容器线程中同步执行，而不是在队列中等到超过异步超时时间
+     * 
+     * @param asyncQueueSize
+     */
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    /**
+     * 设置为true时，在支持虚拟线程的JDK上为每个异步action启动一个虚拟线程，不再受 {@link #setAsyncThreads(int)}
+     * 线程数的限制，适合action大量阻塞在jdbc、portal窗口等待上的应用；JDK不支持时仍使用asyncThreads线程池。
+     * <p>
+     * 默认为false
+     * 
+     * @param virtualThreads
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 设置为true时，所有action都视为标注了 {@link net.paoding.rose.web.annotation.Async}
+     * ，在容器支持时把每个请求都交给异步线程池(或虚拟线程)执行。此时action不能返回":continue"。
+     * <p>
+     * 默认为false
+     * 
+     * @param asyncAll
+     */
+    public void setAsyncAll(boolean asyncAll) {
+        this.asyncAll = asyncAll;
+    }
+
+    /**
+     * 使用外部提供的线程池执行异步action，设置后 {@link #setAsyncThreads(int)} 不再起作用，线程池由提供者负责关闭
+     * 
+     * @param asyncExecutor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
     /**
      * @see #quicklyPass(RequestPath)
      * @param ignoredPathStrings
@@ -237,6 +373,7 @@ public class RoseFilter extends GenericFilterBean {
             ignoredPaths[i] = list.get(i - this.ignoredPaths.length);
         }
         this.ignoredPaths = ignoredPaths;
+        this.ignoredPathSet = new IgnoredPathSet(ignoredPaths);
     }
 
     /**
@@ -281,7 +418,16 @@ public class RoseFilter extends GenericFilterBean {
             }
 
             // 创建匹配树以及各个结点的上的执行逻辑(Engine)
+            this.metrics = metricsEnabled ? new RoseMetrics(getFilterName()) : null;
             this.mappingTree = prepareMappingTree(modules);
+            if (metrics != null) {
+                metrics.registerMBean();
+            }
+            this.routeCache = routeCacheSize > 0 ? new RouteCache(routeCacheSize) : null;
+            if (asyncExecutor == null) {
+                this.ownedAsyncExecutor = createAsyncExecutor();
+                this.asyncExecutor = ownedAsyncExecutor;
+            }
 
             if (logger.isInfoEnabled()) {
                 logger.info("[init] exits from 'init/mappingTree'");
@@ -340,7 +486,10 @@ public class RoseFilter extends GenericFilterBean {
         boolean matched = false;
         try {
             // rose 对象代表Rose框架对一次请求的执行：一朵玫瑰出墙来
-            final Rose rose = new Rose(modules, mappingTree, httpRequest, httpResponse, requestPath);
+            final Rose rose = new Rose(modules, mappingTree, routeCache, metrics, httpRequest,
+                    httpResponse, requestPath);
+            rose.setAsyncExecutor(asyncExecutor);
+            rose.setAsyncAll(asyncAll);
 
             // 对请求进行匹配、处理、渲染以及渲染后的操作，如果找不到映配则返回false
             matched = rose.start();
@@ -484,11 +633,48 @@ public class RoseFilter extends GenericFilterBean {
         mappingTree.getMiddleEngines().addEngine(ReqMethod.ALL, rootEngine);
 
         TreeBuilder treeBuilder = new TreeBuilder();
+        treeBuilder.setInterceptorPipeline(interceptorPipeline);
+        treeBuilder.setMetrics(metrics);
         treeBuilder.create(mappingTree, modules);
 
         return mappingTree;
     }
 
+    /** 创建执行异步action的线程：优先使用虚拟线程，否则使用asyncThreads个线程的线程池 */
+    private ExecutorService createAsyncExecutor() {
+        if (virtualThreads) {
+            ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            if (executor != null) {
+                logger.info("[init] execute async actions by virtual threads");
+                return executor;
+            }
+            logger.warn("[init] virtual threads are not supported by this jvm,"
+                    + " use a pool of asyncThreads=" + asyncThreads + " instead");
+        }
+        return asyncThreads > 0 ? createAsyncThreadPool(asyncThreads) : null;
+    }
+
+    private ExecutorService createAsyncThreadPool(int threads) {
+        final String prefix = "rose-async-" + getFilterName() + "-";
+        // 有界队列：排满时抛出RejectedExecutionException，由Rose改为同步执行
+        BlockingQueue<Runnable> queue = asyncQueueSize > 0 ? new ArrayBlockingQueue<Runnable>(
+                asyncQueueSize) : new SynchronousQueue<Runnable>();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L,
+                TimeUnit.SECONDS, queue, new ThreadFactory() {
+
+                    private final AtomicInteger counter = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * 简单、快速判断本次请求，如果不应由Rose执行，返回true
      * 
@@ -496,12 +682,7 @@ public class RoseFilter extends GenericFilterBean {
      * @return
      */
     private boolean quicklyPass(final RequestPath requestPath) {
-        for (IgnoredPath p : ignoredPaths) {
-            if (p.hit(requestPath)) {
-                return true;
-            }
-        }
-        return false;
+        return ignoredPathSet.hit(requestPath);
     }
 
     @Override
@@ -525,6 +706,12 @@ public class RoseFilter extends GenericFilterBean {
             logger.error("", e);
             getServletContext().log("", e);
         }
+        if (metrics != null) {
+            metrics.unregisterMBean();
+        }
+        if (ownedAsyncExecutor != null) {
+            ownedAsyncExecutor.shutdown();
+        }
         super.destroy();
     }
 
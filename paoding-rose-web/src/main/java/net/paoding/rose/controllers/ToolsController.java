@@ -30,18 +30,23 @@ import net.paoding.rose.web.InterceptorDelegate;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.RequestPath;
 import net.paoding.rose.web.annotation.HttpFeatures;
+import net.paoding.rose.web.annotation.Param;
 import net.paoding.rose.web.annotation.Path;
 import net.paoding.rose.web.annotation.ReqMethod;
 import net.paoding.rose.web.annotation.rest.Get;
 import net.paoding.rose.web.impl.mapping.EngineGroup;
 import net.paoding.rose.web.impl.mapping.MappingNode;
 import net.paoding.rose.web.impl.mapping.MatchResult;
+import net.paoding.rose.web.impl.metrics.ActionMetrics;
+import net.paoding.rose.web.impl.metrics.LatencyHistogram;
+import net.paoding.rose.web.impl.metrics.RoseMetrics;
 import net.paoding.rose.web.impl.module.ControllerRef;
 import net.paoding.rose.web.impl.module.Module;
 import net.paoding.rose.web.impl.thread.ActionEngine;
 import net.paoding.rose.web.impl.thread.InvocationBean;
 import net.paoding.rose.web.impl.thread.LinkedEngine;
 import net.paoding.rose.web.impl.thread.Rose;
+import net.paoding.rose.web.impl.thread.RouteCache;
 
 /**
  * 
@@ -72,6 +77,12 @@ public class ToolsController {
         s += "<div style='margin-left:20px'>";
         s += "<a href=\"" + prefix + "method\">/rose-info/method</a></div>";
 
+        s += "<div style='margin-left:20px'>";
+        s += "<a href=\"" + prefix + "routes\">/rose-info/routes</a></div>";
+
+        s += "<div style='margin-left:20px'>";
+        s += "<a href=\"" + prefix + "metrics\">/rose-info/metrics</a></div>";
+
         s += "<div style='margin-left:20px'>";
         s += "<a href=\"" + prefix + "startupInfo\">/rose-info/startupInfo</a></div>";
         s += "<p>";
@@ -128,18 +139,7 @@ public class ToolsController {
 
             } else {
                 // 405 Method Not Allowed
-                StringBuilder allow = new StringBuilder();
-                final String gap = ", ";
-
-                for (ReqMethod m : leafEngineGroup.getAllowedMethods()) {
-                    allow.append(m.toString()).append(gap);
-                }
-                if (allow.length() > 0) {
-                    allow.setLength(allow.length() - gap.length());
-                }
-
-                // true: don't forward to next filter or servlet
-                return "@405: allowed=" + allow.toString();
+                return "@405: allowed=" + leafEngineGroup.getAllowHeader();
             }
         }
 
@@ -184,6 +184,79 @@ public class ToolsController {
         return Utils.wrap(sb.toString());
     }
 
+    @Get("routes")
+    public String routes(Rose rose) {
+        RouteCache routeCache = rose.getRouteCache();
+        if (routeCache == null) {
+            return Utils.wrap("route cache is disabled (routeCacheSize=0)");
+        }
+        long hits = routeCache.getHits();
+        long misses = routeCache.getMisses();
+        long total = hits + misses;
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("<table>");
+        sb.append("<tr><td>size</td><td>").append(routeCache.size()).append("</td></tr>");
+        sb.append("<tr><td>capacity</td><td>").append(routeCache.getCapacity()).append(
+                "</td></tr>");
+        sb.append("<tr><td>hits</td><td>").append(hits).append("</td></tr>");
+        sb.append("<tr><td>misses</td><td>").append(misses).append("</td></tr>");
+        sb.append("<tr><td>hitRatio</td><td>").append(
+                total == 0 ? "-" : String.format("%.2f%%", hits * 100.0 / total)).append(
+                "</td></tr>");
+        sb.append("<tr><td>evictions</td><td>").append(routeCache.getEvictions()).append(
+                "</td></tr>");
+        sb.append("</table>");
+        return Utils.wrap(sb.toString());
+    }
+
+    @Get("metrics")
+    public String metrics(Rose rose, @Param("action") String action) {
+        RoseMetrics metrics = rose.getMetrics();
+        if (metrics == null) {
+            return Utils.wrap("metrics is disabled (metricsEnabled=false)");
+        }
+        StringBuilder sb = new StringBuilder(2048);
+        if (action != null) {
+            ActionMetrics actionMetrics = metrics.getAction(action);
+            if (actionMetrics == null) {
+                return Utils.wrap("not found action: " + action);
+            }
+            sb.append("<strong>").append(action).append("</strong> requests=").append(
+                    actionMetrics.getRequests()).append(" errors=").append(
+                    actionMetrics.getErrors());
+            sb.append("<table>");
+            appendHistogramHeader(sb, "stage");
+            appendHistogram(sb, "match", actionMetrics.getMatch());
+            appendHistogram(sb, "resolve", actionMetrics.getResolve());
+            String[] interceptorNames = actionMetrics.getInterceptorNames();
+            for (int i = 0; i < interceptorNames.length; i++) {
+                appendHistogram(sb, interceptorNames[i] + ".before", actionMetrics.getBefore(i));
+            }
+            appendHistogram(sb, "action", actionMetrics.getAction());
+            for (int i = interceptorNames.length - 1; i >= 0; i--) {
+                appendHistogram(sb, interceptorNames[i] + ".after", actionMetrics.getAfter(i));
+            }
+            appendHistogram(sb, "render", actionMetrics.getRender());
+            appendHistogram(sb, "total", actionMetrics.getTotal());
+            sb.append("</table>");
+            return Utils.wrap(sb.toString());
+        }
+        sb.append("requests=").append(metrics.getRequests()).append(" errors=").append(
+                metrics.getErrors());
+        sb.append("<table>");
+        appendHistogramHeader(sb, "action");
+        for (ActionMetrics actionMetrics : metrics.getActions()) {
+            if (actionMetrics.getRequests() == 0) {
+                continue;
+            }
+            String name = "<a href=\"metrics?action=" + actionMetrics.getName() + "\">"
+                    + actionMetrics.getName() + "</a> (errors=" + actionMetrics.getErrors() + ")";
+            appendHistogram(sb, name, actionMetrics.getTotal());
+        }
+        sb.append("</table>");
+        return Utils.wrap(sb.toString());
+    }
+
     @Get("startupInfo")
     public String startupInfo() {
         SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -206,6 +279,31 @@ public class ToolsController {
 
     //---privates
 
+    /**
+     * @see #metrics(Rose, String)
+     */
+    private void appendHistogramHeader(StringBuilder sb, String name) {
+        sb.append("<tr><th>").append(name).append(
+                "</th><th>count</th><th>mean(us)</th><th>p50(us)</th><th>p90(us)</th>").append(
+                "<th>p99(us)</th><th>max(us)</th></tr>");
+    }
+
+    /**
+     * @see #metrics(Rose, String)
+     */
+    private void appendHistogram(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append("<tr><td>").append(name).append("</td><td>").append(histogram.getCount());
+        sb.append("</td><td>").append(micros(histogram.getMean()));
+        sb.append("</td><td>").append(micros(histogram.getPercentile(50)));
+        sb.append("</td><td>").append(micros(histogram.getPercentile(90)));
+        sb.append("</td><td>").append(micros(histogram.getPercentile(99)));
+        sb.append("</td><td>").append(micros(histogram.getMax())).append("</td></tr>");
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+
     /**
      * @see #modules(Rose)
      */
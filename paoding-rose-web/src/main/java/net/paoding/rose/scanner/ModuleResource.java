@@ -69,6 +69,12 @@ public class ModuleResource implements Comparable<ModuleResource> {
 
     private String[] interceptedDeny;
 
+    // rose.properties的response.compress，没有配置时为null
+    private Boolean responseCompress;
+
+    // rose.properties的response.compress.threshold，没有配置时为-1
+    private int responseCompressThreshold = -1;
+
     // getters & setters
 
     public URL getModuleUrl() {
@@ -143,6 +149,22 @@ public class ModuleResource implements Comparable<ModuleResource> {
         this.interceptedDeny = interceptedDeny;
     }
 
+    public Boolean getResponseCompress() {
+        return responseCompress;
+    }
+
+    public void setResponseCompress(Boolean responseCompress) {
+        this.responseCompress = responseCompress;
+    }
+
+    public int getResponseCompressThreshold() {
+        return responseCompressThreshold;
+    }
+
+    public void setResponseCompressThreshold(int responseCompressThreshold) {
+        this.responseCompressThreshold = responseCompressThreshold;
+    }
+
     // -- overrides --
 
     /**
@@ -20,6 +20,8 @@ import static net.paoding.rose.RoseConstants.CONF_INTERCEPTED_DENY;
 import static net.paoding.rose.RoseConstants.CONF_MODULE_IGNORED;
 import static net.paoding.rose.RoseConstants.CONF_MODULE_PATH;
 import static net.paoding.rose.RoseConstants.CONF_PARENT_MODULE_PATH;
+import static net.paoding.rose.RoseConstants.CONF_RESPONSE_COMPRESS;
+import static net.paoding.rose.RoseConstants.CONF_RESPONSE_COMPRESS_THRESHOLD;
 import static net.paoding.rose.RoseConstants.CONTROLLERS;
 
 import java.io.File;
@@ -39,6 +41,7 @@ import net.paoding.rose.scanning.vfs.FileName;
 import net.paoding.rose.scanning.vfs.FileObject;
 import net.paoding.rose.scanning.vfs.FileSystemManager;
 import net.paoding.rose.util.RoseStringUtil;
+import net.paoding.rose.web.instruction.OutputPolicy;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -163,6 +166,8 @@ public class ModuleResourceProviderImpl implements ModuleResourceProvider {
         String mappingPath = null;
         String[] interceptedAllow = null;
         String[] interceptedDeny = null;
+        Boolean responseCompress = null;
+        int responseCompressThreshold = -1;
 
         ModuleResource parentModule = local.moduleResourceMap.get(candidate.getParent());
         // 如果rose.properties设置了controllers的module.path?
@@ -220,6 +225,24 @@ public class ModuleResourceProviderImpl implements ModuleResourceProvider {
                 interceptedDeny = StringUtils.split(interceptedDenyStrings, ",");
             }
 
+            //response.compress、response.compress.threshold
+            String compress = StringUtils.trimToEmpty(p.getProperty(CONF_RESPONSE_COMPRESS));
+            if (compress.length() > 0) {
+                responseCompress = "true".equalsIgnoreCase(compress) || "1".equals(compress);
+            }
+            String threshold = StringUtils.trimToEmpty(p
+                    .getProperty(CONF_RESPONSE_COMPRESS_THRESHOLD));
+            if (threshold.length() > 0) {
+                try {
+                    responseCompressThreshold = Integer.parseInt(threshold);
+                } catch (NumberFormatException e) {
+                    responseCompressThreshold = OutputPolicy.DEFAULT_THRESHOLD;
+                    logger.warn("illegal " + CONF_RESPONSE_COMPRESS_THRESHOLD + "=" + threshold
+                            + " in " + rosePropertiesFile.getURL() + ", use default "
+                            + responseCompressThreshold);
+                }
+            }
+
         }
         // 
         if (mappingPath == null) {
@@ -241,6 +264,15 @@ public class ModuleResourceProviderImpl implements ModuleResourceProvider {
         if (interceptedDeny != null) {
             moduleResource.setInterceptedDeny(interceptedDeny);
         }
+        // 没有配置的子模块沿用父模块的压缩设置
+        if (responseCompress == null && parentModule != null) {
+            responseCompress = parentModule.getResponseCompress();
+        }
+        if (responseCompressThreshold < 0 && parentModule != null) {
+            responseCompressThreshold = parentModule.getResponseCompressThreshold();
+        }
+        moduleResource.setResponseCompress(responseCompress);
+        moduleResource.setResponseCompressThreshold(responseCompressThreshold);
         local.moduleResourceMap.put(candidate, moduleResource);
         local.moduleResourceList.add(moduleResource);
         if (logger.isDebugEnabled()) {
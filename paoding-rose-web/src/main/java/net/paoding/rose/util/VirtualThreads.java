@@ -0,0 +1,73 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 在支持虚拟线程的JDK(21及以上)中创建“每个任务一个虚拟线程”的 {@link ExecutorService}。
+ * <p>
+ * Rose以Java 6编译，所以通过反射调用 <code>Executors.newVirtualThreadPerTaskExecutor()</code>；
+ * 在不支持的JDK上 {@link #newVirtualThreadPerTaskExecutor()} 返回null，由调用者回退到普通的线程池。
+ */
+public class VirtualThreads {
+
+    private static final Log logger = LogFactory.getLog(VirtualThreads.class);
+
+    private static final Method factoryMethod = findFactoryMethod();
+
+    private static Method findFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 当前JDK是否支持虚拟线程
+     * 
+     * @return
+     */
+    public static boolean isSupported() {
+        return factoryMethod != null;
+    }
+
+    /**
+     * 创建一个为每个任务启动一个虚拟线程的 {@link ExecutorService}，不支持虚拟线程时返回null
+     * 
+     * @return
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (factoryMethod == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (Exception e) {
+            // 例如JDK 19/20没有开启--enable-preview
+            logger.warn("failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.paoding.rose.web.impl.thread.AfterCompletion;
+
+/**
+ * {@link InterceptorStage} 是拦截器在“展开执行”模式下的形态：启动时拆开 {@link InterceptorDelegate}
+ * 、 {@link OncePerRequestInterceptorDelegate} 的包装，判断出拦截器实际覆盖了
+ * {@link ControllerInterceptorAdapter} 的哪些方法，执行时只调用这些方法。
+ * <p>
+ *
+ * 没有覆盖round的 {@link ControllerInterceptorAdapter} 可以拆为before、after两步，不需要
+ * {@link InvocationChain} ；其他拦截器(包括覆盖了round的、直接实现 {@link ControllerInterceptor}
+ * 的以及未知的 {@link InterceptorDelegate} 子类)仍然通过roundInvocation执行。
+ */
+public final class InterceptorStage {
+
+    /** 同一个拦截器类共用一个oncePerRequest序号，和原来按类名生成的属性名一致 */
+    private static final ConcurrentMap<String, Integer> onceIndexes = new ConcurrentHashMap<String, Integer>();
+
+    private static final AtomicInteger onceCounter = new AtomicInteger();
+
+    private final InterceptorDelegate delegate;
+
+    /** round模式下调用的拦截器 */
+    private final ControllerInterceptor roundInterceptor;
+
+    /** 可以拆开执行时的拦截器，否则为null */
+    private final ControllerInterceptorAdapter adapter;
+
+    private final boolean before;
+
+    private final boolean after;
+
+    /** oncePerRequest拦截器的序号，不是oncePerRequest时为-1 */
+    private final int onceIndex;
+
+    /** 不为空操作的afterCompletion，否则为null */
+    private final AfterCompletion afterCompletion;
+
+    public InterceptorStage(InterceptorDelegate delegate) {
+        this.delegate = delegate;
+        boolean oncePerRequest = false;
+        boolean known = true;
+        ControllerInterceptor inner = delegate;
+        while (inner instanceof InterceptorDelegate) {
+            Class<?> delegateClass = inner.getClass();
+            if (delegateClass == OncePerRequestInterceptorDelegate.class) {
+                oncePerRequest = true;
+            } else if (delegateClass != InterceptorDelegate.class) {
+                known = false;
+            }
+            inner = ((InterceptorDelegate) inner).getInterceptor();
+        }
+        if (!known) {
+            // 不认识的包装，原样执行
+            this.roundInterceptor = delegate;
+            this.adapter = null;
+            this.before = false;
+            this.after = false;
+            this.onceIndex = -1;
+            this.afterCompletion = delegate;
+            return;
+        }
+        this.roundInterceptor = inner;
+        if (inner instanceof ControllerInterceptorAdapter
+                && !isOverridden(inner.getClass(), "round", Invocation.class,
+                        InvocationChain.class)) {
+            this.adapter = (ControllerInterceptorAdapter) inner;
+            this.before = isOverridden(inner.getClass(), "before", Invocation.class);
+            this.after = isOverridden(inner.getClass(), "after", Invocation.class, Object.class);
+        } else {
+            this.adapter = null;
+            this.before = false;
+            this.after = false;
+        }
+        if (inner instanceof AfterCompletion
+                && (!(inner instanceof ControllerInterceptorAdapter) || isOverridden(inner
+                        .getClass(), "afterCompletion", Invocation.class, Throwable.class))) {
+            this.afterCompletion = (AfterCompletion) inner;
+        } else {
+            this.afterCompletion = null;
+        }
+        this.onceIndex = oncePerRequest ? onceIndexOf(inner.getClass().getName()) : -1;
+    }
+
+    private static int onceIndexOf(String interceptorClassName) {
+        Integer index = onceIndexes.get(interceptorClassName);
+        if (index == null) {
+            Integer newIndex = onceCounter.getAndIncrement();
+            index = onceIndexes.putIfAbsent(interceptorClassName, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
+
+    private static boolean isOverridden(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = clazz; c != ControllerInterceptorAdapter.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+        }
+        return false;
+    }
+
+    public InterceptorDelegate getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 是否必须通过 {@link #round(Invocation, InvocationChain)} 执行
+     *
+     * @return
+     */
+    public boolean isRound() {
+        return adapter == null;
+    }
+
+    /**
+     * 是否需要调用 {@link #before(Invocation)}
+     *
+     * @return
+     */
+    public boolean hasBefore() {
+        return before;
+    }
+
+    /**
+     * 是否需要调用 {@link #after(Invocation, Object)}
+     *
+     * @return
+     */
+    public boolean hasAfter() {
+        return after;
+    }
+
+    /**
+     * oncePerRequest拦截器的序号，不是oncePerRequest拦截器时返回-1
+     *
+     * @return
+     */
+    public int getOnceIndex() {
+        return onceIndex;
+    }
+
+    /**
+     * 需要在请求结束时调用的afterCompletion，空操作时返回null
+     *
+     * @return
+     */
+    public AfterCompletion getAfterCompletion() {
+        return afterCompletion;
+    }
+
+    public Object before(Invocation inv) throws Exception {
+        return adapter.before(inv);
+    }
+
+    public Object after(Invocation inv, Object instruction) throws Exception {
+        return adapter.after(inv, instruction);
+    }
+
+    public Object round(Invocation inv, InvocationChain chain) throws Exception {
+        return roundInterceptor.roundInvocation(inv, chain);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.getName();
+    }
+}
@@ -25,7 +25,8 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class InvocationUtils {
 
-    // 存放当前线程所处理的请求对象 
+    // 存放当前线程所处理的请求对象；Rose在请求结束时总是恢复或remove，
+    // 所以线程池线程不会残留上一个请求，每个请求一个(虚拟)线程时也不会积累
     private final static ThreadLocal<HttpServletRequest> currentRequests = new ThreadLocal<HttpServletRequest>();
 
     //
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注 {@link Async} 的action(或者返回值类型为 {@link java.util.concurrent.Future} 的action)以Servlet
+ * 3的异步方式执行：RoseFilter匹配到这个action后开启AsyncContext并立即释放容器线程，
+ * 拦截器、action、渲染以及afterCompletion在RoseFilter的异步线程池中执行，结束后完成AsyncContext。
+ * <p>
+ * 
+ * action返回的 {@link java.util.concurrent.Future} 在拦截器的after之前等待其结果，结果作为action的返回值继续处理。
+ * <p>
+ * 
+ * 容器不支持异步(Servlet 3以下，或者RoseFilter没有配置async-supported)、请求是forward/include、
+ * 或者RoseFilter关闭了异步线程池时，仍然在容器线程中同步执行。
+ * <p>
+ * 
+ * 可以标注在action方法或者控制器类上。
+ * 
+ */
+@Target( { ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Async {
+
+    /**
+     * AsyncContext的超时时间(毫秒)，0表示不超时，-1表示使用容器的默认值
+     * 
+     * @return
+     */
+    long timeout() default -1;
+}
@@ -35,4 +35,17 @@ public @interface HttpFeatures {
 
     String contentType() default "";
 
+    /**
+     * 是否压缩响应："true"表示文本、视图的响应通过Rose的输出管道缓冲，达到阈值时按Accept-Encoding压缩；
+     * "false"表示不压缩；默认为空，使用所在module的rose.properties中response.compress的设置
+     * 
+     * @see net.paoding.rose.web.instruction.OutputPolicy
+     */
+    String compress() default "";
+
+    /**
+     * 压缩的阈值(字节)，小于这个值的响应不压缩；负数表示使用module的设置或默认值
+     */
+    int compressThreshold() default -1;
+
 }
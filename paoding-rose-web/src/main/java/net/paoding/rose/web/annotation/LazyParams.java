@@ -0,0 +1,47 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注 {@link LazyParams} 的action，其bean、上传文件、数组、集合以及map参数不在拦截器之前解析，
+ * 而是推迟到action被调用、或者第一次读取方法参数(如
+ * {@link net.paoding.rose.web.Invocation#getMethodParameters()})时才解析。
+ * 被拦截器拒绝的请求因此不需要绑定bean、解析上传文件。
+ * <p>
+ * 
+ * Invocation、Model、request等上下文参数以及简单类型的参数仍然在拦截器之前解析；如果请求是尚未解析的上传请求，
+ * 上传内容的解析和所有参数都推迟到参数被解析时，在这之前拦截器读取不到表单中的参数。
+ * <p>
+ * 
+ * 延迟解析的参数在解析时才被校验并放入model；如果校验器返回了instruction，action不会被调用，
+ * 该instruction作为action的返回值。
+ * <p>
+ * 
+ * 可以标注在action方法、控制器类上，或者标注在控制器所在的package(package-info.java)上对整个模块生效。
+ * 
+ */
+@Target( { ElementType.METHOD, ElementType.TYPE, ElementType.PACKAGE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LazyParams {
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import net.paoding.rose.web.multipart.StreamingParts;
+
+/**
+ * 标注 {@link StreamingMultipart} 的action以流的方式读取上传请求：rose不再在拦截器之前调用
+ * MultipartResolver解析、缓存整个上传内容，action通过 {@link StreamingParts}
+ * 类型的参数直接从request的输入流中依次读取每个part。
+ * <p>
+ * 
+ * 每个part的大小在读取时被检查，超过 {@link #partSizeMax()} 时读取的流抛出IOException；
+ * 除非action调用了 {@link net.paoding.rose.web.multipart.StreamingPart#transferTo(java.io.File)}
+ * ，上传内容不会被写到磁盘。
+ * <p>
+ * 
+ * 表单中的普通字段也是part，不能通过request.getParameter或者@Param读取。
+ * 
+ */
+@Target( { ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface StreamingMultipart {
+
+    /**
+     * 每个part允许的最大字节数，-1表示不限制
+     * 
+     * @return
+     */
+    long partSizeMax() default -1;
+
+    /**
+     * 整个请求允许的最大字节数，-1表示不限制
+     * 
+     * @return
+     */
+    long sizeMax() default -1;
+}
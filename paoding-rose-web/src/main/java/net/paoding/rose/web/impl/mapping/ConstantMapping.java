@@ -56,6 +56,11 @@ public class ConstantMapping implements Mapping {
         return !matched ? null : new MatchResultImpl(mappingNode, definition);
     }
 
+    @Override
+    public int match(String path, int offset) {
+        return path.startsWith(definition, offset) ? offset + definition.length() : -1;
+    }
+
     @Override
     public int compareTo(Mapping o) {
         if (o instanceof ConstantMapping) {
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.mapping;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ConstantTrie} 把一个结点的所有常量子结点按照地址字符组织成一棵不可变的字典树，
+ * 对给定的地址只需要沿着字符走一遍就能找到所有可以匹配的常量子结点，而不需要逐个比较兄弟结点。
+ * <p>
+ *
+ * 多个常量子结点都能匹配时，按照定义从长到短的顺序交给调用者判断，这和 {@link ConstantMapping}
+ * 的排序规则一致。
+ */
+final class ConstantTrie {
+
+    private static final char[] EMPTY_LABELS = new char[0];
+
+    private static final TrieNode[] EMPTY_NEXTS = new TrieNode[0];
+
+    private final TrieNode root;
+
+    /**
+     *
+     * @param constantChildren 常量映射的子结点，它们的映射定义互不相同
+     */
+    public ConstantTrie(List<MappingNode> constantChildren) {
+        Builder builder = new Builder();
+        for (MappingNode child : constantChildren) {
+            builder.add(child.getMapping().getDefinition(), child);
+        }
+        this.root = builder.build(builder.root, null, 0);
+    }
+
+    /**
+     * 返回从<code>offset</code>开始，能够匹配给定地址的最长常量子结点，并且该结点要被
+     * {@link MappingNode#acceptsConstantEnd(String, int)} 所接受；
+     *
+     * @param path
+     * @param offset
+     * @return 没有可以匹配的子结点时返回null
+     */
+    public MappingNode match(String path, int offset) {
+        TrieNode node = root;
+        final int length = path.length();
+        for (int i = offset; i < length; i++) {
+            TrieNode next = node.next(path.charAt(i));
+            if (next == null) {
+                break;
+            }
+            node = next;
+        }
+        TrieNode candidate = node.terminal != null ? node : node.shorter;
+        while (candidate != null) {
+            if (candidate.terminal.acceptsConstantEnd(path, offset + candidate.depth)) {
+                return candidate.terminal;
+            }
+            candidate = candidate.shorter;
+        }
+        return null;
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 字典树的一个结点，构造完成后不再改变
+     */
+    private static final class TrieNode {
+
+        /** 已排序的子结点字符 */
+        final char[] labels;
+
+        /** 和labels一一对应的子结点 */
+        final TrieNode[] nexts;
+
+        /** 以本结点结束的常量子结点，可能为null */
+        final MappingNode terminal;
+
+        /** 本结点之上(不包含本结点)最近一个含有terminal的结点，可能为null */
+        final TrieNode shorter;
+
+        /** 本结点代表的字符串长度 */
+        final int depth;
+
+        TrieNode(char[] labels, TrieNode[] nexts, MappingNode terminal, TrieNode shorter, int depth) {
+            this.labels = labels;
+            this.nexts = nexts;
+            this.terminal = terminal;
+            this.shorter = shorter;
+            this.depth = depth;
+        }
+
+        TrieNode next(char c) {
+            final char[] labels = this.labels;
+            if (labels.length <= 4) {
+                for (int i = 0; i < labels.length; i++) {
+                    if (labels[i] == c) {
+                        return nexts[i];
+                    }
+                }
+                return null;
+            }
+            int index = Arrays.binarySearch(labels, c);
+            return index < 0 ? null : nexts[index];
+        }
+    }
+
+    /**
+     * 构造期间使用的可变结点
+     */
+    private static final class Builder {
+
+        final MutableNode root = new MutableNode();
+
+        void add(String definition, MappingNode child) {
+            MutableNode node = root;
+            for (int i = 0; i < definition.length(); i++) {
+                node = node.child(definition.charAt(i));
+            }
+            if (node.terminal != null) {
+                throw new IllegalArgumentException("duplicated constant mapping '" + definition
+                        + "'");
+            }
+            node.terminal = child;
+        }
+
+        TrieNode build(MutableNode node, TrieNode shorter, int depth) {
+            // 子结点的shorter指向包含本结点在内、最近的一个含有terminal的结点
+            final TrieNode[] nexts = node.size == 0 ? EMPTY_NEXTS : new TrieNode[node.size];
+            final char[] labels = node.size == 0 ? EMPTY_LABELS : Arrays.copyOf(node.labels,
+                    node.size);
+            TrieNode self = new TrieNode(labels, nexts, node.terminal, shorter, depth);
+            TrieNode shorterForChildren = node.terminal != null ? self : shorter;
+            for (int i = 0; i < node.size; i++) {
+                nexts[i] = build(node.children[i], shorterForChildren, depth + 1);
+            }
+            return self;
+        }
+    }
+
+    private static final class MutableNode {
+
+        char[] labels = new char[2];
+
+        MutableNode[] children = new MutableNode[2];
+
+        int size;
+
+        MappingNode terminal;
+
+        MutableNode child(char c) {
+            int index = Arrays.binarySearch(labels, 0, size, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (size == labels.length) {
+                labels = Arrays.copyOf(labels, size << 1);
+                children = Arrays.copyOf(children, size << 1);
+            }
+            System.arraycopy(labels, index, labels, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            MutableNode child = new MutableNode();
+            labels[index] = c;
+            children[index] = child;
+            size++;
+            return child;
+        }
+    }
+}
@@ -71,6 +71,13 @@ public interface EngineGroup {
      */
     public List<ReqMethod> getAllowedMethods();
 
+    /**
+     * 返回405时使用的Allow头，如"GET, POST"
+     * 
+     * @return
+     */
+    public String getAllowHeader();
+
     /**
      * 销毁旗下的engines
      */
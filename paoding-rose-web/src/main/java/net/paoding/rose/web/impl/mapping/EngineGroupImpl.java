@@ -56,6 +56,8 @@ public class EngineGroupImpl implements EngineGroup {
 
     private transient List<ReqMethod> allowedMethodsCache;
 
+    private transient String allowHeaderCache;
+
     //-----------------------------------
 
     /**
@@ -135,6 +137,21 @@ public class EngineGroupImpl implements EngineGroup {
         return allowedMethodsCache;
     }
 
+    public String getAllowHeader() {
+        if (allowHeaderCache == null) {
+            StringBuilder allow = new StringBuilder();
+            final String gap = ", ";
+            for (ReqMethod method : getAllowedMethods()) {
+                allow.append(method.toString()).append(gap);
+            }
+            if (allow.length() > 0) {
+                allow.setLength(allow.length() - gap.length());
+            }
+            allowHeaderCache = allow.toString();
+        }
+        return allowHeaderCache;
+    }
+
     private boolean destroyed = false;
 
     /**
@@ -177,6 +194,7 @@ public class EngineGroupImpl implements EngineGroup {
 
     private void clearCache() {
         allowedMethodsCache = null;
+        allowHeaderCache = null;
         toStringCache = null;
     }
 
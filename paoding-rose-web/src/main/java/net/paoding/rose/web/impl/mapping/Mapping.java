@@ -73,6 +73,17 @@ public interface Mapping extends Comparable<Mapping> {
      */
     public MatchResult match(CharSequence path);
 
+    /**
+     * 从<code>path</code>的<code>offset</code>位置开始判断是否能够和本 {@link Mapping}对象相匹配。
+     * <p>
+     * 和 {@link #match(CharSequence)} 不同，该方法不创建子串，也不创建匹配结果对象，供编译后的匹配树使用。
+     * 
+     * @param path
+     * @param offset
+     * @return 匹配成功时返回匹配结束的位置(不包含)；不能匹配时返回-1
+     */
+    public int match(String path, int offset);
+
     /**
      * 返回该映射的地址定义以及匹配规则(比如正则表达式)
      * 
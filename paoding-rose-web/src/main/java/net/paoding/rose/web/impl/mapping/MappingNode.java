@@ -16,6 +16,8 @@
 package net.paoding.rose.web.impl.mapping;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import net.paoding.rose.web.RequestPath;
 
@@ -32,6 +34,8 @@ public class MappingNode implements Comparable<MappingNode> {
 
     protected static final Log logger = LogFactory.getLog(MappingNode.class);
 
+    private static final String[] NO_PARAMETERS = new String[0];
+
     /** 所使用的映射 */
     private final Mapping mapping;
 
@@ -44,6 +48,21 @@ public class MappingNode implements Comparable<MappingNode> {
     /** 子节点是变量参数映射的数目 */
     private int ammountOfRegexChildren = -1;
 
+    /** 常量子结点组成的字典树，没有常量子结点时为null */
+    private ConstantTrie constantChildren;
+
+    /** 正则子结点合并成的匹配器，没有正则子结点时为null */
+    private RegexAlternation regexChildren;
+
+    /** 从根结点到本结点(包含)路径上出现的参数名，按出现顺序排列、不重复，下标即参数的槽位 */
+    private String[] parameterNames = NO_PARAMETERS;
+
+    /** 本结点参数在 {@link #parameterNames} 中的槽位；常量结点或参数名已被上层结点使用时为-1 */
+    private int parameterIndex = -1;
+
+    /** 是否已经调用过 {@link #compile()} */
+    private boolean compiled;
+
     /** 叶子引擎: 只有含有叶子引擎的结点才能处理对应地址的请求 */
     private final EngineGroup leafEngines = new EngineGroupImpl();
 
@@ -119,6 +138,24 @@ public class MappingNode implements Comparable<MappingNode> {
         return null;
     }
 
+    /**
+     * 返回从根结点到本结点的路径上所有的参数名，数组下标即参数的槽位；返回的数组不能被修改
+     * 
+     * @return
+     */
+    public String[] getParameterNames() {
+        return parameterNames;
+    }
+
+    /**
+     * 返回本结点参数的槽位，常量结点以及参数名已被上层结点使用的结点返回-1
+     * 
+     * @return
+     */
+    public int getParameterIndex() {
+        return parameterIndex;
+    }
+
     public EngineGroup getLeafEngines() {
         return leafEngines;
     }
@@ -127,92 +164,135 @@ public class MappingNode implements Comparable<MappingNode> {
         return middleEngines;
     }
 
-    public ArrayList<MatchResult> match(RequestPath requestPath) {
+    /**
+     * 把以本结点为根的子树编译为匹配时使用的结构：常量子结点组织为 {@link ConstantTrie}
+     * ，正则子结点按照原有顺序合并为一个 {@link RegexAlternation}，只在拥有正则子结点的结点上才会尝试正则匹配。
+     * <p>
+     * 同时为每个结点计算好参数槽位，参见 {@link #getParameterNames()}。
+     * <p>
+     * 编译应在树构造完成之后、开始处理请求之前进行，编译之后不应再改变树的结构。
+     */
+    public void compile() {
+        compile(NO_PARAMETERS);
+    }
 
-        // 用来储存并返回的匹配结果集合
-        ArrayList<MatchResult> matchResults = new ArrayList<MatchResult>(16);
+    private void compile(String[] parentParameterNames) {
+        String parameterName = mapping.getParameterName();
+        this.parameterNames = parentParameterNames;
+        this.parameterIndex = -1;
+        if (parameterName != null && !Arrays.asList(parentParameterNames).contains(parameterName)) {
+            // 同名参数以靠近根的结点为准，和原来逐个放入Map的结果一致
+            this.parameterIndex = parentParameterNames.length;
+            this.parameterNames = Arrays.copyOf(parentParameterNames,
+                    parentParameterNames.length + 1);
+            this.parameterNames[parameterIndex] = parameterName;
+        }
+        List<MappingNode> constantChildren = new ArrayList<MappingNode>();
+        List<MappingNode> regexChildren = new ArrayList<MappingNode>();
+        MappingNode child = this.leftMostChild;
+        while (child != null) {
+            if (child.getMapping().getParameterName() == null) {
+                constantChildren.add(child);
+            } else {
+                regexChildren.add(child);
+            }
+            child.compile(parameterNames);
+            child = child.sibling;
+        }
+        this.ammountOfRegexChildren = regexChildren.size();
+        this.constantChildren = constantChildren.isEmpty() ? null : new ConstantTrie(
+                constantChildren);
+        this.regexChildren = regexChildren.isEmpty() ? null : new RegexAlternation(
+                regexChildren.toArray(new MappingNode[regexChildren.size()]));
+        this.compiled = true;
+    }
+
+    /**
+     * mapping是 /abc/efg，requestUri是 /abc123的不应该进入/abc分支：
+     * 常量映射在<code>end</code>处结束时，如果本结点没有正则子结点，其后只能是'/'或者地址的结束
+     * 
+     * @param path
+     * @param end
+     * @return
+     */
+    final boolean acceptsConstantEnd(String path, int end) {
+        return ammountOfRegexChildren != 0 || end >= path.length() || path.charAt(end) == '/';
+    }
+
+    public ArrayList<MatchResult> match(RequestPath requestPath) {
+        if (!compiled) {
+            throw new IllegalStateException("the mapping tree hasn't been compiled: "
+                    + getMappingPath());
+        }
 
         final boolean debugEnabled = logger.isDebugEnabled();
 
-        // 当前判断结点
-        MappingNode curNode = this;
+        // 给当前判断结点判断的path，匹配过程中只移动offset，不截取子串
+        final String path = requestPath.getRosePath();
+        final int length = path.length();
 
-        // 给当前判断结点判断的path
-        String remaining = requestPath.getRosePath();
+        // 用来储存并返回的匹配结果集合，第一次匹配成功时才创建
+        ArrayList<MatchResult> matchResults = null;
 
-        // 最后一次匹配结果
-        MatchResult last = null;
+        // 当前结点及其匹配区间[offset, end)
+        MappingNode curNode = this;
+        int offset = 0;
+        int end = mapping.match(path, 0);
+        if (end < 0 || (getMapping().getParameterName() == null && !acceptsConstantEnd(path, end))) {
+            if (debugEnabled) {
+                logger.debug("['" + path + "'] not matched");
+            }
+            return null;
+        }
 
         // 开始匹配，直至成功或失败
         while (true) {
-            // 当前结点的匹配结果result: 如果能够匹配path成功，一定会返回一个非空的result
-            // 一旦result非空，这个请求只能在这个结点中处理了，不可能再由其它结点处理，
+            // 当前结点一旦匹配成功，这个请求只能在这个结点中处理了，不可能再由其它结点处理，
             // 即，如果因为某些原因本结点无法处理此请求，可以直接得出结论：这个请求不能被处理了
-            last = curNode.getMapping().match(remaining);
-            if (last != null && /*只对常量匹配的作判断*/last.getParameterName() == null) {
-                // mapping是 /abc/efg，requestUri是 /abc123的不应该进入/abc分支，reset last为null
-                if (curNode.ammountOfRegexChildren < 0) {
-                    // 这个if块里面的代码不用考虑同步，因此在并发下可能有若干、少数次的重复计算，不过对结果、性能没影响
-                    curNode.ammountOfRegexChildren = countRegexChildren(curNode);
-                }
-                if (curNode.ammountOfRegexChildren == 0) {
-                    if (remaining.length() > last.getValue().length()
-                            && remaining.charAt(last.getValue().length()) != '/') {
-                        last = null;
-                    }
-                }
-            }
-
-            // 当前结点打不赢 
-            if (last == null) {
-                // 兄弟，你上!
-                if (curNode.sibling == null) {
-                    if (debugEnabled) {
-                        logger.debug("['" + requestPath.getRosePath() + "'] not matched");
-                    }
-                    return null;
-                }
-                curNode = curNode.sibling;
-                continue;
+            MatchResultImpl last = new MatchResultImpl(curNode, path, offset, end);
+            last.setParameter(curNode.getMapping().getParameterName());
+            if (matchResults == null) {
+                matchResults = new ArrayList<MatchResult>(8);
             }
+            matchResults.add(last);
 
             if (debugEnabled) {
-                logger.debug("['" + requestPath.getRosePath() + "'] matched(" //
-                        + (matchResults.size() + 1) + "): '" + last + "'");
+                logger.debug("['" + path + "'] matched(" + matchResults.size() + "): '" + last
+                        + "'");
             }
 
-            // add to results for return
-            matchResults.add(last);
-            remaining = remaining.substring(last.getValue().length());
-
-            //
-            if (remaining.length() == 0) {
+            offset = end;
+            if (offset == length) {
                 if (debugEnabled) {
-                    logger.debug("['" + requestPath.getRosePath() + "'] matched over.");
+                    logger.debug("['" + path + "'] matched over.");
                 }
                 return matchResults;
             }
-            //
-            if (curNode.leftMostChild == null) {
+
+            // 常量子结点: 字典树中最长的、可被接受的那一个
+            MappingNode next = null;
+            if (curNode.constantChildren != null) {
+                next = curNode.constantChildren.match(path, offset);
+                if (next != null) {
+                    end = offset + next.getMappingPath().length();
+                }
+            }
+            // 正则子结点: 一次匹配决定第一个可以匹配的子结点以及参数值的结束位置
+            if (next == null && curNode.regexChildren != null) {
+                long result = curNode.regexChildren.match(path, offset);
+                if (result >= 0) {
+                    next = curNode.regexChildren.getChild(result);
+                    end = RegexAlternation.endOf(result);
+                }
+            }
+            if (next == null) {
                 if (debugEnabled) {
-                    logger.debug("['" + requestPath.getRosePath() + "'] not matched");
+                    logger.debug("['" + path + "'] not matched");
                 }
                 return null;
             }
-            curNode = curNode.leftMostChild;
-        }
-    }
-
-    private int countRegexChildren(MappingNode curNode) {
-        int ammountOfRegexChildren = 0;
-        MappingNode child = curNode.leftMostChild;
-        while (child != null) {
-            if (child.getMapping().getParameterName() != null) {
-                ammountOfRegexChildren++;
-            }
-            child = child.sibling;
+            curNode = next;
         }
-        return ammountOfRegexChildren;
     }
 
     @Override
@@ -36,6 +36,20 @@ public interface MatchResult {
      */
     public String getValue();
 
+    /**
+     * 返回匹配结果在被匹配地址中的开始位置
+     * 
+     * @return
+     */
+    public int getStart();
+
+    /**
+     * 返回匹配结果在被匹配地址中的结束位置(不包含)
+     * 
+     * @return
+     */
+    public int getEnd();
+
     /**
      * 返回从结果字符串中得到的资源参数名(如果该资源使用了使用了参数化的映射地址)
      * 
@@ -22,9 +22,16 @@ package net.paoding.rose.web.impl.mapping;
  */
 public class MatchResultImpl implements MatchResult {
 
-    /** 结果字符串 */
+    /** 结果字符串，由path的[start, end)给出时，在第一次使用时才创建 */
     private String value;
 
+    /** 被匹配的地址 */
+    private String path;
+
+    private int start;
+
+    private int end;
+
     private MappingNode mappingNode;
 
     /** 从结果字符串中得到的资源参数名(如果该资源使用了使用了参数化的映射地址) */
@@ -38,6 +45,22 @@ public class MatchResultImpl implements MatchResult {
     public MatchResultImpl(MappingNode mappingNode, String value) {
         this.mappingNode = mappingNode;
         this.value = value;
+        this.end = value.length();
+    }
+
+    /**
+     * 创建新的匹配结果对象，结果字符串是path的[start, end)部分
+     * 
+     * @param mappingNode
+     * @param path 被匹配的地址
+     * @param start
+     * @param end
+     */
+    public MatchResultImpl(MappingNode mappingNode, String path, int start, int end) {
+        this.mappingNode = mappingNode;
+        this.path = path;
+        this.start = start;
+        this.end = end;
     }
 
     @Override
@@ -47,9 +70,22 @@ public class MatchResultImpl implements MatchResult {
 
     @Override
     public String getValue() {
+        if (value == null) {
+            value = path.substring(start, end);
+        }
         return value;
     }
 
+    @Override
+    public int getStart() {
+        return start;
+    }
+
+    @Override
+    public int getEnd() {
+        return end;
+    }
+
     public void setParameter(String name) {
         this.parameterName = name;
     }
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.mapping;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * {@link RegexAlternation} 把一个结点的所有正则子结点合并为一个匹配器，一次匹配就能决定由哪个子结点处理、
+ * 参数值在哪里结束，而不需要对每个子结点分别做一次正则匹配。
+ * <p>
+ *
+ * 内置的简写 (n/number、w/word、id 以及默认的[^/]+) 都是单一字符类的重复，由手写的扫描代码处理，
+ * 对地址字符只扫描一遍；其他正则子结点合并为一个按子结点顺序排列的分支表达式 (r1)|(r2)|...，
+ * 正则的分支按顺序尝试，所以结果和逐个子结点尝试相同。含有反向引用或内嵌标志的正则无法安全合并，
+ * 此时仍逐个使用各自的 {@link RegexMapping} 匹配。
+ */
+final class RegexAlternation {
+
+    // 内置简写对应的扫描器，同时作为位掩码使用
+    private static final int SCAN_NONE = 0;
+
+    private static final int SCAN_DIGIT = 1; // [0-9]+
+
+    private static final int SCAN_WORD = 2; // \w+
+
+    private static final int SCAN_ID = 4; // [0-9a-zA-Z_-]+
+
+    private static final int SCAN_NOT_SLASH = 8; // [^/]+
+
+    /** 按匹配顺序排列的正则子结点 */
+    private final MappingNode[] children;
+
+    /** 和children一一对应，子结点使用的扫描器，不是内置简写时为 {@link #SCAN_NONE} */
+    private final int[] scanners;
+
+    /** 所有子结点使用到的扫描器 */
+    private final int scannerMask;
+
+    /** 和children一一对应，子结点在alternation中的分组号，使用扫描器的子结点为-1 */
+    private final int[] groups;
+
+    /** 非内置简写的子结点合并成的分支表达式，没有这样的子结点或无法合并时为null */
+    private final Pattern alternation;
+
+    public RegexAlternation(MappingNode[] children) {
+        this.children = children;
+        this.scanners = new int[children.length];
+        this.groups = new int[children.length];
+        int scannerMask = 0;
+        boolean combinable = true;
+        StringBuilder sb = new StringBuilder();
+        int group = 1;
+        for (int i = 0; i < children.length; i++) {
+            String regex = ((RegexMapping) children[i].getMapping()).getRegex();
+            scanners[i] = scannerOf(regex);
+            scannerMask |= scanners[i];
+            if (scanners[i] != SCAN_NONE) {
+                groups[i] = -1;
+                continue;
+            }
+            combinable = combinable && isCombinable(regex);
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append('(').append(regex).append(')');
+            groups[i] = group;
+            group += 1 + Pattern.compile(regex).matcher("").groupCount();
+        }
+        this.scannerMask = scannerMask;
+        Pattern alternation = null;
+        if (combinable && sb.length() > 0) {
+            try {
+                alternation = Pattern.compile(sb.toString());
+            } catch (PatternSyntaxException e) {
+                alternation = null;
+            }
+        }
+        this.alternation = alternation;
+        if (alternation == null) {
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * 从<code>offset</code>开始匹配给定的地址，返回第一个能够匹配的子结点的下标及匹配结束的位置
+     * (已去掉结尾的'/')，使用 {@link #indexOf(long)}、{@link #endOf(long)} 取出
+     *
+     * @param path
+     * @param offset
+     * @return 没有可以匹配的子结点时返回-1
+     */
+    public long match(String path, int offset) {
+        final int length = path.length();
+
+        // 一遍扫描得出每个内置简写能够匹配到的位置
+        int digitEnd = offset, wordEnd = offset, idEnd = offset, notSlashEnd = offset;
+        int alive = scannerMask;
+        int i = offset;
+        for (; alive != 0 && i < length; i++) {
+            char c = path.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            boolean word = digit || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+            if ((alive & SCAN_DIGIT) != 0 && !digit) {
+                digitEnd = i;
+                alive &= ~SCAN_DIGIT;
+            }
+            if ((alive & SCAN_WORD) != 0 && !word) {
+                wordEnd = i;
+                alive &= ~SCAN_WORD;
+            }
+            if ((alive & SCAN_ID) != 0 && !word && c != '-') {
+                idEnd = i;
+                alive &= ~SCAN_ID;
+            }
+            if ((alive & SCAN_NOT_SLASH) != 0 && c == '/') {
+                notSlashEnd = i;
+                alive &= ~SCAN_NOT_SLASH;
+            }
+        }
+        if ((alive & SCAN_DIGIT) != 0) {
+            digitEnd = i;
+        }
+        if ((alive & SCAN_WORD) != 0) {
+            wordEnd = i;
+        }
+        if ((alive & SCAN_ID) != 0) {
+            idEnd = i;
+        }
+        if ((alive & SCAN_NOT_SLASH) != 0) {
+            notSlashEnd = i;
+        }
+
+        // 分支表达式只在需要时匹配一次
+        Matcher matcher = null;
+        boolean matched = false;
+        for (int index = 0; index < children.length; index++) {
+            int end;
+            switch (scanners[index]) {
+                case SCAN_DIGIT:
+                    end = digitEnd;
+                    break;
+                case SCAN_WORD:
+                    end = wordEnd;
+                    break;
+                case SCAN_ID:
+                    end = idEnd;
+                    break;
+                case SCAN_NOT_SLASH:
+                    end = notSlashEnd;
+                    break;
+                default:
+                    if (alternation == null) {
+                        end = children[index].getMapping().match(path, offset);
+                        if (end >= 0) {
+                            return result(index, end);
+                        }
+                        continue;
+                    }
+                    if (matcher == null) {
+                        matcher = alternation.matcher(path);
+                        matcher.region(offset, length);
+                        matched = matcher.lookingAt();
+                    }
+                    if (!matched) {
+                        continue;
+                    }
+                    end = matcher.end(groups[index]);
+                    if (end < 0) {
+                        continue; // 是后面的分支匹配上了
+                    }
+                    while (end > offset && path.charAt(end - 1) == '/') {
+                        end--;
+                    }
+                    return result(index, end);
+            }
+            if (end > offset) {
+                return result(index, end);
+            }
+        }
+        return -1;
+    }
+
+    public MappingNode getChild(long result) {
+        return children[indexOf(result)];
+    }
+
+    public static int indexOf(long result) {
+        return (int) (result >>> 32);
+    }
+
+    public static int endOf(long result) {
+        return (int) result;
+    }
+
+    private static long result(int index, int end) {
+        return ((long) index << 32) | end;
+    }
+
+    private static int scannerOf(String regex) {
+        if ("[0-9]+".equals(regex)) {
+            return SCAN_DIGIT;
+        }
+        if ("\\w+".equals(regex)) {
+            return SCAN_WORD;
+        }
+        if ("[0-9a-zA-Z_-]+".equals(regex)) {
+            return SCAN_ID;
+        }
+        if ("[^/]+".equals(regex)) {
+            return SCAN_NOT_SLASH;
+        }
+        return SCAN_NONE;
+    }
+
+    /**
+     * 反向引用的分组号、内嵌标志的作用范围在合并之后都可能改变，这样的正则不参与合并
+     */
+    private static boolean isCombinable(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if ((next >= '0' && next <= '9') || next == 'k') {
+                    return false;
+                }
+                i++; // 跳过被转义的字符
+            } else if (c == '(' && next == '?') {
+                if (i + 2 >= regex.length() || ":=!<>".indexOf(regex.charAt(i + 2)) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "RegexAlternation[children=" + children.length + ", alternation=" + alternation
+                + "]";
+    }
+}
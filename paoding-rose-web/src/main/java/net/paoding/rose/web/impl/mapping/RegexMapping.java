@@ -82,6 +82,15 @@ public class RegexMapping implements Mapping {
         return definition;
     }
 
+    /**
+     * 返回实际使用的正则表达式，内置的简写(如n、w、id)已被展开
+     * 
+     * @return
+     */
+    public String getRegex() {
+        return regex;
+    }
+
     @Override
     public MatchResult match(CharSequence path) {
         Matcher matcher = pattern.matcher(path);
@@ -99,6 +108,20 @@ public class RegexMapping implements Mapping {
 
     }
 
+    @Override
+    public int match(String path, int offset) {
+        Matcher matcher = pattern.matcher(path);
+        matcher.region(offset, path.length());
+        if (!matcher.find()) {
+            return -1;
+        }
+        int end = matcher.end();
+        while (end > offset && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end;
+    }
+
     @Override
     public int compareTo(Mapping o) {
         if (o instanceof ConstantMapping) {
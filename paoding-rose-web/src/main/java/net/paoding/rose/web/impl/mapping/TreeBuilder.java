@@ -22,7 +22,9 @@ import java.util.Map;
 import java.util.Set;
 
 import net.paoding.rose.util.PrinteHelper;
+import net.paoding.rose.web.InterceptorDelegate;
 import net.paoding.rose.web.annotation.ReqMethod;
+import net.paoding.rose.web.impl.metrics.RoseMetrics;
 import net.paoding.rose.web.impl.module.ControllerRef;
 import net.paoding.rose.web.impl.module.MethodRef;
 import net.paoding.rose.web.impl.module.Module;
@@ -44,6 +46,28 @@ public class TreeBuilder {
 
     protected static final Log logger = LogFactory.getLog(TreeBuilder.class);
 
+    private boolean interceptorPipeline;
+
+    private RoseMetrics metrics;
+
+    /**
+     * 设置为true时，创建的 {@link ActionEngine} 以展开的方式执行拦截器
+     * 
+     * @param interceptorPipeline
+     */
+    public void setInterceptorPipeline(boolean interceptorPipeline) {
+        this.interceptorPipeline = interceptorPipeline;
+    }
+
+    /**
+     * 设置后，为创建的每个 {@link ActionEngine} 注册运行时统计
+     * 
+     * @param metrics
+     */
+    public void setMetrics(RoseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /*
      * 构造一个树，树的结点是地址-资源映射，每个结点都能回答是否匹配一个字符串，每个匹配的节点都知道如何执行对该资源的操作.
      * 构造树的过程：
@@ -53,6 +77,8 @@ public class TreeBuilder {
     public void create(MappingNode tree, List<Module> modules) {
         addRoot(tree, modules);
         check(tree, tree, "");
+        // 构造完成后编译为匹配时使用的不可变结构
+        tree.compile();
     }
 
     private void addRoot(MappingNode rootNode, List<Module> modules) {
@@ -128,8 +154,17 @@ public class TreeBuilder {
             return;
         }
 
-        Engine actionEngine = new ActionEngine(module, controller.getControllerClass(),//
-                controller.getControllerObject(), action.getMethod());
+        ActionEngine actionEngine = new ActionEngine(module, controller.getControllerClass(),//
+                controller.getControllerObject(), action.getMethod(), interceptorPipeline);
+        if (metrics != null) {
+            InterceptorDelegate[] interceptors = actionEngine.getRegisteredInterceptors();
+            String[] interceptorNames = new String[interceptors.length];
+            for (int i = 0; i < interceptors.length; i++) {
+                interceptorNames[i] = interceptors[i].getName();
+            }
+            actionEngine.setMetrics(metrics.register(controller.getControllerClass().getName()
+                    + "#" + action.getMethod().getName(), interceptorNames));
+        }
 
         for (String mappingPath : mappingPaths.keySet()) {
             List<Mapping> mappings = MappingFactory.parse(mappingPath);
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.mapping;
+
+import java.util.List;
+
+/**
+ * {@link UriParameters} 以槽位保存一次匹配得到的地址参数：参数名及其槽位在编译匹配树时已经确定(参见
+ * {@link MappingNode#getParameterNames()})，匹配时只记录每个参数值在地址中的起止位置，
+ * 参数值字符串在第一次被读取时才创建。
+ * <p>
+ *
+ * 按参数名查找时顺序比较参数名而不做哈希；一个地址上的参数通常只有几个，这比使用Map更省。
+ */
+public final class UriParameters {
+
+    private final String path;
+
+    private final String[] names;
+
+    /** 第i个参数的起止位置为bounds[2i]、bounds[2i+1]，未匹配的参数起始位置为-1 */
+    private final int[] bounds;
+
+    /** 已经创建的参数值，第一次读取时才创建 */
+    private String[] values;
+
+    /**
+     *
+     * @param names 参数名，通常是叶子结点的 {@link MappingNode#getParameterNames()}
+     * @param path 被匹配的地址
+     */
+    public UriParameters(String[] names, String path) {
+        this.names = names;
+        this.path = path;
+        this.bounds = new int[names.length << 1];
+        for (int i = 0; i < bounds.length; i += 2) {
+            bounds[i] = -1;
+        }
+    }
+
+    /**
+     * 从匹配结果中得到地址参数，匹配结果中没有参数时返回null
+     *
+     * @param matchResults
+     * @param path 被匹配的地址
+     * @return
+     */
+    public static UriParameters of(List<MatchResult> matchResults, String path) {
+        if (matchResults.isEmpty()) {
+            return null;
+        }
+        MappingNode leaf = matchResults.get(matchResults.size() - 1).getMappingNode();
+        String[] names = leaf.getParameterNames();
+        if (names.length == 0) {
+            return null;
+        }
+        UriParameters parameters = new UriParameters(names, path);
+        for (int i = 0; i < matchResults.size(); i++) {
+            MatchResult matchResult = matchResults.get(i);
+            int slot = matchResult.getMappingNode().getParameterIndex();
+            if (slot >= 0) {
+                parameters.set(slot, matchResult.getStart(), matchResult.getEnd());
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * 设置某个槽位的参数值在地址中的位置
+     *
+     * @param slot
+     * @param start
+     * @param end
+     */
+    public void set(int slot, int start, int end) {
+        bounds[slot << 1] = start;
+        bounds[(slot << 1) + 1] = end;
+        if (values != null) {
+            values[slot] = null;
+        }
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * 返回参数名的槽位，没有这个参数时返回-1
+     *
+     * @param name
+     * @return
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == name || names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回给定槽位的参数值，该参数没有被匹配时返回null
+     *
+     * @param slot
+     * @return
+     */
+    public String getValue(int slot) {
+        int start = bounds[slot << 1];
+        if (start < 0) {
+            return null;
+        }
+        if (values == null) {
+            values = new String[names.length];
+        }
+        String value = values[slot];
+        if (value == null) {
+            value = path.substring(start, bounds[(slot << 1) + 1]);
+            values[slot] = value;
+        }
+        return value;
+    }
+
+    public String get(String name) {
+        int slot = indexOf(name);
+        return slot < 0 ? null : getValue(slot);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append('=').append(getValue(i));
+        }
+        return sb.append('}').toString();
+    }
+}
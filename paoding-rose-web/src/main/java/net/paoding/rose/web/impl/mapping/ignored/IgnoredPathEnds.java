@@ -10,6 +10,10 @@ public class IgnoredPathEnds implements IgnoredPath {
         this.path = path;
     }
 
+    public String getPath() {
+        return path;
+    }
+
     @Override
     public boolean hit(RequestPath requestPath) {
         return requestPath.getRosePath().endsWith(path);
@@ -11,6 +11,10 @@ public class IgnoredPathEquals implements IgnoredPath {
         this.path = path;
     }
 
+    public String getPath() {
+        return path;
+    }
+
     @Override
     public boolean hit(RequestPath requestPath) {
         return requestPath.getRosePath().equals(path);
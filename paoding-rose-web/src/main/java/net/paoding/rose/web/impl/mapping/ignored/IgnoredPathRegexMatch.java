@@ -12,6 +12,10 @@ public class IgnoredPathRegexMatch implements IgnoredPath {
         this.path = Pattern.compile(path);
     }
 
+    public Pattern getPath() {
+        return path;
+    }
+
     @Override
     public boolean hit(RequestPath requestPath) {
         return path.matcher(requestPath.getRosePath()).matches();
@@ -0,0 +1,157 @@
+package net.paoding.rose.web.impl.mapping.ignored;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import net.paoding.rose.web.RequestPath;
+
+/**
+ * 把多个 {@link IgnoredPath} 合并为一个：相等判断放在哈希集合中，前缀放在字典树中，后缀放在反向的字典树中，
+ * 所有正则合并为一个分支表达式。对一个地址的判断不再随着配置的个数增长。
+ * <p>
+ *
+ * 不认识的 {@link IgnoredPath} 实现以及含有反向引用的正则仍然逐个判断。
+ */
+public class IgnoredPathSet implements IgnoredPath {
+
+    private final Set<String> equals = new HashSet<String>();
+
+    private final CharTrie starts = new CharTrie();
+
+    private final CharTrie ends = new CharTrie();
+
+    private final Pattern regex;
+
+    private final IgnoredPath[] others;
+
+    public IgnoredPathSet(IgnoredPath[] ignoredPaths) {
+        StringBuilder regex = new StringBuilder();
+        List<IgnoredPath> others = new ArrayList<IgnoredPath>();
+        for (IgnoredPath ignoredPath : ignoredPaths) {
+            if (ignoredPath instanceof IgnoredPathEquals) {
+                equals.add(((IgnoredPathEquals) ignoredPath).getPath());
+            } else if (ignoredPath instanceof IgnoredPathStarts) {
+                starts.add(((IgnoredPathStarts) ignoredPath).getPath(), false);
+            } else if (ignoredPath instanceof IgnoredPathEnds) {
+                ends.add(((IgnoredPathEnds) ignoredPath).getPath(), true);
+            } else if (ignoredPath instanceof IgnoredPathRegexMatch
+                    && isCombinable(((IgnoredPathRegexMatch) ignoredPath).getPath().pattern())) {
+                Pattern pattern = ((IgnoredPathRegexMatch) ignoredPath).getPath();
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append("(?:").append(pattern.pattern()).append(')');
+            } else {
+                others.add(ignoredPath);
+            }
+        }
+        this.regex = regex.length() == 0 ? null : Pattern.compile(regex.toString());
+        this.others = others.toArray(new IgnoredPath[others.size()]);
+    }
+
+    @Override
+    public boolean hit(RequestPath requestPath) {
+        final String path = requestPath.getRosePath();
+        if (equals.contains(path) || starts.hitPrefix(path) || ends.hitSuffix(path)) {
+            return true;
+        }
+        if (regex != null && regex.matcher(path).matches()) {
+            return true;
+        }
+        for (IgnoredPath other : others) {
+            if (other.hit(requestPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 合并之后分组号会改变，使用反向引用的正则不参与合并
+     */
+    private static boolean isCombinable(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            if (regex.charAt(i) == '\\') {
+                char next = regex.charAt(i + 1);
+                if ((next >= '0' && next <= '9') || next == 'k') {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return true;
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 简单的字符字典树，只在构造期间修改
+     */
+    private static final class CharTrie {
+
+        private char[] labels = new char[0];
+
+        private CharTrie[] children = new CharTrie[0];
+
+        private boolean terminal;
+
+        void add(String word, boolean reversed) {
+            CharTrie node = this;
+            final int length = word.length();
+            for (int i = 0; i < length; i++) {
+                node = node.child(word.charAt(reversed ? length - 1 - i : i));
+            }
+            node.terminal = true;
+        }
+
+        private CharTrie child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] labels = new char[this.labels.length + 1];
+            CharTrie[] children = new CharTrie[labels.length];
+            System.arraycopy(this.labels, 0, labels, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.labels, index, labels, index + 1, this.labels.length - index);
+            System.arraycopy(this.children, index, children, index + 1, this.labels.length - index);
+            labels[index] = c;
+            children[index] = new CharTrie();
+            this.labels = labels;
+            this.children = children;
+            return children[index];
+        }
+
+        private CharTrie next(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index < 0 ? null : children[index];
+        }
+
+        /** 是否有某个前缀是给定地址的开头 */
+        boolean hitPrefix(String path) {
+            CharTrie node = this;
+            for (int i = 0; !node.terminal; i++) {
+                if (i == path.length() || (node = node.next(path.charAt(i))) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** 是否有某个后缀是给定地址的结尾 */
+        boolean hitSuffix(String path) {
+            CharTrie node = this;
+            for (int i = path.length() - 1; !node.terminal; i--) {
+                if (i < 0 || (node = node.next(path.charAt(i))) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
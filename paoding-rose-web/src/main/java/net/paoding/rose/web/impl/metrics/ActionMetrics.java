@@ -0,0 +1,159 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.metrics;
+
+/**
+ * 一个action的运行时统计：请求数、出错数以及请求各个阶段的耗时。
+ * <p>
+ * 拦截器的before/after按拦截器在action中的顺序记录；以round方式执行的拦截器，调用chain.doNext()之前的时间计入before，
+ * 之后的计入after，没有调用doNext()的全部计入before。
+ */
+public final class ActionMetrics {
+
+    private final String name;
+
+    private final String[] interceptorNames;
+
+    private final StripedCounter requests = new StripedCounter();
+
+    private final StripedCounter errors = new StripedCounter();
+
+    /** 地址匹配(包括查找匹配缓存)及选择action的耗时 */
+    private final LatencyHistogram match = new LatencyHistogram();
+
+    /** action方法参数的解析 */
+    private final LatencyHistogram resolve = new LatencyHistogram();
+
+    /** action方法本身 */
+    private final LatencyHistogram action = new LatencyHistogram();
+
+    /** instruction的渲染 */
+    private final LatencyHistogram render = new LatencyHistogram();
+
+    /** 整个请求在Rose中的耗时 */
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LatencyHistogram[] befores;
+
+    private final LatencyHistogram[] afters;
+
+    public ActionMetrics(String name, String[] interceptorNames) {
+        this.name = name;
+        this.interceptorNames = interceptorNames.clone();
+        this.befores = new LatencyHistogram[interceptorNames.length];
+        this.afters = new LatencyHistogram[interceptorNames.length];
+        for (int i = 0; i < interceptorNames.length; i++) {
+            befores[i] = new LatencyHistogram();
+            afters[i] = new LatencyHistogram();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getInterceptorNames() {
+        return interceptorNames.clone();
+    }
+
+    public void recordRequest(long nanos, boolean error) {
+        requests.increment();
+        if (error) {
+            errors.increment();
+        }
+        total.record(nanos);
+    }
+
+    public void recordMatch(long nanos) {
+        match.record(nanos);
+    }
+
+    public void recordResolve(long nanos) {
+        resolve.record(nanos);
+    }
+
+    public void recordAction(long nanos) {
+        action.record(nanos);
+    }
+
+    public void recordRender(long nanos) {
+        render.record(nanos);
+    }
+
+    public void recordBefore(int interceptorIndex, long nanos) {
+        befores[interceptorIndex].record(nanos);
+    }
+
+    public void recordAfter(int interceptorIndex, long nanos) {
+        afters[interceptorIndex].record(nanos);
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public LatencyHistogram getMatch() {
+        return match;
+    }
+
+    public LatencyHistogram getResolve() {
+        return resolve;
+    }
+
+    public LatencyHistogram getAction() {
+        return action;
+    }
+
+    public LatencyHistogram getRender() {
+        return render;
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    public LatencyHistogram getBefore(int interceptorIndex) {
+        return befores[interceptorIndex];
+    }
+
+    public LatencyHistogram getAfter(int interceptorIndex) {
+        return afters[interceptorIndex];
+    }
+
+    public void reset() {
+        requests.reset();
+        errors.reset();
+        match.reset();
+        resolve.reset();
+        action.reset();
+        render.reset();
+        total.reset();
+        for (int i = 0; i < befores.length; i++) {
+            befores[i].reset();
+            afters[i].reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + ": requests=" + getRequests() + ", errors=" + getErrors() + ", total=["
+                + total + "]";
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 一个RoseFilter下所有action的运行时统计，由 /rose-info/metrics 以及JMX(
+ * <code>net.paoding.rose:type=Metrics,name=过滤器名</code>)展示。
+ * <p>
+ * 没有开启统计时RoseFilter不创建本对象，请求处理过程中只多了对null的判断。
+ */
+public class RoseMetrics implements RoseMetricsMBean {
+
+    private static final Log logger = LogFactory.getLog(RoseMetrics.class);
+
+    private final String name;
+
+    private final List<ActionMetrics> actions = new CopyOnWriteArrayList<ActionMetrics>();
+
+    private ObjectName objectName;
+
+    public RoseMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 为一个action创建统计对象，在构造匹配树时调用
+     * 
+     * @param actionName
+     * @param interceptorNames
+     * @return
+     */
+    public ActionMetrics register(String actionName, String[] interceptorNames) {
+        ActionMetrics metrics = new ActionMetrics(actionName, interceptorNames);
+        actions.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * 按请求数从多到少返回所有action的统计
+     * 
+     * @return
+     */
+    public List<ActionMetrics> getActions() {
+        List<ActionMetrics> sorted = new ArrayList<ActionMetrics>(actions);
+        Collections.sort(sorted, new Comparator<ActionMetrics>() {
+
+            @Override
+            public int compare(ActionMetrics o1, ActionMetrics o2) {
+                long r1 = o1.getRequests();
+                long r2 = o2.getRequests();
+                return r1 > r2 ? -1 : (r1 == r2 ? o1.getName().compareTo(o2.getName()) : 1);
+            }
+        });
+        return sorted;
+    }
+
+    public ActionMetrics getAction(String actionName) {
+        for (ActionMetrics metrics : actions) {
+            if (metrics.getName().equals(actionName)) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getActionCount() {
+        return actions.size();
+    }
+
+    @Override
+    public long getRequests() {
+        long requests = 0;
+        for (ActionMetrics metrics : actions) {
+            requests += metrics.getRequests();
+        }
+        return requests;
+    }
+
+    @Override
+    public long getErrors() {
+        long errors = 0;
+        for (ActionMetrics metrics : actions) {
+            errors += metrics.getErrors();
+        }
+        return errors;
+    }
+
+    @Override
+    public String[] getActionSummaries() {
+        List<ActionMetrics> sorted = getActions();
+        String[] summaries = new String[sorted.size()];
+        for (int i = 0; i < summaries.length; i++) {
+            summaries[i] = sorted.get(i).toString();
+        }
+        return summaries;
+    }
+
+    @Override
+    public String getActionReport(String action) {
+        ActionMetrics metrics = getAction(action);
+        if (metrics == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(metrics).append('\n');
+        sb.append("match: ").append(metrics.getMatch()).append('\n');
+        sb.append("resolve: ").append(metrics.getResolve()).append('\n');
+        String[] interceptorNames = metrics.getInterceptorNames();
+        for (int i = 0; i < interceptorNames.length; i++) {
+            sb.append(interceptorNames[i]).append(".before: ").append(metrics.getBefore(i))
+                    .append('\n');
+        }
+        sb.append("action: ").append(metrics.getAction()).append('\n');
+        for (int i = interceptorNames.length - 1; i >= 0; i--) {
+            sb.append(interceptorNames[i]).append(".after: ").append(metrics.getAfter(i))
+                    .append('\n');
+        }
+        sb.append("render: ").append(metrics.getRender());
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (ActionMetrics metrics : actions) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * 注册到平台MBeanServer，失败时只记录日志
+     */
+    public synchronized void registerMBean() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName("net.paoding.rose:type=Metrics,name="
+                    + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                logger.warn("replace the registered mbean " + objectName);
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (Exception e) {
+            logger.warn("failed to register rose metrics mbean", e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            logger.warn("failed to unregister rose metrics mbean " + objectName, e);
+        }
+        objectName = null;
+    }
+}
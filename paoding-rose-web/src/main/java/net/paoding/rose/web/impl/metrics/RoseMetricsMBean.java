@@ -0,0 +1,52 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.metrics;
+
+/**
+ * {@link RoseMetrics} 的JMX接口
+ */
+public interface RoseMetricsMBean {
+
+    /**
+     * 注册了统计的action个数
+     */
+    public int getActionCount();
+
+    /**
+     * 所有action的请求总数
+     */
+    public long getRequests();
+
+    /**
+     * 所有action的出错总数
+     */
+    public long getErrors();
+
+    /**
+     * 每个action一行的统计摘要，按请求数从多到少排列
+     */
+    public String[] getActionSummaries();
+
+    /**
+     * 返回一个action(Controller类名#方法名)各个阶段的统计，不存在时返回null
+     */
+    public String getActionReport(String action);
+
+    /**
+     * 清空所有统计
+     */
+    public void reset();
+}
@@ -22,6 +22,7 @@ import net.paoding.rose.web.ControllerErrorHandler;
 import net.paoding.rose.web.InterceptorDelegate;
 import net.paoding.rose.web.ParamValidator;
 import net.paoding.rose.web.impl.mapping.Mapping;
+import net.paoding.rose.web.instruction.OutputPolicy;
 import net.paoding.rose.web.paramresolver.ParamResolver;
 
 import org.springframework.web.context.WebApplicationContext;
@@ -121,4 +122,11 @@ public interface Module {
      */
     public ControllerErrorHandler getErrorHandler();
 
+    /**
+     * 该模块的响应输出策略(由rose.properties的response.compress配置)，不压缩时返回null
+     * 
+     * @return
+     */
+    public OutputPolicy getOutputPolicy();
+
 }
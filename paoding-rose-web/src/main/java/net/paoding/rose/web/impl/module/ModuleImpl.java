@@ -23,6 +23,7 @@ import java.util.List;
 import net.paoding.rose.web.ControllerErrorHandler;
 import net.paoding.rose.web.InterceptorDelegate;
 import net.paoding.rose.web.ParamValidator;
+import net.paoding.rose.web.instruction.OutputPolicy;
 import net.paoding.rose.web.paramresolver.ParamResolver;
 
 import org.springframework.web.context.WebApplicationContext;
@@ -66,6 +67,9 @@ public class ModuleImpl implements Module {
     // 本模块使用的错误处理器(如果本模块没有定义，则使用上级模块的errorHanlder或根applicationContext的errorHandler)
     private ControllerErrorHandler errorHandler;
 
+    // 响应输出策略，不压缩时为null
+    private OutputPolicy outputPolicy;
+
     // 默认的控制器，当按照"/controller/action"找不到控制器处理请求时，会试着看看这个控制器是否可以处理
     // 会先看看有没有@Path("")标注的或@DefaultController标注的
     // 没有的话则按照候选方案看看有没有default,index,home,welcome的控制器，有的话就是它了
@@ -163,4 +167,13 @@ public class ModuleImpl implements Module {
     public void setErrorHandler(ControllerErrorHandler errorHandler) {
         this.errorHandler = errorHandler;
     }
+
+    @Override
+    public OutputPolicy getOutputPolicy() {
+        return outputPolicy;
+    }
+
+    public void setOutputPolicy(OutputPolicy outputPolicy) {
+        this.outputPolicy = outputPolicy;
+    }
 }
@@ -42,6 +42,7 @@ import net.paoding.rose.web.annotation.Ignored;
 import net.paoding.rose.web.annotation.Interceptor;
 import net.paoding.rose.web.annotation.NotForSubModules;
 import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.instruction.OutputPolicy;
 import net.paoding.rose.web.paramresolver.ParamResolver;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -109,6 +110,10 @@ public class ModulesBuilderImpl implements ModulesBuilder {
                     moduleResource.getMappingPath(), //
                     moduleResource.getRelativePath(), //
                     moduleContext);
+            if (Boolean.TRUE.equals(moduleResource.getResponseCompress())) {
+                module.setOutputPolicy(new OutputPolicy(moduleResource
+                        .getResponseCompressThreshold()));
+            }
             //
             modulesAsMap.put(moduleResource, module);
 
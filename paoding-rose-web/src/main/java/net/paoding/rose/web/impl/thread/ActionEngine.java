@@ -22,10 +22,9 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -35,17 +34,22 @@ import javax.servlet.http.HttpServletResponse;
 import net.paoding.rose.RoseVersion;
 import net.paoding.rose.util.RoseStringUtil;
 import net.paoding.rose.web.ControllerInterceptor;
+import net.paoding.rose.web.Dispatcher;
 import net.paoding.rose.web.InterceptorDelegate;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.InvocationChain;
 import net.paoding.rose.web.ParamValidator;
 import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.Async;
 import net.paoding.rose.web.annotation.HttpFeatures;
 import net.paoding.rose.web.annotation.IfParamExists;
 import net.paoding.rose.web.annotation.Intercepted;
+import net.paoding.rose.web.annotation.LazyParams;
 import net.paoding.rose.web.annotation.Return;
+import net.paoding.rose.web.impl.metrics.ActionMetrics;
 import net.paoding.rose.web.impl.module.Module;
 import net.paoding.rose.web.impl.validation.ParameterBindingResult;
+import net.paoding.rose.web.instruction.OutputPolicy;
 import net.paoding.rose.web.paramresolver.MethodParameterResolver;
 import net.paoding.rose.web.paramresolver.ParamMetaData;
 import net.paoding.rose.web.paramresolver.ParamResolver;
@@ -74,32 +78,136 @@ public final class ActionEngine implements Engine {
 
     private final Method method;
 
-    private final HttpFeatures httpFeatures;
+    private final ActionInvoker invoker;
+
+    /** 标注在方法上的 {@link Return}，方法返回null时使用；没有标注时为null */
+    private final String returnValue;
+
+    /** {@link HttpFeatures}设置的字符集，没有设置时为null */
+    private final String httpCharset;
+
+    /** {@link HttpFeatures}设置的contentType，已经把json、xml等简写展开；没有设置时为null */
+    private final String httpContentType;
+
+    /** {@link HttpFeatures}或module设置的输出策略，不压缩时为null */
+    private final OutputPolicy outputPolicy;
 
     private final InterceptorDelegate[] interceptors;
 
+    /** 展开执行拦截器时使用，未开启时为null */
+    private final InterceptorPipeline interceptorPipeline;
+
     private final ParamValidator[] validators;
 
     private final ParamExistenceChecker[] paramExistenceChecker;
 
     private final MethodParameterResolver methodParameterResolver;
 
+    /** 是否标注了 {@link LazyParams} */
+    private final boolean lazyParams;
+
+    /** 标注了 {@link LazyParams} 时可以推迟解析的参数，没有这样的参数时为null */
+    private final boolean[] deferrableParams;
+
+    /** 标注了 {@link LazyParams} 时，推迟解析上传请求要用到的所有参数都为true的mask */
+    private final boolean[] allParams;
+
+    /** 是否标注了 {@link Async} 或者返回 {@link Future} */
+    private final boolean async;
+
+    /** {@link Async#timeout()}，没有标注时为-1 */
+    private final long asyncTimeout;
+
     private transient String toStringCache;
 
+    /** 运行时统计，没有开启时为null */
+    private ActionMetrics metrics;
+
     public ActionEngine(Module module, Class<?> controllerClass, Object controller, Method method) {
+        this(module, controllerClass, controller, method, false);
+    }
+
+    /**
+     * 
+     * @param interceptorPipeline 为true时以 {@link InterceptorPipeline} 展开执行拦截器，
+     *        否则每次请求通过 {@link InvocationChain} 逐个调用拦截器
+     */
+    public ActionEngine(Module module, Class<?> controllerClass, Object controller,
+            Method method, boolean interceptorPipeline) {
         this.module = module;
         this.controllerClass = controllerClass;
         this.controller = controller;
         this.method = method;
         this.interceptors = compileInterceptors();
+        if (interceptorPipeline && interceptors.length <= InterceptorPipeline.MAX_STAGES) {
+            this.interceptorPipeline = new InterceptorPipeline(interceptors);
+        } else {
+            this.interceptorPipeline = null;
+        }
         this.methodParameterResolver = compileParamResolvers();
+        this.lazyParams = method.isAnnotationPresent(LazyParams.class)
+                || controllerClass.isAnnotationPresent(LazyParams.class)
+                || (controllerClass.getPackage() != null && controllerClass.getPackage()
+                        .isAnnotationPresent(LazyParams.class));
+        boolean[] deferrableParams = null;
+        boolean[] allParams = null;
+        if (lazyParams) {
+            int length = method.getParameterTypes().length;
+            allParams = new boolean[length];
+            Arrays.fill(allParams, true);
+            for (int i = 0; i < length; i++) {
+                if (methodParameterResolver.isDeferrable(i)) {
+                    if (deferrableParams == null) {
+                        deferrableParams = new boolean[length];
+                    }
+                    deferrableParams[i] = true;
+                }
+            }
+        }
+        this.deferrableParams = deferrableParams;
+        this.allParams = allParams;
         this.validators = compileValidators();
         this.paramExistenceChecker = compileParamExistenceChecker();
+        this.invoker = ActionInvoker.create(method);
+        Return returnAnnotation = method.getAnnotation(Return.class);
+        this.returnValue = returnAnnotation == null ? null : returnAnnotation.value();
         HttpFeatures httpFeatures = method.getAnnotation(HttpFeatures.class);
         if (httpFeatures == null) {
             httpFeatures = this.controllerClass.getAnnotation(HttpFeatures.class);
         }
-        this.httpFeatures = httpFeatures;
+        String httpCharset = null;
+        String httpContentType = null;
+        OutputPolicy outputPolicy = module.getOutputPolicy();
+        if (httpFeatures != null) {
+            if (StringUtils.isNotBlank(httpFeatures.charset())) {
+                httpCharset = httpFeatures.charset();
+            }
+            if (StringUtils.isNotBlank(httpFeatures.contentType())) {
+                httpContentType = expandContentType(httpFeatures.contentType());
+            }
+            String compress = httpFeatures.compress().trim();
+            if (compress.equalsIgnoreCase("false")) {
+                outputPolicy = null;
+            } else if (compress.equalsIgnoreCase("true") || httpFeatures.compressThreshold() >= 0) {
+                int threshold = httpFeatures.compressThreshold();
+                if (threshold < 0 && outputPolicy != null) {
+                    threshold = outputPolicy.getThreshold();
+                }
+                if (compress.equalsIgnoreCase("true") || outputPolicy != null) {
+                    outputPolicy = new OutputPolicy(threshold);
+                }
+            }
+        }
+        this.httpCharset = httpCharset;
+        this.httpContentType = httpContentType;
+        this.outputPolicy = outputPolicy;
+        Async asyncAnnotation = method.getAnnotation(Async.class);
+        if (asyncAnnotation == null) {
+            asyncAnnotation = controllerClass.getAnnotation(Async.class);
+        }
+        this.async = asyncAnnotation != null
+                || Future.class.isAssignableFrom(method.getReturnType());
+        this.asyncTimeout = asyncAnnotation == null ? -1 : asyncAnnotation.timeout();
     }
 
     public InterceptorDelegate[] getRegisteredInterceptors() {
@@ -122,6 +230,51 @@ public final class ActionEngine implements Engine {
         return methodParameterResolver.getParameterNames();
     }
 
+    /**
+     * 是否标注了 {@link LazyParams}，此时上传请求推迟到解析参数时才解析
+     * 
+     * @return
+     */
+    public boolean isLazyParams() {
+        return lazyParams;
+    }
+
+    /**
+     * 是否以异步方式执行，参见 {@link Async}
+     * 
+     * @return
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * 异步执行时AsyncContext的超时时间(毫秒)，-1表示使用容器的默认值
+     * 
+     * @return
+     */
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    /**
+     * 返回本action的运行时统计，没有开启统计时返回null
+     * 
+     * @return
+     */
+    public ActionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置本action的运行时统计，只在构造匹配树时调用
+     * 
+     * @param metrics
+     */
+    public void setMetrics(ActionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     private MethodParameterResolver compileParamResolvers() {
         ParameterNameDiscovererImpl parameterNameDiscoverer = new ParameterNameDiscovererImpl();
         ResolverFactoryImpl resolverFactory = new ResolverFactoryImpl();
@@ -219,7 +372,7 @@ public final class ActionEngine implements Engine {
      */
     private static interface ParamExistenceChecker {
 
-        public int check(Map<String, String[]> params);
+        public int check(QueryStringParameters params);
     }
 
     /**
@@ -251,7 +404,7 @@ public final class ActionEngine implements Engine {
                     final String paramName = term.trim();
 
                     @Override
-                    public int check(Map<String, String[]> params) {
+                    public int check(QueryStringParameters params) {
                         String[] paramValues = params.get(paramName);
                         if (logger.isDebugEnabled()) {
                             logger.debug(this.toString() + " is checking param:" + paramName + "="
@@ -283,7 +436,7 @@ public final class ActionEngine implements Engine {
                     checkers.add(new ParamExistenceChecker() {
 
                         @Override
-                        public int check(Map<String, String[]> params) {
+                        public int check(QueryStringParameters params) {
                             String[] paramValues = params.get(paramName);
                             if (logger.isDebugEnabled()) {
                                 logger.debug(this.toString() + " is checking param:" + paramName
@@ -306,7 +459,7 @@ public final class ActionEngine implements Engine {
                     checkers.add(new ParamExistenceChecker() {
 
                         @Override
-                        public int check(Map<String, String[]> params) {
+                        public int check(QueryStringParameters params) {
                             String[] paramValues = params.get(paramName);
                             if (logger.isDebugEnabled()) {
                                 logger.debug(this.toString() + " is checking param:" + paramName
@@ -331,15 +484,35 @@ public final class ActionEngine implements Engine {
         return checkers.toArray(new ParamExistenceChecker[] {});
     }
 
+    /**
+     * 是否标注了 {@link IfParamExists}？如果没有，{@link #isAccepted(HttpServletRequest)}
+     * 的结果和请求无关
+     * 
+     * @return
+     */
+    public boolean hasParamExistenceChecker() {
+        return paramExistenceChecker.length > 0;
+    }
+
     @Override
     public int isAccepted(HttpServletRequest request) {
+        return isAccepted(request, new QueryStringParameters(request.getQueryString()));
+    }
+
+    /**
+     * 同 {@link #isAccepted(HttpServletRequest)}，多个engine判断同一个请求时共用一个已经解析的queryString
+     * 
+     * @param request
+     * @param queryString 请求的queryString参数
+     * @return
+     */
+    public int isAccepted(HttpServletRequest request, QueryStringParameters queryString) {
         if (paramExistenceChecker.length == 0) { //没有约束条件，返回1
             return 1;
         }
         int total = 0;
-        Map<String, String[]> params = resolveQueryString(request.getQueryString());
         for (ParamExistenceChecker checker : paramExistenceChecker) {
-            int c = checker.check(params);
+            int c = checker.check(queryString);
             if (c == -1) { //-1表示此约束条件未通过
                 if (logger.isDebugEnabled()) {
                     logger.debug("Accepted check not passed by " + checker.toString());
@@ -353,38 +526,6 @@ public final class ActionEngine implements Engine {
         return total;
     }
 
-    private Map<String, String[]> resolveQueryString(String queryString) {
-        Map<String, String[]> params;
-        if (queryString == null || queryString.length() == 0) {
-            params = Collections.emptyMap();
-        } else {
-            params = new HashMap<String, String[]>();
-            String[] kvs = queryString.split("&");
-            for (String kv : kvs) {
-                String[] pair = kv.split("=");
-                if (pair.length == 2) {
-                    mapPut(params, pair[0], pair[1]);
-                } else if (pair.length == 1) {
-                    mapPut(params, pair[0], "");
-                } else {
-                    logger.error("Illegal queryString:" + queryString);
-                }
-            }
-        }
-        return params;
-    }
-
-    private void mapPut(Map<String, String[]> map, String key, String value) {
-        String[] values = map.get(key);
-        if (values == null) {
-            values = new String[] { value };
-        } else {
-            values = Arrays.copyOf(values, values.length + 1);
-            values[values.length - 1] = value;
-        }
-        map.put(key, values);
-    }
-
     @Override
     public Object execute(Rose rose) throws Throwable {
         try {
@@ -395,7 +536,7 @@ public final class ActionEngine implements Engine {
     }
 
     protected Object innerExecute(Rose rose) throws Throwable {
-        Invocation inv = rose.getInvocation();
+        InvocationBean inv = rose.getInvocation();
 
         // creates parameter binding result (not bean, just simple type, like int, Integer, int[] ...
         ParameterBindingResult paramBindingResult = new ParameterBindingResult(inv);
@@ -403,8 +544,73 @@ public final class ActionEngine implements Engine {
         inv.addModel(paramBindingResultName, paramBindingResult);
 
         // resolves method parameters, adds the method parameters to model
-        Object[] methodParameters = methodParameterResolver.resolve(inv, paramBindingResult);
-        ((InvocationBean) inv).setMethodParameters(methodParameters);
+        final ActionMetrics metrics = this.metrics;
+        final long resolveStart = metrics == null ? 0 : System.nanoTime();
+        final boolean[] deferredMask = lazyParams ? getDeferredMask(inv) : null;
+        Object[] methodParameters;
+        if (deferredMask == null) {
+            methodParameters = methodParameterResolver.resolve(inv, paramBindingResult);
+        } else {
+            methodParameters = new Object[allParams.length];
+            methodParameterResolver.resolve(inv, paramBindingResult, methodParameters,
+                    deferredMask, false);
+        }
+        if (metrics != null) {
+            metrics.recordResolve(System.nanoTime() - resolveStart);
+        }
+        inv.setMethodParameters(methodParameters);
+        if (deferredMask != null) {
+            inv.setDeferredParameters(new DeferredParameters(this, paramBindingResult,
+                    deferredMask));
+        }
+
+        Object instruction = validate(inv, methodParameters, deferredMask, false);
+        if (instruction != null) {
+            return instruction;
+        }
+
+        // intetceptors & controller
+        if (interceptorPipeline != null) {
+            return interceptorPipeline.execute(this, rose);
+        }
+        return new InvocationChainImpl(rose).doNext();
+    }
+
+    /**
+     * 返回需要推迟解析的参数，为null表示不推迟
+     */
+    private boolean[] getDeferredMask(InvocationBean inv) {
+        if (inv.getModuleEngine().isMultipartPending(inv)) {
+            // 上传请求没有解析，所有参数都推迟到解析上传请求之后
+            return allParams;
+        }
+        return deferrableParams;
+    }
+
+    /**
+     * 解析被推迟的参数，由 {@link DeferredParameters} 调用
+     * 
+     * @return 校验器返回的instruction
+     */
+    Object resolveDeferredParameters(InvocationBean inv, ParameterBindingResult paramBindingResult,
+            boolean[] deferredMask) throws Exception {
+        if (inv.getModuleEngine().checkMultipart(inv)) {
+            // 由ModuleEngine在请求结束时清理
+            inv.setMultiPartRequest(true);
+        }
+        Object[] methodParameters = inv.peekMethodParameters();
+        methodParameterResolver.resolve(inv, paramBindingResult, methodParameters, deferredMask,
+                true);
+        return validate(inv, methodParameters, deferredMask, true);
+    }
+
+    /**
+     * 校验mask中对应值为expected的参数，并把它们放入model
+     * 
+     * @return 校验器返回的instruction，为null表示继续
+     */
+    private Object validate(Invocation inv, Object[] methodParameters, boolean[] mask,
+            boolean expected) {
         String[] parameterNames = methodParameterResolver.getParameterNames();
 
         Object instruction = null;
@@ -412,6 +618,9 @@ public final class ActionEngine implements Engine {
         ParamMetaData[] metaDatas = methodParameterResolver.getParamMetaDatas();
         // validators
         for (int i = 0; i < this.validators.length; i++) {
+            if (mask != null && mask[i] != expected) {
+                continue;
+            }
             if (validators[i] != null && !(methodParameters[i] instanceof Errors)) {
                 Errors errors = inv.getBindingResult(parameterNames[i]);
                 instruction = validators[i].validate(//
@@ -435,14 +644,61 @@ public final class ActionEngine implements Engine {
         
         //
         for (int i = 0; i < parameterNames.length; i++) {
+            if (mask != null && mask[i] != expected) {
+                continue;
+            }
             if (parameterNames[i] != null && methodParameters[i] != null
                     && inv.getModel().get(parameterNames[i]) != methodParameters[i]) {
                 inv.addModel(parameterNames[i], methodParameters[i]);
             }
         }
+        return null;
+    }
 
-        // intetceptors & controller
-        return new InvocationChainImpl(rose).doNext();
+    /**
+     * 调用action方法，拦截器执行完毕后由 {@link InvocationChainImpl} 或
+     * {@link InterceptorPipeline} 调用
+     */
+    Object invokeAction(Rose rose) throws Exception {
+        // @LazyParams
+        DeferredParameters deferred = rose.getInvocation().getDeferredParameters();
+        if (deferred != null) {
+            Object instruction = deferred.resolve(rose.getInvocation());
+            if (instruction != null) {
+                return instruction;
+            }
+        }
+
+        // applies http features before the resolvers
+        if (httpCharset != null || httpContentType != null) {
+            applyHttpFeatures(rose.getInvocation());
+        }
+        // include时不能设置响应头，portal窗口等forward的响应也要由外层请求输出
+        if (outputPolicy != null
+                && rose.getInvocation().getRequestPath().getDispatcher() == Dispatcher.REQUEST) {
+            outputPolicy.applyTo(rose.getInvocation());
+        }
+
+        final ActionMetrics metrics = this.metrics;
+        final long start = metrics == null ? 0 : System.nanoTime();
+        Object instruction = invoker.invoke(controller, rose.getInvocation().getMethodParameters());
+        // 返回Future时，等待其结果作为action的返回值
+        if (instruction instanceof Future<?>) {
+            try {
+                instruction = ((Future<?>) instruction).get();
+            } catch (ExecutionException e) {
+                throw new InvocationTargetException(e.getCause() == null ? e : e.getCause());
+            }
+        }
+        if (metrics != null) {
+            metrics.recordAction(System.nanoTime() - start);
+        }
+
+        // @Return
+        if (instruction == null) {
+            instruction = returnValue;
+        }
+        return instruction;
     }
 
     private class InvocationChainImpl implements InvocationChain {
@@ -455,6 +711,11 @@ public final class ActionEngine implements Engine {
 
         private Object instruction;
 
+        private final ActionMetrics metrics = ActionEngine.this.metrics;
+
+        /** 开启统计时，上一次进入或退出拦截器的时间 */
+        private long mark;
+
         public InvocationChainImpl(Rose rose) {
             this.rose = rose;
         }
@@ -462,10 +723,17 @@ public final class ActionEngine implements Engine {
         @Override
         public Object doNext() throws Exception {
             if (++index < interceptors.length) { // ++index 用于将-1转化为0
-                InterceptorDelegate interceptor = interceptors[index];
+                final int current = index;
+                InterceptorDelegate interceptor = interceptors[current];
                 //
                 rose.addAfterCompletion(interceptor);
+                if (metrics != null) {
+                    markBefore(current);
+                }
                 Object instruction = interceptor.roundInvocation(rose.getInvocation(), this);
+                if (metrics != null) {
+                    markAfter(current);
+                }
                 //
                 if (debugEnabled) {
                     logger.debug("interceptor[" + interceptor.getName() + "] do round and return '"
@@ -479,20 +747,12 @@ public final class ActionEngine implements Engine {
                 }
                 return this.instruction;
             } else if (index == interceptors.length) {
-                // applies http features before the resolvers
-                if (httpFeatures != null) {
-                    applyHttpFeatures(rose.getInvocation());
+                if (metrics != null) {
+                    markBefore(index);
                 }
-
-                this.instruction = method.invoke(controller, rose.getInvocation()
-                        .getMethodParameters());
-
-                // @Return
-                if (this.instruction == null) {
-                    Return returnAnnotation = method.getAnnotation(Return.class);
-                    if (returnAnnotation != null) {
-                        this.instruction = returnAnnotation.value();
-                    }
+                this.instruction = invokeAction(rose);
+                if (metrics != null) {
+                    mark = System.nanoTime();
                 }
                 return this.instruction;
             }
@@ -501,6 +761,30 @@ public final class ActionEngine implements Engine {
                             + "; interceptors.length=" + interceptors.length);
         }
 
+        /**
+         * 进入第current个拦截器(或action)：从上一个拦截器开始执行到现在的时间是它的before
+         */
+        private void markBefore(int current) {
+            long now = System.nanoTime();
+            if (current > 0) {
+                metrics.recordBefore(current - 1, now - mark);
+            }
+            mark = now;
+        }
+
+        /**
+         * 退出第current个拦截器：调用过doNext的，从doNext返回到现在的时间是它的after，否则都是before
+         */
+        private void markAfter(int current) {
+            long now = System.nanoTime();
+            if (index > current) {
+                metrics.recordAfter(current, now - mark);
+            } else {
+                metrics.recordBefore(current, now - mark);
+            }
+            mark = now;
+        }
+
     }
 
     private Exception createException(Rose rose, Throwable exception) {
@@ -512,7 +796,7 @@ public final class ActionEngine implements Engine {
         sb.append(" ").append(requestPath.getUri());
         sb.append("->");
         sb.append(this).append(" params=");
-        sb.append(Arrays.toString(rose.getInvocation().getMethodParameters()));
+        sb.append(Arrays.toString(rose.getInvocation().peekMethodParameters()));
         InvocationTargetException servletException = new InvocationTargetException(exception, sb
                 .toString());
         return servletException;
@@ -520,25 +804,14 @@ public final class ActionEngine implements Engine {
 
     private void applyHttpFeatures(final Invocation inv) throws UnsupportedEncodingException {
         HttpServletResponse response = inv.getResponse();
-        if (StringUtils.isNotBlank(httpFeatures.charset())) {
-            response.setCharacterEncoding(httpFeatures.charset());
+        if (httpCharset != null) {
+            response.setCharacterEncoding(httpCharset);
             if (logger.isDebugEnabled()) {
-                logger.debug("set response.characterEncoding by HttpFeatures:"
-                        + httpFeatures.charset());
+                logger.debug("set response.characterEncoding by HttpFeatures:" + httpCharset);
             }
         }
-        if (StringUtils.isNotBlank(httpFeatures.contentType())) {
-            String contentType = httpFeatures.contentType();
-            if (contentType.equals("json")) {
-                contentType = "application/json";
-            } else if (contentType.equals("xml")) {
-                contentType = "text/xml";
-            } else if (contentType.equals("html")) {
-                contentType = "text/html";
-            } else if (contentType.equals("plain") || contentType.equals("text")) {
-                contentType = "text/plain";
-            }
-            response.setContentType(contentType);
+        if (httpContentType != null) {
+            response.setContentType(httpContentType);
             if (logger.isDebugEnabled()) {
                 logger.debug("set response.contentType by HttpFeatures:"
                         + response.getContentType());
@@ -546,6 +819,19 @@ public final class ActionEngine implements Engine {
         }
     }
 
+    private static String expandContentType(String contentType) {
+        if (contentType.equals("json")) {
+            contentType = "application/json";
+        } else if (contentType.equals("xml")) {
+            contentType = "text/xml";
+        } else if (contentType.equals("html")) {
+            contentType = "text/html";
+        } else if (contentType.equals("plain") || contentType.equals("text")) {
+            contentType = "text/plain";
+        }
+        return contentType;
+    }
+
     @Override
     public String toString() {
         if (toStringCache == null) {
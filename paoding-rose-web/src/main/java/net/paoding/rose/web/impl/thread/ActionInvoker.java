@@ -0,0 +1,180 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link ActionInvoker} 负责调用控制器的action方法。
+ * <p>
+ *
+ * {@link #create(Method)} 在启动时为每个action生成一个直接调用该方法的类(参见
+ * {@link ActionInvokerGenerator})，省去每次请求的反射调用；方法或参数类型不是public、或者生成失败时，
+ * 使用 {@link Method#invoke(Object, Object...)} 。可以通过系统属性
+ * <code>-Drose.actionInvoker.generate=false</code> 关闭生成。
+ * <p>
+ *
+ * 不论使用哪种方式，{@link #invoke(Object, Object[])} 的异常行为都和
+ * {@link Method#invoke(Object, Object...)} 相同：action抛出的异常被包装为
+ * {@link InvocationTargetException}。
+ */
+public abstract class ActionInvoker {
+
+    private static final Log logger = LogFactory.getLog(ActionInvoker.class);
+
+    private static final boolean generate = !"false".equals(System
+            .getProperty("rose.actionInvoker.generate"));
+
+    /**
+     * 为给定的action方法创建调用者
+     *
+     * @param method
+     * @return
+     */
+    public static ActionInvoker create(Method method) {
+        if (generate && ActionInvokerGenerator.isSupported(method)) {
+            try {
+                return ActionInvokerGenerator.generate(method);
+            } catch (Throwable e) {
+                logger.warn("failed to generate invoker for " + method
+                        + ", use reflection instead", e);
+            }
+        }
+        return new Reflective(method);
+    }
+
+    /**
+     * 调用action方法
+     *
+     * @param controller 控制器对象，静态方法时被忽略
+     * @param parameters 方法参数
+     * @return 方法的返回值，void方法返回null，原始类型的返回值被装箱
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException action方法抛出了异常
+     */
+    public abstract Object invoke(Object controller, Object[] parameters)
+            throws IllegalAccessException, InvocationTargetException;
+
+    //-------------------------------------------------------------
+
+    /**
+     * 使用反射调用action方法
+     */
+    static final class Reflective extends ActionInvoker {
+
+        private final Method method;
+
+        Reflective(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object controller, Object[] parameters)
+                throws IllegalAccessException, InvocationTargetException {
+            return method.invoke(controller, parameters);
+        }
+
+        @Override
+        public String toString() {
+            return "reflective invoker of " + method;
+        }
+    }
+
+    /**
+     * 生成的调用者的父类，生成的类只需要实现 {@link #doInvoke(Object, Object[])}
+     */
+    public static abstract class Generated extends ActionInvoker {
+
+        private Method method;
+
+        private Class<?> declaringClass;
+
+        /** 参数的类型，原始类型换为对应的包装类 */
+        private Class<?>[] parameterTypes;
+
+        /** 参数是否为原始类型，原始类型的参数不能为null */
+        private boolean[] primitives;
+
+        protected Generated() {
+        }
+
+        void init(Method method) {
+            this.method = method;
+            this.declaringClass = Modifier.isStatic(method.getModifiers()) ? null : method
+                    .getDeclaringClass();
+            this.parameterTypes = method.getParameterTypes();
+            this.primitives = new boolean[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (parameterTypes[i].isPrimitive()) {
+                    primitives[i] = true;
+                    parameterTypes[i] = ClassUtils.primitiveToWrapper(parameterTypes[i]);
+                }
+            }
+        }
+
+        @Override
+        public final Object invoke(Object controller, Object[] parameters)
+                throws IllegalAccessException, InvocationTargetException {
+            if (!accepts(controller, parameters)) {
+                // 参数需要拓宽转换或者不合法：由反射调用完成转换或抛出IllegalArgumentException等
+                return method.invoke(controller, parameters);
+            }
+            try {
+                return doInvoke(controller, parameters);
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+
+        /**
+         * 生成的代码能否不经转换地使用这些参数；否则doInvoke中的NullPointerException、ClassCastException
+         * 会被误当作action抛出的异常
+         */
+        private boolean accepts(Object controller, Object[] parameters) {
+            if (declaringClass != null && !declaringClass.isInstance(controller)) {
+                return false;
+            }
+            int length = parameters == null ? 0 : parameters.length;
+            if (length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                Object parameter = parameters[i];
+                if (parameter == null ? primitives[i] : !parameterTypes[i].isInstance(parameter)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 直接调用action方法，不包装任何异常
+         */
+        protected abstract Object doInvoke(Object controller, Object[] parameters)
+                throws Throwable;
+
+        @Override
+        public String toString() {
+            return "generated invoker " + getClass().getName();
+        }
+    }
+}
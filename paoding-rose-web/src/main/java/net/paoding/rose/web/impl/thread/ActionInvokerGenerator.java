@@ -0,0 +1,383 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为action方法生成 {@link ActionInvoker.Generated} 的子类，生成的 doInvoke 相当于：
+ *
+ * <pre>
+ * return Boxing(((Controller) controller).method((T0) parameters[0], Unboxing(parameters[1]), ...));
+ * </pre>
+ *
+ * 生成的类由一个以控制器的ClassLoader为parent的ClassLoader定义，因此只能访问public的类和方法，
+ * 这由 {@link #isSupported(Method)} 判断。类文件使用Java 5的格式，不需要StackMapTable。
+ */
+final class ActionInvokerGenerator {
+
+    private static final String SUPER_CLASS = ActionInvoker.Generated.class.getName().replace(
+            '.', '/');
+
+    private static final String DO_INVOKE_DESC = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * InvokerClassLoader以key为parent，必须弱引用，否则key永远不会被回收(webapp重新部署时泄漏)；
+     * 生成的调用者通过自己的类强引用着InvokerClassLoader
+     */
+    private static final Map<ClassLoader, WeakReference<InvokerClassLoader>> loaders = new WeakHashMap<ClassLoader, WeakReference<InvokerClassLoader>>();
+
+    private ActionInvokerGenerator() {
+    }
+
+    /**
+     * 生成的类能否访问这个方法？
+     *
+     * @param method
+     * @return
+     */
+    public static boolean isSupported(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || !isPublic(method.getDeclaringClass())) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isPublic(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!c.isPrimitive() && !Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static ActionInvoker generate(Method method) throws Exception {
+        Class<?> declaringClass = method.getDeclaringClass();
+        String className = declaringClass.getName() + "$$RoseInvoker$$" + method.getName() + "$"
+                + counter.incrementAndGet();
+        byte[] bytes = new ActionInvokerGenerator.ClassWriter().write(className.replace('.', '/'),
+                method);
+        InvokerClassLoader loader;
+        synchronized (loaders) {
+            ClassLoader parent = declaringClass.getClassLoader();
+            WeakReference<InvokerClassLoader> ref = loaders.get(parent);
+            loader = ref == null ? null : ref.get();
+            if (loader == null) {
+                loader = new InvokerClassLoader(parent);
+                loaders.put(parent, new WeakReference<InvokerClassLoader>(loader));
+            }
+        }
+        Class<?> invokerClass = loader.define(className, bytes);
+        ActionInvoker.Generated invoker = (ActionInvoker.Generated) invokerClass.newInstance();
+        invoker.init(method);
+        return invoker;
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 定义生成的类；{@link ActionInvoker} 相关的类总是从Rose自己的ClassLoader中加载
+     */
+    private static final class InvokerClassLoader extends ClassLoader {
+
+        InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            if (name.startsWith(ActionInvoker.class.getName())) {
+                return ActionInvoker.class.getClassLoader().loadClass(name);
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * 最简单的类文件写出器，只写出一个构造函数和doInvoke方法
+     */
+    private static final class ClassWriter {
+
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+        private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+
+        private int poolCount = 1;
+
+        byte[] write(String className, Method method) throws IOException {
+            int thisClass = classRef(className);
+            int superClass = classRef(SUPER_CLASS);
+            int superInit = methodRef(SUPER_CLASS, "<init>", "()V", false);
+            int initName = utf8("<init>");
+            int initDesc = utf8("()V");
+            int doInvokeName = utf8("doInvoke");
+            int doInvokeDesc = utf8(DO_INVOKE_DESC);
+            int codeName = utf8("Code");
+
+            // <init>
+            ByteArrayOutputStream initCode = new ByteArrayOutputStream();
+            DataOutputStream init = new DataOutputStream(initCode);
+            init.writeByte(0x2a); // aload_0
+            init.writeByte(0xb7); // invokespecial
+            init.writeShort(superInit);
+            init.writeByte(0xb1); // return
+
+            // doInvoke
+            ByteArrayOutputStream invokeCode = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(invokeCode);
+            Class<?> owner = method.getDeclaringClass();
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            int stack = 0;
+            if (!isStatic) {
+                code.writeByte(0x2b); // aload_1
+                code.writeByte(0xc0); // checkcast
+                code.writeShort(classRef(internalName(owner)));
+                stack = 1;
+            }
+            int maxStack = stack;
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                Class<?> type = parameterTypes[i];
+                code.writeByte(0x2c); // aload_2
+                pushInt(code, i);
+                code.writeByte(0x32); // aaload
+                maxStack = Math.max(maxStack, stack + 2);
+                if (type.isPrimitive()) {
+                    String wrapper = wrapperOf(type);
+                    code.writeByte(0xc0); // checkcast
+                    code.writeShort(classRef(wrapper));
+                    code.writeByte(0xb6); // invokevirtual
+                    code.writeShort(methodRef(wrapper, type.getName() + "Value", "()"
+                            + descriptor(type), false));
+                    stack += (type == long.class || type == double.class) ? 2 : 1;
+                } else {
+                    if (type != Object.class) {
+                        code.writeByte(0xc0); // checkcast
+                        code.writeShort(classRef(internalName(type)));
+                    }
+                    stack += 1;
+                }
+                maxStack = Math.max(maxStack, stack);
+            }
+            String methodDesc = methodDescriptor(method);
+            if (isStatic) {
+                code.writeByte(0xb8); // invokestatic
+                code.writeShort(methodRef(internalName(owner), method.getName(), methodDesc, false));
+            } else if (owner.isInterface()) {
+                code.writeByte(0xb9); // invokeinterface
+                code.writeShort(methodRef(internalName(owner), method.getName(), methodDesc, true));
+                code.writeByte(stack);
+                code.writeByte(0);
+            } else {
+                code.writeByte(0xb6); // invokevirtual
+                code.writeShort(methodRef(internalName(owner), method.getName(), methodDesc, false));
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == void.class) {
+                code.writeByte(0x01); // aconst_null
+            } else if (returnType.isPrimitive()) {
+                String wrapper = wrapperOf(returnType);
+                code.writeByte(0xb8); // invokestatic
+                code.writeShort(methodRef(wrapper, "valueOf", "(" + descriptor(returnType) + ")L"
+                        + wrapper + ";", false));
+            }
+            code.writeByte(0xb0); // areturn
+            maxStack = Math.max(maxStack, 2);
+
+            ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classBytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // minor
+            out.writeShort(49); // major: Java 5
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            writeMethod(out, 0x0001, initName, initDesc, codeName, 1, 1, initCode);
+            writeMethod(out, 0x0004, doInvokeName, doInvokeDesc, codeName, maxStack, 3,
+                    invokeCode);
+            out.writeShort(0); // attributes
+            out.flush();
+            return classBytes.toByteArray();
+        }
+
+        private void writeMethod(DataOutputStream out, int access, int name, int desc,
+                int codeName, int maxStack, int maxLocals, ByteArrayOutputStream code)
+                throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1); // attributes
+            out.writeShort(codeName);
+            out.writeInt(2 + 2 + 4 + code.size() + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.size());
+            code.writeTo(out);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        private static void pushInt(DataOutputStream code, int value) throws IOException {
+            if (value <= 5) {
+                code.writeByte(0x03 + value); // iconst_<n>
+            } else if (value <= Byte.MAX_VALUE) {
+                code.writeByte(0x10); // bipush
+                code.writeByte(value);
+            } else {
+                code.writeByte(0x11); // sipush
+                code.writeShort(value);
+            }
+        }
+
+        private int utf8(String value) throws IOException {
+            String key = "U" + value;
+            Integer index = poolIndexes.get(key);
+            if (index == null) {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+                index = poolCount++;
+                poolIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        private int classRef(String internalName) throws IOException {
+            String key = "C" + internalName;
+            Integer index = poolIndexes.get(key);
+            if (index == null) {
+                int name = utf8(internalName);
+                pool.writeByte(7);
+                pool.writeShort(name);
+                index = poolCount++;
+                poolIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        private int methodRef(String owner, String name, String desc, boolean isInterface)
+                throws IOException {
+            String key = "M" + owner + "." + name + desc;
+            Integer index = poolIndexes.get(key);
+            if (index == null) {
+                int ownerIndex = classRef(owner);
+                int nameIndex = utf8(name);
+                int descIndex = utf8(desc);
+                pool.writeByte(12); // NameAndType
+                pool.writeShort(nameIndex);
+                pool.writeShort(descIndex);
+                int nameAndType = poolCount++;
+                pool.writeByte(isInterface ? 11 : 10);
+                pool.writeShort(ownerIndex);
+                pool.writeShort(nameAndType);
+                index = poolCount++;
+                poolIndexes.put(key, index);
+            }
+            return index;
+        }
+
+        private static String internalName(Class<?> type) {
+            // 数组的checkcast使用的是描述符
+            return type.isArray() ? descriptor(type) : type.getName().replace('.', '/');
+        }
+
+        private static String methodDescriptor(Method method) {
+            StringBuilder sb = new StringBuilder("(");
+            for (Class<?> type : method.getParameterTypes()) {
+                sb.append(descriptor(type));
+            }
+            return sb.append(')').append(descriptor(method.getReturnType())).toString();
+        }
+
+        private static String descriptor(Class<?> type) {
+            if (type == void.class) {
+                return "V";
+            } else if (type == boolean.class) {
+                return "Z";
+            } else if (type == byte.class) {
+                return "B";
+            } else if (type == char.class) {
+                return "C";
+            } else if (type == short.class) {
+                return "S";
+            } else if (type == int.class) {
+                return "I";
+            } else if (type == long.class) {
+                return "J";
+            } else if (type == float.class) {
+                return "F";
+            } else if (type == double.class) {
+                return "D";
+            } else if (type.isArray()) {
+                return type.getName().replace('.', '/');
+            } else {
+                return "L" + type.getName().replace('.', '/') + ";";
+            }
+        }
+
+        private static String wrapperOf(Class<?> primitive) {
+            if (primitive == boolean.class) {
+                return "java/lang/Boolean";
+            } else if (primitive == byte.class) {
+                return "java/lang/Byte";
+            } else if (primitive == char.class) {
+                return "java/lang/Character";
+            } else if (primitive == short.class) {
+                return "java/lang/Short";
+            } else if (primitive == int.class) {
+                return "java/lang/Integer";
+            } else if (primitive == long.class) {
+                return "java/lang/Long";
+            } else if (primitive == float.class) {
+                return "java/lang/Float";
+            } else {
+                return "java/lang/Double";
+            }
+        }
+    }
+}
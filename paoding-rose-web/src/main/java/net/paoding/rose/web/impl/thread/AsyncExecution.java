@@ -0,0 +1,247 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 以反射的方式使用Servlet 3的AsyncContext，使rose在Servlet 2.4下编译、运行，在Servlet 3的容器中可以异步执行action。
+ * <p>
+ * 通过动态代理注册的AsyncListener在超时或出错时把本次执行标记为放弃：容器此时已经(或即将)结束请求并回收
+ * request/response，工作线程不再渲染、也不再调用complete。JSP等需要forward的视图不在工作线程中forward，
+ * 而是交给AsyncContext.dispatch由容器渲染。
+ * 
+ * @see net.paoding.rose.web.annotation.Async
+ */
+final class AsyncExecution {
+
+    private static final Log logger = LogFactory.getLog(AsyncExecution.class);
+
+    private final Object asyncContext;
+
+    private final Class<?> asyncContextClass;
+
+    /** 容器报告超时、出错或已经完成 */
+    private volatile boolean abandoned;
+
+    /** 已经调用complete或dispatch，容器接管了后续的处理 */
+    private volatile boolean finished;
+
+    private AsyncExecution(Object asyncContext, Class<?> asyncContextClass) {
+        this.asyncContext = asyncContext;
+        this.asyncContextClass = asyncContextClass;
+    }
+
+    /**
+     * 为给定请求开启AsyncContext；容器不支持异步时返回null
+     * 
+     * @param request
+     * @param response
+     * @param timeout 超时时间(毫秒)，负数表示使用容器的默认值
+     * @return
+     */
+    static AsyncExecution start(ServletRequest request, ServletResponse response, long timeout) {
+        try {
+            Method isAsyncSupported = getMethod(request, ServletRequest.class, "isAsyncSupported");
+            if (isAsyncSupported == null
+                    || !Boolean.TRUE.equals(isAsyncSupported.invoke(request))) {
+                return null;
+            }
+            Method startAsync = getMethod(request, ServletRequest.class, "startAsync",
+                    ServletRequest.class, ServletResponse.class);
+            Object asyncContext = startAsync.invoke(request, request, response);
+            Class<?> asyncContextClass = asyncContextClass(asyncContext);
+            if (timeout >= 0) {
+                asyncContextClass.getMethod("setTimeout", long.class).invoke(asyncContext, timeout);
+            }
+            AsyncExecution async = new AsyncExecution(asyncContext, asyncContextClass);
+            async.addListener();
+            return async;
+        } catch (InvocationTargetException e) {
+            logger.warn("failed to start async, execute synchronously", e.getTargetException());
+            return null;
+        } catch (Exception e) {
+            logger.warn("failed to start async, execute synchronously", e);
+            return null;
+        }
+    }
+
+    /**
+     * 注册AsyncListener：接口类型取自AsyncContext.addListener的参数，而不是按名称加载，
+     * 以免和容器使用不同的ClassLoader
+     */
+    private void addListener() throws Exception {
+        Method addListener = null;
+        for (Method method : asyncContextClass.getMethods()) {
+            if (method.getName().equals("addListener") && method.getParameterTypes().length == 1
+                    && method.getParameterTypes()[0].isInterface()) {
+                addListener = method;
+                break;
+            }
+        }
+        if (addListener == null) {
+            logger.warn("AsyncContext.addListener not found, timeout will not be detected: "
+                    + asyncContext.getClass().getName());
+            return;
+        }
+        Class<?> listenerClass = addListener.getParameterTypes()[0];
+        Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(),
+                new Class<?>[] { listenerClass }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if (name.equals("onTimeout") || name.equals("onError")
+                                || name.equals("onComplete")) {
+                            if (!name.equals("onComplete")) {
+                                logger.warn("async request abandoned by container: " + name);
+                            }
+                            abandoned = true;
+                            return null;
+                        }
+                        if (name.equals("equals")) {
+                            return proxy == args[0];
+                        }
+                        if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (name.equals("toString")) {
+                            return "rose async listener";
+                        }
+                        return null; // onStartAsync
+                    }
+                });
+        addListener.invoke(asyncContext, listener);
+    }
+
+    /**
+     * 容器是否已经因为超时、出错而放弃了这个请求；放弃后不能再使用request/response
+     * 
+     * @return
+     */
+    boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * 完成异步请求，容器随后结束响应；已经放弃或dispatch了的请求不再调用
+     */
+    void complete() {
+        if (abandoned || finished) {
+            return;
+        }
+        finished = true;
+        invoke("complete", new Class<?>[0]);
+    }
+
+    /**
+     * 由容器把请求dispatch给给定的资源(如JSP)，资源在容器线程中渲染、渲染后结束请求
+     * 
+     * @param path 以/开头、相对于context的地址
+     */
+    void dispatch(String path) {
+        if (abandoned || finished) {
+            return;
+        }
+        finished = true;
+        invoke("dispatch", new Class<?>[] { String.class }, path);
+    }
+
+    private void invoke(String name, Class<?>[] parameterTypes, Object... args) {
+        try {
+            asyncContextClass.getMethod(name, parameterTypes).invoke(asyncContext, args);
+        } catch (InvocationTargetException e) {
+            logger.error("failed to " + name + " async request", e.getTargetException());
+        } catch (Exception e) {
+            logger.error("failed to " + name + " async request", e);
+        }
+    }
+
+    /**
+     * 返回渲染视图时使用的request：forward到以/开头的资源时改为调用 {@link #dispatch(String)}
+     * 
+     * @param request
+     * @return
+     */
+    HttpServletRequest wrapForDispatch(HttpServletRequest request) {
+        return new HttpServletRequestWrapper(request) {
+
+            @Override
+            public RequestDispatcher getRequestDispatcher(final String path) {
+                final RequestDispatcher dispatcher = super.getRequestDispatcher(path);
+                if (path == null || !path.startsWith("/")) {
+                    return dispatcher;
+                }
+                return new RequestDispatcher() {
+
+                    @Override
+                    public void forward(ServletRequest request, ServletResponse response)
+                            throws ServletException, IOException {
+                        dispatch(path);
+                    }
+
+                    @Override
+                    public void include(ServletRequest request, ServletResponse response)
+                            throws ServletException, IOException {
+                        if (dispatcher == null) {
+                            throw new ServletException("not found dispatcher for " + path);
+                        }
+                        dispatcher.include(request, response);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 优先从Servlet接口取得方法(容器的实现类可能不是public的)，接口中没有时(Servlet 3以下的api)从实现类取得
+     */
+    private static Method getMethod(Object target, Class<?> api, String name,
+            Class<?>... parameterTypes) {
+        try {
+            return api.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            try {
+                return target.getClass().getMethod(name, parameterTypes);
+            } catch (NoSuchMethodException ex) {
+                return null;
+            }
+        }
+    }
+
+    private static Class<?> asyncContextClass(Object asyncContext) {
+        try {
+            return Class.forName("javax.servlet.AsyncContext", false, asyncContext.getClass()
+                    .getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return asyncContext.getClass();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import net.paoding.rose.web.annotation.LazyParams;
+import net.paoding.rose.web.impl.validation.ParameterBindingResult;
+
+/**
+ * 一次请求中被推迟解析的方法参数，参见 {@link LazyParams}
+ * <p>
+ * 
+ * 由 {@link ActionEngine} 在调用action前，或者由 {@link InvocationBean} 在第一次读取方法参数时解析，只解析一次。
+ */
+final class DeferredParameters {
+
+    private final ActionEngine actionEngine;
+
+    private final ParameterBindingResult bindingResult;
+
+    /** 为true的参数被推迟解析 */
+    private final boolean[] mask;
+
+    private boolean resolved;
+
+    /** 校验延迟参数时校验器返回的instruction */
+    private Object instruction;
+
+    DeferredParameters(ActionEngine actionEngine, ParameterBindingResult bindingResult,
+            boolean[] mask) {
+        this.actionEngine = actionEngine;
+        this.bindingResult = bindingResult;
+        this.mask = mask;
+    }
+
+    public boolean isResolved() {
+        return resolved;
+    }
+
+    /**
+     * 解析被推迟的参数(如果还没有解析)
+     * 
+     * @param inv
+     * @return 校验器返回的instruction，为null表示可以继续调用action
+     * @throws Exception
+     */
+    public Object resolve(InvocationBean inv) throws Exception {
+        if (!resolved) {
+            // 先置位，解析中读取参数时不会再次解析
+            resolved = true;
+            instruction = actionEngine.resolveDeferredParameters(inv, bindingResult, mask);
+        }
+        return instruction;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import net.paoding.rose.web.InterceptorDelegate;
+import net.paoding.rose.web.InterceptorStage;
+import net.paoding.rose.web.InvocationChain;
+import net.paoding.rose.web.impl.metrics.ActionMetrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link InterceptorPipeline} 以“展开”的方式执行一个action的拦截器：
+ * <p>
+ * 只有before/after的拦截器在一个循环里依次调用before，到达action后再反向调用after，不需要为每个请求创建
+ * {@link InvocationChain}，也不调用没有被覆盖的空方法；oncePerRequest的状态记录在
+ * {@link InvocationBean} 的位图上而不是请求属性中。只有遇到必须以round方式执行的拦截器时，
+ * 才创建一个 {@link InvocationChain} 把剩余的部分交给它。
+ * <p>
+ * 执行结果和 {@link ActionEngine} 原来的链式执行相同：拦截器返回null时保持原来的instruction，
+ * before返回非true时中断，false被视为null。
+ */
+final class InterceptorPipeline {
+
+    private static final Log logger = LogFactory.getLog(InterceptorPipeline.class);
+
+    /** 用位掩码记录哪些拦截器需要调用after，所以最多支持64个拦截器 */
+    static final int MAX_STAGES = 64;
+
+    private final InterceptorStage[] stages;
+
+    public InterceptorPipeline(InterceptorDelegate[] interceptors) {
+        if (interceptors.length > MAX_STAGES) {
+            throw new IllegalArgumentException("too many interceptors: " + interceptors.length);
+        }
+        this.stages = new InterceptorStage[interceptors.length];
+        for (int i = 0; i < interceptors.length; i++) {
+            stages[i] = new InterceptorStage(interceptors[i]);
+        }
+    }
+
+    public InterceptorStage[] getStages() {
+        return stages;
+    }
+
+    public Object execute(ActionEngine action, Rose rose) throws Exception {
+        return run(action, rose, 0, null);
+    }
+
+    /**
+     * 从第from个拦截器开始执行，直至action
+     *
+     * @param chain 由round拦截器调用时不为null
+     */
+    private Object run(ActionEngine action, Rose rose, int from, Chain chain) throws Exception {
+        final boolean debugEnabled = logger.isDebugEnabled();
+        final InvocationBean inv = rose.getInvocation();
+        final ActionMetrics metrics = action.getMetrics();
+        final InterceptorStage[] stages = this.stages;
+        long afters = 0; // 已经调用了before、需要调用after的拦截器
+        Object instruction = null;
+        int depth = from;
+        boolean reachedAction = true;
+        for (; depth < stages.length; depth++) {
+            InterceptorStage stage = stages[depth];
+            int onceIndex = stage.getOnceIndex();
+            if (onceIndex >= 0) {
+                if (inv.isOncePerRequestExecuted(onceIndex)) {
+                    if (debugEnabled) {
+                        logger.debug("skip oncePerRequest interceptor: " + stage);
+                    }
+                    continue;
+                }
+                inv.setOncePerRequestExecuted(onceIndex);
+            }
+            if (stage.getAfterCompletion() != null) {
+                rose.addAfterCompletion(stage.getAfterCompletion());
+            }
+            if (stage.isRound()) {
+                // 剩余的拦截器以及action交给这个拦截器的chain.doNext执行
+                Chain roundChain = chain != null ? chain : new Chain(this, action, rose);
+                roundChain.next = depth + 1;
+                long start = 0;
+                if (metrics != null) {
+                    start = System.nanoTime();
+                    roundChain.mark = start;
+                }
+                Object result = stage.round(inv, roundChain);
+                if (metrics != null) {
+                    // next不为-1表示没有调用doNext，全部计入before
+                    if (roundChain.next == -1) {
+                        metrics.recordAfter(depth, System.nanoTime() - roundChain.mark);
+                    } else {
+                        metrics.recordBefore(depth, System.nanoTime() - start);
+                    }
+                }
+                roundChain.next = -1;
+                if (debugEnabled) {
+                    logger.debug("interceptor[" + stage + "] do round and return '" + result
+                            + "'");
+                }
+                instruction = roundChain.instruction;
+                if (result != null) {
+                    instruction = result;
+                }
+                reachedAction = false;
+                break;
+            }
+            if (stage.hasBefore()) {
+                long start = metrics == null ? 0 : System.nanoTime();
+                Object result = stage.before(inv);
+                if (metrics != null) {
+                    metrics.recordBefore(depth, System.nanoTime() - start);
+                }
+                if (result != null && !Boolean.TRUE.equals(result)) {
+                    if (debugEnabled) {
+                        logger.debug("interceptor[" + stage + "] break the invocation by '"
+                                + result + "'");
+                    }
+                    if (!Boolean.FALSE.equals(result)) {
+                        instruction = result;
+                    }
+                    reachedAction = false;
+                    break;
+                }
+            }
+            if (stage.hasAfter()) {
+                afters |= 1L << depth;
+            }
+        }
+        if (reachedAction) {
+            instruction = action.invokeAction(rose);
+        }
+        // 反向调用after
+        for (int i = depth - 1; i >= from; i--) {
+            if ((afters & (1L << i)) != 0) {
+                long start = metrics == null ? 0 : System.nanoTime();
+                Object result = stages[i].after(inv, instruction);
+                if (metrics != null) {
+                    metrics.recordAfter(i, System.nanoTime() - start);
+                }
+                if (debugEnabled) {
+                    logger.debug("interceptor[" + stages[i] + "] do after and return '" + result
+                            + "'");
+                }
+                if (result != null) {
+                    instruction = result;
+                }
+            }
+        }
+        if (chain != null) {
+            chain.instruction = instruction;
+        }
+        return instruction;
+    }
+
+    /**
+     * 交给round拦截器的chain，只在有round拦截器时创建
+     */
+    private static final class Chain implements InvocationChain {
+
+        private final InterceptorPipeline pipeline;
+
+        private final ActionEngine action;
+
+        private final Rose rose;
+
+        /** 下一个要执行的拦截器；-1表示已经执行过doNext */
+        int next = -1;
+
+        Object instruction;
+
+        /** 开启统计时，round拦截器开始执行或者doNext返回的时间 */
+        long mark;
+
+        Chain(InterceptorPipeline pipeline, ActionEngine action, Rose rose) {
+            this.pipeline = pipeline;
+            this.action = action;
+            this.rose = rose;
+        }
+
+        @Override
+        public Object doNext() throws Exception {
+            int from = next;
+            if (from < 0) {
+                throw new IndexOutOfBoundsException(
+                        "don't call twice 'chain.doNext()' in one intercpetor");
+            }
+            next = -1;
+            ActionMetrics metrics = action.getMetrics();
+            if (metrics != null) {
+                metrics.recordBefore(from - 1, System.nanoTime() - mark);
+            }
+            Object instruction = pipeline.run(action, rose, from, this);
+            if (metrics != null) {
+                mark = System.nanoTime();
+            }
+            return instruction;
+        }
+    }
+}
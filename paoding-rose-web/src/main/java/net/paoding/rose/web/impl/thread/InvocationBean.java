@@ -18,6 +18,7 @@ package net.paoding.rose.web.impl.thread;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +32,7 @@ import javax.servlet.http.HttpServletResponse;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.InvocationUtils;
 import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.LazyParams;
 import net.paoding.rose.web.impl.mapping.MatchResult;
 import net.paoding.rose.web.impl.module.Module;
 import net.paoding.rose.web.impl.validation.ParameterBindingResult;
@@ -89,6 +91,12 @@ public final class InvocationBean implements Invocation {
 
     private ModuleEngine moduleEngine;
 
+    /** 展开执行拦截器时，记录已经执行过的oncePerRequest拦截器 */
+    private BitSet oncePerRequestFlags;
+
+    /** 被推迟解析的方法参数，参见 {@link LazyParams} */
+    private DeferredParameters deferredParameters;
+
     public InvocationBean(HttpServletRequest request, HttpServletResponse response,
             RequestPath requestPath) {
         setRequest(request);
@@ -104,6 +112,18 @@ public final class InvocationBean implements Invocation {
         return rose;
     }
 
+    /**
+     * 返回渲染视图时使用的request：异步执行的action中，forward到JSP等资源改为由容器dispatch，
+     * 同步执行时返回给定的request
+     * 
+     * @param request
+     * @return
+     */
+    public HttpServletRequest getRenderRequest(HttpServletRequest request) {
+        AsyncExecution async = rose == null ? null : rose.getAsyncExecution();
+        return async == null ? request : async.wrapForDispatch(request);
+    }
+
     protected boolean isMethodParametersInitiated() {
         return methodParameters != UN_INITIATED_ARRAY;
     }
@@ -117,6 +137,38 @@ public final class InvocationBean implements Invocation {
         this.methodParameters = methodParameters;
     }
 
+    void setDeferredParameters(DeferredParameters deferredParameters) {
+        this.deferredParameters = deferredParameters;
+    }
+
+    DeferredParameters getDeferredParameters() {
+        return deferredParameters;
+    }
+
+    /**
+     * 返回当前的方法参数，不触发被推迟参数的解析
+     * 
+     * @return
+     */
+    Object[] peekMethodParameters() {
+        return methodParameters;
+    }
+
+    /**
+     * 读取方法参数前，先解析被推迟的参数
+     */
+    private void resolveDeferredParameters() {
+        if (deferredParameters != null && !deferredParameters.isResolved()) {
+            try {
+                deferredParameters.resolve(this);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("failed to resolve method parameters", e);
+            }
+        }
+    }
+
     @Override
     public Object getController() {
         ControllerEngine engine = getControllerEngine();
@@ -200,6 +252,7 @@ public final class InvocationBean implements Invocation {
 
     @Override
     public Object[] getMethodParameters() {
+        resolveDeferredParameters();
         return methodParameters;
     }
 
@@ -208,6 +261,7 @@ public final class InvocationBean implements Invocation {
         if (!isMethodParametersInitiated()) {
             throw new IllegalStateException();
         }
+        resolveDeferredParameters();
         String[] names = getActionEngine().getParameterNames();
         for (int i = 0; i < names.length; i++) {
             if (name != null && name.equals(names[i])) {
@@ -227,6 +281,7 @@ public final class InvocationBean implements Invocation {
         if (!isMethodParametersInitiated()) {
             throw new IllegalStateException();
         }
+        resolveDeferredParameters();
         if (newValue != this.methodParameters[index]) {
             if (logger.isDebugEnabled()) {
                 String[] names = getActionEngine().getParameterNames();
@@ -408,6 +463,31 @@ public final class InvocationBean implements Invocation {
         this.preInvocation = preInvocation;
     }
 
+    /**
+     * 本次调用或之前的调用(forward、include之前的调用)是否已经执行过给定序号的oncePerRequest拦截器
+     * 
+     * @param onceIndex
+     * @return
+     */
+    boolean isOncePerRequestExecuted(int onceIndex) {
+        for (Invocation inv = this; inv != null; inv = inv.getPreInvocation()) {
+            if (inv instanceof InvocationBean) {
+                BitSet flags = ((InvocationBean) inv).oncePerRequestFlags;
+                if (flags != null && flags.get(onceIndex)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    void setOncePerRequestExecuted(int onceIndex) {
+        if (oncePerRequestFlags == null) {
+            oncePerRequestFlags = new BitSet();
+        }
+        oncePerRequestFlags.set(onceIndex);
+    }
+
     @Override
     public Invocation getHeadInvocation() {
         Invocation inv = this;
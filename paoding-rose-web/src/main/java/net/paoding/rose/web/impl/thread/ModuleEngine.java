@@ -27,6 +27,7 @@ import net.paoding.rose.web.ControllerErrorHandler;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.annotation.MultipartCleanup;
 import net.paoding.rose.web.annotation.NotForSubModules;
+import net.paoding.rose.web.annotation.StreamingMultipart;
 import net.paoding.rose.web.annotation.SuppressMultipartResolver;
 import net.paoding.rose.web.impl.module.Module;
 
@@ -115,7 +116,10 @@ public class ModuleEngine implements Engine {
 
         boolean isMultiPartRequest = false;
         try {
-            isMultiPartRequest = checkMultipart(inv);
+            // 标注了@LazyParams的action，上传请求推迟到解析参数时才解析(参见ActionEngine)
+            if (!rose.getInvocation().getActionEngine().isLazyParams()) {
+                isMultiPartRequest = checkMultipart(inv);
+            }
             return rose.doNext();
         } catch (Throwable invException) {
             // 抛出异常了(可能是拦截器或控制器抛出的)，此时让该控制器所在模块的ControllerErrorHanlder处理
@@ -169,7 +173,7 @@ public class ModuleEngine implements Engine {
             }
             return instruction;
         } finally {
-            if (isMultiPartRequest) {
+            if (isMultiPartRequest || rose.getInvocation().isMultiPartRequest()) {
                 cleanupMultipart(inv);
             }
         }
@@ -202,7 +206,7 @@ public class ModuleEngine implements Engine {
                 logger.debug("Request is already a MultipartHttpServletRequest");
                 return true;
             } else {
-                if (!inv.getMethod().isAnnotationPresent(SuppressMultipartResolver.class)) {
+                if (!isMultipartResolverSuppressed(inv)) {
                     inv.setRequest(this.multipartResolver.resolveMultipart(inv.getRequest()));
                     return true;
                 }
@@ -211,6 +215,23 @@ public class ModuleEngine implements Engine {
         return false;
     }
 
+    /**
+     * 是否是还没有解析、需要由 {@link #checkMultipart(Invocation)} 解析的上传请求
+     */
+    protected boolean isMultipartPending(Invocation inv) {
+        return !(inv.getRequest() instanceof MultipartHttpServletRequest)
+                && this.multipartResolver.isMultipart(inv.getRequest())
+                && !isMultipartResolverSuppressed(inv);
+    }
+
+    /**
+     * 标注了 {@link SuppressMultipartResolver} 或 {@link StreamingMultipart} 的action不需要解析上传请求
+     */
+    private static boolean isMultipartResolverSuppressed(Invocation inv) {
+        return inv.getMethod().isAnnotationPresent(SuppressMultipartResolver.class)
+                || inv.getMethod().isAnnotationPresent(StreamingMultipart.class);
+    }
+
     /**
      * Clean up any resources used by the given multipart request (if any).
      * 
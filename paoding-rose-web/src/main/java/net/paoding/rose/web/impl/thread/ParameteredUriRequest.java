@@ -15,27 +15,28 @@
  */
 package net.paoding.rose.web.impl.thread;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
+import net.paoding.rose.web.impl.mapping.UriParameters;
+
 /**
+ * 把地址中的参数作为请求参数暴露出来的请求，参数按槽位保存在 {@link UriParameters} 中
  * 
  * @author 王志亮 [qieqie.wang@gmail.com]
  * 
  */
 public class ParameteredUriRequest extends HttpServletRequestWrapper {
 
-    private final Map<String, String> parameters;
+    private final UriParameters parameters;
 
-    public ParameteredUriRequest(HttpServletRequest request, Map<String, String> parameters) {
+    public ParameteredUriRequest(HttpServletRequest request, UriParameters parameters) {
         super(request);
         this.parameters = parameters;
     }
@@ -54,9 +55,11 @@ public class ParameteredUriRequest extends HttpServletRequestWrapper {
     @SuppressWarnings("unchecked")
     public Map getParameterMap() {
         Map<String, String[]> map = new HashMap<String, String[]>(super.getParameterMap());
-        for (Map.Entry<String, String> entry : parameters.entrySet()) {
-            if (!map.containsKey(entry.getKey())) {
-                map.put(entry.getKey(), new String[] { parameters.get(entry.getKey()) });
+        for (int i = 0; i < parameters.size(); i++) {
+            String name = parameters.getName(i);
+            String value = parameters.getValue(i);
+            if (value != null && !map.containsKey(name)) {
+                map.put(name, new String[] { value });
             }
         }
         return Collections.unmodifiableMap(map);
@@ -84,18 +87,17 @@ public class ParameteredUriRequest extends HttpServletRequestWrapper {
 
         return new Enumeration<String>() {
 
-            final Iterator<String> matchResultParamNames = new ArrayList<String>(parameters
-                    .keySet()).iterator();
+            int slot = 0;
 
             @Override
             public boolean hasMoreElements() {
-                return matchResultParamNames.hasNext() || requestParamNames.hasMoreElements();
+                return slot < parameters.size() || requestParamNames.hasMoreElements();
             }
 
             @Override
             public String nextElement() {
-                if (matchResultParamNames.hasNext()) {
-                    return matchResultParamNames.next();
+                if (slot < parameters.size()) {
+                    return parameters.getName(slot++);
                 }
                 if (requestParamNames.hasMoreElements()) {
                     return requestParamNames.nextElement();
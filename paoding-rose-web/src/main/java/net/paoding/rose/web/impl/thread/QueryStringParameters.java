@@ -0,0 +1,105 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 一次请求的queryString参数视图，在第一次读取参数时才解析，解析结果被同一请求的所有
+ * {@link ActionEngine#isAccepted(javax.servlet.http.HttpServletRequest, QueryStringParameters)}
+ * 共用。
+ * <p>
+ *
+ * 参数值没有进行URL解码，和 {@link javax.servlet.http.HttpServletRequest#getQueryString()}
+ * 中的原始值一致。
+ */
+public final class QueryStringParameters {
+
+    private static final Log logger = LogFactory.getLog(QueryStringParameters.class);
+
+    private final String queryString;
+
+    private Map<String, String[]> params;
+
+    public QueryStringParameters(String queryString) {
+        this.queryString = queryString;
+    }
+
+    /**
+     * 返回参数的所有值，没有该参数时返回null
+     *
+     * @param name
+     * @return
+     */
+    public String[] get(String name) {
+        if (params == null) {
+            params = parse(queryString);
+        }
+        return params.get(name);
+    }
+
+    private static Map<String, String[]> parse(String queryString) {
+        if (queryString == null || queryString.length() == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String[]> params = new HashMap<String, String[]>();
+        // 结尾的空参数忽略不计，和String.split("&")一致
+        int length = queryString.length();
+        while (length > 0 && queryString.charAt(length - 1) == '&') {
+            length--;
+        }
+        int begin = 0;
+        while (begin < length) {
+            int end = queryString.indexOf('&', begin);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            int eq = queryString.indexOf('=', begin);
+            if (eq < 0 || eq >= end) {
+                put(params, queryString.substring(begin, end), "");
+            } else if (queryString.indexOf('=', eq + 1) >= 0
+                    && queryString.indexOf('=', eq + 1) < end) {
+                logger.error("Illegal queryString:" + queryString);
+            } else {
+                put(params, queryString.substring(begin, eq), queryString.substring(eq + 1, end));
+            }
+            begin = end + 1;
+        }
+        return params;
+    }
+
+    private static void put(Map<String, String[]> map, String key, String value) {
+        String[] values = map.get(key);
+        if (values == null) {
+            values = new String[] { value };
+        } else {
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = value;
+        }
+        map.put(key, values);
+    }
+
+    @Override
+    public String toString() {
+        return queryString == null ? "" : queryString;
+    }
+}
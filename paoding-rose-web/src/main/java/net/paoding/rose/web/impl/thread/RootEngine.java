@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 import net.paoding.rose.RoseFilter;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.impl.metrics.ActionMetrics;
 import net.paoding.rose.web.instruction.InstructionExecutor;
 import net.paoding.rose.web.instruction.InstructionExecutorImpl;
 import net.paoding.rose.web.var.FlashImpl;
@@ -127,6 +128,8 @@ public class RootEngine implements Engine {
 
         if (Thread.currentThread().isInterrupted()) {
             logger.info("stop to render: thread is interrupted");
+        } else if (rose.isAsyncAbandoned()) {
+            logger.info("stop to render: async request is abandoned by container");
         } else {
             // 写flash消息到Cookie (被include的请求不会有功能)
             if (!requestPath.isIncludeRequest()) {
@@ -137,7 +140,12 @@ public class RootEngine implements Engine {
             }
 
             // 渲染页面
+            ActionMetrics metrics = rose.getActionMetrics();
+            long start = metrics == null ? 0 : System.nanoTime();
             instructionExecutor.render(inv, instruction);
+            if (metrics != null) {
+                metrics.recordRender(System.nanoTime() - start);
+            }
         }
         return instruction;
     }
@@ -15,11 +15,11 @@
 */
 package net.paoding.rose.web.impl.thread;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -28,10 +28,12 @@ import net.paoding.rose.web.Dispatcher;
 import net.paoding.rose.web.Invocation;
 import net.paoding.rose.web.InvocationUtils;
 import net.paoding.rose.web.RequestPath;
-import net.paoding.rose.web.annotation.ReqMethod;
 import net.paoding.rose.web.impl.mapping.EngineGroup;
 import net.paoding.rose.web.impl.mapping.MappingNode;
 import net.paoding.rose.web.impl.mapping.MatchResult;
+import net.paoding.rose.web.impl.mapping.UriParameters;
+import net.paoding.rose.web.impl.metrics.ActionMetrics;
+import net.paoding.rose.web.impl.metrics.RoseMetrics;
 import net.paoding.rose.web.impl.module.Module;
 
 import org.apache.commons.logging.Log;
@@ -51,6 +53,13 @@ public class Rose implements EngineChain {
 
     private final MappingNode mappingTree;
 
+    private final RouteCache routeCache;
+
+    private final RoseMetrics metrics;
+
+    /** 开启统计时，本次请求所匹配的action的统计 */
+    private ActionMetrics actionMetrics;
+
     private final RequestPath path;
 
     private final HttpServletRequest originalHttpRequest;
@@ -59,7 +68,7 @@ public class Rose implements EngineChain {
 
     private boolean started;
 
-    private List<LinkedEngine> engines = new ArrayList<LinkedEngine>(6);
+    private List<LinkedEngine> engines;
 
     private List<MatchResult> matchResults;
 
@@ -67,11 +76,44 @@ public class Rose implements EngineChain {
 
     private int curIndexOfChain;
 
-    private final LinkedList<AfterCompletion> afterCompletions = new LinkedList<AfterCompletion>();
+    private final ArrayList<AfterCompletion> afterCompletions = new ArrayList<AfterCompletion>();
+
+    /** 执行异步action的线程池，为null时所有action都同步执行 */
+    private Executor asyncExecutor;
+
+    /** 为true时所有action都异步执行 */
+    private boolean asyncAll;
+
+    /** 异步执行时的AsyncContext，同步执行时为null */
+    private AsyncExecution asyncExecution;
 
     public Rose(List<Module> modules, MappingNode mappingTree, HttpServletRequest httpRequest,
             HttpServletResponse httpResponse, RequestPath requestPath) {
+        this(modules, mappingTree, null, null, httpRequest, httpResponse, requestPath);
+    }
+
+    public Rose(List<Module> modules, MappingNode mappingTree, RouteCache routeCache,
+            HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+            RequestPath requestPath) {
+        this(modules, mappingTree, routeCache, null, httpRequest, httpResponse, requestPath);
+    }
+
+    /**
+     * 
+     * @param modules
+     * @param mappingTree
+     * @param routeCache 常量地址的匹配结果缓存，可以为null
+     * @param metrics 运行时统计，没有开启统计时为null
+     * @param httpRequest
+     * @param httpResponse
+     * @param requestPath
+     */
+    public Rose(List<Module> modules, MappingNode mappingTree, RouteCache routeCache,
+            RoseMetrics metrics, HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse, RequestPath requestPath) {
         this.mappingTree = mappingTree;
+        this.routeCache = routeCache;
+        this.metrics = metrics;
         this.modules = modules;
         this.originalHttpRequest = httpRequest;
         this.originalHttpResponse = httpResponse;
@@ -82,6 +124,69 @@ public class Rose implements EngineChain {
         return mappingTree;
     }
 
+    /**
+     * 返回常量地址的匹配结果缓存，没有启用时返回null
+     * 
+     * @return
+     */
+    public RouteCache getRouteCache() {
+        return routeCache;
+    }
+
+    /**
+     * 返回运行时统计，没有开启时返回null
+     * 
+     * @return
+     */
+    public RoseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 返回本次请求所匹配的action的统计，没有开启统计或者还没有完成匹配时返回null
+     * 
+     * @return
+     */
+    public ActionMetrics getActionMetrics() {
+        return actionMetrics;
+    }
+
+    /**
+     * 设置执行异步action(参见 {@link net.paoding.rose.web.annotation.Async})的线程池
+     * 
+     * @param asyncExecutor
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * 设置为true时，所有action都视为异步action
+     * 
+     * @param asyncAll
+     */
+    public void setAsyncAll(boolean asyncAll) {
+        this.asyncAll = asyncAll;
+    }
+
+    /**
+     * 异步执行时返回所使用的AsyncContext，否则返回null
+     * 
+     * @return
+     */
+    AsyncExecution getAsyncExecution() {
+        return asyncExecution;
+    }
+
+    /**
+     * 异步执行的请求是否已经被容器因超时、出错而放弃，放弃后不能再渲染
+     * 
+     * @return
+     */
+    boolean isAsyncAbandoned() {
+        return asyncExecution != null && asyncExecution.isAbandoned();
+    }
+
     public InvocationBean getInvocation() {
         return inv;
     }
@@ -122,6 +227,168 @@ public class Rose implements EngineChain {
     }
 
     private boolean innerStart() throws Throwable {
+        final boolean debugEnabled = logger.isDebugEnabled();
+        final long startTime = metrics == null ? 0 : System.nanoTime();
+        UriParameters uriParameters = null;
+        final RouteCache.Route cachedRoute = (routeCache == null) ? null : routeCache.get(path
+                .getMethod(), path.getRosePath());
+        if (cachedRoute != null) {
+            if (debugEnabled) {
+                logger.debug("route cache hit: " + path.getMethod() + " '" + path.getRosePath()
+                        + "'");
+            }
+            cachedRoute.applyTo(path);
+            this.matchResults = cachedRoute.getMatchResults();
+            this.engines = cachedRoute.getEngines();
+            this.curIndexOfChain = engines.size();
+        } else {
+            // 地址匹配、选择engine；返回null表示已经完成了对请求的处理(比如404、405)
+            Boolean handled = resolveRoute();
+            if (handled != null) {
+                return handled;
+            }
+            uriParameters = UriParameters.of(matchResults, path.getRosePath());
+            if (routeCache != null && uriParameters == null && isSelectionStable()) {
+                routeCache.put(path.getMethod(), path.getRosePath(), new RouteCache.Route(
+                        matchResults, engines, path));
+            }
+        }
+        if (metrics != null) {
+            Engine target = engines.get(0).getTarget();
+            if (target instanceof ActionEngine) {
+                actionMetrics = ((ActionEngine) target).getMetrics();
+                if (actionMetrics != null) {
+                    actionMetrics.recordMatch(System.nanoTime() - startTime);
+                }
+            }
+        }
+
+        // 异步action：开启AsyncContext后交给线程池执行，释放容器线程
+        if (asyncExecutor != null && path.getDispatcher() == Dispatcher.REQUEST) {
+            Engine target = engines.get(0).getTarget();
+            if (target instanceof ActionEngine && (asyncAll || ((ActionEngine) target).isAsync())) {
+                AsyncExecution async = AsyncExecution.start(originalHttpRequest,
+                        originalHttpResponse, ((ActionEngine) target).getAsyncTimeout());
+                if (async != null) {
+                    executeAsync(async, uriParameters, startTime);
+                    return true;
+                }
+            }
+        }
+        return invoke(uriParameters, startTime);
+    }
+
+    private void executeAsync(final AsyncExecution async, final UriParameters uriParameters,
+            final long startTime) {
+        this.asyncExecution = async;
+        Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (!invoke(uriParameters, startTime)) {
+                        // 异步执行时已经没有后续的filter或servlet可以转交
+                        logger.warn("':continue' is not supported by async action: "
+                                + path.getUri());
+                        sendErrorIfPossible(404);
+                    }
+                } catch (Throwable e) {
+                    logger.error(path.getMethod() + " " + path.getUri(), e);
+                    sendErrorIfPossible(500);
+                } finally {
+                    // 已经放弃或dispatch了的请求不会再complete
+                    async.complete();
+                }
+            }
+        };
+        try {
+            asyncExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("async executor rejected " + path.getUri()
+                    + ", execute it in the container thread");
+            task.run();
+        }
+    }
+
+    private void sendErrorIfPossible(int sc) {
+        if (!isAsyncAbandoned() && !originalHttpResponse.isCommitted()) {
+            try {
+                originalHttpResponse.sendError(sc);
+            } catch (IOException e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    /**
+     * 创建invocation，执行engine链条以及afterCompletion
+     */
+    private boolean invoke(UriParameters uriParameters, long startTime) throws Throwable {
+        HttpServletRequest httpRequest = originalHttpRequest;
+        if (uriParameters != null) {
+            httpRequest = new ParameteredUriRequest(originalHttpRequest, uriParameters);
+        }
+
+        // originalThreadRequest可能为null，特别是在portal框架下
+        HttpServletRequest originalThreadRequest = InvocationUtils.getCurrentThreadRequest();
+        //
+        Invocation preInvocation = null;
+        if (path.getDispatcher() != Dispatcher.REQUEST) {
+            preInvocation = InvocationUtils.getInvocation(originalHttpRequest);
+        }
+        // invocation 对象 代表一次Rose调用
+        InvocationBean inv = new InvocationBean(httpRequest, originalHttpResponse, path);
+        inv.setRose(this);
+        inv.setPreInvocation(preInvocation);
+        //
+        InvocationUtils.bindRequestToCurrentThread(httpRequest);
+        InvocationUtils.bindInvocationToRequest(inv, httpRequest);
+
+        // invoke the engine chain
+        this.inv = inv;
+        Throwable error = null;
+        try {
+            Object instuction = ((EngineChain) this).doNext();
+            if (":continue".equals(instuction)) {
+                return false;
+            }
+        } catch (Throwable local) {
+            error = local;
+            throw local;
+        } finally {
+            if (actionMetrics != null) {
+                actionMetrics.recordRequest(System.nanoTime() - startTime, error != null);
+            }
+            // 后加入的先执行
+            for (int i = afterCompletions.size() - 1; i >= 0; i--) {
+                AfterCompletion task = afterCompletions.get(i);
+                try {
+                    task.afterCompletion(inv, error);
+                } catch (Throwable e) {
+                    logger.error("", e);
+                }
+            }
+            if (originalThreadRequest != null) {
+                InvocationUtils.bindRequestToCurrentThread(originalThreadRequest);
+            } else {
+                InvocationUtils.unindRequestFromCurrentThread();
+            }
+            // 更新绑定的invocation，只对于那些forward后request.setAttibute影响了前者的有效。(include的不用处理了，已经做了snapshot了)
+            if (preInvocation != null) {
+                InvocationUtils.bindInvocationToRequest(preInvocation, httpRequest);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 对请求地址进行匹配、选择处理的engine，并设置module/controller/action路径
+     * 
+     * @return null表示匹配成功，需要继续处理；true或false表示请求已处理完毕或不是Rose的请求
+     * @throws Throwable
+     */
+    private Boolean resolveRoute() throws Throwable {
         final boolean debugEnabled = logger.isDebugEnabled();
         final List<MatchResult> matchResults = mappingTree.match(this.path);
         if (matchResults == null) {
@@ -129,7 +396,7 @@ public class Rose implements EngineChain {
             if (debugEnabled) {
                 logger.debug("not rose uri: '" + this.path.getUri() + "'");
             }
-            return false;
+            return Boolean.FALSE;
         }
 
         final MatchResult lastMatched = matchResults.get(matchResults.size() - 1);
@@ -140,7 +407,7 @@ public class Rose implements EngineChain {
                 logger.debug("not rose uri, not exits leaf engines for it: '" + this.path.getUri()
                         + "'");
             }
-            return false;
+            return Boolean.FALSE;
 
         }
         final LinkedEngine leafEngine = select(leafEngineGroup.getEngines(path.getMethod()));
@@ -152,20 +419,11 @@ public class Rose implements EngineChain {
              * Allow header containing a list of valid methods for the requested
              * resource.
              */
-            StringBuilder allow = new StringBuilder();
-            final String gap = ", ";
-
-            for (ReqMethod method : leafEngineGroup.getAllowedMethods()) {
-                allow.append(method.toString()).append(gap);
-            }
-            if (allow.length() > 0) {
-                allow.setLength(allow.length() - gap.length());
-            }
-            originalHttpResponse.addHeader("Allow", allow.toString());
+            originalHttpResponse.addHeader("Allow", leafEngineGroup.getAllowHeader());
             originalHttpResponse.sendError(405, this.path.getUri());
 
             // true: don't forward to next filter or servlet
-            return true;
+            return Boolean.TRUE;
 
         }
 
@@ -177,6 +435,7 @@ public class Rose implements EngineChain {
         }
 
         // bind engines
+        this.engines = new ArrayList<LinkedEngine>(6);
         LinkedEngine tempEngine = leafEngine;
         MappingNode moduleNode = null;
         MappingNode controllerNode = null;
@@ -217,68 +476,24 @@ public class Rose implements EngineChain {
 
         this.curIndexOfChain = engines.size();
 
-        Map<String, String> uriParameters = null;
-        for (int i = matchResults.size() - 1; i >= 0; i--) {
-            MatchResult matchResult = matchResults.get(i);
-            String name = matchResult.getParameterName();
-            if (name != null) {
-                if (uriParameters == null) {
-                    uriParameters = new HashMap<String, String>(matchResults.size() << 1);
-                }
-                uriParameters.put(name, matchResult.getValue());
-            }
-        }
-
-        HttpServletRequest httpRequest = originalHttpRequest;
-        if (uriParameters != null && uriParameters.size() > 0) {
-            httpRequest = new ParameteredUriRequest(originalHttpRequest, uriParameters);
-        }
-
-        // originalThreadRequest可能为null，特别是在portal框架下
-        HttpServletRequest originalThreadRequest = InvocationUtils.getCurrentThreadRequest();
-        //
-        Invocation preInvocation = null;
-        if (path.getDispatcher() != Dispatcher.REQUEST) {
-            preInvocation = InvocationUtils.getInvocation(originalHttpRequest);
-        }
-        // invocation 对象 代表一次Rose调用
-        InvocationBean inv = new InvocationBean(httpRequest, originalHttpResponse, path);
-        inv.setRose(this);
-        inv.setPreInvocation(preInvocation);
-        //
-        InvocationUtils.bindRequestToCurrentThread(httpRequest);
-        InvocationUtils.bindInvocationToRequest(inv, httpRequest);
+        return null;
+    }
 
-        // invoke the engine chain
-        this.inv = inv;
-        Throwable error = null;
-        try {
-            Object instuction = ((EngineChain) this).doNext();
-            if (":continue".equals(instuction)) {
+    /**
+     * 被选中的engine是否和请求参数无关？只有这样，匹配结果才能被缓存
+     * 
+     * @return
+     */
+    private boolean isSelectionStable() {
+        LinkedEngine[] candidates = engines.get(0).getNode().getLeafEngines().getEngines(
+                path.getMethod());
+        for (LinkedEngine engine : candidates) {
+            Engine target = engine.getTarget();
+            if (!(target instanceof ActionEngine)
+                    || ((ActionEngine) target).hasParamExistenceChecker()) {
                 return false;
             }
-        } catch (Throwable local) {
-            error = local;
-            throw local;
-        } finally {
-            for (AfterCompletion task : afterCompletions) {
-                try {
-                    task.afterCompletion(inv, error);
-                } catch (Throwable e) {
-                    logger.error("", e);
-                }
-            }
-            if (originalThreadRequest != null) {
-                InvocationUtils.bindRequestToCurrentThread(originalThreadRequest);
-            } else {
-                InvocationUtils.unindRequestFromCurrentThread();
-            }
-            // 更新绑定的invocation，只对于那些forward后request.setAttibute影响了前者的有效。(include的不用处理了，已经做了snapshot了)
-            if (preInvocation != null) {
-                InvocationUtils.bindInvocationToRequest(preInvocation, httpRequest);
-            }
         }
-
         return true;
     }
 
@@ -286,8 +501,19 @@ public class Rose implements EngineChain {
         LinkedEngine selectedEngine = null;
         int score = 0;
 
+        // 所有候选engine共用一个queryString视图，最多解析一次
+        QueryStringParameters queryString = null;
         for (LinkedEngine engine : engines) {
-            int candidate = engine.isAccepted(this.originalHttpRequest);
+            int candidate;
+            if (engine.getTarget() instanceof ActionEngine) {
+                if (queryString == null) {
+                    queryString = new QueryStringParameters(originalHttpRequest.getQueryString());
+                }
+                candidate = ((ActionEngine) engine.getTarget()).isAccepted(originalHttpRequest,
+                        queryString);
+            } else {
+                candidate = engine.isAccepted(this.originalHttpRequest);
+            }
             if (logger.isDebugEnabled()) {
                 logger.debug("Score of " + engine.getClass().getName() + ":" + candidate);
             }
@@ -317,6 +543,6 @@ public class Rose implements EngineChain {
 
     @Override
     public void addAfterCompletion(AfterCompletion task) {
-        afterCompletions.addFirst(task);
+        afterCompletions.add(task);
     }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.impl.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.ReqMethod;
+import net.paoding.rose.web.impl.mapping.MatchResult;
+
+/**
+ * {@link RouteCache} 缓存常量地址(不含{param}的地址)的匹配结果，使热点地址不必每次都重新匹配匹配树、
+ * 重新选择 {@link LinkedEngine} 以及重新计算module/controller/action的路径。
+ * <p>
+ *
+ * 缓存按照请求方法分开存放，以rosePath作为key，容量有上限；缓存已满时随机淘汰一个已有的地址。
+ *
+ * @see Rose
+ */
+public class RouteCache {
+
+    /** 默认最多缓存的地址数 */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+
+    /** 以 {@link ReqMethod#ordinal()} 为下标，每种请求方法一个map */
+    private final ConcurrentMap<String, Route>[] routes;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public RouteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.routes = new ConcurrentMap[ReqMethod.values().length];
+        for (int i = 0; i < routes.length; i++) {
+            routes[i] = new ConcurrentHashMap<String, Route>();
+        }
+    }
+
+    /**
+     * 返回给定请求已经缓存的匹配结果，没有时返回null
+     *
+     * @param method
+     * @param rosePath
+     * @return
+     */
+    public Route get(ReqMethod method, String rosePath) {
+        if (method == null) {
+            return null;
+        }
+        Route route = routes[method.ordinal()].get(rosePath);
+        if (route == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return route;
+    }
+
+    /**
+     * 缓存一个匹配结果，调用者应保证这个结果和请求的参数无关
+     *
+     * @param method
+     * @param rosePath
+     * @param route
+     */
+    public void put(ReqMethod method, String rosePath, Route route) {
+        if (method == null) {
+            return;
+        }
+        ConcurrentMap<String, Route> map = routes[method.ordinal()];
+        if (map.putIfAbsent(rosePath, route) == null) {
+            if (size.incrementAndGet() > capacity) {
+                evict(map, rosePath);
+            }
+        }
+    }
+
+    private void evict(ConcurrentMap<String, Route> preferred, String justAdded) {
+        // 优先淘汰同一种请求方法下的其他地址；ConcurrentHashMap的迭代顺序和插入顺序无关，近似于随机淘汰
+        Iterator<String> iter = preferred.keySet().iterator();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            if (!key.equals(justAdded) && preferred.remove(key) != null) {
+                size.decrementAndGet();
+                evictions.incrementAndGet();
+                return;
+            }
+        }
+        for (ConcurrentMap<String, Route> map : routes) {
+            iter = map.keySet().iterator();
+            if (iter.hasNext() && map.remove(iter.next()) != null) {
+                size.decrementAndGet();
+                evictions.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public void clear() {
+        for (ConcurrentMap<String, Route> map : routes) {
+            int removed = map.size();
+            map.clear();
+            size.addAndGet(-removed);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache[size=" + size() + ", capacity=" + capacity + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 一个已经解析好的、不可变的匹配结果
+     */
+    public static final class Route {
+
+        private final List<MatchResult> matchResults;
+
+        private final List<LinkedEngine> engines;
+
+        private final String modulePath;
+
+        private final String controllerPath;
+
+        private final String actionPath;
+
+        /**
+         *
+         * @param matchResults 不含参数的匹配结果
+         * @param engines 从action到root的engine链
+         * @param requestPath 已经设置好module/controller/action路径的requestPath
+         */
+        public Route(List<MatchResult> matchResults, List<LinkedEngine> engines,
+                RequestPath requestPath) {
+            for (MatchResult matchResult : matchResults) {
+                matchResult.getValue(); // 提前创建好结果字符串
+            }
+            this.matchResults = Collections.unmodifiableList(new ArrayList<MatchResult>(
+                    matchResults));
+            this.engines = Collections.unmodifiableList(new ArrayList<LinkedEngine>(engines));
+            this.modulePath = requestPath.getModulePath();
+            this.controllerPath = requestPath.getControllerPath();
+            this.actionPath = requestPath.getActionPath();
+        }
+
+        public List<MatchResult> getMatchResults() {
+            return matchResults;
+        }
+
+        public List<LinkedEngine> getEngines() {
+            return engines;
+        }
+
+        public LinkedEngine getLeafEngine() {
+            return engines.get(0);
+        }
+
+        /**
+         * 把缓存的module/controller/action路径设置给requestPath
+         *
+         * @param requestPath
+         */
+        public void applyTo(RequestPath requestPath) {
+            requestPath.setModulePath(modulePath);
+            requestPath.setControllerPath(controllerPath);
+            requestPath.setActionPath(actionPath);
+        }
+    }
+}
@@ -20,10 +20,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.paoding.rose.util.SpringUtils;
 import net.paoding.rose.web.Invocation;
@@ -57,13 +57,14 @@ public class ViewDispatcherImpl implements ViewDispatcher, ApplicationContextAwa
 
     private static Log logger = LogFactory.getLog(ViewDispatcherImpl.class);
 
-    private ViewResolver jspViewResolver;
+    private volatile ViewResolver jspViewResolver;
 
     private ViewResolver internalResourceViewResolver = new InternalResourceViewResolver();
 
     private ConfigurableWebApplicationContext applicationContext;
 
-    private Map<String, VelocityViewResolver> velocityViewResolvers = new HashMap<String, VelocityViewResolver>();
+    // 视图地址以及视图所在目录到velocity resolver的映射，会被多个请求同时读写
+    private final ConcurrentMap<String, VelocityViewResolver> velocityViewResolvers = new ConcurrentHashMap<String, VelocityViewResolver>();
 
     public ViewDispatcherImpl() {
     }
@@ -135,6 +136,13 @@ public class ViewDispatcherImpl implements ViewDispatcher, ApplicationContextAwa
     }
 
     protected ViewResolver getJspViewResolver() throws IOException {
+        if (this.jspViewResolver != null) {
+            return this.jspViewResolver;
+        }
+        return registerJspViewResolver();
+    }
+
+    private synchronized ViewResolver registerJspViewResolver() {
         if (this.jspViewResolver != null) {
             return this.jspViewResolver;
         }
@@ -170,6 +178,19 @@ public class ViewDispatcherImpl implements ViewDispatcher, ApplicationContextAwa
             velocityViewResolvers.put(viewPath, viewResolver);
             return viewResolver;
         }
+        return createVelocityViewResolverIfNecessary(inv, viewPath, viewDirectory);
+    }
+
+    /**
+     * 第一次使用某个目录时查找layout、注册resolver；同步执行以免并发的请求重复注册
+     */
+    private synchronized ViewResolver createVelocityViewResolverIfNecessary(Invocation inv,
+            String viewPath, String viewDirectory) throws IOException {
+        VelocityViewResolver viewResolver = velocityViewResolvers.get(viewDirectory);
+        if (viewResolver != null) {
+            velocityViewResolvers.put(viewPath, viewResolver);
+            return viewResolver;
+        }
         StringBuilder sb = new StringBuilder();
         boolean beUpperCase = false;
         for (int i = 0; i < viewDirectory.length(); i++) {
@@ -15,35 +15,251 @@
  */
 package net.paoding.rose.web.impl.view;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import net.paoding.rose.RoseConstants;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 /**
+ * 一个views目录(如/views/admin)的索引：创建时扫描一次整个目录树，之后视图名到视图地址的查找都在内存中完成，
+ * 不再访问文件系统。
+ * <p>
+ * 
+ * 查找规则和原来逐次扫描目录时相同：子目录优先大小写敏感地匹配，找不到时忽略大小写；视图文件按"名字.扩展名"匹配，
+ * 同样优先大小写敏感，多个文件匹配时取文件名排序的第一个。
+ * <p>
+ * 
+ * 开发时可以通过系统属性 <code>-Drose.views.watch=2000</code>
+ * 开启检查模式：每隔给定的毫秒数检查一次目录是否有变化(文件的增删会改变目录的修改时间)，有变化时重建索引。
+ * <p>
+ * 
+ * 索引本身不可变，重建时整体替换，所以可以被多个线程同时使用。
  * 
  * @author 王志亮 [qieqie.wang@gmail.com]
  * 
  */
 public class ViewPathCache {
 
-    private String directoryPath;
+    private static final Log logger = LogFactory.getLog(ViewPathCache.class);
+
+    private static final long watchInterval = Long.getLong("rose.views.watch", 0);
+
+    /** 最多记住多少个查找结果，超过后仍然在索引中查找 */
+    private static final int MAX_RESOLVED = 4096;
 
-    private HashMap<String, String> viewPathMap = new HashMap<String, String>();
+    private final String directoryPath;
 
-    public ViewPathCache(String modulePath) {
-        directoryPath = RoseConstants.VIEWS_PATH + modulePath;
+    private final File directoryFile;
+
+    private volatile Snapshot snapshot;
+
+    private volatile long lastChecked;
+
+    /**
+     * @param directoryPath 目录在webapp中的地址，如/views/admin
+     * @param directoryFile 目录对应的文件
+     */
+    public ViewPathCache(String directoryPath, File directoryFile) {
+        this.directoryPath = directoryPath;
+        this.directoryFile = directoryFile;
+        this.snapshot = new Snapshot(directoryPath, directoryFile);
+        this.lastChecked = System.currentTimeMillis();
     }
 
+    public String getDirectoryPath() {
+        return directoryPath;
+    }
+
+    /**
+     * 返回视图名对应的视图地址(如/views/admin/user/list.vm)，找不到时返回null
+     * 
+     * @param viewName 相对于这个目录的视图名，如user/list
+     * @return
+     */
     public String getViewPath(String viewName) {
-        return viewPathMap.get(viewName);
+        Snapshot snapshot = getSnapshot();
+        String viewPath = snapshot.viewPaths.get(viewName);
+        if (viewPath == null) {
+            viewPath = snapshot.resolve(viewName);
+            if (viewPath != null && snapshot.viewPaths.size() < MAX_RESOLVED) {
+                snapshot.viewPaths.put(viewName, viewPath);
+            }
+        }
+        return viewPath;
     }
 
-    public void setViewPath(String viewName, String viewPath) {
-        viewPathMap.put(viewName, viewPath);
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = this.snapshot;
+        if (watchInterval > 0) {
+            long now = System.currentTimeMillis();
+            if (now - lastChecked >= watchInterval) {
+                lastChecked = now;
+                if (snapshot.isModified()) {
+                    if (logger.isInfoEnabled()) {
+                        logger.info("views directory changed, rebuild the index of "
+                                + directoryPath);
+                    }
+                    snapshot = new Snapshot(directoryPath, directoryFile);
+                    this.snapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
     }
 
-    public String getDirectoryPath() {
-        return directoryPath;
+    //-------------------------------------------------------------
+
+    /**
+     * 某一时刻整个目录树的索引
+     */
+    private static final class Snapshot {
+
+        final Directory root;
+
+        /** 已经查找过的视图名 */
+        final ConcurrentMap<String, String> viewPaths = new ConcurrentHashMap<String, String>();
+
+        /** 索引中所有的目录及其修改时间，用于检查模式 */
+        final File[] directories;
+
+        final long[] lastModified;
+
+        Snapshot(String directoryPath, File directoryFile) {
+            List<Directory> all = new ArrayList<Directory>();
+            this.root = Directory.scan(directoryPath, directoryFile, all);
+            this.directories = new File[all.size()];
+            this.lastModified = new long[all.size()];
+            for (int i = 0; i < directories.length; i++) {
+                directories[i] = all.get(i).file;
+                lastModified[i] = all.get(i).lastModified;
+            }
+        }
+
+        boolean isModified() {
+            for (int i = 0; i < directories.length; i++) {
+                if (directories[i].lastModified() != lastModified[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String resolve(String viewName) {
+            Directory directory = root;
+            String fileName = viewName;
+            int index = viewName.lastIndexOf('/');
+            if (index >= 0) {
+                fileName = viewName.substring(index + 1);
+                for (String subDir : StringUtils.split(viewName.substring(0, index), "/")) {
+                    directory = directory.getChild(subDir);
+                    if (directory == null) {
+                        return null;
+                    }
+                }
+            }
+            String viewFileName = directory.searchFile(fileName, false);
+            if (viewFileName == null) {
+                viewFileName = directory.searchFile(fileName, true);
+            }
+            return viewFileName == null ? null : directory.path + "/" + viewFileName;
+        }
     }
 
+    private static final class Directory {
+
+        final String path;
+
+        final File file;
+
+        final long lastModified;
+
+        /** 排序后的文件名 */
+        final String[] files;
+
+        /** 排序后的子目录名 */
+        final String[] childNames;
+
+        final Map<String, Directory> children;
+
+        private Directory(String path, File file, String[] files, String[] childNames,
+                Map<String, Directory> children, long lastModified) {
+            this.path = path;
+            this.file = file;
+            this.files = files;
+            this.childNames = childNames;
+            this.children = children;
+            this.lastModified = lastModified;
+        }
+
+        static Directory scan(String path, File file, List<Directory> all) {
+            long lastModified = file.lastModified();
+            String[] names = file.list();
+            if (names == null) {
+                names = new String[0];
+            }
+            Arrays.sort(names);
+            List<String> files = new ArrayList<String>(names.length);
+            List<String> childNames = new ArrayList<String>();
+            Map<String, Directory> children = new HashMap<String, Directory>();
+            List<Directory> descendants = new ArrayList<Directory>();
+            for (String name : names) {
+                File child = new File(file, name);
+                if (child.isDirectory()) {
+                    childNames.add(name);
+                    children.put(name, scan(path + "/" + name, child, descendants));
+                } else if (child.isFile()) {
+                    files.add(name);
+                }
+            }
+            Directory directory = new Directory(path, file, files.toArray(new String[files
+                    .size()]), childNames.toArray(new String[childNames.size()]), Collections
+                    .unmodifiableMap(children), lastModified);
+            all.add(directory);
+            all.addAll(descendants);
+            return directory;
+        }
+
+        /**
+         * 优先获取大小写敏感的子目录，如若找不到，则获取忽略大小写后的子目录
+         */
+        Directory getChild(String name) {
+            Directory child = children.get(name);
+            if (child == null) {
+                for (String childName : childNames) {
+                    if (childName.equalsIgnoreCase(name)) {
+                        return children.get(childName);
+                    }
+                }
+            }
+            return child;
+        }
+
+        String searchFile(String fileNameToFind, boolean ignoreCase) {
+            String toFind = ignoreCase ? fileNameToFind.toLowerCase() : fileNameToFind;
+            for (String fileName : files) {
+                String name = ignoreCase ? fileName.toLowerCase() : fileName;
+                if (!name.startsWith(toFind)) {
+                    continue;
+                }
+                if (fileName.length() == fileNameToFind.length()
+                        && fileNameToFind.lastIndexOf('.') != -1) {
+                    return fileName;
+                }
+                if (fileName.length() > fileNameToFind.length()
+                        && fileName.charAt(fileNameToFind.length()) == '.') {
+                    return fileName;
+                }
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.paoding.rose.web.Invocation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link BinaryInstruction} 是长度已知的二进制内容(文件、byte[]等)的渲染基类：
+ * <p>
+ * 自动设置Content-Length；设置了最后修改时间时输出Last-Modified，并对带有If-Modified-Since的GET/HEAD请求返回304；
+ * 支持单个区间的Range请求(包括If-Range)，返回206或者416，多个区间的Range请求返回全部内容。
+ * <p>
+ * 
+ * 子类只需要给出内容的长度，以及如何把其中一段写到输出流中。
+ * 
+ */
+public abstract class BinaryInstruction extends AbstractInstruction {
+
+    protected static Log logger = LogFactory.getLog(BinaryInstruction.class);
+
+    /** 表示Range请求的区间不能满足 */
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    private String contentType;
+
+    private long lastModified = -1;
+
+    /**
+     * 设置内容的类型，没有设置并且response中也没有设置时，根据 {@link #getName()} 猜测或者使用
+     * application/octet-stream
+     * 
+     * @param contentType
+     */
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * 设置内容的最后修改时间(毫秒)，-1表示未知
+     * 
+     * @param lastModified
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 用于根据扩展名猜测contentType的名字，没有时返回null
+     * 
+     * @return
+     */
+    protected String getName() {
+        return null;
+    }
+
+    /**
+     * 返回内容的长度；内容不存在时，由子类发送错误并返回-1
+     * 
+     * @param inv
+     * @return
+     * @throws IOException
+     */
+    protected abstract long getContentLength(Invocation inv) throws IOException;
+
+    /**
+     * 把内容从position开始的count个字节写到输出流中
+     * 
+     * @param out
+     * @param position
+     * @param count
+     * @throws IOException
+     */
+    protected abstract void write(OutputStream out, long position, long count) throws IOException;
+
+    /**
+     * 渲染结束(不论成功与否)时调用，用于释放打开的资源
+     * 
+     * @throws IOException
+     */
+    protected void release() throws IOException {
+    }
+
+    @Override
+    protected void doRender(Invocation inv) throws IOException, ServletException, Exception {
+        try {
+            long length = getContentLength(inv);
+            if (length < 0) {
+                return;
+            }
+            HttpServletRequest request = inv.getRequest();
+            HttpServletResponse response = inv.getResponse();
+            long lastModified = this.lastModified;
+            if (lastModified >= 0) {
+                // HTTP的日期只精确到秒
+                lastModified = lastModified / 1000 * 1000;
+                response.setDateHeader("Last-Modified", lastModified);
+                if (isNotModified(request, lastModified)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            if (response.getContentType() == null) {
+                response.setContentType(guessContentType(inv.getServletContext()));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("set response.contentType by default:"
+                            + response.getContentType());
+                }
+            }
+            response.setHeader("Accept-Ranges", "bytes");
+            long position = 0;
+            long count = length;
+            long[] range = getRange(request, length, lastModified);
+            if (range == UNSATISFIABLE) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (range != null) {
+                position = range[0];
+                count = range[1] - range[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/"
+                        + length);
+            }
+            if (count <= Integer.MAX_VALUE) {
+                response.setContentLength((int) count);
+            } else {
+                response.setHeader("Content-Length", Long.toString(count));
+            }
+            if (count == 0 || "HEAD".equals(request.getMethod())) {
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            write(out, position, count);
+            out.flush();
+        } finally {
+            release();
+        }
+    }
+
+    private String guessContentType(ServletContext servletContext) {
+        if (contentType != null) {
+            return contentType;
+        }
+        String name = getName();
+        if (name != null && servletContext != null) {
+            String mimeType = servletContext.getMimeType(name);
+            if (mimeType != null) {
+                return mimeType;
+            }
+        }
+        return "application/octet-stream";
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, long lastModified) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析Range请求头，返回{start, end}(包含end)；不是Range请求、或者应该返回全部内容时返回null
+     */
+    private static long[] getRange(HttpServletRequest request, long length, long lastModified) {
+        String header = request.getHeader("Range");
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        if (request.getHeader("If-Range") != null) {
+            try {
+                if (lastModified < 0 || request.getDateHeader("If-Range") != lastModified) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                // 不是日期(比如ETag)，不能确定内容没有改变
+                return null;
+            }
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1).trim());
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                String last = spec.substring(dash + 1).trim();
+                end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last),
+                        length - 1);
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+                if (end < start) {
+                    return null;
+                }
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
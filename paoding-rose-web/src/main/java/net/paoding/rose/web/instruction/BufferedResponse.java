@@ -0,0 +1,374 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * {@link BufferedResponse} 是 {@link OutputPolicy} 的输出管道：视图写出的内容先进入一个池化的缓冲区，
+ * {@link #finish()} 时根据长度和Accept-Encoding决定是否压缩，设置Content-Length后一次写给容器。
+ * <p>
+ * 输出超过 {@link #BUFFER_LIMIT} 时不再缓冲，此后边压缩边写给容器(没有Content-Length)。
+ * <p>
+ * 使用完毕后必须调用 {@link #release()} 归还缓冲区。
+ */
+public class BufferedResponse extends HttpServletResponseWrapper {
+
+    /** 缓冲的最大字节数，超过后改为流式输出 */
+    public static final int BUFFER_LIMIT = 64 * 1024;
+
+    private final HttpServletRequest request;
+
+    private final OutputPolicy policy;
+
+    private Buffer buffer;
+
+    /** 超过缓冲上限后直接写入的流(可能是压缩流)，缓冲阶段为null */
+    private OutputStream streaming;
+
+    /** 流式压缩使用的Deflater，由 {@link #release()} 释放本地内存 */
+    private Deflater deflater;
+
+    private ServletOutputStream outputStream;
+
+    private PrintWriter writer;
+
+    public BufferedResponse(HttpServletRequest request, HttpServletResponse response,
+            OutputPolicy policy) {
+        super(response);
+        this.request = request;
+        this.policy = policy;
+    }
+
+    private HttpServletResponse getHttpResponse() {
+        return (HttpServletResponse) getResponse();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (outputStream == null) {
+            outputStream = new Stream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            outputStream = new Stream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // 由管道在结束时计算
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (streaming != null) {
+            flushWriter();
+            streaming.flush();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (streaming != null) {
+            throw new IllegalStateException("response has been committed");
+        }
+        if (buffer != null) {
+            buffer.reset();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        super.reset();
+    }
+
+    /**
+     * 把缓冲的内容写给容器
+     * 
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        flushWriter();
+        if (streaming != null) {
+            if (streaming instanceof DeflaterOutputStream) {
+                ((DeflaterOutputStream) streaming).finish();
+            }
+            streaming.flush();
+        } else if (buffer != null && buffer.size() > 0) {
+            send(request, getHttpResponse(), policy, buffer.array(), 0, buffer.size());
+        }
+    }
+
+    /**
+     * 归还缓冲区
+     */
+    public void release() {
+        if (buffer != null) {
+            Buffer.release(buffer);
+            buffer = null;
+        }
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    private void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        if (streaming != null) {
+            streaming.write(b, off, len);
+            return;
+        }
+        if (buffer == null) {
+            buffer = Buffer.acquire();
+        }
+        if (buffer.size() + len <= BUFFER_LIMIT) {
+            buffer.write(b, off, len);
+            return;
+        }
+        // 超过缓冲上限，开始流式输出
+        HttpServletResponse response = getHttpResponse();
+        String encoding = negotiate(request, response, policy, Integer.MAX_VALUE);
+        OutputStream out = response.getOutputStream();
+        if (encoding != null) {
+            deflater = newDeflater(encoding);
+            out = compress(encoding, out, deflater);
+        }
+        streaming = out;
+        streaming.write(buffer.array(), 0, buffer.size());
+        buffer.reset();
+        streaming.write(b, off, len);
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 一次性写出完整的响应体：达到压缩条件时压缩，并设置Content-Length
+     * 
+     * @return false表示response.getWriter()已经被调用过，无法以字节写出，调用者应使用writer
+     */
+    static boolean send(HttpServletRequest request, HttpServletResponse response,
+            OutputPolicy policy, byte[] body, int off, int len) throws IOException {
+        ServletOutputStream out;
+        try {
+            out = response.getOutputStream();
+        } catch (IllegalStateException e) {
+            return false;
+        }
+        if (response.isCommitted()) {
+            out.write(body, off, len);
+            return true;
+        }
+        String encoding = negotiate(request, response, policy, len);
+        if (encoding == null) {
+            response.setContentLength(len);
+            out.write(body, off, len);
+            return true;
+        }
+        Buffer compressed = Buffer.acquire();
+        Deflater deflater = newDeflater(encoding);
+        try {
+            DeflaterOutputStream compressor = compress(encoding, compressed, deflater);
+            compressor.write(body, off, len);
+            compressor.finish();
+            response.setContentLength(compressed.size());
+            out.write(compressed.array(), 0, compressed.size());
+        } finally {
+            deflater.end();
+            Buffer.release(compressed);
+        }
+        return true;
+    }
+
+    /**
+     * 显式创建的Deflater，使用者必须在finally中调用 {@link Deflater#end()} 释放本地内存；gzip格式自行写头尾，
+     * 所以不带zlib包装
+     */
+    private static Deflater newDeflater(String encoding) {
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, "gzip".equals(encoding));
+    }
+
+    private static DeflaterOutputStream compress(String encoding, OutputStream out,
+            Deflater deflater) throws IOException {
+        return "gzip".equals(encoding) ? new GzipStream(out, deflater)
+                : new DeflaterOutputStream(out, deflater, 8192);
+    }
+
+    /**
+     * 决定是否压缩，需要压缩时设置Content-Encoding
+     */
+    private static String negotiate(HttpServletRequest request, HttpServletResponse response,
+            OutputPolicy policy, int length) {
+        if (length < policy.getThreshold() || response.containsHeader("Content-Encoding")
+                || !policy.isCompressible(response.getContentType())) {
+            return null;
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+        String encoding = policy.negotiate(request);
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        return encoding;
+    }
+
+    private final class Stream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            BufferedResponse.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // 缓冲阶段不向容器flush，以便最后计算Content-Length
+            if (streaming != null) {
+                streaming.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            // 容器在forward结束时会关闭输出，真正的结束由finish()完成
+        }
+    }
+
+    /**
+     * 使用外部提供的 {@link Deflater} 输出gzip格式，不像 {@link java.util.zip.GZIPOutputStream}
+     * 那样只在close时才释放自己创建的Deflater
+     */
+    private static final class GzipStream extends DeflaterOutputStream {
+
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0,
+                0, 0, 0 };
+
+        private final CRC32 crc = new CRC32();
+
+        private boolean finished;
+
+        GzipStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, 8192);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            super.finish();
+            writeInt((int) crc.getValue());
+            writeInt(def.getTotalIn());
+        }
+
+        private void writeInt(int i) throws IOException {
+            out.write(i & 0xff);
+            out.write((i >> 8) & 0xff);
+            out.write((i >> 16) & 0xff);
+            out.write((i >> 24) & 0xff);
+        }
+    }
+
+    /**
+     * 可以直接访问内部数组的缓冲区，用完后归还到池中供其他请求使用
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+
+        private static final int MAX_IDLE = 64;
+
+        /** 超过这个容量的缓冲区不归还，避免池中长期占用大块内存 */
+        private static final int MAX_POOLED_CAPACITY = BUFFER_LIMIT * 2;
+
+        private static final ConcurrentLinkedQueue<Buffer> idle = new ConcurrentLinkedQueue<Buffer>();
+
+        private static final AtomicInteger idleCount = new AtomicInteger();
+
+        private Buffer() {
+            super(8192);
+        }
+
+        static Buffer acquire() {
+            Buffer buffer = idle.poll();
+            if (buffer == null) {
+                return new Buffer();
+            }
+            idleCount.decrementAndGet();
+            return buffer;
+        }
+
+        static void release(Buffer buffer) {
+            if (buffer.buf.length > MAX_POOLED_CAPACITY) {
+                return;
+            }
+            buffer.reset();
+            if (idleCount.incrementAndGet() <= MAX_IDLE) {
+                idle.offer(buffer);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import net.paoding.rose.web.Invocation;
+
+/**
+ * 把byte[]或者 {@link ByteBuffer} (包括 {@link java.nio.MappedByteBuffer})
+ * 中position到limit之间的内容输出到response中。
+ * <p>
+ * byte[]以及有数组的buffer直接写到输出流，其他buffer通过channel写出；buffer本身的position不会改变。
+ * 
+ * @see BinaryInstruction
+ */
+public class ByteBufferInstruction extends BinaryInstruction {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInstruction(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    public ByteBufferInstruction(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    protected long getContentLength(Invocation inv) {
+        return buffer.remaining();
+    }
+
+    @Override
+    protected void write(OutputStream out, long position, long count) throws IOException {
+        int offset = buffer.position() + (int) position;
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + offset, (int) count);
+            return;
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + (int) count);
+        WritableByteChannel target = Channels.newChannel(out);
+        while (slice.hasRemaining()) {
+            target.write(slice);
+        }
+    }
+}
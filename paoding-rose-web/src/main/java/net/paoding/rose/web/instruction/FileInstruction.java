@@ -0,0 +1,99 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.servlet.http.HttpServletResponse;
+
+import net.paoding.rose.web.Invocation;
+
+/**
+ * 把文件或者 {@link FileChannel} 输出到response中。
+ * <p>
+ * 内容通过 {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * 写出，不经过额外的缓冲区复制；文件的长度和最后修改时间被用于Content-Length、Last-Modified以及Range请求(参见
+ * {@link BinaryInstruction})。文件不存在时返回404。
+ * <p>
+ * 
+ * 和 {@link InputStreamInstruction} 一样，给定的 {@link FileChannel} 在渲染结束后被关闭。
+ * 
+ */
+public class FileInstruction extends BinaryInstruction {
+
+    private final File file;
+
+    private FileChannel channel;
+
+    public FileInstruction(File file) {
+        this.file = file;
+        setLastModified(file.lastModified() > 0 ? file.lastModified() : -1);
+    }
+
+    public FileInstruction(FileChannel channel) {
+        this.file = null;
+        this.channel = channel;
+    }
+
+    @Override
+    protected String getName() {
+        return file == null ? null : file.getName();
+    }
+
+    @Override
+    protected long getContentLength(Invocation inv) throws IOException {
+        if (channel != null) {
+            return channel.size();
+        }
+        if (!file.isFile() || !file.canRead()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("not found file: " + file.getPath());
+            }
+            inv.getResponse().sendError(HttpServletResponse.SC_NOT_FOUND);
+            return -1;
+        }
+        return file.length();
+    }
+
+    @Override
+    protected void write(OutputStream out, long position, long count) throws IOException {
+        if (channel == null) {
+            channel = new FileInputStream(file).getChannel();
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        while (count > 0) {
+            long transferred = channel.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new IOException("unexpected end of file at position " + position);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    @Override
+    protected void release() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.paoding.rose.util.PlaceHolderUtils;
+
+/**
+ * {@link InstructionCache} 缓存action返回的常量字符串(如"r:/login"、"user-list")解析出的
+ * {@link Instruction}，使同一个返回值只被 {@link InstructionExecutorImpl} 解析一次。
+ * <p>
+ * 
+ * 只有和请求无关的字符串才被缓存(参见 {@link #isCacheable(String)})，并且只缓存渲染时不改变自身状态、
+ * 可以被多个请求同时使用的instruction(参见 {@link #isShareable(Instruction)})。
+ * 容量有上限，缓存已满时随机淘汰一个已有的字符串。
+ */
+public class InstructionCache {
+
+    /** 默认最多缓存的字符串数 */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+
+    private final ConcurrentMap<String, Instruction> instructions = new ConcurrentHashMap<String, Instruction>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    public InstructionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 返回给定字符串已经缓存的instruction，没有时返回null
+     * 
+     * @param str
+     * @return
+     */
+    public Instruction get(String str) {
+        return instructions.get(str);
+    }
+
+    /**
+     * 缓存一个字符串的解析结果，调用者应保证字符串是可缓存的、instruction是可共享的
+     * 
+     * @param str
+     * @param instruction
+     */
+    public void put(String str, Instruction instruction) {
+        if (instructions.putIfAbsent(str, instruction) == null) {
+            if (size.incrementAndGet() > capacity) {
+                evict(str);
+            }
+        }
+    }
+
+    private void evict(String justAdded) {
+        // ConcurrentHashMap的迭代顺序和插入顺序无关，近似于随机淘汰
+        Iterator<String> iter = instructions.keySet().iterator();
+        while (iter.hasNext()) {
+            String key = iter.next();
+            if (!key.equals(justAdded) && instructions.remove(key) != null) {
+                size.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 字符串的解析结果是否和请求无关：含有${}占位符的以及"s:"、"status:"(解析时即设置了response的状态)开头的字符串不能缓存
+     * 
+     * @param str
+     * @return
+     */
+    public static boolean isCacheable(String str) {
+        return str.indexOf(PlaceHolderUtils.PLACEHOLDER_PREFIX) == -1 && !str.startsWith("s:")
+                && !str.startsWith("status:");
+    }
+
+    /**
+     * instruction是否可以被多个请求同时使用：通过module/controller/action创建的
+     * {@link RedirectInstruction}、{@link ForwardInstruction} 在渲染时才计算地址并保存在自身，不能共享
+     * 
+     * @param instruction
+     * @return
+     */
+    public static boolean isShareable(Instruction instruction) {
+        Class<?> clazz = instruction.getClass();
+        if (clazz == ViewInstruction.class || clazz == TextInstruction.class
+                || clazz == HttpErrorInstruction.class) {
+            return true;
+        }
+        if (clazz == RedirectInstruction.class || clazz == ForwardInstruction.class) {
+            return ((AbstractInstruction) instruction).preInstruction == null;
+        }
+        return false;
+    }
+}
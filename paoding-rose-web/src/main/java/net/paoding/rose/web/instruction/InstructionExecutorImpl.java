@@ -15,9 +15,11 @@
  */
 package net.paoding.rose.web.instruction;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import javax.servlet.ServletException;
 
@@ -38,6 +40,19 @@ public class InstructionExecutorImpl implements InstructionExecutor {
 
     private Log logger = LogFactory.getLog(getClass());
 
+    private InstructionCache instructionCache = new InstructionCache(
+            InstructionCache.DEFAULT_CAPACITY);
+
+    /**
+     * 设置最多缓存多少个常量字符串的解析结果
+     * 
+     * @param capacity
+     * @see InstructionCache
+     */
+    public void setInstructionCacheCapacity(int capacity) {
+        this.instructionCache = new InstructionCache(capacity);
+    }
+
     @Override
     public Object render(Invocation inv, Object instruction) throws IOException, ServletException,
             Exception {
@@ -56,6 +71,16 @@ public class InstructionExecutorImpl implements InstructionExecutor {
      */
     private Instruction translatesToInstructionObject(InvocationBean inv, Object instruction)
             throws StackOverflowError {
+        String constant = null;
+        if (instruction != null && instruction.getClass() == String.class) {
+            Instruction cached = instructionCache.get((String) instruction);
+            if (cached != null) {
+                return cached;
+            }
+            if (InstructionCache.isCacheable((String) instruction)) {
+                constant = (String) instruction;
+            }
+        }
         int count = 0;
         while (!(instruction instanceof Instruction)) {
             if (count++ > 50) {
@@ -76,6 +101,9 @@ public class InstructionExecutorImpl implements InstructionExecutor {
                 instruction = parseInstruction(inv, instruction);
             }
         }
+        if (constant != null && InstructionCache.isShareable((Instruction) instruction)) {
+            instructionCache.put(constant, (Instruction) instruction);
+        }
         return (Instruction) instruction;
     }
 
@@ -213,7 +241,13 @@ public class InstructionExecutorImpl implements InstructionExecutor {
         } else if (ins instanceof InputStream) {
             return new InputStreamInstruction((InputStream) ins);
         } else if (ins instanceof byte[]) {
-            return new InputStreamInstruction(new ByteArrayInputStream((byte[]) ins));
+            return new ByteBufferInstruction((byte[]) ins);
+        } else if (ins instanceof ByteBuffer) {
+            return new ByteBufferInstruction((ByteBuffer) ins);
+        } else if (ins instanceof File) {
+            return new FileInstruction((File) ins);
+        } else if (ins instanceof FileChannel) {
+            return new FileInstruction((FileChannel) ins);
         } else {
             return Text.text(ins.toString());
         }
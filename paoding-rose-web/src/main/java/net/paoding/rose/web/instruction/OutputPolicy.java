@@ -0,0 +1,156 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.instruction;
+
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.paoding.rose.web.Invocation;
+
+/**
+ * {@link OutputPolicy} 决定 {@link TextInstruction}、{@link ViewInstruction} 是否通过Rose的输出管道渲染：
+ * 输出先写入池化的缓冲区，结束时一次性写给容器并设置Content-Length；达到阈值的文本类响应按照请求的
+ * Accept-Encoding以gzip或deflate压缩。
+ * <p>
+ * 可以在module的rose.properties中以response.compress、response.compress.threshold配置，或者由
+ * {@link net.paoding.rose.web.annotation.HttpFeatures} 为控制器、action配置。
+ * 
+ * @see BufferedResponse
+ */
+public final class OutputPolicy {
+
+    /** 默认的压缩阈值，较小的响应压缩后节省不了多少流量 */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final String ATTRIBUTE = "$$paoding-rose.outputPolicy";
+
+    private final int threshold;
+
+    public OutputPolicy(int threshold) {
+        this.threshold = threshold < 0 ? DEFAULT_THRESHOLD : threshold;
+    }
+
+    /**
+     * 返回本次调用使用的输出策略，没有设置时返回null
+     * 
+     * @param inv
+     * @return
+     */
+    public static OutputPolicy of(Invocation inv) {
+        Object policy = inv.getAttribute(ATTRIBUTE);
+        return policy instanceof OutputPolicy ? (OutputPolicy) policy : null;
+    }
+
+    /**
+     * 把输出策略设置给本次调用。
+     * <p>
+     * 策略保存在 {@link Invocation}而不是request的属性中：portal窗口等forward、include产生的调用共享(或回退到)
+     * 外层的request，但不能继承外层的策略，否则会把压缩后的内容写入外层页面。
+     * 
+     * @param inv
+     */
+    public void applyTo(Invocation inv) {
+        inv.setAttribute(ATTRIBUTE, this);
+    }
+
+    /**
+     * 小于这个字节数的响应不压缩
+     * 
+     * @return
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * 给定类型的响应是否值得压缩；图片等已经压缩过的类型不压缩
+     * 
+     * @param contentType 可以为null
+     * @return
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ENGLISH);
+        return type.startsWith("text/") || type.indexOf("json") >= 0 || type.indexOf("xml") >= 0
+                || type.indexOf("javascript") >= 0;
+    }
+
+    /**
+     * 根据请求的Accept-Encoding选择压缩方式，优先使用gzip
+     * 
+     * @param request
+     * @return "gzip"、"deflate"，客户端不接受压缩时返回null
+     */
+    public String negotiate(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String token : acceptEncoding.split(",")) {
+            String coding = token;
+            float q = 1;
+            int semicolon = token.indexOf(';');
+            if (semicolon >= 0) {
+                coding = token.substring(0, semicolon);
+                q = parseQuality(token.substring(semicolon + 1));
+            }
+            coding = coding.trim().toLowerCase(Locale.ENGLISH);
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("deflate")) {
+                deflate = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        if (deflate > 0) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    private static float parseQuality(String param) {
+        param = param.trim();
+        if (param.startsWith("q=")) {
+            try {
+                return Float.parseFloat(param.substring(2).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "compress[threshold=" + threshold + "]";
+    }
+}
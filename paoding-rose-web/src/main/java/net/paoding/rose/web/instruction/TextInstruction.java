@@ -80,11 +80,20 @@ public class TextInstruction extends AbstractInstruction {
                         + response.getContentType());
             }
         }
-        sendResponse(response, text);
+        sendResponse(inv, response, text);
     }
 
-    private void sendResponse(HttpServletResponse response, String text) throws IOException {
+    private void sendResponse(Invocation inv, HttpServletResponse response, String text)
+            throws IOException {
         if (StringUtils.isNotEmpty(text)) {
+            OutputPolicy policy = OutputPolicy.of(inv);
+            if (policy != null) {
+                byte[] body = text.getBytes(response.getCharacterEncoding());
+                if (BufferedResponse.send(inv.getRequest(), response, policy, body, 0,
+                        body.length)) {
+                    return;
+                }
+            }
             PrintWriter out = response.getWriter();
             if (logger.isDebugEnabled()) {
             	logger.debug("write text to response:" + text);
@@ -16,11 +16,9 @@
 package net.paoding.rose.web.instruction;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -33,7 +31,6 @@ import net.paoding.rose.web.impl.view.ViewDispatcher;
 import net.paoding.rose.web.impl.view.ViewDispatcherImpl;
 import net.paoding.rose.web.impl.view.ViewPathCache;
 
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
@@ -56,8 +53,8 @@ public class ViewInstruction extends AbstractInstruction {
 
     public static final String ROSE_INVOCATION = "roseInvocation";
 
-    // 视图名称到视图地址的映射(缓存这个映射避免重复计算视图地址)
-    private static Map<String, ViewPathCache> globalViewPathCaches = new HashMap<String, ViewPathCache>();
+    // views下各个目录的索引，以目录相对于/views的地址为key
+    private static final ConcurrentMap<String, ViewPathCache> globalViewPathCaches = new ConcurrentHashMap<String, ViewPathCache>();
 
     // 视图名称，不包含路径，一般没有后缀名
     private final String name;
@@ -82,7 +79,20 @@ public class ViewInstruction extends AbstractInstruction {
 
             if (!Thread.interrupted()) {
                 inv.addModel(ROSE_INVOCATION, inv);
-                view.render(inv.getModel().getAttributes(), request, response);
+                // 异步执行时，JSP等需要forward的视图交给容器dispatch
+                request = ((InvocationBean) inv).getRenderRequest(request);
+                OutputPolicy policy = OutputPolicy.of(inv);
+                if (policy == null) {
+                    view.render(inv.getModel().getAttributes(), request, response);
+                } else {
+                    BufferedResponse buffered = new BufferedResponse(request, response, policy);
+                    try {
+                        view.render(inv.getModel().getAttributes(), request, buffered);
+                        buffered.finish();
+                    } finally {
+                        buffered.release();
+                    }
+                }
             } else {
                 logger.info("interrupted");
             }
@@ -118,26 +128,33 @@ public class ViewInstruction extends AbstractInstruction {
         ViewPathCache viewPathCache = globalViewPathCaches.get(viewRelativePath);
         if (viewPathCache == null) {
             String directoryPath = RoseConstants.VIEWS_PATH + viewRelativePath;
-            File directoryFile = new File(inv.getServletContext().getRealPath(directoryPath));
-            if (!directoryFile.exists()) {
+            String realPath = inv.getServletContext().getRealPath(directoryPath);
+            File directoryFile = realPath == null ? null : new File(realPath);
+            if (directoryFile == null || !directoryFile.isDirectory()) {
                 String msg = "404: view directory not found, you need to create it in your webapp:"
                         + directoryPath;
                 logger.error(msg);
                 inv.getResponse().sendError(404, msg);
                 return null;
             }
-            viewPathCache = new ViewPathCache(viewRelativePath);
-            globalViewPathCaches.put(viewRelativePath, viewPathCache);
+            // 第一次使用这个目录时建立索引，之后的查找不再访问文件系统
+            viewPathCache = new ViewPathCache(directoryPath, directoryFile);
+            ViewPathCache existing = globalViewPathCaches.putIfAbsent(viewRelativePath,
+                    viewPathCache);
+            if (existing != null) {
+                viewPathCache = existing;
+            }
         }
         //
         String viewPath;
         int queryStringIndex = viewName.indexOf('?');
         if (queryStringIndex < 0) {
-            viewPath = getViewPathFromCache(inv, viewPathCache, viewName);
+            viewPath = getViewPath(inv, viewPathCache, viewName);
         } else {
-            viewPath = getViewPathFromCache(inv, viewPathCache, viewName.substring(0,
-                    queryStringIndex))
-                    + viewName.substring(queryStringIndex);
+            viewPath = getViewPath(inv, viewPathCache, viewName.substring(0, queryStringIndex));
+            if (viewPath != null) {
+                viewPath = viewPath + viewName.substring(queryStringIndex);
+            }
         }
 
         if (viewPath != null) {
@@ -148,158 +165,18 @@ public class ViewInstruction extends AbstractInstruction {
         return viewPath;
     }
 
-    /**
-     * 
-     * @param inv
-     * @param viewPathCache
-     * @param viewName
-     * @return
-     * @throws IOException
-     */
-    private String getViewPathFromCache(InvocationBean inv, ViewPathCache viewPathCache,
-            final String viewName) throws IOException {
+    private String getViewPath(InvocationBean inv, ViewPathCache viewPathCache, String viewName)
+            throws IOException {
         String viewPath = viewPathCache.getViewPath(viewName);
-        if (viewPath != null) {
-            return viewPath;
-        }
-
-        final boolean debugEnabled;
-        if (debugEnabled = logger.isDebugEnabled()) {
-            logger.debug("to find viewPath by viewName '" + viewName + "'");
-        }
-        //
-        final String notDirectoryViewName;
-        File directoryFile;
-        String directoryPath;
-        //
-        int viewNameIndex = viewName.lastIndexOf('/');
-        if (viewNameIndex > 0) {
-            notDirectoryViewName = viewName.substring(viewNameIndex + 1);
-
-            if (viewName.charAt(0) == '/') {
-                directoryPath = viewName.substring(0, viewNameIndex);
-                directoryFile = new File(inv.getServletContext().getRealPath(directoryPath));
-            } else {
-                directoryPath = viewPathCache.getDirectoryPath();
-                String subDirPath = viewName.substring(0, viewNameIndex);
-                File tempHome = new File(inv.getServletContext().getRealPath(directoryPath));
-                if (!tempHome.exists()) {
-                    directoryFile = null;
-                } else {
-                    directoryFile = searchDirectory(tempHome, subDirPath);
-                    if (directoryFile != null) {
-                        subDirPath = directoryFile.getPath().substring(tempHome.getPath().length())
-                                .replace('\\', '/');
-                        directoryPath = directoryPath + subDirPath;
-                    }
-                }
-            }
-        } else {
-            directoryPath = viewPathCache.getDirectoryPath();
-            notDirectoryViewName = viewName;
-            directoryFile = new File(inv.getServletContext().getRealPath(directoryPath));
-        }
-        if (directoryFile == null || !directoryFile.exists()) {
-            logger.error("not found directoryPath '" + directoryPath + "' for directoryFile '"
-                    + directoryFile + "' of view named '" + viewName + "'");
-            inv.getResponse().sendError(404, "not found directoryPath '" + directoryPath + "'");
-            return null;
-        } else {
-            if (debugEnabled) {
-                logger.debug("found directory " + directoryFile.getAbsolutePath());
-            }
-            String viewFileName = searchViewFile(directoryFile, notDirectoryViewName, false);
-            if (viewFileName == null) {
-                viewFileName = searchViewFile(directoryFile, notDirectoryViewName, true);
-            }
-            if (viewFileName == null) {
-                String msg = "not found view file '" + notDirectoryViewName + "' in "
-                        + directoryPath;
-                if (logger.isWarnEnabled()) {
-                    logger.warn(msg);
-                }
-                inv.getResponse().sendError(404, msg);
-                return null;
-            } else {
-                viewPath = directoryPath + "/" + viewFileName;
-                viewPathCache.setViewPath(viewName, viewPath);
-                return viewPath;
-            }
-        }
-    }
-
-    /**
-     * 优先获取大小写敏感的路径，如若找不到，则获取忽略大小写后的路径
-     * 
-     * @param tempHome
-     * @param subDirPath
-     * @return
-     */
-    private File searchDirectory(File tempHome, String subDirPath) {
-        // 
-        String[] subDirs = StringUtils.split(subDirPath, "/");
-        for (final String subDir : subDirs) {
-            File file = new File(tempHome, subDir);
-            if (!file.exists()) {
-                String[] candidates = tempHome.list(new FilenameFilter() {
-
-                    @Override
-                    public boolean accept(File dir, String name) {
-                        if (name.equalsIgnoreCase(subDir)) {
-                            return true;
-                        }
-                        return false;
-                    }
-
-                });
-                if (candidates.length == 0) {
-                    tempHome = null;
-                    break;
-                } else {
-                    tempHome = new File(tempHome, candidates[0]);
-                }
-            } else {
-                tempHome = file;
+        if (viewPath == null) {
+            String msg = "not found view file '" + viewName + "' in "
+                    + viewPathCache.getDirectoryPath();
+            if (logger.isWarnEnabled()) {
+                logger.warn(msg);
             }
+            inv.getResponse().sendError(404, msg);
         }
-        return tempHome;
-    }
-
-    /**
-     * 
-     * @param fileNameToFind
-     * @param directoryFile
-     * @param ignoreCase
-     * @return
-     */
-    private String searchViewFile(File directoryFile, final String fileNameToFind,
-            final boolean ignoreCase) {
-        String[] viewFiles = directoryFile.list(new FilenameFilter() {
-
-            @Override
-            public boolean accept(File dir, String fileName) {
-                String _notDirectoryViewName = fileNameToFind;
-                String _fileName = fileName;
-                if (ignoreCase) {
-                    _fileName = fileName.toLowerCase();
-                    _notDirectoryViewName = fileNameToFind.toLowerCase();
-                }
-                // 忽略大小写
-                if (_fileName.startsWith(_notDirectoryViewName) && new File(dir, fileName).isFile()) {
-                    if (fileName.length() == fileNameToFind.length()
-                            && fileNameToFind.lastIndexOf('.') != -1) {
-                        return true;
-                    }
-                    if (fileName.length() > fileNameToFind.length()
-                            && fileName.charAt(fileNameToFind.length()) == '.') {
-                        return true;
-                    }
-                }
-                return false;
-            }
-        });
-        Arrays.sort(viewFiles);
-        return viewFiles.length == 0 ? null : viewFiles[0];
+        return viewPath;
     }
 
     //-------------------------------------------
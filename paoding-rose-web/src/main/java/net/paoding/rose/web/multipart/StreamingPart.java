@@ -0,0 +1,143 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.multipart;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.paoding.rose.web.annotation.StreamingMultipart;
+
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
+
+/**
+ * 由 {@link StreamingParts} 返回的一个part，可以是上传的文件也可以是普通的表单字段。
+ * <p>
+ * 
+ * part的内容只能读取一次：{@link #openStream()}、{@link #getString(String)}、
+ * {@link #transferTo(File)} 、{@link #transferTo(OutputStream)} 只能调用其中之一，并且必须在取得下一个part之前。
+ * 读取的内容超过 {@link StreamingMultipart#partSizeMax()} 时抛出IOException，其cause为
+ * {@link org.apache.commons.fileupload.FileUploadBase.FileSizeLimitExceededException}。
+ */
+public final class StreamingPart {
+
+    private final FileItemStream item;
+
+    StreamingPart(FileItemStream item) {
+        this.item = item;
+    }
+
+    /**
+     * 表单中的字段名
+     * 
+     * @return
+     */
+    public String getName() {
+        return item.getFieldName();
+    }
+
+    /**
+     * 上传文件在客户端的文件名，普通表单字段返回null
+     * 
+     * @return
+     */
+    public String getFileName() {
+        return item.getName();
+    }
+
+    public String getContentType() {
+        return item.getContentType();
+    }
+
+    /**
+     * 是否是普通的表单字段
+     * 
+     * @return
+     */
+    public boolean isFormField() {
+        return item.isFormField();
+    }
+
+    /**
+     * 返回直接读取请求的输入流
+     * 
+     * @return
+     * @throws IOException
+     */
+    public InputStream openStream() throws IOException {
+        return item.openStream();
+    }
+
+    /**
+     * 以给定编码读取整个part的内容，用于读取普通表单字段
+     * 
+     * @param encoding
+     * @return
+     * @throws IOException
+     */
+    public String getString(String encoding) throws IOException {
+        return Streams.asString(item.openStream(), encoding);
+    }
+
+    /**
+     * 把part的内容写到给定的输出流中，输出流不会被关闭
+     * 
+     * @param out
+     * @return 写出的字节数
+     * @throws IOException
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        return Streams.copy(item.openStream(), out, false);
+    }
+
+    /**
+     * 把part的内容写到给定的文件中；写入失败(包括超过大小限制)时删除已写的文件，
+     * 打开part或文件失败时不会删除已经存在的文件
+     * 
+     * @param dest
+     * @return 写出的字节数
+     * @throws IOException
+     */
+    public long transferTo(File dest) throws IOException {
+        InputStream in = item.openStream();
+        OutputStream out;
+        try {
+            out = new FileOutputStream(dest);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        boolean success = false;
+        try {
+            long size = Streams.copy(in, out, true);
+            success = true;
+            return size;
+        } finally {
+            if (!success) {
+                dest.delete();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return item.isFormField() ? item.getFieldName() : item.getFieldName() + "="
+                + item.getName();
+    }
+}
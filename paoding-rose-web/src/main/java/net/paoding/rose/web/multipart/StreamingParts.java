@@ -0,0 +1,137 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.multipart;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import net.paoding.rose.web.annotation.StreamingMultipart;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+
+/**
+ * {@link StreamingParts} 是标注了 {@link StreamingMultipart} 的action读取上传请求的方式：
+ * 依次返回请求中的每个part，part的内容直接从request的输入流中读取，不在内存或临时文件中缓存。
+ * <p>
+ * 
+ * 和输入流一样，{@link StreamingParts} 只能遍历一次，并且取得下一个part之后，前一个part的内容就不能再读取了。
+ * 解析请求出错时抛出 {@link MultipartException}，整个请求超过
+ * {@link StreamingMultipart#sizeMax()} 时抛出 {@link MaxUploadSizeExceededException}。
+ * 
+ * @see StreamingPart
+ */
+public final class StreamingParts implements Iterator<StreamingPart>, Iterable<StreamingPart> {
+
+    private final HttpServletRequest request;
+
+    private final long partSizeMax;
+
+    private final long sizeMax;
+
+    /** 第一次调用hasNext时才开始读取请求 */
+    private FileItemIterator iterator;
+
+    public StreamingParts(HttpServletRequest request, long partSizeMax, long sizeMax) {
+        this.request = request;
+        this.partSizeMax = partSizeMax;
+        this.sizeMax = sizeMax;
+    }
+
+    /**
+     * 每个part允许的最大字节数，-1表示不限制
+     * 
+     * @return
+     */
+    public long getPartSizeMax() {
+        return partSizeMax;
+    }
+
+    /**
+     * 整个请求允许的最大字节数，-1表示不限制
+     * 
+     * @return
+     */
+    public long getSizeMax() {
+        return sizeMax;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return getItemIterator().hasNext();
+        } catch (FileUploadException e) {
+            throw translate(e);
+        } catch (IOException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public StreamingPart next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return new StreamingPart(getItemIterator().next());
+        } catch (FileUploadException e) {
+            throw translate(e);
+        } catch (IOException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 返回自身，所以只能遍历一次
+     */
+    @Override
+    public Iterator<StreamingPart> iterator() {
+        return this;
+    }
+
+    private FileItemIterator getItemIterator() throws FileUploadException, IOException {
+        if (iterator == null) {
+            ServletFileUpload upload = new ServletFileUpload();
+            upload.setFileSizeMax(partSizeMax);
+            upload.setSizeMax(sizeMax);
+            iterator = upload.getItemIterator(request);
+        }
+        return iterator;
+    }
+
+    private MultipartException translate(Throwable e) {
+        if (e instanceof FileUploadBase.FileUploadIOException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof FileUploadBase.SizeLimitExceededException) {
+            return new MaxUploadSizeExceededException(sizeMax, e);
+        }
+        return new MultipartException("Could not parse multipart servlet request", e);
+    }
+
+}
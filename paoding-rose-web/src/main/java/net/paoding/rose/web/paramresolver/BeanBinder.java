@@ -0,0 +1,211 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.paramresolver;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletRequest;
+
+import net.paoding.rose.util.RoseBeanUtils;
+import net.paoding.rose.web.paramresolver.ResolverFactoryImpl.DateEditor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyEditorRegistry;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+/**
+ * {@link BeanBinder} 在启动时为一个bean类预先算好“属性名→类型转换→setter”表，请求到来时直接把请求参数设置到bean上，
+ * 不再为每个请求创建 {@link ServletRequestDataBinder} 以及BeanWrapper。
+ * <p>
+ * 属性值由 {@link ValueParser} 转换，规则和Spring默认的PropertyEditor一致(数字、布尔、字符、枚举、日期以及字符串)。
+ * 遇到以下情况时返回null，由调用者改用 {@link ServletRequestDataBinder} 重新绑定，以保持原有的行为和 {@link BindingResult} 中的错误信息：
+ * <ul>
+ * <li>multipart请求；</li>
+ * <li>带有.或[的嵌套、索引属性，以及_开头的字段标记；</li>
+ * <li>属性类型不是上述简单类型，或者一个参数有多个值；</li>
+ * <li>类型转换失败或者setter抛出异常。</li>
+ * </ul>
+ */
+final class BeanBinder {
+
+    private static final Log logger = LogFactory.getLog(BeanBinder.class);
+
+    private final Class<?> beanClass;
+
+    private final Map<String, PropertyBinder> properties;
+
+    public BeanBinder(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        Map<String, PropertyBinder> properties = new HashMap<String, PropertyBinder>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(beanClass)) {
+            Method writeMethod = pd.getWriteMethod();
+            if (writeMethod == null || pd.getPropertyType() == null) {
+                continue;
+            }
+            if (!Modifier.isPublic(writeMethod.getDeclaringClass().getModifiers())) {
+                writeMethod.setAccessible(true);
+            }
+            properties.put(pd.getName(), new PropertyBinder(pd.getName(), pd.getPropertyType(),
+                    pd.getReadMethod() != null, writeMethod));
+        }
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * 把请求参数绑定到一个新创建的bean上
+     * 
+     * @param request
+     * @param objectName {@link BindingResult} 的名字
+     * @param prefix 只绑定以此开头的参数(绑定时去掉该前缀)，为null时绑定所有参数
+     * @return 绑定结果；需要改用 {@link ServletRequestDataBinder} 时返回null
+     */
+    public BindingResult bind(ServletRequest request, String objectName, String prefix) {
+        if (request instanceof MultipartHttpServletRequest) {
+            return null;
+        }
+        Object bean = RoseBeanUtils.instantiateClass(beanClass);
+        @SuppressWarnings("unchecked")
+        Enumeration<String> names = request.getParameterNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            String propertyName = name;
+            if (prefix != null) {
+                if (!name.startsWith(prefix)) {
+                    continue;
+                }
+                propertyName = name.substring(prefix.length());
+            }
+            if (propertyName.length() == 0) {
+                continue;
+            }
+            PropertyBinder property = properties.get(propertyName);
+            if (property == null) {
+                if (propertyName.indexOf('.') >= 0 || propertyName.indexOf('[') >= 0
+                        || propertyName.startsWith(WebDataBinder.DEFAULT_FIELD_MARKER_PREFIX)) {
+                    return null;
+                }
+                // 和DataBinder的ignoreUnknownFields一致
+                continue;
+            }
+            String[] values = request.getParameterValues(name);
+            if (values == null || values.length == 0) {
+                continue;
+            }
+            if (values.length != 1 || !property.set(bean, values[0])) {
+                return null;
+            }
+        }
+        return new RoseBindingResult(bean, objectName);
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 和 {@link ServletRequestDataBinder} 的绑定结果一样注册了Rose的日期转换器，只在需要时才创建BeanWrapper
+     */
+    static final class RoseBindingResult extends BeanPropertyBindingResult {
+
+        private static final long serialVersionUID = -2526009446006046427L;
+
+        public RoseBindingResult(Object target, String objectName) {
+            super(target, objectName);
+        }
+
+        @Override
+        protected BeanWrapper createBeanWrapper() {
+            BeanWrapper beanWrapper = super.createBeanWrapper();
+            registerDateEditors(beanWrapper);
+            return beanWrapper;
+        }
+    }
+
+    static void registerDateEditors(PropertyEditorRegistry registry) {
+        registry.registerCustomEditor(Date.class, new DateEditor(Date.class));
+        registry.registerCustomEditor(java.sql.Date.class, new DateEditor(java.sql.Date.class));
+        registry.registerCustomEditor(java.sql.Time.class, new DateEditor(java.sql.Time.class));
+        registry.registerCustomEditor(java.sql.Timestamp.class, new DateEditor(
+                java.sql.Timestamp.class));
+    }
+
+    private static final class PropertyBinder {
+
+        private final String name;
+
+        private final boolean readable;
+
+        private final Method writeMethod;
+
+        /** 为null表示不支持的类型 */
+        private final ValueParser parser;
+
+        private final boolean date;
+
+        PropertyBinder(String name, Class<?> type, boolean readable, Method writeMethod) {
+            this.name = name;
+            this.readable = readable;
+            this.writeMethod = writeMethod;
+            ValueParser parser = ValueParser.of(type == Object.class ? String.class : type);
+            this.parser = parser.isSpecialized() ? parser : null;
+            this.date = Date.class.isAssignableFrom(type);
+        }
+
+        /**
+         * @return false表示需要改用Spring的binder
+         */
+        boolean set(Object bean, String text) {
+            if (parser == null) {
+                return false;
+            }
+            Object value;
+            try {
+                value = parser.parse(text);
+            } catch (TypeMismatchException e) {
+                return false;
+            }
+            if (value == null && date && readable) {
+                // 日期为空时，Spring把原值设置回去；没有getter时原值为null
+                return true;
+            }
+            try {
+                writeMethod.invoke(bean, value);
+                return true;
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("failed to set property '" + name + "', use spring binder", e);
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -24,7 +24,6 @@ import net.paoding.rose.web.impl.validation.ParameterBindingResult;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.beans.TypeConverter;
 import org.springframework.beans.TypeMismatchException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
@@ -47,6 +46,9 @@ public final class MethodParameterResolver {
 
     private final ParamMetaData[] paramMetaDatas;
 
+    /** 可以延迟解析的参数，参见 {@link #isDeferrable(int)} */
+    private final boolean[] deferrables;
+
     public MethodParameterResolver(Class<?> controllerClazz, Method method,
             ParameterNameDiscovererImpl parameterNameDiscoverer, ResolverFactory resolverFactory) {
         this.method = method;
@@ -54,12 +56,14 @@ public final class MethodParameterResolver {
         parameterNames = parameterNameDiscoverer.getParameterNames(method);
         resolvers = new ParamResolver[parameterTypes.length];
         paramMetaDatas = new ParamMetaData[parameterTypes.length];
+        deferrables = new boolean[parameterTypes.length];
         // 
         for (int i = 0; i < parameterTypes.length; i++) {
             ParamMetaDataImpl paramMetaData = new ParamMetaDataImpl(controllerClazz, method,
                     parameterTypes[i], parameterNames[i], i);
             paramMetaDatas[i] = paramMetaData;
             resolvers[i] = resolverFactory.supports(paramMetaData);
+            deferrables[i] = ResolverFactoryImpl.isDeferrable(resolvers[i]);
         }
     }
 
@@ -79,13 +83,39 @@ public final class MethodParameterResolver {
         return this.paramMetaDatas[index].getAnnotation(Param.class);
     }
 
+    /**
+     * 第index个参数是否需要较多的计算(bean、上传文件、数组、集合以及map)，可以推迟到真正需要时才解析
+     * 
+     * @param index
+     * @return
+     */
+    public boolean isDeferrable(int index) {
+        return deferrables[index];
+    }
+
     // ---------------------------------------------------------
 
     public Object[] resolve(final Invocation inv,
             final ParameterBindingResult parameterBindingResult) throws Exception {
         Object[] parameters = new Object[paramMetaDatas.length];
+        resolve(inv, parameterBindingResult, parameters, null, false);
+        return parameters;
+    }
+
+    /**
+     * 只解析mask中对应值为expected的参数，解析结果放入parameters中
+     * 
+     * @param inv
+     * @param parameterBindingResult
+     * @param parameters
+     * @param mask 为null时解析所有参数
+     * @param expected
+     * @throws Exception
+     */
+    public void resolve(final Invocation inv, final ParameterBindingResult parameterBindingResult,
+            Object[] parameters, boolean[] mask, boolean expected) throws Exception {
         for (int i = 0; i < resolvers.length; i++) {
-            if (resolvers[i] == null) {
+            if (resolvers[i] == null || (mask != null && mask[i] != expected)) {
                 continue;
             }
             try {
@@ -109,28 +139,10 @@ public final class MethodParameterResolver {
                     DefValue defValudeAnnotation = paramMetaDatas[i].getAnnotation(DefValue.class);
                     if (defValudeAnnotation == null
                             || DefValue.NATIVE_DEFAULT.equals(defValudeAnnotation.value())) {
-                        // 对这最常用的类型做一下if-else判断，其他类型就简单使用converter来做吧
-                        if (paramMetaDatas[i].getParamType() == int.class) {
-                            parameters[i] = Integer.valueOf(0);
-                        } else if (paramMetaDatas[i].getParamType() == long.class) {
-                            parameters[i] = Long.valueOf(0);
-                        } else if (paramMetaDatas[i].getParamType() == boolean.class) {
-                            parameters[i] = Boolean.FALSE;
-                        } else if (paramMetaDatas[i].getParamType() == double.class) {
-                            parameters[i] = Double.valueOf(0);
-                        } else if (paramMetaDatas[i].getParamType() == float.class) {
-                            parameters[i] = Float.valueOf(0);
-                        } else {
-                            TypeConverter typeConverter = SafedTypeConverterFactory
-                                    .getCurrentConverter();
-                            parameters[i] = typeConverter.convertIfNecessary("0", paramMetaDatas[i]
-                                    .getParamType());
-                        }
+                        parameters[i] = ValueParser.of(paramMetaDatas[i].getParamType()).parse("0");
                     } else {
-                        TypeConverter typeConverter = SafedTypeConverterFactory
-                                .getCurrentConverter();
-                        parameters[i] = typeConverter.convertIfNecessary(defValudeAnnotation
-                                .value(), paramMetaDatas[i].getParamType());
+                        parameters[i] = ValueParser.of(paramMetaDatas[i].getParamType()).parse(
+                                defValudeAnnotation.value());
                     }
                 }
                 // 
@@ -159,7 +171,6 @@ public final class MethodParameterResolver {
                 throw e;
             }
         }
-        return parameters;
     }
 
 }
@@ -17,7 +17,6 @@
 package net.paoding.rose.web.paramresolver;
 
 import java.beans.PropertyEditorSupport;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -35,6 +34,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletRequest;
@@ -50,23 +53,27 @@ import net.paoding.rose.web.annotation.DefValue;
 import net.paoding.rose.web.annotation.FlashParam;
 import net.paoding.rose.web.annotation.Param;
 import net.paoding.rose.web.annotation.Pattern;
+import net.paoding.rose.web.annotation.StreamingMultipart;
 import net.paoding.rose.web.impl.module.Module;
 import net.paoding.rose.web.impl.thread.InvocationBean;
 import net.paoding.rose.web.impl.thread.Rose;
+import net.paoding.rose.web.multipart.StreamingParts;
+import net.paoding.rose.web.paramresolver.ValueParser.ArrayParser;
 import net.paoding.rose.web.var.Flash;
 import net.paoding.rose.web.var.Model;
 
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.SimpleTypeConverter;
-import org.springframework.beans.TypeConverter;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.MessageSource;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.validation.BindingResult;
+import org.springframework.validation.DataBinder;
 import org.springframework.validation.Errors;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.multipart.MultipartFile;
@@ -98,27 +105,6 @@ public class ResolverFactoryImpl implements ResolverFactory {
         primitiveWrapperTypeMap.put(short.class, Short.class);
     }
 
-    private static final Map<Class<?>, Class<?>> arrayTypeMap = new HashMap<Class<?>, Class<?>>();
-    static {
-        arrayTypeMap.put(boolean.class, Boolean.class);
-        arrayTypeMap.put(byte.class, byte[].class);
-        arrayTypeMap.put(char.class, char[].class);
-        arrayTypeMap.put(double.class, double[].class);
-        arrayTypeMap.put(float.class, float[].class);
-        arrayTypeMap.put(int.class, int[].class);
-        arrayTypeMap.put(long.class, long[].class);
-        arrayTypeMap.put(short.class, short[].class);
-
-        arrayTypeMap.put(Boolean.class, Boolean[].class);
-        arrayTypeMap.put(Byte.class, Byte[].class);
-        arrayTypeMap.put(Character.class, Character[].class);
-        arrayTypeMap.put(Double.class, Double[].class);
-        arrayTypeMap.put(Float.class, Float[].class);
-        arrayTypeMap.put(Integer.class, Integer[].class);
-        arrayTypeMap.put(Long.class, Long[].class);
-        arrayTypeMap.put(Short.class, Short[].class);
-    }
-
     private static final ParamResolver[] buildinResolvers = new ParamResolver[] {//
     new InvocationResolver(), //
             new RoseResolver(), //
@@ -134,6 +120,7 @@ public class ResolverFactoryImpl implements ResolverFactory {
             new MultipartFileResolver(), //
             new MultipartRequestResolver(), //
             new MultipartHttpServletRequestResolver(), //
+            new StreamingPartsResolver(), //
             new ServletContextResolver(), //
             new IndexAliasResolver(new ArrayResolver()),//
             new IndexAliasResolver(new ListResolver()), //
@@ -185,6 +172,23 @@ public class ResolverFactoryImpl implements ResolverFactory {
         customerResolvers.add(new IndexAliasResolver(resolver));
     }
 
+    /**
+     * 给定的解析器是否需要较多的计算或者依赖上传请求的解析，可以推迟到真正需要参数时才调用
+     * 
+     * @param resolver
+     * @return
+     */
+    static boolean isDeferrable(ParamResolver resolver) {
+        if (resolver instanceof IndexAliasResolver) {
+            resolver = ((IndexAliasResolver) resolver).inner;
+        }
+        return resolver instanceof BeanResolver || resolver instanceof MultipartFileResolver
+                || resolver instanceof MultipartRequestResolver
+                || resolver instanceof MultipartHttpServletRequestResolver
+                || resolver instanceof ArrayResolver || resolver instanceof CollectionResolver<?>
+                || resolver instanceof MapResolver;
+    }
+
     @Override
     public ParamResolver supports(ParamMetaData metaData) {
         for (ParamResolver resolver : customerResolvers) {
@@ -417,6 +421,44 @@ public class ResolverFactoryImpl implements ResolverFactory {
         }
     }
 
+    public static final class StreamingPartsResolver implements ParamResolver {
+
+        @Override
+        public boolean supports(ParamMetaData metaData) {
+            if (StreamingParts.class == metaData.getParamType()) {
+                StreamingMultipart streaming = metaData.getMethod().getAnnotation(
+                        StreamingMultipart.class);
+                if (streaming != null) {
+                    metaData.setUserObject(this, streaming);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public StreamingParts resolve(Invocation inv, ParamMetaData metaData) {
+            StreamingMultipart streaming = (StreamingMultipart) metaData.getUserObject(this);
+            if (streaming == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("cann't set StreamingParts param to method "
+                            + metaData.getMethod().getName() + ", the method is not annotated by @"
+                            + StreamingMultipart.class.getSimpleName());
+                }
+                return null;
+            }
+            if (!ServletFileUpload.isMultipartContent(inv.getRequest())) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("cann't set StreamingParts param to method "
+                            + ", the request is not a multipart request");
+                }
+                return null;
+            }
+            return new StreamingParts(inv.getRequest(), streaming.partSizeMax(), streaming
+                    .sizeMax());
+        }
+    }
+
     public static final class MultipartFileResolver implements ParamResolver {
 
         @Override
@@ -508,14 +550,47 @@ public class ResolverFactoryImpl implements ResolverFactory {
 
     public static final class BeanResolver implements ParamResolver {
 
+        // 每个bean类的属性表在启动时算好，绑定时不再为每个请求内省
+        private final ConcurrentMap<Class<?>, BeanBinder> binders = new ConcurrentHashMap<Class<?>, BeanBinder>();
+
         @Override
         public boolean supports(ParamMetaData metaData) {
-            return !Modifier.isAbstract(metaData.getParamType().getModifiers());
+            boolean supports = !Modifier.isAbstract(metaData.getParamType().getModifiers());
+            if (supports) {
+                getBinder(metaData.getParamType());
+            }
+            return supports;
+        }
 
+        private BeanBinder getBinder(Class<?> beanClass) {
+            BeanBinder binder = binders.get(beanClass);
+            if (binder == null) {
+                binder = new BeanBinder(beanClass);
+                BeanBinder old = binders.putIfAbsent(beanClass, binder);
+                if (old != null) {
+                    binder = old;
+                }
+            }
+            return binder;
         }
 
         @Override
         public Object resolve(Invocation inv, ParamMetaData metaData) {
+            String bindingResultName = BindingResult.MODEL_KEY_PREFIX + metaData.getParamName()
+                    + "BindingResult";
+            BindingResult bindingResult;
+            if (!metaData.isAnnotationPresent(Param.class)) {
+                bindingResult = getBinder(metaData.getParamType()).bind(inv.getRequest(),
+                        DataBinder.DEFAULT_OBJECT_NAME, null);
+            } else {
+                bindingResult = getBinder(metaData.getParamType()).bind(inv.getRequest(),
+                        metaData.getParamName(), metaData.getParamName() + '.');
+            }
+            if (bindingResult != null) {
+                inv.addModel(bindingResultName, bindingResult);
+                return bindingResult.getTarget();
+            }
+            // 嵌套属性、多值参数、转换失败等情况交给ServletRequestDataBinder
             Object bean = RoseBeanUtils.instantiateClass(metaData.getParamType());
             ServletRequestDataBinder binder;
             if (!metaData.isAnnotationPresent(Param.class)) {
@@ -524,8 +599,6 @@ public class ResolverFactoryImpl implements ResolverFactory {
                 binder = new ServletRequestDataBinder(bean, metaData.getParamName());
             }
             binder.bind(inv.getRequest());
-            String bindingResultName = BindingResult.MODEL_KEY_PREFIX + metaData.getParamName()
-                    + "BindingResult";
             inv.addModel(bindingResultName, binder.getBindingResult());
             return bean;
         }
@@ -550,8 +623,8 @@ public class ResolverFactoryImpl implements ResolverFactory {
     }
 
     @SuppressWarnings("unchecked")
-    private static Object resolveArray(Invocation inv, ParamMetaData metaData, Class<?> compnentType) {
-        if (compnentType == MultipartFile.class) {
+    private static Object resolveArray(Invocation inv, ParamMetaData metaData, ArrayParser parser) {
+        if (parser.getComponentType() == MultipartFile.class) {
             String filterName = metaData.getParamName();
             if (filterName == null) {
                 filterName = "";
@@ -574,7 +647,7 @@ public class ResolverFactoryImpl implements ResolverFactory {
                 }
             }
         } else {
-            Object toConvert = null;
+            String[] toConvert = null;
             for (String paramName : metaData.getParamNames()) {
                 if (paramName != null) {
                     toConvert = inv.getRequest().getParameterValues(paramName);
@@ -584,36 +657,27 @@ public class ResolverFactoryImpl implements ResolverFactory {
                 }
             }
             if (toConvert != null) {
-                if (((String[]) toConvert).length == 1) {
-                    toConvert = ((String[]) toConvert)[0].split(",");
-                }
-                Class<?> arrayType;
-                if (metaData.getParamType().isArray()) {
-                    arrayType = metaData.getParamType();
-                } else {
-                    arrayType = arrayTypeMap.get(compnentType);
-                    if (arrayType == null) {
-                        arrayType = Array.newInstance((Class<?>) compnentType, 0).getClass();
-                    }
-                }
-                TypeConverter typeConverter = SafedTypeConverterFactory.getCurrentConverter();
-                Object array = typeConverter.convertIfNecessary(toConvert, arrayType);
-                return array;
+                // 只有一个值时按逗号分隔
+                return parser.parse(toConvert);
             }
         }
-        return Array.newInstance((Class<?>) compnentType, 0);
+        return parser.empty();
     }
 
     static final class ArrayResolver implements ParamResolver {
 
         @Override
         public boolean supports(ParamMetaData metaData) {
-            return metaData.getParamType().isArray();
+            if (metaData.getParamType().isArray()) {
+                metaData.setUserObject(this, ValueParser.ofArray(metaData.getParamType()));
+                return true;
+            }
+            return false;
         }
 
         @Override
         public Object resolve(Invocation inv, ParamMetaData metaData) {
-            return resolveArray(inv, metaData, metaData.getParamType().getComponentType());
+            return resolveArray(inv, metaData, (ArrayParser) metaData.getUserObject(this));
         }
 
     }
@@ -631,7 +695,8 @@ public class ResolverFactoryImpl implements ResolverFactory {
                             + metaData.getControllerClass().getName() + "."
                             + metaData.getMethod().getName() + "]");
                 }
-                metaData.setUserObject(this, generics[0]);
+                metaData.setUserObject(this, ValueParser.ofArray(Array.newInstance(generics[0], 0)
+                        .getClass()));
                 return true;
             }
             return false;
@@ -642,7 +707,7 @@ public class ResolverFactoryImpl implements ResolverFactory {
         @Override
         @SuppressWarnings("unchecked")
         public Object resolve(Invocation inv, ParamMetaData metaData) throws Exception {
-            Object array = resolveArray(inv, metaData, (Class<?>) metaData.getUserObject(this));
+            Object array = resolveArray(inv, metaData, (ArrayParser) metaData.getUserObject(this));
             int len = ArrayUtils.getLength(array);
             Collection collection = create(metaData, len);
             for (int i = 0; i < len; i++) {
@@ -730,7 +795,8 @@ public class ResolverFactoryImpl implements ResolverFactory {
                             + metaData.getControllerClass().getName() + "."
                             + metaData.getMethod().getName() + "]");
                 }
-                metaData.setUserObject(this, generics);
+                metaData.setUserObject(this, new ValueParser[] { ValueParser.of(generics[0]),
+                        ValueParser.of(generics[1]) });
             }
             return supports;
         }
@@ -738,25 +804,29 @@ public class ResolverFactoryImpl implements ResolverFactory {
         @Override
         public Map<?, ?> resolve(Invocation inv, ParamMetaData metaData) {
             if (StringUtils.isNotEmpty(metaData.getParamName())) {
-                Class<?>[] genericTypes = (Class[]) metaData.getUserObject(this);
-                Class<?> keyType = genericTypes[0];
-                Class<?> valueType = genericTypes[1];
+                ValueParser[] parsers = (ValueParser[]) metaData.getUserObject(this);
+                ValueParser keyParser = parsers[0];
+                ValueParser valueParser = parsers[1];
                 Map<?, ?> toConvert = WebUtils.getParametersStartingWith(inv.getRequest(), metaData
                         .getParamName()
                         + MAP_SEPARATOR);
                 if (toConvert != null) {
-                    if (keyType != String.class || valueType != String.class) {
+                    if (keyParser != ValueParser.STRING || valueParser != ValueParser.STRING) {
                         Map<Object, Object> ret = new HashMap<Object, Object>();
                         for (Map.Entry<?, ?> entry : toConvert.entrySet()) {
                             Object key = entry.getKey();
                             Object value = entry.getValue();
-                            TypeConverter typeConverter = SafedTypeConverterFactory
-                                    .getCurrentConverter();
-                            if (keyType != String.class) {
-                                key = typeConverter.convertIfNecessary(key, keyType);
+                            if (keyParser != ValueParser.STRING) {
+                                key = keyParser.parse((String) key);
                             }
-                            if (valueType != String.class) {
-                                value = typeConverter.convertIfNecessary(value, valueType);
+                            if (valueParser != ValueParser.STRING) {
+                                if (value instanceof String) {
+                                    value = valueParser.parse((String) value);
+                                } else {
+                                    // 多个值时(String[])仍交给转换器
+                                    value = SafedTypeConverterFactory.convertIfNecessary(value,
+                                            valueParser.getType());
+                                }
                             }
                             ret.put(key, value);
                         }
@@ -810,40 +880,95 @@ public class ResolverFactoryImpl implements ResolverFactory {
 
         private final static String stimePattern = "HH:mm";
 
-        private static Date parse(String text) throws ParseException {
+        /** 每个格式的空闲池中最多保留的SimpleDateFormat个数，超出的在归还时丢弃 */
+        private static final int MAX_IDLE = 64;
+
+        /**
+         * SimpleDateFormat不是线程安全的：按格式各自维护一个共享的空闲池，解析时借出、用完归还，
+         * 实例数只和并发数有关，不随线程数(比如每个请求一个虚拟线程)增长；格式只来自内置常量和@Pattern，个数有限
+         */
+        private static final ConcurrentMap<String, FormatPool> pools = new ConcurrentHashMap<String, FormatPool>();
+
+        private static final class FormatPool {
+
+            final String pattern;
+
+            final ConcurrentLinkedQueue<SimpleDateFormat> idleFormats = new ConcurrentLinkedQueue<SimpleDateFormat>();
+
+            final AtomicInteger idleCount = new AtomicInteger();
+
+            FormatPool(String pattern) {
+                this.pattern = pattern;
+            }
+
+            Date parse(String text) throws ParseException {
+                SimpleDateFormat format = idleFormats.poll();
+                if (format == null) {
+                    format = new SimpleDateFormat(pattern);
+                } else {
+                    idleCount.decrementAndGet();
+                }
+                try {
+                    return format.parse(text);
+                } finally {
+                    if (idleCount.incrementAndGet() <= MAX_IDLE) {
+                        idleFormats.offer(format);
+                    } else {
+                        idleCount.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        /**
+         * 使用给定格式解析text，SimpleDateFormat从该格式的空闲池中借出
+         */
+        static Date parse(String pattern, String text) throws ParseException {
+            FormatPool pool = pools.get(pattern);
+            if (pool == null) {
+                pool = new FormatPool(pattern);
+                FormatPool exists = pools.putIfAbsent(pattern, pool);
+                if (exists != null) {
+                    pool = exists;
+                }
+            }
+            return pool.parse(text);
+        }
+
+        static Date parse(String text) throws ParseException {
             if (text.length() == dateTimePattern.length()) {
                 if (text.charAt(4) == '-' && text.charAt(7) == '-') {
-                    return new SimpleDateFormat(dateTimePattern).parse(text);
+                    return parse(dateTimePattern, text);
                 }
                 if (text.charAt(4) == '/' && text.charAt(7) == '/') {
                     if (text.charAt(13) == ':' && text.charAt(16) == ':') {
-                        return new SimpleDateFormat(dateTimePattern2).parse(text);
+                        return parse(dateTimePattern2, text);
                     }
                 }
             } else if (text.length() == dateTimePattern3.length()) {
-                return new SimpleDateFormat(dateTimePattern3).parse(text);
+                return parse(dateTimePattern3, text);
             } else if (text.length() == datePattern3.length()) {
-                return new SimpleDateFormat(datePattern3).parse(text);
+                return parse(datePattern3, text);
             } else if (text.length() == datePattern.length()) {
                 if (text.charAt(4) == '-' && text.charAt(7) == '-') {
-                    return new SimpleDateFormat(datePattern).parse(text);
+                    return parse(datePattern, text);
                 }
                 if (text.charAt(4) == '/' && text.charAt(7) == '/') {
-                    return new SimpleDateFormat(datePattern2).parse(text);
+                    return parse(datePattern2, text);
                 }
             } else if (text.length() == timePattern.length()) {
                 if (text.charAt(2) == ':' && text.charAt(5) == ':') {
-                    return new SimpleDateFormat(timePattern).parse(text);
+                    return parse(timePattern, text);
                 }
             } else if (text.length() == stimePattern.length()) {
                 if (text.charAt(2) == ':') {
-                    return new SimpleDateFormat(stimePattern).parse(text);
+                    return parse(stimePattern, text);
                 }
             }
             return new Date(Long.parseLong(text));
         }
 
-        private static Date changeType(Date date, Class<?> targetType) {
+        static Date changeType(Date date, Class<?> targetType) {
             if (date == null) {
                 return date;
             }
@@ -863,10 +988,18 @@ public class ResolverFactoryImpl implements ResolverFactory {
 
         @Override
         public boolean supports(ParamMetaData metaData) {
-            return Date.class == metaData.getParamType()
+            boolean supports = Date.class == metaData.getParamType()
                     || java.sql.Date.class == metaData.getParamType()
                     || java.sql.Time.class == metaData.getParamType()
                     || java.sql.Timestamp.class == metaData.getParamType();
+            if (supports) {
+                // 启动时取出@Pattern，请求时不再读取参数的注解
+                Pattern pattern = metaData.getAnnotation(Pattern.class);
+                if (pattern != null) {
+                    metaData.setUserObject(this, pattern.value());
+                }
+            }
+            return supports;
         }
 
         @Override
@@ -898,31 +1031,26 @@ public class ResolverFactoryImpl implements ResolverFactory {
                     return null; // 保留null，而非当前时间
                 }
             }
-            Annotation[] paramAnnotations = metaData.getMethod().getParameterAnnotations()[metaData
-                    .getIndex()];
-            for (Annotation annotation : paramAnnotations) {
-                if (annotation instanceof Pattern) {
-                    String[] patterns = Pattern.class.cast(annotation).value();
-                    for (String pattern : patterns) {
-                        // 以long为时间
-                        if ("long".equals(pattern)) {
-                            boolean digit = true;
-                            for (int i = 0; i < text.length(); i++) {
-                                if (!Character.isDigit(text.charAt(i))) {
-                                    digit = false;
-                                    break;
-                                }
-                            }
-                            if (digit) {
-                                return new Date(Long.parseLong(text));
+            String[] patterns = (String[]) metaData.getUserObject(this);
+            if (patterns != null) {
+                for (String pattern : patterns) {
+                    // 以long为时间
+                    if ("long".equals(pattern)) {
+                        boolean digit = true;
+                        for (int i = 0; i < text.length(); i++) {
+                            if (!Character.isDigit(text.charAt(i))) {
+                                digit = false;
+                                break;
                             }
                         }
-                        // 可以配置多个pattern!! 通过长度匹配
-                        if (text.length() == pattern.length()) {
-                            return new SimpleDateFormat(pattern).parse(text);
+                        if (digit) {
+                            return new Date(Long.parseLong(text));
                         }
                     }
-                    break;
+                    // 可以配置多个pattern!! 通过长度匹配
+                    if (text.length() == pattern.length()) {
+                        return DatePatterns.parse(pattern, text);
+                    }
                 }
             }
             return DatePatterns.parse(text);
@@ -933,13 +1061,17 @@ public class ResolverFactoryImpl implements ResolverFactory {
 
         @Override
         public boolean supports(ParamMetaData metaData) {
-            if (ClassUtils.isPrimitiveOrWrapper(metaData.getParamType())) {
-                return true;
+            boolean supports = ClassUtils.isPrimitiveOrWrapper(metaData.getParamType());
+            if (!supports) {
+                SimpleTypeConverter simpleTypeConverter = SafedTypeConverterFactory
+                        .getCurrentConverter();
+                supports = simpleTypeConverter.findCustomEditor(metaData.getParamType(), null) != null
+                        || simpleTypeConverter.getDefaultEditor(metaData.getParamType()) != null;
             }
-            SimpleTypeConverter simpleTypeConverter = SafedTypeConverterFactory
-                    .getCurrentConverter();
-            return simpleTypeConverter.findCustomEditor(metaData.getParamType(), null) != null
-                    || simpleTypeConverter.getDefaultEditor(metaData.getParamType()) != null;
+            if (supports) {
+                metaData.setUserObject(this, ValueParser.of(metaData.getParamType()));
+            }
+            return supports;
         }
 
         @Override
@@ -966,27 +1098,13 @@ public class ResolverFactoryImpl implements ResolverFactory {
                     toConvert = defValudeAnnotation.value();
                 }
             }
+            ValueParser parser = (ValueParser) metaData.getUserObject(this);
             if (toConvert != null) {
-                SimpleTypeConverter typeConverter = SafedTypeConverterFactory.getCurrentConverter();
-                return typeConverter.convertIfNecessary(toConvert, metaData.getParamType());
+                return parser.parse(toConvert);
             }
             if (metaData.getParamType().isPrimitive()) {
-                // 对这最常用的类型做一下if-else判断，其他类型就简单使用converter来做吧
-                if (metaData.getParamType() == int.class) {
-                    return Integer.valueOf(0);
-                } else if (metaData.getParamType() == long.class) {
-                    return Long.valueOf(0);
-                } else if (metaData.getParamType() == boolean.class) {
-                    return Boolean.FALSE;
-                } else if (metaData.getParamType() == double.class) {
-                    return Double.valueOf(0);
-                } else if (metaData.getParamType() == float.class) {
-                    return Float.valueOf(0);
-                } else {
-                    SimpleTypeConverter typeConverter = SafedTypeConverterFactory
-                            .getCurrentConverter();
-                    return typeConverter.convertIfNecessary("0", metaData.getParamType());
-                }
+                // 原始类型的默认值
+                return parser.parse("0");
             }
             return null;
         }
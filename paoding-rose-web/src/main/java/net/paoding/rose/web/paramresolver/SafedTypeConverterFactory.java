@@ -16,37 +16,84 @@
 package net.paoding.rose.web.paramresolver;
 
 import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.paoding.rose.web.paramresolver.ResolverFactoryImpl.DateEditor;
 
 import org.springframework.beans.SimpleTypeConverter;
+import org.springframework.beans.TypeMismatchException;
 
 /**
+ * {@link SimpleTypeConverter} 不是线程安全的，而且创建时要注册一批PropertyEditor。
+ * <p>
+ * {@link #convertIfNecessary(Object, Class)} 从一个共享的空闲池中借出转换器、用完归还，
+ * 转换器的数量只和并发数有关，不会因为大量短生命期的线程(比如每个请求一个虚拟线程)而反复创建；
+ * {@link #getCurrentConverter()} 仍然为每个线程保留一个转换器，适用于需要直接操作转换器的场合。
  * 
  * @author 王志亮 [qieqie.wang@gmail.com]
  * 
  */
 public class SafedTypeConverterFactory {
 
+    /** 空闲池中最多保留的转换器个数，超出的在归还时丢弃 */
+    private static final int MAX_IDLE = 256;
+
+    private static final ConcurrentLinkedQueue<SimpleTypeConverter> idleConverters = new ConcurrentLinkedQueue<SimpleTypeConverter>();
+
+    private static final AtomicInteger idleCount = new AtomicInteger();
+
     public static SimpleTypeConverter getCurrentConverter() {
         return simpleTypeConverters.get();
     }
 
+    /**
+     * 使用空闲池中的转换器把value转换为requiredType类型
+     * 
+     * @param value
+     * @param requiredType
+     * @return
+     * @throws TypeMismatchException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T convertIfNecessary(Object value, Class<T> requiredType)
+            throws TypeMismatchException {
+        SimpleTypeConverter converter = idleConverters.poll();
+        if (converter == null) {
+            converter = createConverter();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        try {
+            return (T) converter.convertIfNecessary(value, requiredType);
+        } finally {
+            if (idleCount.incrementAndGet() <= MAX_IDLE) {
+                idleConverters.offer(converter);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+
     private static ThreadLocal<SimpleTypeConverter> simpleTypeConverters = new ThreadLocal<SimpleTypeConverter>() {
 
         @Override
         protected SimpleTypeConverter initialValue() {
-            // simpleTypeConverter is not for concurrency!
-            SimpleTypeConverter simpleTypeConverter = new SimpleTypeConverter();
-            simpleTypeConverter.useConfigValueEditors();
-            simpleTypeConverter.registerCustomEditor(Date.class, new DateEditor(Date.class));
-            simpleTypeConverter.registerCustomEditor(java.sql.Date.class, new DateEditor(
-                    java.sql.Date.class));
-            simpleTypeConverter.registerCustomEditor(java.sql.Time.class, new DateEditor(
-                    java.sql.Time.class));
-            simpleTypeConverter.registerCustomEditor(java.sql.Timestamp.class, new DateEditor(
-                    java.sql.Timestamp.class));
-            return simpleTypeConverter;
+            return createConverter();
         }
     };
+
+    private static SimpleTypeConverter createConverter() {
+        // simpleTypeConverter is not for concurrency!
+        SimpleTypeConverter simpleTypeConverter = new SimpleTypeConverter();
+        simpleTypeConverter.useConfigValueEditors();
+        simpleTypeConverter.registerCustomEditor(Date.class, new DateEditor(Date.class));
+        simpleTypeConverter.registerCustomEditor(java.sql.Date.class, new DateEditor(
+                java.sql.Date.class));
+        simpleTypeConverter.registerCustomEditor(java.sql.Time.class, new DateEditor(
+                java.sql.Time.class));
+        simpleTypeConverter.registerCustomEditor(java.sql.Timestamp.class, new DateEditor(
+                java.sql.Timestamp.class));
+        return simpleTypeConverter;
+    }
 }
@@ -0,0 +1,512 @@
+/*
+ * Copyright 2007-2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.paoding.rose.web.paramresolver;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.paoding.rose.web.paramresolver.ResolverFactoryImpl.DatePatterns;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.util.NumberUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link ValueParser} 把请求参数的文本转换为某个类型的值。
+ * <p>
+ * 
+ * {@link #of(Class)} 为常用的类型(原始类型及其包装类、BigInteger、BigDecimal、String、枚举以及日期)
+ * 返回专门的实现，它们直接解析文本，不经过PropertyEditor，转换规则和Spring默认的PropertyEditor相同；
+ * 其他类型仍然使用 {@link SafedTypeConverterFactory} 的转换器，以支持自定义的PropertyEditor。
+ * <p>
+ * 
+ * 解析器应在启动时(即 {@link ParamResolver#supports(ParamMetaData)} 中)为每个参数选好，转换失败时抛出
+ * {@link TypeMismatchException}，和原来使用转换器时一样。
+ */
+abstract class ValueParser {
+
+    /** 转换的目标类型 */
+    final Class<?> type;
+
+    ValueParser(Class<?> type) {
+        this.type = type;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * 转换给定的文本
+     * 
+     * @param text
+     * @return
+     * @throws TypeMismatchException 无法转换
+     */
+    public abstract Object parse(String text) throws TypeMismatchException;
+
+    /**
+     * 转换text中[begin, end)之间的文本，默认先截取出这段文本
+     */
+    public Object parse(String text, int begin, int end) throws TypeMismatchException {
+        return parse(text.substring(begin, end));
+    }
+
+    /**
+     * 是否是专门的实现；返回false表示使用的是Spring的转换器
+     */
+    public boolean isSpecialized() {
+        return true;
+    }
+
+    //-------------------------------------------------------------
+
+    /** 字符串不需要转换，可以用==判断 */
+    static final ValueParser STRING = new ValueParser(String.class) {
+
+        @Override
+        public Object parse(String text) {
+            return text;
+        }
+    };
+
+    private static final Map<Class<?>, ValueParser> parsers = new HashMap<Class<?>, ValueParser>();
+
+    static {
+        parsers.put(String.class, STRING);
+        parsers.put(int.class, new IntParser(int.class, false));
+        parsers.put(Integer.class, new IntParser(Integer.class, true));
+        parsers.put(long.class, new LongParser(long.class, false));
+        parsers.put(Long.class, new LongParser(Long.class, true));
+        parsers.put(boolean.class, new BooleanParser(boolean.class, false));
+        parsers.put(Boolean.class, new BooleanParser(Boolean.class, true));
+        parsers.put(char.class, new CharacterParser(char.class, false));
+        parsers.put(Character.class, new CharacterParser(Character.class, true));
+        parsers.put(byte.class, new NumberParser(byte.class, Byte.class, false));
+        parsers.put(Byte.class, new NumberParser(Byte.class, Byte.class, true));
+        parsers.put(short.class, new NumberParser(short.class, Short.class, false));
+        parsers.put(Short.class, new NumberParser(Short.class, Short.class, true));
+        parsers.put(float.class, new NumberParser(float.class, Float.class, false));
+        parsers.put(Float.class, new NumberParser(Float.class, Float.class, true));
+        parsers.put(double.class, new NumberParser(double.class, Double.class, false));
+        parsers.put(Double.class, new NumberParser(Double.class, Double.class, true));
+        parsers.put(BigInteger.class, new NumberParser(BigInteger.class, BigInteger.class, true));
+        parsers.put(BigDecimal.class, new NumberParser(BigDecimal.class, BigDecimal.class, true));
+        parsers.put(Date.class, new DateParser(Date.class));
+        parsers.put(java.sql.Date.class, new DateParser(java.sql.Date.class));
+        parsers.put(java.sql.Time.class, new DateParser(java.sql.Time.class));
+        parsers.put(java.sql.Timestamp.class, new DateParser(java.sql.Timestamp.class));
+    }
+
+    /**
+     * 返回给定类型的解析器，不会返回null
+     * 
+     * @param type
+     * @return
+     */
+    public static ValueParser of(Class<?> type) {
+        ValueParser parser = parsers.get(type);
+        if (parser != null) {
+            return parser;
+        }
+        if (type.isEnum() && BeanUtils.findEditorByConvention(type) == null) {
+            return new EnumParser(type);
+        }
+        return new ConverterParser(type);
+    }
+
+    /**
+     * 返回给定数组类型的解析器，参见 {@link ArrayParser}
+     * 
+     * @param arrayType
+     * @return
+     */
+    public static ArrayParser ofArray(Class<?> arrayType) {
+        return new ArrayParser(arrayType);
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 使用 {@link SafedTypeConverterFactory} 的转换器
+     */
+    static final class ConverterParser extends ValueParser {
+
+        ConverterParser(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        public Object parse(String text) {
+            return SafedTypeConverterFactory.convertIfNecessary(text, type);
+        }
+
+        @Override
+        public boolean isSpecialized() {
+            return false;
+        }
+    }
+
+    /**
+     * @see org.springframework.beans.propertyeditors.CustomNumberEditor
+     */
+    static class NumberParser extends ValueParser {
+
+        final Class<? extends Number> numberType;
+
+        final boolean allowEmpty;
+
+        NumberParser(Class<?> type, Class<? extends Number> numberType, boolean allowEmpty) {
+            super(type);
+            this.numberType = numberType;
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object parse(String text) {
+            if (allowEmpty && !StringUtils.hasText(text)) {
+                return null;
+            }
+            try {
+                return NumberUtils.parseNumber(text, numberType);
+            } catch (IllegalArgumentException e) {
+                throw new TypeMismatchException(text, type, e);
+            }
+        }
+    }
+
+    /**
+     * 十进制数字直接从文本中解析，其他情况(空白、十六进制、溢出等)交给 {@link NumberParser}
+     */
+    static final class IntParser extends NumberParser {
+
+        IntParser(Class<?> type, boolean allowEmpty) {
+            super(type, Integer.class, allowEmpty);
+        }
+
+        @Override
+        public Object parse(String text) {
+            return text == null ? super.parse(text) : parse(text, 0, text.length());
+        }
+
+        @Override
+        public Object parse(String text, int begin, int end) {
+            // 9位以内的数字不会溢出
+            if (end - begin < 10 || (end - begin == 10 && text.charAt(begin) == '-')) {
+                long value = parseDecimal(text, begin, end);
+                if (value != NOT_DECIMAL) {
+                    return Integer.valueOf((int) value);
+                }
+            }
+            return super.parse(text.substring(begin, end));
+        }
+    }
+
+    static final class LongParser extends NumberParser {
+
+        LongParser(Class<?> type, boolean allowEmpty) {
+            super(type, Long.class, allowEmpty);
+        }
+
+        @Override
+        public Object parse(String text) {
+            return text == null ? super.parse(text) : parse(text, 0, text.length());
+        }
+
+        @Override
+        public Object parse(String text, int begin, int end) {
+            // 18位以内的数字不会溢出
+            if (end - begin < 19 || (end - begin == 19 && text.charAt(begin) == '-')) {
+                long value = parseDecimal(text, begin, end);
+                if (value != NOT_DECIMAL) {
+                    return Long.valueOf(value);
+                }
+            }
+            return super.parse(text.substring(begin, end));
+        }
+    }
+
+    /** 不是(不超过18位的)十进制数字 */
+    private static final long NOT_DECIMAL = Long.MIN_VALUE;
+
+    /**
+     * 解析[begin, end)之间可以带负号的十进制数字，不超过18位；有其他字符时返回 {@link #NOT_DECIMAL}
+     */
+    static long parseDecimal(String text, int begin, int end) {
+        boolean negative = begin < end && text.charAt(begin) == '-';
+        int i = negative ? begin + 1 : begin;
+        if (i == end || end - i > 18) {
+            return NOT_DECIMAL;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_DECIMAL;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * @see org.springframework.beans.propertyeditors.CustomBooleanEditor
+     */
+    static final class BooleanParser extends ValueParser {
+
+        private final boolean allowEmpty;
+
+        BooleanParser(Class<?> type, boolean allowEmpty) {
+            super(type);
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object parse(String text) {
+            String input = (text != null ? text.trim() : null);
+            if (allowEmpty && !StringUtils.hasLength(input)) {
+                return null;
+            } else if ("true".equalsIgnoreCase(input) || "on".equalsIgnoreCase(input)
+                    || "yes".equalsIgnoreCase(input) || "1".equals(input)) {
+                return Boolean.TRUE;
+            } else if ("false".equalsIgnoreCase(input) || "off".equalsIgnoreCase(input)
+                    || "no".equalsIgnoreCase(input) || "0".equals(input)) {
+                return Boolean.FALSE;
+            } else {
+                throw new TypeMismatchException(text, Boolean.class, new IllegalArgumentException(
+                        "Invalid boolean value [" + text + "]"));
+            }
+        }
+    }
+
+    /**
+     * @see org.springframework.beans.propertyeditors.CharacterEditor
+     */
+    static final class CharacterParser extends ValueParser {
+
+        private final boolean allowEmpty;
+
+        CharacterParser(Class<?> type, boolean allowEmpty) {
+            super(type);
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object parse(String text) {
+            if (allowEmpty && !StringUtils.hasLength(text)) {
+                return null;
+            } else if (text == null) {
+                throw new TypeMismatchException(text, Character.class,
+                        new IllegalArgumentException(
+                                "null String cannot be converted to char type"));
+            } else if (text.startsWith("\\u") && text.length() == 6) {
+                try {
+                    return Character.valueOf((char) Integer.parseInt(text.substring(2), 16));
+                } catch (NumberFormatException e) {
+                    throw new TypeMismatchException(text, Character.class, e);
+                }
+            } else if (text.length() != 1) {
+                throw new TypeMismatchException(text, Character.class,
+                        new IllegalArgumentException("String [" + text + "] with length "
+                                + text.length() + " cannot be converted to char type"));
+            } else {
+                return Character.valueOf(text.charAt(0));
+            }
+        }
+    }
+
+    /**
+     * 和Spring一样先去掉两边的空白，空文本返回null；不是枚举常量名的交给转换器
+     */
+    static final class EnumParser extends ValueParser {
+
+        private final Map<String, Object> constants = new HashMap<String, Object>();
+
+        EnumParser(Class<?> type) {
+            super(type);
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        @Override
+        public Object parse(String text) {
+            if (text == null) {
+                return null;
+            }
+            String name = text.trim();
+            if (name.length() == 0) {
+                return null;
+            }
+            Object constant = constants.get(name);
+            if (constant == null) {
+                // 可能是枚举类中其他同类型的静态字段
+                return SafedTypeConverterFactory.convertIfNecessary(text, type);
+            }
+            return constant;
+        }
+    }
+
+    /**
+     * 和 {@link ResolverFactoryImpl.DateEditor} 相同，空文本返回null
+     */
+    static final class DateParser extends ValueParser {
+
+        DateParser(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        public Object parse(String text) {
+            if (text == null || (text = text.trim()).length() == 0) {
+                return null;
+            }
+            try {
+                return DatePatterns.changeType(DatePatterns.parse(text), type);
+            } catch (ParseException e) {
+                throw new TypeMismatchException(text, type, e);
+            } catch (NumberFormatException e) {
+                throw new TypeMismatchException(text, type, e);
+            }
+        }
+    }
+
+    //-------------------------------------------------------------
+
+    /**
+     * 把请求参数的多个值转换为数组；只有一个值时，按逗号分隔为多个元素(和 String.split(",")
+     * 一样忽略结尾的空元素)，不创建中间的String数组。
+     * <p>
+     * 
+     * int[]、long[]直接写入原始类型数组；元素类型没有专门的解析器时，整个数组交给Spring的转换器。
+     */
+    static final class ArrayParser {
+
+        private final Class<?> arrayType;
+
+        private final Class<?> componentType;
+
+        private final ValueParser componentParser;
+
+        ArrayParser(Class<?> arrayType) {
+            this.arrayType = arrayType;
+            this.componentType = arrayType.getComponentType();
+            this.componentParser = of(componentType);
+        }
+
+        public Class<?> getComponentType() {
+            return componentType;
+        }
+
+        /**
+         * 没有参数值时返回的空数组
+         */
+        public Object empty() {
+            return Array.newInstance(componentType, 0);
+        }
+
+        public Object parse(String[] values) throws TypeMismatchException {
+            if (values.length != 1) {
+                return parseValues(values);
+            }
+            String text = values[0];
+            // 和split一样，结尾的空元素不计；没有逗号时整个文本是一个元素
+            int length = text.length();
+            if (text.indexOf(',') >= 0) {
+                while (length > 0 && text.charAt(length - 1) == ',') {
+                    length--;
+                }
+            }
+            int count = 0;
+            if (length > 0 || text.length() == 0) {
+                count = 1;
+                for (int i = 0; i < length; i++) {
+                    if (text.charAt(i) == ',') {
+                        count++;
+                    }
+                }
+            }
+            if (!componentParser.isSpecialized()) {
+                String[] segments = new String[count];
+                int begin = 0;
+                for (int i = 0; i < count; i++) {
+                    int end = segmentEnd(text, begin, length);
+                    segments[i] = text.substring(begin, end);
+                    begin = end + 1;
+                }
+                return convert(segments);
+            }
+            Object array = Array.newInstance(componentType, count);
+            int begin = 0;
+            try {
+                if (componentType == int.class) {
+                    int[] ints = (int[]) array;
+                    for (int i = 0; i < count; i++) {
+                        int end = segmentEnd(text, begin, length);
+                        ints[i] = ((Integer) componentParser.parse(text, begin, end)).intValue();
+                        begin = end + 1;
+                    }
+                } else if (componentType == long.class) {
+                    long[] longs = (long[]) array;
+                    for (int i = 0; i < count; i++) {
+                        int end = segmentEnd(text, begin, length);
+                        longs[i] = ((Long) componentParser.parse(text, begin, end)).longValue();
+                        begin = end + 1;
+                    }
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        int end = segmentEnd(text, begin, length);
+                        Array.set(array, i, componentParser.parse(text, begin, end));
+                        begin = end + 1;
+                    }
+                }
+            } catch (TypeMismatchException e) {
+                throw new TypeMismatchException(values, arrayType, e);
+            }
+            return array;
+        }
+
+        private static int segmentEnd(String text, int begin, int length) {
+            int end = text.indexOf(',', begin);
+            return end < 0 || end > length ? length : end;
+        }
+
+        private Object parseValues(String[] values) {
+            if (!componentParser.isSpecialized()) {
+                return convert(values);
+            }
+            Object array = Array.newInstance(componentType, values.length);
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    Array.set(array, i, componentParser.parse(values[i]));
+                }
+            } catch (TypeMismatchException e) {
+                throw new TypeMismatchException(values, arrayType, e);
+            }
+            return array;
+        }
+
+        private Object convert(String[] values) {
+            return SafedTypeConverterFactory.convertIfNecessary(values, arrayType);
+        }
+    }
+}
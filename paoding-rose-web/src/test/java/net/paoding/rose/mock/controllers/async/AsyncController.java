@@ -0,0 +1,59 @@
+package net.paoding.rose.mock.controllers.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import net.paoding.rose.web.annotation.Async;
+import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.annotation.rest.Get;
+
+@Path("exec")
+public class AsyncController {
+
+    /** wait执行时等待的信号 */
+    public static volatile CountDownLatch gate;
+
+    /** wait返回前发出的信号 */
+    public static volatile CountDownLatch returned;
+
+    @Async(timeout = 5000)
+    @Get("thread")
+    public Object thread() {
+        return Thread.currentThread().getName();
+    }
+
+    @Get("future")
+    public Future<String> future() {
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return "future:" + Thread.currentThread().getName();
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    @Async
+    @Get("wait")
+    public Object waitGate() throws InterruptedException {
+        gate.await(5, TimeUnit.SECONDS);
+        returned.countDown();
+        return "waited";
+    }
+
+    @Async
+    @Get("jsp")
+    public Object jsp() {
+        return "exec/jsp";
+    }
+
+    @Get("sync")
+    public Object sync() {
+        return Thread.currentThread().getName();
+    }
+}
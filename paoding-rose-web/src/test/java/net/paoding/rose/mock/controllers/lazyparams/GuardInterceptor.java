@@ -0,0 +1,34 @@
+package net.paoding.rose.mock.controllers.lazyparams;
+
+import java.util.Arrays;
+
+import net.paoding.rose.web.ControllerInterceptorAdapter;
+import net.paoding.rose.web.Invocation;
+
+/**
+ * 请求带有reject参数时拒绝请求；带有peek参数时在before中读取方法参数
+ */
+public class GuardInterceptor extends ControllerInterceptorAdapter {
+
+    public static final String RETURN = "rejected-by-GuardInterceptor";
+
+    public static final String MODEL_ID = "GuardInterceptor.id";
+
+    public static final String MODEL_FORM = "GuardInterceptor.form";
+
+    public static final String PEEKED = "GuardInterceptor.peeked";
+
+    @Override
+    public Object before(Invocation inv) throws Exception {
+        inv.getRequest().setAttribute(MODEL_ID, inv.getModel().get("id"));
+        String formName = inv.getMethodParameterNames()[2];
+        inv.getRequest().setAttribute(MODEL_FORM, inv.getModel().get(formName));
+        if (inv.getParameter("peek") != null) {
+            inv.getRequest().setAttribute(PEEKED, Arrays.asList(inv.getMethodParameters()));
+        }
+        if (inv.getParameter("reject") != null) {
+            return RETURN;
+        }
+        return true;
+    }
+}
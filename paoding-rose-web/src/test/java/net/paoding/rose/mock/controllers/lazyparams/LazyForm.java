@@ -0,0 +1,23 @@
+package net.paoding.rose.mock.controllers.lazyparams;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LazyForm {
+
+    /** 创建的实例数，用来判断bean参数是否被解析 */
+    public static final AtomicInteger instances = new AtomicInteger();
+
+    private String name;
+
+    public LazyForm() {
+        instances.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
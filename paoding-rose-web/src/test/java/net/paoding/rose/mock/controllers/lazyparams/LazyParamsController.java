@@ -0,0 +1,20 @@
+package net.paoding.rose.mock.controllers.lazyparams;
+
+import java.util.List;
+
+import net.paoding.rose.web.Invocation;
+import net.paoding.rose.web.annotation.LazyParams;
+import net.paoding.rose.web.annotation.Param;
+import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.annotation.rest.Get;
+
+@LazyParams
+@Path("lazy")
+public class LazyParamsController {
+
+    @Get("form")
+    public Object form(Invocation inv, @Param("id") int id, LazyForm form,
+            @Param("tag") List<String> tags) {
+        return id + ":" + form.getName() + ":" + tags;
+    }
+}
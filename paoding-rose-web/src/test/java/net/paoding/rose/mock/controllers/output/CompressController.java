@@ -0,0 +1,29 @@
+package net.paoding.rose.mock.controllers.output;
+
+import net.paoding.rose.web.Invocation;
+import net.paoding.rose.web.annotation.HttpFeatures;
+import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.annotation.rest.Get;
+import net.paoding.rose.web.instruction.OutputPolicy;
+
+@Path("compress")
+@HttpFeatures(compress = "true", compressThreshold = 512)
+public class CompressController {
+
+    @Get("inherit")
+    public Object inherit(Invocation inv) {
+        return String.valueOf(OutputPolicy.of(inv));
+    }
+
+    @HttpFeatures(compress = "false")
+    @Get("off")
+    public Object off(Invocation inv) {
+        return String.valueOf(OutputPolicy.of(inv));
+    }
+
+    @HttpFeatures(compress = "true")
+    @Get("defaults")
+    public Object defaults(Invocation inv) {
+        return String.valueOf(OutputPolicy.of(inv));
+    }
+}
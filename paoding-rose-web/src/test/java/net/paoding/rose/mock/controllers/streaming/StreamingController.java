@@ -0,0 +1,75 @@
+package net.paoding.rose.mock.controllers.streaming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import net.paoding.rose.web.Invocation;
+import net.paoding.rose.web.annotation.Path;
+import net.paoding.rose.web.annotation.StreamingMultipart;
+import net.paoding.rose.web.annotation.rest.Post;
+import net.paoding.rose.web.multipart.StreamingPart;
+import net.paoding.rose.web.multipart.StreamingParts;
+
+import org.springframework.web.multipart.MultipartRequest;
+
+@Path("upload")
+public class StreamingController {
+
+    @StreamingMultipart(partSizeMax = 16)
+    @Post("parts")
+    public Object parts(Invocation inv, StreamingParts parts) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(inv.getRequest() instanceof MultipartRequest ? "resolved" : "streaming");
+        try {
+            for (StreamingPart part : parts) {
+                if (part.isFormField()) {
+                    sb.append(';').append(part.getName()).append('=').append(part.getString("UTF-8"));
+                } else {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    part.transferTo(out);
+                    sb.append(';').append(part.getName()).append(':').append(part.getFileName()).append('=')
+                            .append(out.toString("UTF-8"));
+                }
+            }
+        } catch (IOException e) {
+            sb.append(";tooLarge");
+        }
+        return sb.toString();
+    }
+
+    @StreamingMultipart
+    @Post("file")
+    public Object file(StreamingParts parts) throws IOException {
+        StreamingPart part = parts.next();
+        File file = File.createTempFile("rose-streaming", ".tmp");
+        try {
+            return part.transferTo(file) + ":" + file.length();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @StreamingMultipart
+    @Post("reread")
+    public Object reread(StreamingParts parts) throws IOException {
+        StreamingPart part = parts.next();
+        part.transferTo(new ByteArrayOutputStream());
+        File file = File.createTempFile("rose-streaming", ".tmp");
+        try {
+            part.transferTo(file);
+            return "transferred";
+        } catch (IOException e) {
+            // part已经读过，不能删除原来就存在的文件
+            return "exists:" + file.exists();
+        } finally {
+            file.delete();
+        }
+    }
+
+    @StreamingMultipart
+    @Post("optional")
+    public Object optional(StreamingParts parts) {
+        return String.valueOf(parts);
+    }
+}
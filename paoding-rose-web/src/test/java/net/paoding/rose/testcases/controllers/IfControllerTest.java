@@ -59,6 +59,12 @@ public class IfControllerTest extends AbstractControllerTest {
     	assertEquals("ab1", invoke("/if"));
     }
 	
+    public void testMethodNotAllowed() throws ServletException, IOException {
+        invoke("/if", "POST", "b=1");
+        assertEquals(405, response.getStatus());
+        assertEquals("GET", response.getHeader("Allow"));
+    }
+
     public void testNotIf() throws ServletException, IOException {
         assertEquals("a", invoke("/if"));
     }
@@ -18,6 +18,8 @@ public class RoseTestEnv {
 
     private RoseFilter roseFilter;
 
+    private RoseFilter pipelineRoseFilter;
+
     private MockInstructionExecutor instructionExecutor;
 
     public synchronized static RoseTestEnv instance() throws ServletException {
@@ -35,6 +37,7 @@ public class RoseTestEnv {
         instructionExecutor.setStoresInstructionInRequest(true);
         roseFilter = new RoseFilter();
         roseFilter.setInstructionExecutor(instructionExecutor);
+        roseFilter.setMetricsEnabled(true);
         roseFilter.init(new MockFilterConfig(servletContext, "roseFilter"));
     }
 
@@ -42,6 +45,22 @@ public class RoseTestEnv {
         return roseFilter;
     }
 
+    /**
+     * 返回以展开方式执行拦截器的RoseFilter，和 {@link #getRoseFilter()} 使用同一个instructionExecutor
+     */
+    public synchronized RoseFilter getPipelineRoseFilter() throws ServletException {
+        if (pipelineRoseFilter == null) {
+            RoseFilter filter = new RoseFilter();
+            filter.setInstructionExecutor(instructionExecutor);
+            filter.setInterceptorPipeline(true);
+            filter.setMetricsEnabled(true);
+            filter.init(new MockFilterConfig(roseFilter.getFilterConfig().getServletContext(),
+                    "pipelineRoseFilter"));
+            pipelineRoseFilter = filter;
+        }
+        return pipelineRoseFilter;
+    }
+
     public MockInstructionExecutor getInstructionExecutor() {
         return instructionExecutor;
     }
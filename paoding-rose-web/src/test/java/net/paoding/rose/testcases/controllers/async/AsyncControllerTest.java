@@ -0,0 +1,178 @@
+package net.paoding.rose.testcases.controllers.async;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import net.paoding.rose.RoseFilter;
+import net.paoding.rose.mock.controllers.async.AsyncController;
+import net.paoding.rose.testcases.AbstractControllerTest;
+import net.paoding.rose.testcases.controllers.RoseTestEnv;
+
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * @see AsyncController
+ */
+public class AsyncControllerTest extends AbstractControllerTest {
+
+    private MockAsyncContext asyncContext;
+
+    private void supportsAsync() {
+        asyncContext = new MockAsyncContext();
+        request = new MockAsyncRequest(servletContext, asyncContext);
+        request.setMethod("GET");
+    }
+
+    private Object invokeAsync(String uri) throws Exception {
+        invoke(uri);
+        assertTrue(asyncContext.started);
+        // 容器线程返回时action可能还没有执行完
+        assertTrue(asyncContext.latch.await(5, TimeUnit.SECONDS));
+        return RoseTestEnv.instance().getInstructionExecutor().getInstruction(request);
+    }
+
+    public void testAsyncAnnotation() throws Exception {
+        supportsAsync();
+        String thread = (String) invokeAsync("/async/exec/thread");
+        assertTrue(thread, thread.startsWith("rose-async-"));
+        assertEquals(5000L, asyncContext.timeout);
+    }
+
+    public void testFutureResult() throws Exception {
+        supportsAsync();
+        String result = (String) invokeAsync("/async/exec/future");
+        assertTrue(result, result.startsWith("future:rose-async-"));
+        assertEquals(-1L, asyncContext.timeout);
+    }
+
+    public void testAbandonedByContainer() throws Exception {
+        supportsAsync();
+        AsyncController.gate = new CountDownLatch(1);
+        AsyncController.returned = new CountDownLatch(1);
+        invoke("/async/exec/wait");
+        assertTrue(asyncContext.started);
+        assertNotNull(asyncContext.listener);
+        asyncContext.listener.onTimeout(null);
+        AsyncController.gate.countDown();
+        assertTrue(AsyncController.returned.await(5, TimeUnit.SECONDS));
+        // 放弃后既不渲染也不complete
+        assertFalse(asyncContext.latch.await(300, TimeUnit.MILLISECONDS));
+        assertNull(RoseTestEnv.instance().getInstructionExecutor().getInstruction(request));
+    }
+
+    public void testDispatchView() throws Exception {
+        File view = new File("target/test/views/async/exec/jsp.jsp");
+        view.getParentFile().mkdirs();
+        view.createNewFile();
+        // 由ViewInstruction真正渲染：forward经AsyncContext.dispatch交给容器
+        filter = renderingFilter(servletContext);
+        supportsAsync();
+        invoke("/async/exec/jsp");
+        assertTrue(asyncContext.started);
+        assertTrue(asyncContext.latch.await(5, TimeUnit.SECONDS));
+        assertEquals("/views/async/exec/jsp.jsp", asyncContext.dispatched);
+        assertFalse(asyncContext.completed);
+        assertNull(response.getForwardedUrl());
+    }
+
+    /** 使用默认InstructionExecutor、真正渲染指令的RoseFilter */
+    private static RoseFilter renderingFilter;
+
+    private static synchronized RoseFilter renderingFilter(ServletContext servletContext)
+            throws ServletException {
+        if (renderingFilter == null) {
+            RoseFilter filter = new RoseFilter();
+            filter.init(new MockFilterConfig(servletContext, "renderingRoseFilter"));
+            renderingFilter = filter;
+        }
+        return renderingFilter;
+    }
+
+    public void testNotAsyncAction() throws Exception {
+        supportsAsync();
+        assertEquals(Thread.currentThread().getName(), invoke("/async/exec/sync"));
+        assertFalse(asyncContext.started);
+    }
+
+    public void testAsyncNotSupported() throws Exception {
+        assertEquals(Thread.currentThread().getName(), invoke("/async/exec/thread"));
+        assertEquals("future:" + Thread.currentThread().getName(), invoke("/async/exec/future"));
+    }
+
+    /**
+     * 模拟Servlet 3的request；Servlet 2.4的api中没有这两个方法，rose通过反射调用，所以必须是public类
+     */
+    public static class MockAsyncRequest extends MockHttpServletRequest {
+
+        private final MockAsyncContext asyncContext;
+
+        public MockAsyncRequest(ServletContext servletContext, MockAsyncContext asyncContext) {
+            super(servletContext);
+            this.asyncContext = asyncContext;
+        }
+
+        public boolean isAsyncSupported() {
+            return true;
+        }
+
+        public MockAsyncContext startAsync(ServletRequest request, ServletResponse response) {
+            asyncContext.started = true;
+            return asyncContext;
+        }
+    }
+
+    public static class MockAsyncContext {
+
+        volatile boolean started;
+
+        volatile long timeout = -1;
+
+        volatile boolean completed;
+
+        volatile String dispatched;
+
+        volatile MockAsyncListener listener;
+
+        /** complete或dispatch时释放 */
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public void addListener(MockAsyncListener listener) {
+            this.listener = listener;
+        }
+
+        public void complete() {
+            completed = true;
+            latch.countDown();
+        }
+
+        public void dispatch(String path) {
+            dispatched = path;
+            latch.countDown();
+        }
+    }
+
+    /**
+     * 模拟Servlet 3的AsyncListener
+     */
+    public interface MockAsyncListener {
+
+        void onComplete(Object event);
+
+        void onTimeout(Object event);
+
+        void onError(Object event);
+
+        void onStartAsync(Object event);
+    }
+}
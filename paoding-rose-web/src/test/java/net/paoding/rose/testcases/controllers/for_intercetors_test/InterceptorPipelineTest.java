@@ -0,0 +1,28 @@
+package net.paoding.rose.testcases.controllers.for_intercetors_test;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+
+import net.paoding.rose.testcases.controllers.RoseTestEnv;
+
+/**
+ * 以展开方式执行拦截器时，拦截器的中断、return、afterCompletion以及oncePerRequest应和原来的执行方式一致
+ * 
+ */
+public class InterceptorPipelineTest extends InterceptorTest {
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        filter = RoseTestEnv.instance().getPipelineRoseFilter();
+    }
+
+    public void testOncePerRequest() throws ServletException, IOException {
+        assertEquals("ok", invoke("/oncePerRequest"));
+    }
+
+    public void testOncePerRequestForward() throws ServletException, IOException {
+        assertEquals("ok", invoke("/oncePerRequest2"));
+    }
+}
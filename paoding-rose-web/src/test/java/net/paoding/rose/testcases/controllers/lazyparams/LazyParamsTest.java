@@ -0,0 +1,55 @@
+package net.paoding.rose.testcases.controllers.lazyparams;
+
+import java.util.List;
+
+import net.paoding.rose.mock.controllers.lazyparams.GuardInterceptor;
+import net.paoding.rose.mock.controllers.lazyparams.LazyForm;
+import net.paoding.rose.mock.controllers.lazyparams.LazyParamsController;
+import net.paoding.rose.testcases.AbstractControllerTest;
+import net.paoding.rose.web.Invocation;
+
+/**
+ * @see LazyParamsController
+ */
+public class LazyParamsTest extends AbstractControllerTest {
+
+    public void testRejectedBeforeBinding() throws Exception {
+        int instances = LazyForm.instances.get();
+        request.addParameter("id", "3");
+        request.addParameter("name", "rose");
+        request.addParameter("reject", "");
+        assertEquals(GuardInterceptor.RETURN, invoke("/lazyparams/lazy/form"));
+        // 简单类型的参数已经解析，bean没有创建
+        assertEquals(3, request.getAttribute(GuardInterceptor.MODEL_ID));
+        assertNull(request.getAttribute(GuardInterceptor.MODEL_FORM));
+        assertEquals(instances, LazyForm.instances.get());
+    }
+
+    public void testResolvedWhenInvoked() throws Exception {
+        int instances = LazyForm.instances.get();
+        request.addParameter("id", "3");
+        request.addParameter("name", "rose");
+        request.addParameter("tag", "a,b");
+        assertEquals("3:rose:[a, b]", invoke("/lazyparams/lazy/form"));
+        assertNull(request.getAttribute(GuardInterceptor.MODEL_FORM));
+        assertEquals(instances + 1, LazyForm.instances.get());
+
+        Invocation inv = (Invocation) request.getAttribute("$$paoding-rose.invocation");
+        String formName = inv.getMethodParameterNames()[2];
+        assertTrue(inv.getModel().get(formName) instanceof LazyForm);
+        assertNotNull(inv.getBindingResult(formName));
+    }
+
+    public void testResolvedWhenRead() throws Exception {
+        int instances = LazyForm.instances.get();
+        request.addParameter("id", "3");
+        request.addParameter("name", "rose");
+        request.addParameter("peek", "");
+        assertEquals("3:rose:[]", invoke("/lazyparams/lazy/form"));
+        List<?> peeked = (List<?>) request.getAttribute(GuardInterceptor.PEEKED);
+        assertEquals(4, peeked.size());
+        assertEquals(3, peeked.get(1));
+        assertEquals("rose", ((LazyForm) peeked.get(2)).getName());
+        assertEquals(instances + 1, LazyForm.instances.get());
+    }
+}
@@ -0,0 +1,22 @@
+package net.paoding.rose.testcases.controllers.output;
+
+import net.paoding.rose.mock.controllers.output.CompressController;
+import net.paoding.rose.testcases.AbstractControllerTest;
+
+/**
+ * @see CompressController
+ */
+public class CompressControllerTest extends AbstractControllerTest {
+
+    public void testControllerFeatures() throws Exception {
+        assertEquals("compress[threshold=512]", invoke("/output/compress/inherit"));
+    }
+
+    public void testMethodDisables() throws Exception {
+        assertEquals("null", invoke("/output/compress/off"));
+    }
+
+    public void testDefaultThreshold() throws Exception {
+        assertEquals("compress[threshold=1024]", invoke("/output/compress/defaults"));
+    }
+}
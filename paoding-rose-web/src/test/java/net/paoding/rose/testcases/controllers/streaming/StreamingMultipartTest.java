@@ -0,0 +1,57 @@
+package net.paoding.rose.testcases.controllers.streaming;
+
+import net.paoding.rose.mock.controllers.streaming.StreamingController;
+import net.paoding.rose.testcases.AbstractControllerTest;
+
+/**
+ * @see StreamingController
+ */
+public class StreamingMultipartTest extends AbstractControllerTest {
+
+    private static final String BOUNDARY = "----roseboundary";
+
+    private void setMultipartContent(String... parts) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i += 3) {
+            sb.append("--").append(BOUNDARY).append("\r\n");
+            sb.append("Content-Disposition: form-data; name=\"").append(parts[i]).append('"');
+            if (parts[i + 1] != null) {
+                sb.append("; filename=\"").append(parts[i + 1]).append('"');
+                sb.append("\r\nContent-Type: text/plain");
+            }
+            sb.append("\r\n\r\n").append(parts[i + 2]).append("\r\n");
+        }
+        sb.append("--").append(BOUNDARY).append("--\r\n");
+        byte[] content = sb.toString().getBytes("UTF-8");
+        request.setMethod("POST");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setCharacterEncoding("UTF-8");
+        request.setContent(content);
+    }
+
+    public void testParts() throws Exception {
+        setMultipartContent("name", null, "rose", "file", "a.txt", "hello");
+        assertEquals("streaming;name=rose;file:a.txt=hello", invoke("/streaming/upload/parts"));
+    }
+
+    public void testPartSizeMax() throws Exception {
+        setMultipartContent("name", null, "rose", "file", "a.txt", "more than sixteen bytes");
+        assertEquals("streaming;name=rose;tooLarge", invoke("/streaming/upload/parts"));
+    }
+
+    public void testTransferToFile() throws Exception {
+        setMultipartContent("file", "a.txt", "hello");
+        assertEquals("5:5", invoke("/streaming/upload/file"));
+    }
+
+    public void testTransferToFileAlreadyRead() throws Exception {
+        setMultipartContent("file", "a.txt", "hello");
+        assertEquals("exists:true", invoke("/streaming/upload/reread"));
+    }
+
+    public void testNotMultipart() throws Exception {
+        request.setMethod("POST");
+        request.addParameter("file", "hello");
+        assertEquals("null", invoke("/streaming/upload/optional"));
+    }
+}
@@ -0,0 +1,146 @@
+package net.paoding.rose.testcases.web.impl.mapping;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.Dispatcher;
+import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.ReqMethod;
+import net.paoding.rose.web.impl.mapping.ConstantMapping;
+import net.paoding.rose.web.impl.mapping.Mapping;
+import net.paoding.rose.web.impl.mapping.MappingFactory;
+import net.paoding.rose.web.impl.mapping.MappingNode;
+import net.paoding.rose.web.impl.mapping.MatchResult;
+import net.paoding.rose.web.impl.mapping.UriParameters;
+
+public class MappingNodeTest extends TestCase {
+
+    private MappingNode root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new MappingNode(new ConstantMapping(""));
+        add("/user/list");
+        add("/user/{id:[0-9]+}");
+        add("/user/{name}/edit");
+        add("/users");
+        add("/abc");
+        add("/{alias}");
+        root.compile();
+    }
+
+    private void add(String path) {
+        MappingNode parent = root;
+        for (Mapping mapping : MappingFactory.parse(path)) {
+            MappingNode child = parent.getChild(mapping.getDefinition());
+            if (child == null) {
+                child = new MappingNode(mapping);
+                parent.linkAsChild(child);
+            }
+            parent = child;
+        }
+    }
+
+    private List<MatchResult> match(String uri) {
+        return root.match(new RequestPath(ReqMethod.GET, uri, "", Dispatcher.REQUEST));
+    }
+
+    private MatchResult last(String uri) {
+        List<MatchResult> results = match(uri);
+        assertNotNull(uri, results);
+        return results.get(results.size() - 1);
+    }
+
+    public void testConstant() {
+        assertEquals("/list", last("/user/list").getMappingNode().getMappingPath());
+        assertEquals("/users", last("/users").getMappingNode().getMappingPath());
+    }
+
+    public void testRegex() {
+        MatchResult result = last("/user/123");
+        assertEquals("id", result.getParameterName());
+        assertEquals("123", result.getValue());
+        assertEquals(6, result.getStart());
+        assertEquals(9, result.getEnd());
+
+        List<MatchResult> results = match("/user/qieqie/edit");
+        assertEquals("name", results.get(3).getParameterName());
+        assertEquals("qieqie", results.get(3).getValue());
+        assertEquals("/edit", results.get(4).getValue());
+    }
+
+    public void testConstantMustEndAtSlash() {
+        // '/abc' 没有正则子结点，'/abcd' 不能进入它，只能由 '/{alias}' 匹配
+        MatchResult result = last("/abcd");
+        assertEquals("alias", result.getParameterName());
+        assertEquals("abcd", result.getValue());
+    }
+
+    public void testNotMatched() {
+        assertNull(match("/user/list/more"));
+        assertNull(match("/user/xyz/more"));
+    }
+
+    public void testRegexSiblings() {
+        root = new MappingNode(new ConstantMapping(""));
+        // 内置简写，由扫描器处理
+        add("/q/{num:n}");
+        add("/q/{code:id}/x");
+        add("/q/{slug}");
+        // 普通正则合并为一个分支表达式；含反向引用的不参与合并
+        add("/p/{id:n}");
+        add("/p/{page:[a-z]+\\.html}");
+        add("/p/{twice:(ab)\\1}");
+        root.compile();
+
+        assertEquals("num", last("/q/12").getParameterName());
+        assertEquals("12", last("/q/12").getValue());
+        List<MatchResult> results = match("/q/a-1/x");
+        assertEquals("code", results.get(3).getParameterName());
+        assertEquals("a-1", results.get(3).getValue());
+        assertEquals("/x", results.get(4).getValue());
+        // 匹配了{code}之后不再回溯尝试{slug}
+        assertNull(match("/q/a.b"));
+
+        assertEquals("id", last("/p/123").getParameterName());
+        assertEquals("page", last("/p/index.html").getParameterName());
+        assertEquals("index.html", last("/p/index.html").getValue());
+        assertEquals("twice", last("/p/abab").getParameterName());
+        assertNull(match("/p/abc"));
+    }
+
+    public void testUriParameters() {
+        root = new MappingNode(new ConstantMapping(""));
+        add("/{group}/user/{id:n}");
+        add("/{group}/{id}/{group}");
+        root.compile();
+
+        String path = "/g1/user/12";
+        UriParameters parameters = UriParameters.of(match(path), path);
+        assertEquals(2, parameters.size());
+        assertEquals("group", parameters.getName(0));
+        assertEquals(1, parameters.indexOf("id"));
+        assertEquals("g1", parameters.get("group"));
+        assertEquals("12", parameters.getValue(1));
+        assertNull(parameters.get("none"));
+
+        // 同名参数以靠近根的为准
+        path = "/g1/abc/g2";
+        parameters = UriParameters.of(match(path), path);
+        assertEquals(2, parameters.size());
+        assertEquals("g1", parameters.get("group"));
+        assertEquals("abc", parameters.get("id"));
+
+        path = "/abc";
+        root = new MappingNode(new ConstantMapping(""));
+        add("/abc");
+        root.compile();
+        assertNull(UriParameters.of(match(path), path));
+    }
+
+    public void testRoot() {
+        List<MatchResult> results = match("/");
+        assertEquals(1, results.size());
+        assertSame(root, results.get(0).getMappingNode());
+    }
+}
@@ -0,0 +1,57 @@
+package net.paoding.rose.testcases.web.impl.mapping.ignored;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.Dispatcher;
+import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.ReqMethod;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPath;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathEnds;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathEquals;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathRegexMatch;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathSet;
+import net.paoding.rose.web.impl.mapping.ignored.IgnoredPathStarts;
+
+public class IgnoredPathSetTest extends TestCase {
+
+    private IgnoredPathSet set = new IgnoredPathSet(new IgnoredPath[] {
+            new IgnoredPathStarts("/views/"), //
+            new IgnoredPathStarts("/static"), //
+            new IgnoredPathEquals("/favicon.ico"), //
+            new IgnoredPathEnds(".css"), //
+            new IgnoredPathEnds(".js"), //
+            new IgnoredPathRegexMatch("/img/[0-9]+\\.png"), //
+            new IgnoredPathRegexMatch("/(a+)/\\1") });
+
+    private boolean hit(String uri) {
+        return set.hit(new RequestPath(ReqMethod.GET, uri, "", Dispatcher.REQUEST));
+    }
+
+    public void testHit() {
+        assertTrue(hit("/views/user.jsp"));
+        assertTrue(hit("/static"));
+        assertTrue(hit("/static/a.gif"));
+        assertTrue(hit("/favicon.ico"));
+        assertTrue(hit("/css/main.css"));
+        assertTrue(hit("/a.js"));
+        assertTrue(hit("/img/12.png"));
+        assertTrue(hit("/aa/aa"));
+    }
+
+    public void testNotHit() {
+        assertFalse(hit(""));
+        assertFalse(hit("/"));
+        assertFalse(hit("/view"));
+        assertFalse(hit("/favicon.ico/x"));
+        assertFalse(hit("/main.cs"));
+        assertFalse(hit("/img/a.png"));
+        assertFalse(hit("/aa/a"));
+        assertFalse(hit("/user/list"));
+    }
+
+    public void testAll() {
+        IgnoredPathSet all = new IgnoredPathSet(new IgnoredPath[] { new IgnoredPathEquals(""),
+                new IgnoredPathStarts("/") });
+        assertTrue(all.hit(new RequestPath(ReqMethod.GET, "", "", Dispatcher.REQUEST)));
+        assertTrue(all.hit(new RequestPath(ReqMethod.GET, "/x", "", Dispatcher.REQUEST)));
+    }
+}
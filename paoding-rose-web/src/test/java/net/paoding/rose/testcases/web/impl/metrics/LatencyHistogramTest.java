@@ -0,0 +1,77 @@
+package net.paoding.rose.testcases.web.impl.metrics;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.impl.metrics.LatencyHistogram;
+import net.paoding.rose.web.impl.metrics.StripedCounter;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500L * 1000, histogram.getTotal());
+        assertEquals(1000000, histogram.getMax());
+        assertWithin(500000, histogram.getPercentile(50));
+        assertWithin(990000, histogram.getPercentile(99));
+        assertEquals(1000000, histogram.getPercentile(100));
+        // 小值是精确的
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(3);
+        small.record(-1);
+        assertEquals(3, small.getPercentile(100));
+        assertEquals(0, small.getPercentile(50));
+    }
+
+    public void testHugeValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.getCount());
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(50));
+    }
+
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    public void testStripedCounter() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, counter.sum());
+    }
+
+    // 分桶的相对误差不超过25%
+    private void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but " + actual, actual >= expected
+                && actual <= expected * 1.25);
+    }
+}
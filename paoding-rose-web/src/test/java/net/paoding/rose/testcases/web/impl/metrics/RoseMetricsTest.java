@@ -0,0 +1,53 @@
+package net.paoding.rose.testcases.web.impl.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.paoding.rose.controllers.ToolsController;
+import net.paoding.rose.mock.controllers.for_interceptors_test.AdvancedController;
+import net.paoding.rose.testcases.AbstractControllerTest;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+public class RoseMetricsTest extends AbstractControllerTest {
+
+    public void testMBean() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("net.paoding.rose:type=Metrics,name="
+                + ObjectName.quote(filter.getFilterConfig().getFilterName()));
+        assertTrue(server.isRegistered(name));
+
+        long requests = (Long) server.getAttribute(name, "Requests");
+        invoke("/inters/advanced");
+        assertEquals(requests + 1, ((Long) server.getAttribute(name, "Requests")).longValue());
+
+        String report = (String) server.invoke(name, "getActionReport",
+                new Object[] { AdvancedController.class.getName() + "#index" },
+                new String[] { String.class.getName() });
+        assertNotNull(report);
+        assertTrue(report, report.contains("match: count="));
+        assertTrue(report, report.contains("block.before: count="));
+        assertNull(server.invoke(name, "getActionReport", new Object[] { "none#none" },
+                new String[] { String.class.getName() }));
+    }
+
+    public void testMetricsPage() throws Exception {
+        invoke("/inters/advanced");
+        setUp();
+        // rose-info只在ToolsController的日志为debug级别时可用
+        Logger logger = Logger.getLogger(ToolsController.class);
+        Level level = logger.getLevel();
+        logger.setLevel(Level.DEBUG);
+        try {
+            Object instruction = invoke("/rose-info/metrics");
+            assertNotNull(instruction);
+            assertTrue(instruction.toString(), instruction.toString().contains(
+                    AdvancedController.class.getName() + "#index"));
+        } finally {
+            logger.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.paoding.rose.testcases.web.impl.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.impl.thread.ActionInvoker;
+
+public class ActionInvokerTest extends TestCase {
+
+    public static class Target {
+
+        public String concat(String a, int b, long c, boolean d, String[] e) {
+            return a + b + c + d + Arrays.toString(e);
+        }
+
+        public int add(int a, double b) {
+            return (int) (a + b);
+        }
+
+        public void nothing() {
+        }
+
+        public Object fail(String message) throws Exception {
+            throw new IllegalStateException(message);
+        }
+
+        public static char first(Object o) {
+            return o.toString().charAt(0);
+        }
+
+        String hidden() {
+            return "hidden";
+        }
+    }
+
+    private ActionInvoker invoker(String name) {
+        for (Method method : Target.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return ActionInvoker.create(method);
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    public void testGenerated() throws Exception {
+        Target target = new Target();
+        ActionInvoker concat = invoker("concat");
+        assertTrue(concat instanceof ActionInvoker.Generated);
+        assertEquals("x12true[a, b]", concat.invoke(target, new Object[] { "x", 1, 2L, true,
+                new String[] { "a", "b" } }));
+        assertEquals(3, invoker("add").invoke(target, new Object[] { 1, 2.5d }));
+        assertNull(invoker("nothing").invoke(target, new Object[0]));
+        assertEquals('a', invoker("first").invoke(null, new Object[] { "abc" }));
+    }
+
+    public void testException() throws Exception {
+        try {
+            invoker("fail").invoke(new Target(), new Object[] { "oops" });
+            fail();
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getTargetException() instanceof IllegalStateException);
+            assertEquals("oops", e.getTargetException().getMessage());
+        }
+    }
+
+    public void testIllegalArguments() throws Exception {
+        // 和Method.invoke一样，参数不合法时抛出IllegalArgumentException而不是InvocationTargetException
+        ActionInvoker add = invoker("add");
+        Target target = new Target();
+        Object[][] illegals = { { null, 2.5d }, { "1", 2.5d }, { 1 } };
+        for (Object[] parameters : illegals) {
+            try {
+                add.invoke(target, parameters);
+                fail(Arrays.toString(parameters));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        try {
+            add.invoke("not a target", new Object[] { 1, 2.5d });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            add.invoke(null, new Object[] { 1, 2.5d });
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+        // 拓宽转换和反射调用一致
+        assertEquals(3, add.invoke(target, new Object[] { (short) 1, 2 }));
+    }
+
+    public void testReflectiveFallback() throws Exception {
+        ActionInvoker hidden = invoker("hidden");
+        assertFalse(hidden instanceof ActionInvoker.Generated);
+    }
+}
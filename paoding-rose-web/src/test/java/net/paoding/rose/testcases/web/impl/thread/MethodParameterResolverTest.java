@@ -192,6 +192,33 @@ public class MethodParameterResolverTest extends AbstractControllerTest {
         assertTrue(Arrays.equals(new boolean[] { true, false }, (boolean[]) parameters[3]));
     }
 
+    public void testCommaArray() throws Exception {
+        request.addParameter("int", "1,-2,3,");
+        request.addParameter("integer", "4,,0x10");
+        request.addParameter("name", "a,,b,,");
+        request.addParameter("bool", " on ,no");
+
+        Object[] parameters = resolveMethodParameters("array");
+        assertTrue(Arrays.equals(new int[] { 1, -2, 3 }, (int[]) parameters[0]));
+        assertTrue(Arrays.equals(new Integer[] { 4, null, 16 }, (Integer[]) parameters[1]));
+        assertTrue(Arrays.equals(new String[] { "a", "", "b" }, (String[]) parameters[2]));
+        assertTrue(Arrays.equals(new boolean[] { true, false }, (boolean[]) parameters[3]));
+    }
+
+    public void testCommaArrayTypeMismatch() throws Exception {
+        request.addParameter("int", "1,x,3");
+        request.addParameter("integer", "12345678901");
+        request.addParameter("name", ",");
+
+        Object[] parameters = resolveMethodParameters("array");
+        assertNull(parameters[0]);
+        assertNull(parameters[1]);
+        assertEquals(0, ((String[]) parameters[2]).length);
+        Invocation inv = InvocationUtils.getInvocation(request);
+        assertTrue(inv.getParameterBindingResult().hasFieldErrors("int"));
+        assertTrue(inv.getParameterBindingResult().hasFieldErrors("integer"));
+    }
+
     public void testList() throws Exception {
         request.addParameter("int", "1");
         request.addParameter("int", "2");
@@ -473,6 +500,40 @@ public class MethodParameterResolverTest extends AbstractControllerTest {
 
         assertTrue("unexpected type " + parameters[1].getClass().getName(),
                 parameters[1] instanceof BindingResult);
+        BindingResult userBr = (BindingResult) parameters[1];
+        assertFalse(userBr.hasErrors());
+        assertSame(ua, userBr.getTarget());
+        assertEquals(20, userBr.getFieldValue("age"));
+    }
+
+    public void testBindingResultTypeMismatch() throws Exception {
+        request.addParameter("id", "42");
+        request.addParameter("name", "rose");
+        request.addParameter("age", "twenty");
+
+        Object[] parameters = resolveMethodParameters("bindingResult");
+        User ua = (User) parameters[0];
+        assertEquals(Long.valueOf(42), ua.getId());
+        assertEquals("rose", ua.getName());
+        assertEquals(0, ua.getAge());
+
+        BindingResult userBr = (BindingResult) parameters[1];
+        assertSame(ua, userBr.getTarget());
+        assertEquals(1, userBr.getErrorCount());
+        assertTrue(userBr.hasFieldErrors("age"));
+        assertEquals("typeMismatch", userBr.getFieldError("age").getCode());
+    }
+
+    public void testUserBeanEmptyValues() throws Exception {
+        request.addParameter("id", "");
+        request.addParameter("name", "");
+        request.addParameter("unknown", "x");
+
+        Object[] parameters = resolveMethodParameters("userBean");
+        User user = (User) parameters[0];
+        assertNull(user.getId());
+        assertEquals("", user.getName());
+        assertEquals(0, user.getAge());
     }
 
     public void testInt() throws Exception {
@@ -0,0 +1,51 @@
+package net.paoding.rose.testcases.web.impl.thread;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.Dispatcher;
+import net.paoding.rose.web.RequestPath;
+import net.paoding.rose.web.annotation.ReqMethod;
+import net.paoding.rose.web.impl.mapping.MatchResult;
+import net.paoding.rose.web.impl.thread.LinkedEngine;
+import net.paoding.rose.web.impl.thread.RouteCache;
+
+public class RouteCacheTest extends TestCase {
+
+    private RouteCache.Route route(String uri) {
+        RequestPath path = new RequestPath(ReqMethod.GET, uri, "", Dispatcher.REQUEST);
+        path.setModulePath("");
+        path.setControllerPath(uri);
+        path.setActionPath("");
+        return new RouteCache.Route(new ArrayList<MatchResult>(), new ArrayList<LinkedEngine>(),
+                path);
+    }
+
+    public void testGetAndPut() {
+        RouteCache cache = new RouteCache(8);
+        assertNull(cache.get(ReqMethod.GET, "/user"));
+        RouteCache.Route route = route("/user");
+        cache.put(ReqMethod.GET, "/user", route);
+        assertSame(route, cache.get(ReqMethod.GET, "/user"));
+        assertNull(cache.get(ReqMethod.POST, "/user"));
+        assertNull(cache.get(null, "/user"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        RequestPath path = new RequestPath(ReqMethod.GET, "/user", "", Dispatcher.REQUEST);
+        route.applyTo(path);
+        assertEquals("/user", path.getControllerPath());
+    }
+
+    public void testBounded() {
+        RouteCache cache = new RouteCache(4);
+        for (int i = 0; i < 10; i++) {
+            cache.put(ReqMethod.GET, "/p" + i, route("/p" + i));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.getEvictions());
+        // 最后加入的总是在缓存中
+        assertNotNull(cache.get(ReqMethod.GET, "/p9"));
+    }
+}
@@ -0,0 +1,75 @@
+package net.paoding.rose.testcases.web.impl.view;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.impl.view.ViewPathCache;
+
+public class ViewPathCacheTest extends TestCase {
+
+    private File home;
+
+    @Override
+    protected void setUp() throws Exception {
+        home = File.createTempFile("rose-views", "");
+        home.delete();
+        touch("index.jsp");
+        touch("index.vm");
+        touch("about.html");
+        touch("User/list.vm");
+        touch("User/Detail.jsp");
+        touch("user.vm");
+        touch("ListAll.vm");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(home);
+    }
+
+    private void touch(String path) throws Exception {
+        File file = new File(home, path);
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public void testViewPath() throws Exception {
+        ViewPathCache cache = new ViewPathCache("/views/admin", home);
+        assertEquals("/views/admin", cache.getDirectoryPath());
+        // 多个文件匹配时取排序后的第一个
+        assertEquals("/views/admin/index.jsp", cache.getViewPath("index"));
+        assertEquals("/views/admin/index.vm", cache.getViewPath("index.vm"));
+        assertEquals("/views/admin/about.html", cache.getViewPath("about"));
+        assertEquals("/views/admin/user.vm", cache.getViewPath("user"));
+        assertNull(cache.getViewPath("inde"));
+        assertNull(cache.getViewPath("missing"));
+    }
+
+    public void testSubDirectory() throws Exception {
+        ViewPathCache cache = new ViewPathCache("/views", home);
+        assertEquals("/views/User/list.vm", cache.getViewPath("User/list"));
+        // 目录和文件都可以忽略大小写
+        assertEquals("/views/User/list.vm", cache.getViewPath("user/list"));
+        assertEquals("/views/User/Detail.jsp", cache.getViewPath("user/detail"));
+        assertEquals("/views/ListAll.vm", cache.getViewPath("listall"));
+        assertNull(cache.getViewPath("group/list"));
+    }
+
+    public void testIndexedOnce() throws Exception {
+        ViewPathCache cache = new ViewPathCache("/views", home);
+        touch("created.vm");
+        assertNull(cache.getViewPath("created"));
+        assertEquals("/views/created.vm", new ViewPathCache("/views", home)
+                .getViewPath("created"));
+    }
+}
@@ -0,0 +1,185 @@
+package net.paoding.rose.testcases.web.instruction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.Invocation;
+import net.paoding.rose.web.instruction.ByteBufferInstruction;
+import net.paoding.rose.web.instruction.FileInstruction;
+import net.paoding.rose.web.instruction.Instruction;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+
+public class BinaryInstructionTest extends TestCase {
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        request = new MockHttpServletRequest("GET", "/export");
+        response = new MockHttpServletResponse();
+        file = File.createTempFile("rose-binary", ".txt");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("0123456789".getBytes("ISO-8859-1"));
+        out.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    private void render(Instruction instruction) throws Exception {
+        final MockServletContext servletContext = new MockServletContext() {
+
+            @Override
+            public String getMimeType(String filePath) {
+                return filePath.endsWith(".txt") ? "text/plain" : null;
+            }
+        };
+        Invocation inv = (Invocation) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { Invocation.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getRequest")) {
+                            return request;
+                        }
+                        if (method.getName().equals("getResponse")) {
+                            return response;
+                        }
+                        if (method.getName().equals("getServletContext")) {
+                            return servletContext;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        instruction.render(inv);
+    }
+
+    public void testBytes() throws Exception {
+        render(new ByteBufferInstruction("hello".getBytes("ISO-8859-1")));
+        assertEquals(200, response.getStatus());
+        assertEquals(5, response.getContentLength());
+        assertEquals("application/octet-stream", response.getContentType());
+        assertEquals("hello", response.getContentAsString());
+    }
+
+    public void testFile() throws Exception {
+        render(new FileInstruction(file));
+        assertEquals(200, response.getStatus());
+        assertEquals(10, response.getContentLength());
+        assertEquals("text/plain", response.getContentType());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(file.lastModified() / 1000 * 1000, response.getHeader("Last-Modified"));
+    }
+
+    public void testFileNotFound() throws Exception {
+        file.delete();
+        render(new FileInstruction(file));
+        assertEquals(404, response.getStatus());
+    }
+
+    public void testNotModified() throws Exception {
+        request.addHeader("If-Modified-Since", new Long(file.lastModified() / 1000 * 1000));
+        render(new FileInstruction(file));
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testModified() throws Exception {
+        request.addHeader("If-Modified-Since", new Long(file.lastModified() / 1000 * 1000 - 1000));
+        render(new FileInstruction(file));
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    public void testRange() throws Exception {
+        request.addHeader("Range", "bytes=2-5");
+        render(new FileInstruction(file));
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals(4, response.getContentLength());
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    public void testOpenAndSuffixRange() throws Exception {
+        request.addHeader("Range", "bytes=7-");
+        render(new ByteBufferInstruction("0123456789".getBytes("ISO-8859-1")));
+        assertEquals("789", response.getContentAsString());
+
+        response = new MockHttpServletResponse();
+        request = new MockHttpServletRequest("GET", "/export");
+        request.addHeader("Range", "bytes=-4");
+        render(new FileInstruction(file));
+        assertEquals("bytes 6-9/10", response.getHeader("Content-Range"));
+        assertEquals("6789", response.getContentAsString());
+    }
+
+    public void testUnsatisfiableRange() throws Exception {
+        request.addHeader("Range", "bytes=10-");
+        render(new FileInstruction(file));
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    public void testMultipleRangesServeAll() throws Exception {
+        request.addHeader("Range", "bytes=0-1,4-5");
+        render(new FileInstruction(file));
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    public void testIfRangeChanged() throws Exception {
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", new Long(file.lastModified() / 1000 * 1000 - 1000));
+        render(new FileInstruction(file));
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    public void testHead() throws Exception {
+        request.setMethod("HEAD");
+        render(new FileInstruction(file));
+        assertEquals(10, response.getContentLength());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testChannelAndMappedBuffer() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        render(new FileInstruction(channel));
+        assertEquals("0123456789", response.getContentAsString());
+        assertFalse(channel.isOpen());
+        raf.close();
+
+        response = new MockHttpServletResponse();
+        request.addHeader("Range", "bytes=1-3");
+        render(new ByteBufferInstruction(mapped));
+        assertEquals("123", response.getContentAsString());
+        assertEquals(0, mapped.position());
+    }
+
+    public void testSlicedBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap("xx0123456789".getBytes("ISO-8859-1"));
+        buffer.position(2);
+        render(new ByteBufferInstruction(buffer.slice()));
+        assertEquals(10, response.getContentLength());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+}
@@ -0,0 +1,44 @@
+package net.paoding.rose.testcases.web.instruction;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.instruction.Forward;
+import net.paoding.rose.web.instruction.HttpError;
+import net.paoding.rose.web.instruction.Instruction;
+import net.paoding.rose.web.instruction.InstructionCache;
+import net.paoding.rose.web.instruction.Redirect;
+import net.paoding.rose.web.instruction.Text;
+import net.paoding.rose.web.instruction.ViewInstruction;
+
+public class InstructionCacheTest extends TestCase {
+
+    public void testCacheable() {
+        assertTrue(InstructionCache.isCacheable("r:/login"));
+        assertTrue(InstructionCache.isCacheable("user-list"));
+        assertTrue(InstructionCache.isCacheable("@$1"));
+        assertFalse(InstructionCache.isCacheable("r:/user/${id}"));
+        assertFalse(InstructionCache.isCacheable("s:404"));
+        assertFalse(InstructionCache.isCacheable("status:201;user-list"));
+    }
+
+    public void testShareable() {
+        assertTrue(InstructionCache.isShareable(new ViewInstruction("user-list")));
+        assertTrue(InstructionCache.isShareable(Text.text("ok")));
+        assertTrue(InstructionCache.isShareable(HttpError.code(404)));
+        assertTrue(InstructionCache.isShareable(Redirect.location("/login")));
+        assertTrue(InstructionCache.isShareable(Forward.path("/login")));
+        assertFalse(InstructionCache.isShareable(Redirect.action("list")));
+        assertFalse(InstructionCache.isShareable(Forward.controller("user")));
+    }
+
+    public void testCapacity() {
+        InstructionCache cache = new InstructionCache(2);
+        Instruction a = Text.text("a");
+        cache.put("a", a);
+        cache.put("b", Text.text("b"));
+        assertSame(a, cache.get("a"));
+        cache.put("c", Text.text("c"));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("c"));
+        assertTrue(cache.get("a") == null || cache.get("b") == null);
+    }
+}
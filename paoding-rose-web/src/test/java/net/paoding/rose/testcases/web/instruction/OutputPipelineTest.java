@@ -0,0 +1,249 @@
+package net.paoding.rose.testcases.web.instruction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+
+import junit.framework.TestCase;
+import net.paoding.rose.web.Invocation;
+import net.paoding.rose.web.instruction.BufferedResponse;
+import net.paoding.rose.web.instruction.OutputPolicy;
+import net.paoding.rose.web.instruction.Text;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class OutputPipelineTest extends TestCase {
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private Invocation inv;
+
+    @Override
+    protected void setUp() throws Exception {
+        request = new MockHttpServletRequest("GET", "/out");
+        request.setCharacterEncoding("UTF-8");
+        response = new MockHttpServletResponse();
+        inv = newInvocation();
+    }
+
+    private Invocation newInvocation() {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        return (Invocation) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { Invocation.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getRequest")) {
+                            return request;
+                        }
+                        if (method.getName().equals("getResponse")) {
+                            return response;
+                        }
+                        if (method.getName().equals("getAttribute")) {
+                            return attributes.get(args[0]);
+                        }
+                        if (method.getName().equals("setAttribute")) {
+                            attributes.put((String) args[0], args[1]);
+                            return proxy;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static String read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private String gunzip() throws Exception {
+        return read(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+    }
+
+    public void testTextWithoutPolicy() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip");
+        Text.text(repeat("rose", 1000)).render(inv);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(4000, response.getContentAsString().length());
+    }
+
+    public void testPolicyNotInheritedBySameRequest() throws Exception {
+        // portal窗口等forward的调用与外层调用共享request
+        request.addHeader("Accept-Encoding", "gzip");
+        new OutputPolicy(100).applyTo(inv);
+        Invocation window = newInvocation();
+        assertNull(OutputPolicy.of(window));
+        Text.text(repeat("rose", 1000)).render(window);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(4000, response.getContentAsString().length());
+    }
+
+    public void testTextGzip() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        new OutputPolicy(100).applyTo(inv);
+        String text = repeat("玫瑰rose", 500);
+        Text.text(text).render(inv);
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+        assertTrue(response.getContentLength() < text.getBytes("UTF-8").length);
+        assertEquals(text, gunzip());
+    }
+
+    public void testTextDeflate() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip;q=0, deflate");
+        new OutputPolicy(100).applyTo(inv);
+        String text = repeat("rose", 500);
+        Text.text(text).render(inv);
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+        assertEquals(text, read(new InflaterInputStream(new ByteArrayInputStream(response
+                .getContentAsByteArray()))));
+    }
+
+    public void testTextBelowThreshold() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip");
+        new OutputPolicy(100).applyTo(inv);
+        Text.text("small").render(inv);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(5, response.getContentLength());
+        assertEquals("small", response.getContentAsString());
+    }
+
+    public void testTextNotAccepted() throws Exception {
+        new OutputPolicy(10).applyTo(inv);
+        String text = repeat("rose", 100);
+        Text.text(text).render(inv);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(400, response.getContentLength());
+        assertEquals(text, response.getContentAsString());
+    }
+
+    public void testTextWriterAlreadyUsed() throws Exception {
+        response = writerTrackingResponse();
+        request.addHeader("Accept-Encoding", "gzip");
+        new OutputPolicy(0).applyTo(inv);
+        response.getWriter().print("head:");
+        Text.text("body").render(inv);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("head:body", response.getContentAsString());
+    }
+
+    public void testTextWriterAlreadyCommitted() throws Exception {
+        response = writerTrackingResponse();
+        new OutputPolicy(0).applyTo(inv);
+        response.getWriter().print("head:");
+        response.flushBuffer();
+        assertTrue(response.isCommitted());
+        Text.text("body").render(inv);
+        assertEquals("head:body", response.getContentAsString());
+    }
+
+    private MockHttpServletResponse writerTrackingResponse() {
+        // 和容器一样，调用过getWriter后不能再调用getOutputStream
+        return new MockHttpServletResponse() {
+
+            private boolean writerUsed;
+
+            @Override
+            public PrintWriter getWriter() throws UnsupportedEncodingException {
+                writerUsed = true;
+                return super.getWriter();
+            }
+
+            @Override
+            public ServletOutputStream getOutputStream() {
+                if (writerUsed) {
+                    throw new IllegalStateException();
+                }
+                return super.getOutputStream();
+            }
+        };
+    }
+
+    public void testBufferedResponse() throws Exception {
+        request.addHeader("Accept-Encoding", "*");
+        response.setContentType("text/html;charset=UTF-8");
+        String text = repeat("<p>rose</p>", 100);
+        BufferedResponse buffered = new BufferedResponse(request, response, new OutputPolicy(10));
+        try {
+            PrintWriter writer = buffered.getWriter();
+            writer.print(text);
+            writer.close();
+            assertFalse(response.isCommitted());
+            buffered.finish();
+        } finally {
+            buffered.release();
+        }
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLength());
+        assertEquals(text, gunzip());
+    }
+
+    public void testBufferedResponseStreaming() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip");
+        response.setContentType("application/json");
+        String text = repeat("0123456789abcdef", BufferedResponse.BUFFER_LIMIT / 16 * 3);
+        BufferedResponse buffered = new BufferedResponse(request, response, new OutputPolicy(-1));
+        try {
+            buffered.getOutputStream().write(text.getBytes("UTF-8"));
+            buffered.finish();
+        } finally {
+            buffered.release();
+        }
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(0, response.getContentLength());
+        assertEquals(text, gunzip());
+    }
+
+    public void testNotCompressibleType() throws Exception {
+        request.addHeader("Accept-Encoding", "gzip");
+        response.setContentType("image/png");
+        BufferedResponse buffered = new BufferedResponse(request, response, new OutputPolicy(0));
+        buffered.getOutputStream().write(new byte[100]);
+        buffered.finish();
+        buffered.release();
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(100, response.getContentLength());
+    }
+
+    public void testNegotiate() throws Exception {
+        OutputPolicy policy = new OutputPolicy(-1);
+        assertEquals(OutputPolicy.DEFAULT_THRESHOLD, policy.getThreshold());
+        assertNull(policy.negotiate(request));
+        request.addHeader("Accept-Encoding", "identity");
+        assertNull(policy.negotiate(request));
+        MockHttpServletRequest r = new MockHttpServletRequest();
+        r.addHeader("Accept-Encoding", "deflate;q=0.8, gzip;q=0.5");
+        assertEquals("deflate", policy.negotiate(r));
+        r = new MockHttpServletRequest();
+        r.addHeader("Accept-Encoding", "*;q=0");
+        assertNull(policy.negotiate(r));
+    }
+}
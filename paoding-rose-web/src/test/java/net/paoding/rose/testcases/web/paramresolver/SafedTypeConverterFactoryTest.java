@@ -0,0 +1,88 @@
+package net.paoding.rose.testcases.web.paramresolver;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import net.paoding.rose.util.VirtualThreads;
+import net.paoding.rose.web.paramresolver.SafedTypeConverterFactory;
+
+public class SafedTypeConverterFactoryTest extends TestCase {
+
+    public void testConvert() {
+        assertEquals(Integer.valueOf(12), SafedTypeConverterFactory.convertIfNecessary("12",
+                Integer.class));
+        Date date = SafedTypeConverterFactory.convertIfNecessary("2010-01-02", Date.class);
+        assertNotNull(date);
+        assertEquals(2, SafedTypeConverterFactory.convertIfNecessary(new String[] { "1", "2" },
+                int[].class)[1]);
+    }
+
+    public void testConcurrentShortLivedThreads() throws Exception {
+        // 每个任务一个新线程，模拟每个请求一个虚拟线程的场景
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool();
+        }
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int i = 0; i < 200; i++) {
+                final long value = i;
+                futures.add(executor.submit(new Callable<Long>() {
+
+                    @Override
+                    public Long call() throws Exception {
+                        return SafedTypeConverterFactory.convertIfNecessary(String.valueOf(value),
+                                Long.class);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(Long.valueOf(i), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testConcurrentDates() throws Exception {
+        // SimpleDateFormat借自共享的空闲池，并发解析时不能互相干扰
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Date>> futures = new ArrayList<Future<Date>>();
+            for (int i = 0; i < 400; i++) {
+                final String text = "2010-01-" + (10 + i % 20) + " 12:" + (10 + i % 50) + ":00";
+                futures.add(executor.submit(new Callable<Date>() {
+
+                    @Override
+                    public Date call() throws Exception {
+                        return SafedTypeConverterFactory.convertIfNecessary(text, Date.class);
+                    }
+                }));
+            }
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            for (int i = 0; i < futures.size(); i++) {
+                String text = "2010-01-" + (10 + i % 20) + " 12:" + (10 + i % 50) + ":00";
+                assertEquals(format.parse(text), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testVirtualThreadsSupport() {
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (VirtualThreads.isSupported()) {
+            assertNotNull(executor);
+            executor.shutdown();
+        } else {
+            assertNull(executor);
+        }
+    }
+}